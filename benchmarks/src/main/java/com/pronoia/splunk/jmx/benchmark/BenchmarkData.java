@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.benchmark;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+/**
+ * Factory methods for realistic benchmark inputs.
+ *
+ * <p>The shapes mirror what the JVM and ActiveMQ actually produce: the attributes of an ActiveMQ queue MBean, the
+ * GcNotificationInfo CompositeData of a young collection, and a per-thread TabularData.
+ */
+public final class BenchmarkData {
+    public static final String GC_NOTIFICATION_TYPE = "com.sun.management.gc.notification";
+
+    static final String[] MEMORY_POOLS = {"PS Eden Space", "PS Survivor Space", "PS Old Gen", "Metaspace", "Code Cache", "Compressed Class Space"};
+
+    static final String[] MEMORY_USAGE_ITEMS = {"committed", "init", "max", "used"};
+    static final String[] ROW_ITEMS = {"key", "value"};
+    static final String[] GC_INFO_ITEMS = {"duration", "endTime", "id", "memoryUsageAfterGc", "memoryUsageBeforeGc", "startTime"};
+    static final String[] GC_NOTIFICATION_INFO_ITEMS = {"gcAction", "gcCause", "gcInfo", "gcName"};
+    static final String[] THREAD_ITEMS = {"threadId", "threadName", "threadState", "cpuTime", "userTime", "blockedCount", "waitedCount"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create the attributes of an ActiveMQ queue MBean (org.apache.activemq:type=Broker,destinationType=Queue,...).
+     *
+     * @param queueIndex used to make the destination name and counters unique
+     *
+     * @return the AttributeList
+     *
+     * @throws MalformedObjectNameException raised if the subscription ObjectNames cannot be created
+     */
+    public static AttributeList createActiveMQQueueAttributes(int queueIndex) throws MalformedObjectNameException {
+        AttributeList answer = new AttributeList();
+
+        answer.add(new Attribute("Name", "queue." + queueIndex));
+        answer.add(new Attribute("QueueSize", 42L + queueIndex));
+        answer.add(new Attribute("EnqueueCount", 100000L + queueIndex));
+        answer.add(new Attribute("DequeueCount", 99958L));
+        answer.add(new Attribute("DispatchCount", 99960L));
+        answer.add(new Attribute("InFlightCount", 2L));
+        answer.add(new Attribute("ExpiredCount", 0L));
+        answer.add(new Attribute("ForwardCount", 0L));
+        answer.add(new Attribute("ConsumerCount", 3L));
+        answer.add(new Attribute("ProducerCount", 1L));
+        answer.add(new Attribute("MemoryUsageByteCount", 1048576L));
+        answer.add(new Attribute("MemoryLimit", 67108864L));
+        answer.add(new Attribute("MemoryPercentUsage", 1));
+        answer.add(new Attribute("AverageEnqueueTime", 12.5));
+        answer.add(new Attribute("MaxEnqueueTime", 250L));
+        answer.add(new Attribute("MinEnqueueTime", 0L));
+        answer.add(new Attribute("AverageMessageSize", 2048L));
+        answer.add(new Attribute("CursorMemoryUsage", 524288L));
+        answer.add(new Attribute("CursorPercentUsage", 0));
+        answer.add(new Attribute("DLQ", false));
+        answer.add(new Attribute("Paused", false));
+        answer.add(new Attribute("PrioritizedMessages", false));
+        answer.add(new Attribute("UseCache", true));
+        answer.add(new Attribute("Options", ""));
+        answer.add(new Attribute("Subscriptions", new ObjectName[] {
+            subscriptionObjectName(queueIndex, 1), subscriptionObjectName(queueIndex, 2), subscriptionObjectName(queueIndex, 3)
+        }));
+
+        return answer;
+    }
+
+    /**
+     * Create the CompositeData form of a GarbageCollectionNotificationInfo for a young collection.
+     *
+     * @return the GcNotificationInfo CompositeData
+     *
+     * @throws OpenDataException raised if the CompositeData cannot be created
+     */
+    public static CompositeData createGcNotificationInfo() throws OpenDataException {
+        CompositeType memoryUsageType = new CompositeType("java.lang.management.MemoryUsage", "MemoryUsage", MEMORY_USAGE_ITEMS, MEMORY_USAGE_ITEMS,
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+        CompositeType rowType = new CompositeType("memoryUsageRow", "memoryUsageRow", ROW_ITEMS, ROW_ITEMS,
+            new OpenType<?>[] {SimpleType.STRING, memoryUsageType});
+        TabularType tableType = new TabularType("memoryUsageTable", "memoryUsageTable", rowType, new String[] {"key"});
+        CompositeType gcInfoType = new CompositeType("sun.management.PS Scavenge.GcInfoCompositeType", "GcInfo", GC_INFO_ITEMS, GC_INFO_ITEMS,
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, tableType, tableType, SimpleType.LONG});
+        CompositeType gcNotificationInfoType = new CompositeType("sun.management.PS Scavenge.GcNotificationInfoCompositeType", "GcNotificationInfo",
+            GC_NOTIFICATION_INFO_ITEMS, GC_NOTIFICATION_INFO_ITEMS,
+            new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING, gcInfoType, SimpleType.STRING});
+
+        TabularDataSupport beforeGc = new TabularDataSupport(tableType);
+        TabularDataSupport afterGc = new TabularDataSupport(tableType);
+        for (int i = 0; i < MEMORY_POOLS.length; ++i) {
+            long used = (i + 1) * 16777216L;
+            beforeGc.put(memoryUsageRow(rowType, memoryUsageType, MEMORY_POOLS[i], used));
+            afterGc.put(memoryUsageRow(rowType, memoryUsageType, MEMORY_POOLS[i], (i == 0) ? 0 : used + 1024));
+        }
+
+        CompositeData gcInfo = new CompositeDataSupport(gcInfoType, GC_INFO_ITEMS,
+            new Object[] {8L, 123464L, 1234L, afterGc, beforeGc, 123456L});
+
+        return new CompositeDataSupport(gcNotificationInfoType, GC_NOTIFICATION_INFO_ITEMS,
+            new Object[] {"end of minor GC", "Allocation Failure", gcInfo, "PS Scavenge"});
+    }
+
+    /**
+     * Create a GC notification for a young collection.
+     *
+     * @return the Notification
+     *
+     * @throws Exception raised if the Notification cannot be created
+     */
+    public static Notification createGcNotification() throws Exception {
+        Notification answer = new Notification(GC_NOTIFICATION_TYPE, new ObjectName("java.lang:type=GarbageCollector,name=PS Scavenge"),
+            1234L, 123464L, "end of minor GC");
+        answer.setUserData(createGcNotificationInfo());
+        return answer;
+    }
+
+    /**
+     * Create a per-thread TabularData indexed by thread id.
+     *
+     * @param threadCount the number of rows
+     *
+     * @return the TabularData
+     *
+     * @throws OpenDataException raised if the TabularData cannot be created
+     */
+    public static TabularData createThreadTabularData(int threadCount) throws OpenDataException {
+        CompositeType threadType = new CompositeType("ThreadStatistics", "ThreadStatistics", THREAD_ITEMS, THREAD_ITEMS,
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+        TabularType tableType = new TabularType("ThreadStatisticsTable", "ThreadStatisticsTable", threadType, new String[] {"threadId"});
+
+        TabularDataSupport answer = new TabularDataSupport(tableType);
+        for (long threadId = 1; threadId <= threadCount; ++threadId) {
+            answer.put(new CompositeDataSupport(threadType, THREAD_ITEMS, new Object[] {
+                threadId, "ActiveMQ Transport: tcp:///10.0.0." + threadId, (threadId % 3 == 0) ? "RUNNABLE" : "WAITING",
+                threadId * 1000000L, threadId * 800000L, threadId % 7, threadId * 13
+            }));
+        }
+
+        return answer;
+    }
+
+    static ObjectName subscriptionObjectName(int queueIndex, int consumerIndex) throws MalformedObjectNameException {
+        return new ObjectName(String.format(
+            "org.apache.activemq:type=Broker,brokerName=amq-broker,destinationType=Queue,destinationName=queue.%d,"
+                + "endpoint=Consumer,clientId=client-%d,consumerId=ID_consumer-%d-1-1", queueIndex, consumerIndex, consumerIndex));
+    }
+
+    static CompositeData memoryUsageRow(CompositeType rowType, CompositeType memoryUsageType, String poolName, long used) throws OpenDataException {
+        CompositeData memoryUsage = new CompositeDataSupport(memoryUsageType, MEMORY_USAGE_ITEMS,
+            new Object[] {used * 2, 0L, used * 4, used});
+        return new CompositeDataSupport(rowType, ROW_ITEMS, new Object[] {poolName, memoryUsage});
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmark jar.
+ *
+ * <p>Without arguments, all benchmarks are run with the GC profiler so both throughput and allocation rates are
+ * reported.  When arguments are supplied they are passed to the standard JMH command line runner.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args JMH command line arguments
+     *
+     * @throws Exception raised if the benchmarks cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        if (args != null && args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+        } else {
+            runAll();
+        }
+    }
+
+    static void runAll() throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(BenchmarkRunner.class.getPackage().getName() + ".*")
+            .addProfiler(GCProfiler.class)
+            .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.AttributeList;
+import javax.management.Notification;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeListEventBuilder;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxNotificationEventBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the JMX event builders.
+ *
+ * <p>Event builders are not thread-safe, so each benchmark thread gets its own builders and inputs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JmxEventBuilderBenchmark {
+    EventCollectorClient client;
+
+    JmxAttributeListEventBuilder attributeListEventBuilder;
+    JmxNotificationEventBuilder notificationEventBuilder;
+    JmxGarbageCollectionNotificationEventBuilder gcNotificationEventBuilder;
+
+    AttributeList activeMQQueueAttributes;
+    Notification gcNotification;
+    CompositeData gcNotificationInfo;
+    TabularData threadTabularData;
+
+    /**
+     * Create the builders and the benchmark inputs.
+     *
+     * @throws Exception raised if the inputs cannot be created
+     */
+    @Setup
+    public void setUp() throws Exception {
+        client = new NullEventCollectorClient();
+
+        attributeListEventBuilder = new JmxAttributeListEventBuilder();
+        notificationEventBuilder = new JmxNotificationEventBuilder();
+        gcNotificationEventBuilder = new JmxGarbageCollectionNotificationEventBuilder();
+
+        activeMQQueueAttributes = BenchmarkData.createActiveMQQueueAttributes(1);
+        gcNotification = BenchmarkData.createGcNotification();
+        gcNotificationInfo = BenchmarkData.createGcNotificationInfo();
+        threadTabularData = BenchmarkData.createThreadTabularData(200);
+    }
+
+    @Benchmark
+    public String attributeListBuild() {
+        attributeListEventBuilder.source("org.apache.activemq:type=Broker,brokerName=amq-broker,destinationType=Queue,destinationName=queue.1");
+        return attributeListEventBuilder.eventBody(activeMQQueueAttributes).build(client);
+    }
+
+    @Benchmark
+    public String notificationBuild() {
+        return notificationEventBuilder.eventBody(gcNotification).build(client);
+    }
+
+    @Benchmark
+    public String gcNotificationBuild() {
+        return gcNotificationEventBuilder.eventBody(gcNotification).build(client);
+    }
+
+    @Benchmark
+    public Map<String, Object> addCompositeData() {
+        Map<String, Object> target = new HashMap<>();
+        notificationEventBuilder.addCompositeData(target, gcNotificationInfo);
+        return target;
+    }
+
+    @Benchmark
+    public Map<String, Object> addTabularData() {
+        Map<String, Object> target = new HashMap<>();
+        notificationEventBuilder.addTabularData(target, threadTabularData);
+        return target;
+    }
+}
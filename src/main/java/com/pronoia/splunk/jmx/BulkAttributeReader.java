@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.AttributeList;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+import javax.management.ReflectionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An MBean that retrieves the attributes of many MBeans in one call.
+ *
+ * <p>JMX can only retrieve the attributes of a single MBean per call, so polling a pattern matching thousands of MBeans
+ * through a remote connector takes thousands of round trips.  When this MBean is deployed in the monitored JVM (e.g.
+ * as a blueprint bean with init-method="initialize"), change monitors polling the JVM through an MBeanServerConnection
+ * retrieve all the attributes for their pattern with a single call to {@link #readAttributes}.
+ */
+public class BulkAttributeReader implements BulkAttributeReaderMBean {
+    public static final String OBJECT_NAME = "com.pronoia.splunk.httpec:type=BulkAttributeReader";
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    ObjectName bulkAttributeReaderObjectName;
+
+    final AtomicLong requestCount = new AtomicLong();
+    volatile long lastRequestObjectCount;
+    volatile long lastRequestDuration;
+
+    /**
+     * Get the ObjectName the reader is registered with.
+     *
+     * @return the ObjectName
+     */
+    public static ObjectName getObjectName() {
+        try {
+            return new ObjectName(OBJECT_NAME);
+        } catch (MalformedObjectNameException malformedNameEx) {
+            throw new IllegalStateException("Invalid ObjectName " + OBJECT_NAME, malformedNameEx);
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public long getLastRequestObjectCount() {
+        return lastRequestObjectCount;
+    }
+
+    @Override
+    public long getLastRequestDuration() {
+        return lastRequestDuration;
+    }
+
+    @Override
+    public Map<ObjectName, AttributeList> readAttributes(ObjectName objectNamePattern, String[] attributeNames, QueryExp query) {
+        return readAttributes(objectNamePattern, attributeNames, query, null);
+    }
+
+    @Override
+    public Map<ObjectName, AttributeList> readAttributes(ObjectName objectNamePattern, String[] attributeNames, QueryExp query, Set<String> excludedAttributeNames) {
+        long startNanos = System.nanoTime();
+        Set<ObjectName> objectNameSet = ManagementFactory.getPlatformMBeanServer().queryNames(objectNamePattern, query);
+
+        return read(objectNamePattern, objectNameSet, attributeNames, excludedAttributeNames, startNanos);
+    }
+
+    @Override
+    public Map<ObjectName, AttributeList> readObjectAttributes(Set<ObjectName> objectNames, String[] attributeNames, Set<String> excludedAttributeNames) {
+        return read(objectNames.size() + " objects", objectNames, attributeNames, excludedAttributeNames, System.nanoTime());
+    }
+
+    Map<ObjectName, AttributeList> read(Object description, Set<ObjectName> objectNameSet, String[] attributeNames, Set<String> excludedAttributeNames, long startNanos) {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        Map<ObjectName, AttributeList> answer = new LinkedHashMap<>();
+        for (ObjectName objectName : objectNameSet) {
+            try {
+                String[] retrievedAttributeNames = (attributeNames != null) ? attributeNames : getReadableAttributeNames(mbeanServer, objectName, excludedAttributeNames);
+                answer.put(objectName, mbeanServer.getAttributes(objectName, retrievedAttributeNames));
+            } catch (InstanceNotFoundException instanceNotFoundEx) {
+                log.debug("MBean {} was unregistered while reading attributes", objectName, instanceNotFoundEx);
+            } catch (ReflectionException | IntrospectionException jmxEx) {
+                log.warn("Unexpected {} reading attributes of JMX ObjectName {}", jmxEx.getClass().getSimpleName(), objectName, jmxEx);
+            }
+        }
+
+        requestCount.incrementAndGet();
+        lastRequestObjectCount = answer.size();
+        lastRequestDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        log.debug("Read attributes of {} MBeans for {} in {} ms", lastRequestObjectCount, description, lastRequestDuration);
+
+        return answer;
+    }
+
+    static String[] getReadableAttributeNames(MBeanServer mbeanServer, ObjectName objectName, Set<String> excludedAttributeNames)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException {
+        List<String> answer = new ArrayList<>();
+        for (MBeanAttributeInfo attributeInfo : mbeanServer.getMBeanInfo(objectName).getAttributes()) {
+            if (attributeInfo.isReadable() && (excludedAttributeNames == null || !excludedAttributeNames.contains(attributeInfo.getName()))) {
+                answer.add(attributeInfo.getName());
+            }
+        }
+        return answer.toArray(new String[answer.size()]);
+    }
+
+    public void initialize() {
+        registerMBean();
+    }
+
+    public void destroy() {
+        unregisterMBean();
+    }
+
+    void registerMBean() {
+        bulkAttributeReaderObjectName = getObjectName();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, bulkAttributeReaderObjectName);
+        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
+            log.warn("MBean already registered for bulk attribute reader {}", bulkAttributeReaderObjectName, allreadyExistsEx);
+            bulkAttributeReaderObjectName = null;
+        } catch (MBeanRegistrationException registrationEx) {
+            log.warn("MBean registration failure for bulk attribute reader {}", bulkAttributeReaderObjectName, registrationEx);
+            bulkAttributeReaderObjectName = null;
+        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
+            log.warn("Invalid MBean for bulk attribute reader {}", bulkAttributeReaderObjectName, nonCompliantMBeanEx);
+            bulkAttributeReaderObjectName = null;
+        }
+    }
+
+    void unregisterMBean() {
+        if (bulkAttributeReaderObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(bulkAttributeReaderObjectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
+                log.warn("Failed to unregister bulk attribute reader MBean {}", bulkAttributeReaderObjectName.getCanonicalName(), unregisterEx);
+            } finally {
+                bulkAttributeReaderObjectName = null;
+            }
+        }
+    }
+}
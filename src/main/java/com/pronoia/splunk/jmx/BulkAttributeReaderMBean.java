@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+public interface BulkAttributeReaderMBean {
+    long getRequestCount();
+    long getLastRequestObjectCount();
+    long getLastRequestDuration();
+
+    /**
+     * Retrieve the attributes of all the MBeans matching a pattern.
+     *
+     * @param objectNamePattern the ObjectName pattern
+     * @param attributeNames the names of the attributes; null retrieves all the readable attributes of each MBean
+     * @param query an additional filter for the MBeans; may be null
+     *
+     * @return the retrieved attributes, keyed by ObjectName
+     */
+    Map<ObjectName, AttributeList> readAttributes(ObjectName objectNamePattern, String[] attributeNames, QueryExp query);
+
+    /**
+     * Retrieve the attributes of all the MBeans matching a pattern, excluding some attributes.
+     *
+     * @param objectNamePattern the ObjectName pattern
+     * @param attributeNames the names of the attributes; null retrieves all the readable attributes of each MBean
+     * @param query an additional filter for the MBeans; may be null
+     * @param excludedAttributeNames the attributes that are not retrieved when attributeNames is null; may be null
+     *
+     * @return the retrieved attributes, keyed by ObjectName
+     */
+    Map<ObjectName, AttributeList> readAttributes(ObjectName objectNamePattern, String[] attributeNames, QueryExp query, Set<String> excludedAttributeNames);
+
+    /**
+     * Retrieve the attributes of a set of MBeans - e.g. the MBeans matching a pattern that are owned by a collector node.
+     *
+     * @param objectNames the ObjectNames of the MBeans
+     * @param attributeNames the names of the attributes; null retrieves all the readable attributes of each MBean
+     * @param excludedAttributeNames the attributes that are not retrieved when attributeNames is null; may be null
+     *
+     * @return the retrieved attributes, keyed by ObjectName
+     */
+    Map<ObjectName, AttributeList> readObjectAttributes(Set<ObjectName> objectNames, String[] attributeNames, Set<String> excludedAttributeNames);
+}
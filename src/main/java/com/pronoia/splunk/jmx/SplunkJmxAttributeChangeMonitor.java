@@ -16,13 +16,19 @@
  */
 package com.pronoia.splunk.jmx;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -32,15 +38,28 @@ import javax.management.AttributeList;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
+import javax.management.QueryExp;
 
 import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeAggregateEventBuilder;
 import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeListEventBuilder;
+import com.pronoia.splunk.jmx.internal.AggregateSpec;
+import com.pronoia.splunk.jmx.internal.AttributeAggregate;
 import com.pronoia.splunk.jmx.internal.AttributeChangeMonitorRunnable;
+import com.pronoia.splunk.jmx.internal.AttributeChangeStateStore;
+import com.pronoia.splunk.jmx.internal.AttributePath;
+import com.pronoia.splunk.jmx.internal.CollectionCoordinator;
+import com.pronoia.splunk.jmx.internal.DerivedAttribute;
+import com.pronoia.splunk.jmx.internal.Partitioner;
+import com.pronoia.splunk.jmx.internal.PollScheduling;
+import com.pronoia.splunk.jmx.internal.QueryFilterParser;
+import com.pronoia.splunk.jmx.partition.PartitionMembershipProvider;
 import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
 
 import org.slf4j.Logger;
@@ -63,23 +82,63 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
     ScheduledExecutorService executor;
 
     Set<ObjectName> observedObjects = new TreeSet<>();
+    String observedObjectFilter;
+    QueryExp observedObjectQuery;
 
     int executorPoolSize = 1;
 
     long granularityPeriod = 15;
     int maxSuppressedDuplicates = -1;
+    boolean sharedCollection;
+    boolean platformFastPath;
+    MBeanServerConnection mbeanServerConnection;
+    Map<String, String> eventFields = new TreeMap<>();
+
+    PartitionMembershipProvider partitionMembershipProvider;
+    String partitionNodeId;
+    String partitionTarget;
+    Partitioner partitioner;
+
+    long pollTimeBudget;
+
+    boolean alignedScheduling;
+    long schedulingJitter;
+    boolean bootstrapPoll;
+    long bootstrapWindow;
 
     Set<String> observedAttributes = new TreeSet<>();
     Set<String> excludedAttributes = new TreeSet<>();
     Set<String> collectedAttributes = new TreeSet<>();
 
     String[] cachedAttributeArray;
+    List<AttributePath> attributePaths = new LinkedList<>();
+    Set<String> pathOnlyAttributes = new TreeSet<>();
 
     EventCollectorClient splunkClient;
     EventBuilder<AttributeList> splunkEventBuilder;
 
     Map<String, AttributeChangeMonitorRunnable> runnableMap = new ConcurrentHashMap<>();
 
+    Set<String> aggregates = new TreeSet<>();
+    Set<String> aggregateGroupProperties = new TreeSet<>();
+    boolean sendObjectEvents = true;
+    List<AggregateSpec> aggregateSpecs = new LinkedList<>();
+    EventBuilder<AttributeAggregate> aggregateEventBuilder;
+
+    String topAttribute;
+    int topCount;
+
+    Map<String, String> attributeTiers = new TreeMap<>();
+    Map<String, Long> attributeTierPeriods = new TreeMap<>();
+    long attributeCostBudget;
+
+    Map<String, String> derivedAttributes = new TreeMap<>();
+    List<DerivedAttribute> compiledDerivedAttributes = new LinkedList<>();
+
+    String stateDirectory;
+    int stateCapacity = 65536;
+    AttributeChangeStateStore stateStore;
+
     Date startTime;
     Date stopTime;
 
@@ -118,6 +177,21 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
         this.executorPoolSize = executorPoolSize;
     }
 
+    /**
+     * Get the executor used to collect the ObjectNames of a polling cycle in parallel.
+     *
+     * <p>The ObjectNames of a pattern are only collected in parallel when the pool has more than one thread.
+     *
+     * @return the executor of the monitor; null if the pool has a single thread or the monitor is not started
+     */
+    public Executor getCollectionExecutor() {
+        ScheduledExecutorService currentExecutor = executor;
+        if (executorPoolSize <= 1 || currentExecutor == null || currentExecutor.isShutdown()) {
+            return null;
+        }
+        return currentExecutor;
+    }
+
 
     public synchronized boolean registerRunnable(AttributeChangeMonitorRunnable changeMonitorRunnable) {
         String runnableKey = changeMonitorRunnable.getObjectNameQuery();
@@ -280,6 +354,29 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
         return answer;
     }
 
+    @Override
+    public String getObservedObjectFilter() {
+        return observedObjectFilter;
+    }
+
+    /**
+     * Set a filter evaluated by the MBeanServer when the observed objects are queried.
+     *
+     * Objects that do not match the filter are not polled - e.g. <code>QueueSize &gt; 0 or ConsumerCount &gt; 0</code>
+     * skips idle destinations.  Since filtered objects are not polled, the change to a filtered value is not sent.
+     *
+     * @param observedObjectFilter the filter; null to poll all the observed objects
+     *
+     * @see QueryFilterParser
+     */
+    public void setObservedObjectFilter(String observedObjectFilter) {
+        this.observedObjectFilter = observedObjectFilter;
+    }
+
+    public QueryExp getObservedObjectQuery() {
+        return observedObjectQuery;
+    }
+
     /**
      * Gets the attributes being observed. <BR>The observed attributes are not initialized by default
      * (set to null), and will monitor all attributes.
@@ -299,6 +396,9 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
      * Sets the attributes to observe. <BR>The observed attributes are not initialized by default (set
      * to null), and will monitor all attributes.
      *
+     * A dotted name (e.g. HeapMemoryUsage.used) observes a single item of a CompositeData attribute - only the
+     * item is compared and included in the event.
+     *
      * @param attributes The attributes to observe.
      */
     public void setObservedAttributes(Set<String> attributes) {
@@ -410,6 +510,8 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
      * Sets the attributes to observe. <BR>The observed attributes are not initialized by default (set
      * to null), and will monitor all attributes.
      *
+     * A dotted name (e.g. LastGcInfo.duration) collects a single item of a CompositeData attribute.
+     *
      * @param attributes The attributes to observe.
      */
     public void setCollectedAttributes(Set<String> attributes) {
@@ -491,6 +593,19 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
         return cachedAttributeArray;
     }
 
+    public List<AttributePath> getAttributePaths() {
+        return attributePaths;
+    }
+
+    /**
+     * Get the CompositeData attributes that are only retrieved to select the items of attribute paths.
+     *
+     * @return the attribute names
+     */
+    public Set<String> getPathOnlyAttributes() {
+        return pathOnlyAttributes;
+    }
+
     @Override
     public long getGranularityPeriod() {
         return granularityPeriod;
@@ -509,6 +624,230 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
         this.maxSuppressedDuplicates = maxSuppressedDuplicates;
     }
 
+    @Override
+    public boolean isSharedCollection() {
+        return sharedCollection;
+    }
+
+    /**
+     * Enable collection through the JVM-wide {@link CollectionCoordinator}.
+     *
+     * When several change monitors with shared collection enabled and the same granularity period observe the same
+     * MBean, the attributes they request are retrieved with a single getAttributes call.  The polling ticks are aligned
+     * to the wall clock, and the executor of this monitor is not used.
+     *
+     * @param sharedCollection if true, collect the attributes with the other shared change monitors
+     */
+    public void setSharedCollection(boolean sharedCollection) {
+        this.sharedCollection = sharedCollection;
+    }
+
+    @Override
+    public boolean isPlatformFastPath() {
+        return platformFastPath;
+    }
+
+    /**
+     * Read the attributes of platform MXBeans (e.g. java.lang:type=Memory) directly from the MXBean interfaces.
+     *
+     * The getters are invoked without converting the values to Open Types and back, and a MemoryUsage value is
+     * collected as a Map with the same items as its CompositeData form.  The MBeanServer is bypassed, so its
+     * interceptors and access control do not apply to these reads.  Disabled by default.
+     *
+     * @param platformFastPath if true, bypass the MBeanServer for platform MXBeans
+     */
+    public void setPlatformFastPath(boolean platformFastPath) {
+        this.platformFastPath = platformFastPath;
+    }
+
+    /**
+     * Get the MBeanServer polled by the monitor.
+     *
+     * @return the configured connection; the platform MBeanServer if a connection is not configured
+     */
+    public MBeanServerConnection getMBeanServerConnection() {
+        return (mbeanServerConnection != null) ? mbeanServerConnection : ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /**
+     * Poll the MBeans of another JVM through a JMX connection instead of the platform MBeanServer.
+     *
+     * Shared collection is only supported for the platform MBeanServer - a monitor with a connection always polls with
+     * its own executor.
+     *
+     * @param mbeanServerConnection the connection; null polls the platform MBeanServer
+     */
+    public void setMBeanServerConnection(MBeanServerConnection mbeanServerConnection) {
+        this.mbeanServerConnection = mbeanServerConnection;
+    }
+
+    @Override
+    public Map<String, String> getEventFields() {
+        return new TreeMap<>(eventFields);
+    }
+
+    /**
+     * Set fields that are added to every event sent by the monitor (e.g. the identity of a monitored JVM).
+     *
+     * @param eventFields the field values, keyed by field name
+     */
+    public void setEventFields(Map<String, String> eventFields) {
+        this.eventFields.clear();
+        if (eventFields != null) {
+            this.eventFields.putAll(eventFields);
+        }
+    }
+
+    /**
+     * Add a field to every event sent by the monitor.
+     *
+     * @param fieldName the name of the field
+     * @param value the value of the field
+     */
+    public void addEventField(String fieldName, String value) {
+        eventFields.put(fieldName, value);
+    }
+
+    public PartitionMembershipProvider getPartitionMembershipProvider() {
+        return partitionMembershipProvider;
+    }
+
+    /**
+     * Enable partitioning of the observed objects across several collector nodes.
+     *
+     * Each node only polls the (target, ObjectName) keys assigned to it by a consistent hash of the members supplied by
+     * the provider, so the nodes must be configured with the same observed objects.  When a node joins or leaves only
+     * about 1/n of the keys move.
+     *
+     * @param partitionMembershipProvider the membership provider; null disables partitioning
+     */
+    public void setPartitionMembershipProvider(PartitionMembershipProvider partitionMembershipProvider) {
+        this.partitionMembershipProvider = partitionMembershipProvider;
+    }
+
+    @Override
+    public String getPartitionNodeId() {
+        if (partitionNodeId == null || partitionNodeId.isEmpty()) {
+            // pid@hostname
+            partitionNodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        return partitionNodeId;
+    }
+
+    /**
+     * Set the id of this collector node in the partition members.
+     *
+     * @param partitionNodeId the node id; the RuntimeMXBean name (pid@hostname) if not specified
+     */
+    public void setPartitionNodeId(String partitionNodeId) {
+        this.partitionNodeId = partitionNodeId;
+    }
+
+    @Override
+    public String getPartitionTarget() {
+        return partitionTarget;
+    }
+
+    /**
+     * Set the name of the monitored target used in the partitioning keys - e.g. the host and port of a remote JVM.
+     *
+     * @param partitionTarget the target name; the ObjectNames alone are partitioned if not specified
+     */
+    public void setPartitionTarget(String partitionTarget) {
+        this.partitionTarget = partitionTarget;
+    }
+
+    public Partitioner getPartitioner() {
+        return partitioner;
+    }
+
+    @Override
+    public long getPollTimeBudget() {
+        return pollTimeBudget;
+    }
+
+    /**
+     * Set the time budget for each poll (in milliseconds).
+     *
+     * When a pattern matches more objects than can be polled within the budget, each poll stops when the budget is
+     * exhausted and the next poll continues with the following object in ObjectName order, so every object is polled
+     * in turn rather than the polls overrunning the granularity period.  Events include a staleness field with the time
+     * since the previous poll of the object (or since the object was first seen), and the runnable MBeans report the
+     * maximum staleness.  Shared collection is disabled for a monitor with a budget.
+     *
+     * @param pollTimeBudget the budget in milliseconds; zero or less polls every object in each poll
+     */
+    public void setPollTimeBudget(long pollTimeBudget) {
+        this.pollTimeBudget = pollTimeBudget;
+    }
+
+    @Override
+    public boolean isAlignedScheduling() {
+        return alignedScheduling;
+    }
+
+    /**
+     * Align the polling to the wall clock.
+     *
+     * When enabled, the runnables are polled at a fixed rate when the time is a multiple of the granularity period
+     * (plus the scheduling jitter offset), so the event timestamps are consistent across hosts.  When disabled, the
+     * runnables are polled with a fixed delay of the granularity period between polls.
+     *
+     * @param alignedScheduling if true, align the polling to the wall clock
+     */
+    public void setAlignedScheduling(boolean alignedScheduling) {
+        this.alignedScheduling = alignedScheduling;
+    }
+
+    @Override
+    public long getSchedulingJitter() {
+        return schedulingJitter;
+    }
+
+    /**
+     * Set the maximum scheduling jitter (in seconds).
+     *
+     * Each runnable is offset by a deterministic amount within the jitter derived from the change monitor id and the
+     * ObjectName pattern, which spreads the polling of monitors created together.  The jitter does not apply to shared
+     * collection.
+     *
+     * @param schedulingJitter the maximum offset in seconds; zero disables the jitter
+     */
+    public void setSchedulingJitter(long schedulingJitter) {
+        this.schedulingJitter = schedulingJitter;
+    }
+
+    @Override
+    public boolean isBootstrapPoll() {
+        return bootstrapPoll;
+    }
+
+    /**
+     * Poll the observed objects when the monitor is started rather than waiting for the first granularity period.
+     *
+     * @param bootstrapPoll if true, poll when the monitor is started
+     */
+    public void setBootstrapPoll(boolean bootstrapPoll) {
+        this.bootstrapPoll = bootstrapPoll;
+    }
+
+    @Override
+    public long getBootstrapWindow() {
+        return bootstrapWindow;
+    }
+
+    /**
+     * Set the window for the bootstrap polls (in seconds).
+     *
+     * The bootstrap poll of each runnable is delayed by a deterministic amount within the window, so monitors started
+     * together do not poll at the same time.
+     *
+     * @param bootstrapWindow the length of the window in seconds; zero polls immediately
+     */
+    public void setBootstrapWindow(long bootstrapWindow) {
+        this.bootstrapWindow = bootstrapWindow;
+    }
+
     public EventCollectorClient getSplunkClient() {
         return splunkClient;
     }
@@ -581,6 +920,341 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
     }
 
 
+    @Override
+    public Set<String> getAggregates() {
+        return new TreeSet<>(aggregates);
+    }
+
+    /**
+     * Set the aggregates calculated across the observed objects in every polling cycle.
+     *
+     * Each aggregate is specified as function(attribute) - e.g. sum(QueueSize), max(AverageEnqueueTime),
+     * nonzero(ConsumerCount) or p95(EnqueueCount).  The aggregated attributes are retrieved in addition to the observed
+     * and collected attributes.
+     *
+     * @param aggregates the aggregate definitions
+     *
+     * @see AggregateSpec
+     */
+    public void setAggregates(Set<String> aggregates) {
+        this.aggregates.clear();
+        if (aggregates != null) {
+            this.aggregates.addAll(aggregates);
+        }
+    }
+
+    /**
+     * Set the aggregates calculated across the observed objects in every polling cycle.
+     *
+     * @param aggregates the aggregate definitions
+     */
+    public void setAggregates(String... aggregates) {
+        this.aggregates.clear();
+        if (aggregates != null) {
+            for (String aggregate : aggregates) {
+                this.aggregates.add(aggregate);
+            }
+        }
+    }
+
+    public boolean hasAggregates() {
+        return aggregates != null && !aggregates.isEmpty();
+    }
+
+    public List<AggregateSpec> getAggregateSpecs() {
+        return aggregateSpecs;
+    }
+
+    @Override
+    public Set<String> getAggregateGroupProperties() {
+        return new TreeSet<>(aggregateGroupProperties);
+    }
+
+    /**
+     * Set the ObjectName key properties used to group the aggregates - e.g. brokerName or destinationType.
+     *
+     * If group properties are not specified, one aggregate event is sent for each observed object pattern.
+     *
+     * @param groupProperties the key properties
+     */
+    public void setAggregateGroupProperties(Set<String> groupProperties) {
+        aggregateGroupProperties.clear();
+        if (groupProperties != null) {
+            aggregateGroupProperties.addAll(groupProperties);
+        }
+    }
+
+    /**
+     * Set the ObjectName key properties used to group the aggregates.
+     *
+     * @param groupProperties the key properties
+     */
+    public void setAggregateGroupProperties(String... groupProperties) {
+        aggregateGroupProperties.clear();
+        if (groupProperties != null) {
+            for (String groupProperty : groupProperties) {
+                aggregateGroupProperties.add(groupProperty);
+            }
+        }
+    }
+
+    @Override
+    public boolean isSendObjectEvents() {
+        return sendObjectEvents;
+    }
+
+    /**
+     * Enable or disable the events for the individual observed objects.
+     *
+     * Disabling the object events is only useful when aggregates are configured.
+     *
+     * @param sendObjectEvents if false, only the aggregate events are sent
+     */
+    public void setSendObjectEvents(boolean sendObjectEvents) {
+        this.sendObjectEvents = sendObjectEvents;
+    }
+
+    public boolean hasAggregateEventBuilder() {
+        return aggregateEventBuilder != null;
+    }
+
+    public EventBuilder<AttributeAggregate> getAggregateEventBuilder() {
+        return aggregateEventBuilder;
+    }
+
+    /**
+     * Set the {@link EventBuilder} for the aggregate events.
+     *
+     * If an event builder is not configured, a default {@link JmxAttributeAggregateEventBuilder} will be used.
+     *
+     * @param aggregateEventBuilder The {@link EventBuilder} to use.
+     */
+    public void setAggregateEventBuilder(EventBuilder<AttributeAggregate> aggregateEventBuilder) {
+        this.aggregateEventBuilder = aggregateEventBuilder;
+    }
+
+    @Override
+    public Map<String, String> getAttributeTiers() {
+        return new TreeMap<>(attributeTiers);
+    }
+
+    /**
+     * Set the polling periods (in seconds) of attributes that change less often than the other attributes.
+     *
+     * A tiered attribute is only retrieved when its period has elapsed - the other polls include its last known value in
+     * the event.  Attributes without a tier are retrieved in every poll.  A tier for an attribute path applies to the
+     * CompositeData attribute, and periods that are not longer than the granularity period are ignored.
+     *
+     * @param attributeTiers the polling periods in seconds, keyed by attribute name
+     */
+    public void setAttributeTiers(Map<String, String> attributeTiers) {
+        this.attributeTiers.clear();
+        if (attributeTiers != null) {
+            this.attributeTiers.putAll(attributeTiers);
+        }
+    }
+
+    /**
+     * Add a tiered attribute.
+     *
+     * @param attributeName the name of the attribute
+     * @param period the polling period of the attribute in seconds
+     */
+    public void addAttributeTier(String attributeName, long period) {
+        attributeTiers.put(attributeName, Long.toString(period));
+    }
+
+    @Override
+    public long getAttributeCostBudget() {
+        return attributeCostBudget;
+    }
+
+    /**
+     * Set the budget for the attribute retrieval of each poll (in milliseconds).
+     *
+     * When set, the first poll measures the latency of each attribute on a sample of the observed objects, and the
+     * expensive attributes are polled less often (as if they were tiered) until the estimated cost of a poll fits the
+     * budget.  The measured costs are exposed by the runnable MBeans, which can also repeat the measurement.
+     *
+     * @param attributeCostBudget the budget in milliseconds; zero or less disables the measurement
+     */
+    public void setAttributeCostBudget(long attributeCostBudget) {
+        this.attributeCostBudget = attributeCostBudget;
+    }
+
+    /**
+     * Get the polling periods of the tiered attributes that are retrieved.
+     *
+     * @return the polling periods in milliseconds, keyed by attribute name
+     */
+    public Map<String, Long> getAttributeTierPeriods() {
+        return attributeTierPeriods;
+    }
+
+    @Override
+    public Map<String, String> getDerivedAttributes() {
+        return new TreeMap<>(derivedAttributes);
+    }
+
+    /**
+     * Set the attributes calculated from the other attributes of each observed object.
+     *
+     * The expressions support numeric literals, attribute names, CompositeData paths (e.g. HeapMemoryUsage.used), the
+     * operators + - * / and parentheses.  Derived attributes are included in the events and can be used as observed
+     * attributes, aggregated attributes or the top attribute.
+     *
+     * @param derivedAttributes the expressions, keyed by the name of the derived attribute
+     *
+     * @see DerivedAttribute
+     */
+    public void setDerivedAttributes(Map<String, String> derivedAttributes) {
+        this.derivedAttributes.clear();
+        if (derivedAttributes != null) {
+            this.derivedAttributes.putAll(derivedAttributes);
+        }
+    }
+
+    /**
+     * Add a derived attribute.
+     *
+     * @param name the name of the derived attribute
+     * @param expression the expression for the value
+     */
+    public void addDerivedAttribute(String name, String expression) {
+        derivedAttributes.put(name, expression);
+    }
+
+    public List<DerivedAttribute> getCompiledDerivedAttributes() {
+        return compiledDerivedAttributes;
+    }
+
+    @Override
+    public String getTopAttribute() {
+        return topAttribute;
+    }
+
+    /**
+     * Set the numeric attribute used to rank the observed objects in top-N mode.
+     *
+     * @param topAttribute the ranking attribute - e.g. QueueSize
+     */
+    public void setTopAttribute(String topAttribute) {
+        this.topAttribute = topAttribute;
+    }
+
+    @Override
+    public int getTopCount() {
+        return topCount;
+    }
+
+    /**
+     * Set the number of observed objects sent in top-N mode.
+     *
+     * When the top count and the top attribute are set, every polling cycle sends full events for the objects with the
+     * largest values of the top attribute and a single "others" summary event for the remaining objects, regardless of
+     * attribute changes.
+     *
+     * @param topCount the number of objects to send; zero disables top-N mode
+     */
+    public void setTopCount(int topCount) {
+        this.topCount = topCount;
+    }
+
+    public boolean isTopNMode() {
+        return topCount > 0 && topAttribute != null && !topAttribute.isEmpty();
+    }
+
+    @Override
+    public String getStateDirectory() {
+        return stateDirectory;
+    }
+
+    /**
+     * Set the directory for the persistent change detection state.
+     *
+     * When a state directory is configured, a fingerprint of the values delivered for each ObjectName is kept in a
+     * memory-mapped file named after the change monitor id, and events are only sent for ObjectNames that changed
+     * while the monitor was stopped.  The change monitor id should be configured explicitly so the file is found
+     * again after a JVM restart.
+     *
+     * @param stateDirectory the state directory; null disables persistent state
+     */
+    public void setStateDirectory(String stateDirectory) {
+        this.stateDirectory = stateDirectory;
+    }
+
+    @Override
+    public int getStateCapacity() {
+        return stateCapacity;
+    }
+
+    /**
+     * Set the maximum number of ObjectNames tracked in the persistent state file.
+     *
+     * When the file is full it is reset, which causes one event for every ObjectName.
+     *
+     * @param stateCapacity the maximum number of ObjectNames
+     */
+    public void setStateCapacity(int stateCapacity) {
+        this.stateCapacity = stateCapacity;
+    }
+
+    public boolean hasStateStore() {
+        return stateStore != null;
+    }
+
+    public AttributeChangeStateStore getStateStore() {
+        return stateStore;
+    }
+
+    /**
+     * Create a monitor with the same configuration as this monitor.
+     *
+     * The copy is not started, and the change monitor id, the change detection state and the runnables are not
+     * copied.  The event builders are duplicated.
+     *
+     * @return the new monitor
+     */
+    public SplunkJmxAttributeChangeMonitor duplicate() {
+        SplunkJmxAttributeChangeMonitor answer = new SplunkJmxAttributeChangeMonitor();
+
+        answer.observedObjects.addAll(observedObjects);
+        answer.observedObjectFilter = observedObjectFilter;
+        answer.executorPoolSize = executorPoolSize;
+        answer.granularityPeriod = granularityPeriod;
+        answer.maxSuppressedDuplicates = maxSuppressedDuplicates;
+        answer.sharedCollection = sharedCollection;
+        answer.platformFastPath = platformFastPath;
+        answer.mbeanServerConnection = mbeanServerConnection;
+        answer.eventFields.putAll(eventFields);
+        answer.partitionMembershipProvider = partitionMembershipProvider;
+        answer.partitionNodeId = partitionNodeId;
+        answer.partitionTarget = partitionTarget;
+        answer.pollTimeBudget = pollTimeBudget;
+        answer.alignedScheduling = alignedScheduling;
+        answer.schedulingJitter = schedulingJitter;
+        answer.bootstrapPoll = bootstrapPoll;
+        answer.bootstrapWindow = bootstrapWindow;
+        answer.observedAttributes.addAll(observedAttributes);
+        answer.excludedAttributes.addAll(excludedAttributes);
+        answer.collectedAttributes.addAll(collectedAttributes);
+        answer.splunkClient = splunkClient;
+        answer.splunkEventBuilder = (splunkEventBuilder != null) ? splunkEventBuilder.duplicate() : null;
+        answer.aggregates.addAll(aggregates);
+        answer.aggregateGroupProperties.addAll(aggregateGroupProperties);
+        answer.sendObjectEvents = sendObjectEvents;
+        answer.aggregateEventBuilder = (aggregateEventBuilder != null) ? aggregateEventBuilder.duplicate() : null;
+        answer.topAttribute = topAttribute;
+        answer.topCount = topCount;
+        answer.attributeTiers.putAll(attributeTiers);
+        answer.attributeCostBudget = attributeCostBudget;
+        answer.derivedAttributes.putAll(derivedAttributes);
+        answer.stateDirectory = stateDirectory;
+        answer.stateCapacity = stateCapacity;
+
+        return answer;
+    }
+
     public void initialize() {
         registerMBean();
         start();
@@ -603,8 +1277,78 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
                 throw new IllegalStateException("Splunk Client must be specified");
             }
 
+            observedObjectQuery = null;
+            if (observedObjectFilter != null && !observedObjectFilter.trim().isEmpty()) {
+                try {
+                    observedObjectQuery = QueryFilterParser.parse(observedObjectFilter);
+                } catch (IllegalArgumentException invalidFilterEx) {
+                    log.warn("Ignoring invalid observed object filter: {}", observedObjectFilter, invalidFilterEx);
+                }
+            }
+
+            aggregateSpecs = new LinkedList<>();
+            if (hasAggregates()) {
+                for (String aggregate : aggregates) {
+                    try {
+                        aggregateSpecs.add(AggregateSpec.parse(aggregate));
+                    } catch (IllegalArgumentException invalidAggregateEx) {
+                        log.warn("Ignoring invalid aggregate: {}", aggregate, invalidAggregateEx);
+                    }
+                }
+            }
+            if (!sendObjectEvents && aggregateSpecs.isEmpty()) {
+                log.warn("Object events are disabled and aggregates are not specified for {} - events will not be sent", observedObjects);
+            }
+
+            compiledDerivedAttributes = new LinkedList<>();
+            for (Map.Entry<String, String> derivedAttribute : derivedAttributes.entrySet()) {
+                try {
+                    compiledDerivedAttributes.add(DerivedAttribute.compile(derivedAttribute.getKey(), derivedAttribute.getValue()));
+                } catch (IllegalArgumentException invalidExpressionEx) {
+                    log.warn("Ignoring invalid derived attribute: {}", derivedAttribute.getKey(), invalidExpressionEx);
+                }
+            }
+
+            Set<String> allAttributes = getObservedAndCollectedAttributes();
+            for (AggregateSpec aggregateSpec : aggregateSpecs) {
+                allAttributes.add(aggregateSpec.getAttributeName());
+            }
+            if (isTopNMode()) {
+                allAttributes.add(topAttribute);
+            }
+            // Derived attributes are calculated - retrieve the attributes they reference instead
+            for (DerivedAttribute derivedAttribute : compiledDerivedAttributes) {
+                allAttributes.remove(derivedAttribute.getName());
+            }
+            for (DerivedAttribute derivedAttribute : compiledDerivedAttributes) {
+                allAttributes.addAll(derivedAttribute.getReferencedAttributes());
+            }
+
+            // Attribute paths select items from CompositeData attributes - retrieve the CompositeData attribute instead
+            attributePaths = new LinkedList<>();
+            Set<String> pathAttributes = new TreeSet<>();
+            for (String attributeName : allAttributes) {
+                if (AttributePath.isPath(attributeName)) {
+                    try {
+                        AttributePath attributePath = AttributePath.parse(attributeName);
+                        attributePaths.add(attributePath);
+                        pathAttributes.add(attributePath.getAttributeName());
+                    } catch (IllegalArgumentException invalidPathEx) {
+                        log.warn("Ignoring invalid attribute path: {}", attributeName, invalidPathEx);
+                    }
+                }
+            }
+            for (Iterator<String> iterator = allAttributes.iterator(); iterator.hasNext();) {
+                if (AttributePath.isPath(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+
+            pathOnlyAttributes = new TreeSet<>();
             if (observedAttributes != null && !observedAttributes.isEmpty()) {
-                Set<String> allAttributes = getObservedAndCollectedAttributes();
+                pathOnlyAttributes.addAll(pathAttributes);
+                pathOnlyAttributes.removeAll(allAttributes);
+                allAttributes.addAll(pathAttributes);
 
                 cachedAttributeArray = new String[allAttributes.size()];
                 cachedAttributeArray = allAttributes.toArray(cachedAttributeArray);
@@ -612,6 +1356,59 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
                 log.warn("Monitored attribute set is not specified for {} - all attributes will be monitored", observedObjects);
             }
 
+            attributeTierPeriods = new TreeMap<>();
+            for (Map.Entry<String, String> attributeTier : attributeTiers.entrySet()) {
+                long period;
+                try {
+                    period = Long.parseLong(attributeTier.getValue().trim());
+                } catch (NumberFormatException invalidPeriodEx) {
+                    log.warn("Ignoring invalid period for attribute tier: {}", attributeTier.getKey(), invalidPeriodEx);
+                    continue;
+                }
+                if (period <= granularityPeriod) {
+                    log.warn("Ignoring attribute tier {} - the period {} is not longer than the granularity period {}", attributeTier.getKey(), period, granularityPeriod);
+                    continue;
+                }
+
+                String attributeName = AttributePath.isPath(attributeTier.getKey())
+                    ? attributeTier.getKey().substring(0, attributeTier.getKey().indexOf('.')) : attributeTier.getKey();
+                long periodMillis = TimeUnit.SECONDS.toMillis(period);
+                Long existingPeriod = attributeTierPeriods.get(attributeName);
+                // The CompositeData attribute is retrieved for the most frequent tier of its paths
+                attributeTierPeriods.put(attributeName, (existingPeriod != null) ? Math.min(existingPeriod, periodMillis) : periodMillis);
+            }
+            for (String attributeName : getObservedAndCollectedAttributes()) {
+                String rootAttributeName = AttributePath.isPath(attributeName) ? attributeName.substring(0, attributeName.indexOf('.')) : attributeName;
+                if (!attributeTiers.containsKey(attributeName) && attributeTierPeriods.remove(rootAttributeName) != null) {
+                    log.warn("Ignoring attribute tier for {} - {} is retrieved in every poll", rootAttributeName, attributeName);
+                }
+            }
+
+            if (stateStore == null && stateDirectory != null && !stateDirectory.isEmpty()) {
+                try {
+                    stateStore = AttributeChangeStateStore.open(new File(stateDirectory), getChangeMonitorId(), stateCapacity);
+                } catch (IOException ioEx) {
+                    log.warn("Failed to open change detection state in {} - state will not be persisted", stateDirectory, ioEx);
+                }
+            }
+
+            partitioner = null;
+            if (partitionMembershipProvider != null) {
+                partitionMembershipProvider.join(getPartitionNodeId());
+                partitioner = new Partitioner(partitionMembershipProvider, getPartitionNodeId());
+                log.info("Partitioning {} as node {}", observedObjects, getPartitionNodeId());
+            }
+
+            boolean useSharedCollection = sharedCollection;
+            if (useSharedCollection && mbeanServerConnection != null) {
+                log.warn("Shared collection is not supported for an MBeanServerConnection - {} will be polled by the change monitor", observedObjects);
+                useSharedCollection = false;
+            }
+            if (useSharedCollection && pollTimeBudget > 0) {
+                log.warn("Shared collection does not support a poll time budget - {} will be polled by the change monitor", observedObjects);
+                useSharedCollection = false;
+            }
+
             if (executor == null) {
                 executor = Executors.newScheduledThreadPool(executorPoolSize, new NamedThreadFactory(this.getClass().getSimpleName()));
                 startTime = new Date();
@@ -619,13 +1416,57 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
 
             for (ObjectName object : observedObjects) {
                 AttributeChangeMonitorRunnable runnable = new AttributeChangeMonitorRunnable(this, object);
-                log.info("Scheduling {} for {}", AttributeChangeMonitorRunnable.class.getSimpleName(), object.getCanonicalName());
-                executor.scheduleWithFixedDelay(runnable, granularityPeriod, granularityPeriod, TimeUnit.SECONDS);
-                registerRunnable(runnable);
+                if (useSharedCollection) {
+                    // The coordinator releases runnables when they are unregistered
+                    if (registerRunnable(runnable)) {
+                        log.info("Scheduling shared collection of {} for {}", AttributeChangeMonitorRunnable.class.getSimpleName(), object.getCanonicalName());
+                        CollectionCoordinator.getInstance().register(runnable, granularityPeriod);
+                        if (bootstrapPoll) {
+                            // The coordinator runs the bootstrap poll on its own thread so it cannot overlap a tick
+                            CollectionCoordinator.getInstance().scheduleBootstrap(runnable, getBootstrapDelay(runnable));
+                        }
+                    }
+                } else {
+                    scheduleRunnable(runnable);
+                    registerRunnable(runnable);
+                }
             }
         }
     }
 
+    void scheduleRunnable(AttributeChangeMonitorRunnable runnable) {
+        long periodMillis = TimeUnit.SECONDS.toMillis(granularityPeriod);
+        long jitterMillis = PollScheduling.offset(getScheduleKey(runnable), TimeUnit.SECONDS.toMillis(schedulingJitter));
+
+        if (alignedScheduling) {
+            long initialDelay = PollScheduling.alignedDelay(System.currentTimeMillis(), periodMillis, jitterMillis);
+            log.info("Scheduling {} for {} at a fixed rate - first poll in {} ms",
+                AttributeChangeMonitorRunnable.class.getSimpleName(), runnable.getObjectNameQuery(), initialDelay);
+            executor.scheduleAtFixedRate(runnable, initialDelay, periodMillis, TimeUnit.MILLISECONDS);
+        } else {
+            log.info("Scheduling {} for {}", AttributeChangeMonitorRunnable.class.getSimpleName(), runnable.getObjectNameQuery());
+            executor.scheduleWithFixedDelay(runnable, periodMillis + jitterMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        scheduleBootstrapPoll(runnable);
+    }
+
+    void scheduleBootstrapPoll(AttributeChangeMonitorRunnable runnable) {
+        if (bootstrapPoll) {
+            executor.schedule(runnable, getBootstrapDelay(runnable), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    long getBootstrapDelay(AttributeChangeMonitorRunnable runnable) {
+        long bootstrapDelay = PollScheduling.offset(getScheduleKey(runnable), TimeUnit.SECONDS.toMillis(bootstrapWindow));
+        log.debug("Scheduling bootstrap poll for {} in {} ms", runnable.getObjectNameQuery(), bootstrapDelay);
+        return bootstrapDelay;
+    }
+
+    String getScheduleKey(AttributeChangeMonitorRunnable runnable) {
+        return getChangeMonitorId() + "|" + runnable.getObjectNameQuery();
+    }
+
     /**
      * Stop the polling process.
      */
@@ -640,8 +1481,24 @@ public class SplunkJmxAttributeChangeMonitor implements SplunkJmxAttributeChange
             executor = null;
 
             for ( AttributeChangeMonitorRunnable runnable : runnableMap.values()) {
+                CollectionCoordinator.getInstance().unregister(runnable);
                 unregisterCRunnable(runnable);
             }
+
+            if (partitioner != null) {
+                partitionMembershipProvider.leave(partitioner.getNodeId());
+                partitioner = null;
+            }
+
+            if (stateStore != null) {
+                try {
+                    stateStore.close();
+                } catch (IOException ioEx) {
+                    log.warn("Failed to close change detection state file {}", stateStore.getStateFile(), ioEx);
+                } finally {
+                    stateStore = null;
+                }
+            }
         }
     }
 
@@ -18,6 +18,7 @@ package com.pronoia.splunk.jmx;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -37,12 +38,37 @@ public interface SplunkJmxAttributeChangeMonitorMBean {
     Date getStopTime();
 
     Set<String> getObservedObjectNameStrings();
+    String getObservedObjectFilter();
     Set<String> getObservedAttributes();
     Set<String> getCollectedAttributes();
     Set<String> getExcludedAttributes();
 
     long getGranularityPeriod();
     int getMaxSuppressedDuplicates();
+    boolean isSharedCollection();
+    boolean isPlatformFastPath();
+    Map<String, String> getEventFields();
+    String getPartitionNodeId();
+    String getPartitionTarget();
+    long getPollTimeBudget();
+    boolean isAlignedScheduling();
+    long getSchedulingJitter();
+    boolean isBootstrapPoll();
+    long getBootstrapWindow();
+
+    Set<String> getAggregates();
+    Set<String> getAggregateGroupProperties();
+    boolean isSendObjectEvents();
+
+    Map<String, String> getAttributeTiers();
+    long getAttributeCostBudget();
+    Map<String, String> getDerivedAttributes();
+
+    String getTopAttribute();
+    int getTopCount();
+
+    String getStateDirectory();
+    int getStateCapacity();
 
     void start();
     void stop();
@@ -0,0 +1,681 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Polls the MBeans of other JVMs on the same host, so the library does not have to be embedded in each of them.
+ *
+ * <p>The local JVMs are enumerated through the Attach API, and the JVMs matching the main class and system property
+ * patterns are attached.  The local management agent of an attached JVM is started if it is not running, and a single
+ * JMX connection to the JVM is shared by the change monitors created for it.
+ *
+ * <p>The configured change monitors are templates - they are not started.  A copy of each template is started for
+ * every attached JVM, polling through the JMX connection with its own executor, so the JVMs are polled concurrently.
+ * The events of the copies include the process id and main class of the JVM as the fields {@value #JVM_ID_FIELD} and
+ * {@value #JVM_MAIN_CLASS_FIELD}.
+ *
+ * <p>Discovery is repeated every discovery period - new JVMs are attached, and the change monitors of JVMs that exited
+ * or lost their connection are stopped.  A JVM that does not match, or cannot be attached, is not attached again
+ * while it is running.
+ *
+ * <p>JVMs are attached on a separate executor without holding the lock of the collector, and an attach that does not
+ * complete within the attach timeout is abandoned - a hung JVM does not block discovery or stop.
+ *
+ * <p>The Attach API is provided by the jdk.attach module (tools.jar on Java 8), so the collector requires a JDK.
+ */
+public class SplunkJmxLocalJvmCollector implements SplunkJmxLocalJvmCollectorMBean {
+    public static final String JVM_ID_FIELD = "jvmId";
+    public static final String JVM_MAIN_CLASS_FIELD = "jvmMainClass";
+
+    static AtomicInteger collectorCounter = new AtomicInteger(1);
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    String collectorId;
+    ObjectName collectorObjectName;
+
+    Set<String> mainClassPatterns = new TreeSet<>();
+    Map<String, String> systemPropertyPatterns = new TreeMap<>();
+    long discoveryPeriod = 60;
+    int attachTimeout = 30;
+
+    List<SplunkJmxAttributeChangeMonitor> changeMonitors = new LinkedList<>();
+
+    List<Pattern> compiledMainClassPatterns = new LinkedList<>();
+    Map<String, Pattern> compiledSystemPropertyPatterns = new TreeMap<>();
+
+    ScheduledExecutorService executor;
+    ExecutorService attachExecutor;
+    final Map<String, LocalJvm> attachedJvms = new ConcurrentHashMap<>();
+    final Set<String> ignoredJvms = new HashSet<>();
+    final Set<String> attachingJvms = new HashSet<>();
+
+    Date startTime;
+    Date stopTime;
+    volatile Date lastDiscoveryTime;
+
+    @Override
+    public String getCollectorId() {
+        if (collectorId == null || collectorId.isEmpty()) {
+            collectorId = String.format("splunk-jmx-local-jvm-collector-%d", collectorCounter.getAndIncrement());
+        }
+        return collectorId;
+    }
+
+    public void setCollectorId(String collectorId) {
+        this.collectorId = collectorId;
+    }
+
+    @Override
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public Date getStopTime() {
+        return stopTime;
+    }
+
+    @Override
+    public Date getLastDiscoveryTime() {
+        return lastDiscoveryTime;
+    }
+
+    @Override
+    public Set<String> getMainClassPatterns() {
+        return new TreeSet<>(mainClassPatterns);
+    }
+
+    /**
+     * Set the patterns (regular expressions) for the main class of the JVMs to attach.
+     *
+     * The main class is the first word of the display name reported by the Attach API - the jar file for JVMs started
+     * with -jar.  All JVMs match if patterns are not specified.
+     *
+     * @param mainClassPatterns the main class patterns
+     */
+    public void setMainClassPatterns(Set<String> mainClassPatterns) {
+        this.mainClassPatterns.clear();
+        if (mainClassPatterns != null) {
+            this.mainClassPatterns.addAll(mainClassPatterns);
+        }
+    }
+
+    public void setMainClassPatterns(String... mainClassPatterns) {
+        this.mainClassPatterns.clear();
+        if (mainClassPatterns != null) {
+            for (String mainClassPattern : mainClassPatterns) {
+                this.mainClassPatterns.add(mainClassPattern);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getSystemPropertyPatterns() {
+        return new TreeMap<>(systemPropertyPatterns);
+    }
+
+    /**
+     * Set the patterns (regular expressions) for system properties of the JVMs to attach.
+     *
+     * A JVM only matches if every property is set and its value matches the pattern.  The system properties can only
+     * be read after attaching to the JVM.
+     *
+     * @param systemPropertyPatterns the value patterns, keyed by system property name
+     */
+    public void setSystemPropertyPatterns(Map<String, String> systemPropertyPatterns) {
+        this.systemPropertyPatterns.clear();
+        if (systemPropertyPatterns != null) {
+            this.systemPropertyPatterns.putAll(systemPropertyPatterns);
+        }
+    }
+
+    public void addSystemPropertyPattern(String propertyName, String valuePattern) {
+        systemPropertyPatterns.put(propertyName, valuePattern);
+    }
+
+    @Override
+    public long getDiscoveryPeriod() {
+        return discoveryPeriod;
+    }
+
+    /**
+     * Set the period for discovering local JVMs (in seconds).
+     *
+     * @param discoveryPeriod the discovery period in seconds
+     */
+    public void setDiscoveryPeriod(long discoveryPeriod) {
+        this.discoveryPeriod = discoveryPeriod;
+    }
+
+    @Override
+    public int getAttachTimeout() {
+        return attachTimeout;
+    }
+
+    /**
+     * Set the time allowed for attaching to a JVM and connecting to its management agent (in seconds).
+     *
+     * A JVM that cannot be attached within the timeout is not attached again while it is running.
+     *
+     * @param attachTimeout the attach timeout in seconds
+     */
+    public void setAttachTimeout(int attachTimeout) {
+        if (attachTimeout <= 0) {
+            log.warn("Ignoring invalid attach timeout: {}", attachTimeout);
+            return;
+        }
+        this.attachTimeout = attachTimeout;
+    }
+
+    public List<SplunkJmxAttributeChangeMonitor> getChangeMonitors() {
+        return changeMonitors;
+    }
+
+    /**
+     * Set the change monitors to run against each attached JVM.
+     *
+     * The monitors are used as templates and should not be started - see
+     * {@link SplunkJmxAttributeChangeMonitor#duplicate()}.
+     *
+     * @param changeMonitors the change monitor templates
+     */
+    public void setChangeMonitors(List<SplunkJmxAttributeChangeMonitor> changeMonitors) {
+        this.changeMonitors.clear();
+        if (changeMonitors != null) {
+            this.changeMonitors.addAll(changeMonitors);
+        }
+    }
+
+    public void addChangeMonitor(SplunkJmxAttributeChangeMonitor changeMonitor) {
+        changeMonitors.add(changeMonitor);
+    }
+
+    @Override
+    public Map<String, String> getAttachedJvms() {
+        Map<String, String> answer = new TreeMap<>();
+        for (LocalJvm localJvm : attachedJvms.values()) {
+            answer.put(localJvm.id, localJvm.mainClass);
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null && !(executor.isShutdown() || executor.isTerminated());
+    }
+
+    public void initialize() {
+        registerMBean();
+        start();
+    }
+
+    public void destroy() {
+        stop();
+        unregisterMBean();
+    }
+
+    /**
+     * Start discovering local JVMs.
+     */
+    @Override
+    public synchronized void start() {
+        log.info("Starting local JVM collector {} for main classes {} and system properties {}", getCollectorId(), mainClassPatterns, systemPropertyPatterns);
+
+        if (changeMonitors.isEmpty()) {
+            throw new IllegalStateException("Change monitors must be specified");
+        }
+
+        compiledMainClassPatterns = new LinkedList<>();
+        for (String mainClassPattern : mainClassPatterns) {
+            try {
+                compiledMainClassPatterns.add(Pattern.compile(mainClassPattern));
+            } catch (PatternSyntaxException invalidPatternEx) {
+                log.warn("Ignoring invalid main class pattern: {}", mainClassPattern, invalidPatternEx);
+            }
+        }
+        compiledSystemPropertyPatterns = new TreeMap<>();
+        for (Map.Entry<String, String> systemPropertyPattern : systemPropertyPatterns.entrySet()) {
+            try {
+                compiledSystemPropertyPatterns.put(systemPropertyPattern.getKey(), Pattern.compile(systemPropertyPattern.getValue()));
+            } catch (PatternSyntaxException invalidPatternEx) {
+                log.warn("Ignoring invalid system property pattern: {}", systemPropertyPattern.getKey(), invalidPatternEx);
+            }
+        }
+
+        if (executor == null) {
+            attachExecutor = Executors.newCachedThreadPool(new NamedThreadFactory(this.getClass().getSimpleName() + "-attach"));
+            executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.getClass().getSimpleName()));
+            startTime = new Date();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        discover();
+                    } catch (Throwable unexpectedEx) {
+                        log.warn("Unexpected {} discovering local JVMs", unexpectedEx.getClass().getSimpleName(), unexpectedEx);
+                    }
+                }
+            }, 0, discoveryPeriod, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop discovering local JVMs, and stop the change monitors of the attached JVMs.
+     */
+    @Override
+    public synchronized void stop() {
+        if (executor != null && !executor.isShutdown() && !executor.isTerminated()) {
+            log.info("Stopping {} ....", this.getClass().getName());
+            executor.shutdown();
+            stopTime = new Date();
+        }
+        executor = null;
+
+        if (attachExecutor != null) {
+            // Interrupt the attaches in progress - they are detached when they complete
+            attachExecutor.shutdownNow();
+            attachExecutor = null;
+        }
+
+        for (LocalJvm localJvm : new ArrayList<>(attachedJvms.values())) {
+            detach(localJvm);
+        }
+        ignoredJvms.clear();
+    }
+
+    @Override
+    public void restart() {
+        stop();
+        try {
+            Thread.sleep(5000);
+            start();
+        } catch (InterruptedException interruptedEx) {
+            log.warn("Restart was interrupted - local JVM collector will not be restarted", interruptedEx);
+        }
+    }
+
+    /**
+     * Enumerate the local JVMs - attach the new JVMs that match, and detach the JVMs that are gone.
+     *
+     * The new JVMs are attached after the lock of the collector is released.
+     */
+    @Override
+    public void discover() {
+        ExecutorService currentAttachExecutor;
+        Map<VirtualMachineDescriptor, String> newJvms = new LinkedHashMap<>();
+        synchronized (this) {
+            currentAttachExecutor = attachExecutor;
+            if (currentAttachExecutor == null) {
+                log.debug("Ignoring discovery - local JVM collector {} is not running", getCollectorId());
+                return;
+            }
+
+            lastDiscoveryTime = new Date();
+            String currentJvmId = getCurrentJvmId();
+
+            Set<String> runningJvms = new HashSet<>();
+            for (VirtualMachineDescriptor descriptor : VirtualMachine.list()) {
+                String jvmId = descriptor.id();
+                runningJvms.add(jvmId);
+                if (jvmId.equals(currentJvmId) || ignoredJvms.contains(jvmId) || attachingJvms.contains(jvmId)) {
+                    continue;
+                }
+
+                LocalJvm localJvm = attachedJvms.get(jvmId);
+                if (localJvm != null) {
+                    if (localJvm.isConnected()) {
+                        continue;
+                    }
+                    log.warn("Lost the JMX connection to local JVM {} ({}) - reattaching", jvmId, localJvm.mainClass);
+                    detach(localJvm);
+                }
+
+                String displayName = descriptor.displayName();
+                if (displayName == null || displayName.isEmpty() || displayName.equals(jvmId)) {
+                    // The display name is not available until the JVM has started - check it again in the next discovery
+                    log.debug("Skipping local JVM {} - the main class is not available yet", jvmId);
+                    continue;
+                }
+
+                String mainClass = getMainClass(displayName);
+                if (!matchesMainClass(mainClass)) {
+                    log.debug("Ignoring local JVM {} ({}) - the main class does not match", jvmId, mainClass);
+                    ignoredJvms.add(jvmId);
+                    continue;
+                }
+
+                attachingJvms.add(jvmId);
+                newJvms.put(descriptor, mainClass);
+            }
+
+            ignoredJvms.retainAll(runningJvms);
+            for (LocalJvm localJvm : new ArrayList<>(attachedJvms.values())) {
+                if (!runningJvms.contains(localJvm.id)) {
+                    log.info("Local JVM {} ({}) exited", localJvm.id, localJvm.mainClass);
+                    detach(localJvm);
+                }
+            }
+        }
+
+        for (Map.Entry<VirtualMachineDescriptor, String> newJvm : newJvms.entrySet()) {
+            attach(newJvm.getKey(), newJvm.getValue(), currentAttachExecutor);
+        }
+    }
+
+    /*
+     * The JVM is only added to the attached JVMs if the collector was not stopped or restarted while attaching
+     */
+    void attach(VirtualMachineDescriptor descriptor, String mainClass, ExecutorService currentAttachExecutor) {
+        String jvmId = descriptor.id();
+
+        LocalJvm localJvm = null;
+        try {
+            JMXConnector connector = connect(descriptor, mainClass, currentAttachExecutor);
+            if (connector != null) {
+                localJvm = startChangeMonitors(jvmId, mainClass, connector);
+            }
+        } finally {
+            boolean running;
+            synchronized (this) {
+                attachingJvms.remove(jvmId);
+                running = attachExecutor == currentAttachExecutor;
+                if (running) {
+                    if (localJvm != null) {
+                        attachedJvms.put(jvmId, localJvm);
+                    } else {
+                        ignoredJvms.add(jvmId);
+                    }
+                }
+            }
+            if (localJvm != null) {
+                if (running) {
+                    log.info("Attached local JVM {} ({}) with {} change monitor(s)", jvmId, mainClass, localJvm.changeMonitors.size());
+                } else {
+                    log.info("Local JVM collector {} was stopped while attaching local JVM {} ({})", getCollectorId(), jvmId, mainClass);
+                    detach(localJvm);
+                }
+            }
+        }
+    }
+
+    /*
+     * Attach on the attach executor, abandoning the attach if it does not complete within the attach timeout
+     */
+    JMXConnector connect(final VirtualMachineDescriptor descriptor, final String mainClass, ExecutorService currentAttachExecutor) {
+        final String jvmId = descriptor.id();
+
+        // Claimed by the first of the attach task and the timeout - a connection completed after the timeout is closed
+        final AtomicBoolean claimed = new AtomicBoolean();
+        Future<JMXConnector> future;
+        try {
+            future = currentAttachExecutor.submit(new Callable<JMXConnector>() {
+                @Override
+                public JMXConnector call() throws Exception {
+                    JMXConnector connector = connect(descriptor, mainClass);
+                    if (connector != null && claimed.getAndSet(true)) {
+                        close(connector, jvmId);
+                        return null;
+                    }
+                    return connector;
+                }
+            });
+        } catch (RejectedExecutionException rejectedEx) {
+            log.debug("Local JVM collector {} was stopped before attaching local JVM {} ({})", getCollectorId(), jvmId, mainClass);
+            return null;
+        }
+
+        try {
+            try {
+                return future.get(attachTimeout, TimeUnit.SECONDS);
+            } catch (TimeoutException timeoutEx) {
+                if (!claimed.getAndSet(true)) {
+                    future.cancel(true);
+                    log.warn("Failed to attach to local JVM {} ({}) within {} seconds - it will not be polled", jvmId, mainClass, attachTimeout);
+                    return null;
+                }
+                // The attach completed as it timed out
+                return future.get();
+            }
+        } catch (ExecutionException attachEx) {
+            log.warn("Failed to attach to local JVM {} ({}) - it will not be polled", jvmId, mainClass, attachEx.getCause());
+        } catch (InterruptedException interruptedEx) {
+            future.cancel(true);
+            log.warn("Attach to local JVM {} ({}) was interrupted - it will not be polled", jvmId, mainClass, interruptedEx);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /*
+     * Attach to the JVM and connect to its local management agent - null if the system properties do not match
+     */
+    JMXConnector connect(VirtualMachineDescriptor descriptor, String mainClass) throws AttachNotSupportedException, IOException {
+        String jvmId = descriptor.id();
+
+        JMXConnector connector = null;
+        VirtualMachine virtualMachine = VirtualMachine.attach(descriptor);
+        try {
+            if (!matchesSystemProperties(virtualMachine.getSystemProperties())) {
+                log.debug("Ignoring local JVM {} ({}) - the system properties do not match", jvmId, mainClass);
+                return null;
+            }
+
+            // Returns the address of the running agent if it was already started
+            String connectorAddress = virtualMachine.startLocalManagementAgent();
+            connector = JMXConnectorFactory.connect(new JMXServiceURL(connectorAddress));
+        } finally {
+            try {
+                virtualMachine.detach();
+            } catch (IOException detachEx) {
+                if (connector != null) {
+                    close(connector, jvmId);
+                }
+                throw detachEx;
+            }
+        }
+
+        return connector;
+    }
+
+    LocalJvm startChangeMonitors(String jvmId, String mainClass, JMXConnector connector) {
+        LocalJvm localJvm = new LocalJvm(jvmId, mainClass, connector);
+        try {
+            for (SplunkJmxAttributeChangeMonitor changeMonitor : changeMonitors) {
+                SplunkJmxAttributeChangeMonitor jvmChangeMonitor = changeMonitor.duplicate();
+                jvmChangeMonitor.setChangeMonitorId(changeMonitor.getChangeMonitorId() + "-" + jvmId);
+                jvmChangeMonitor.setMBeanServerConnection(connector.getMBeanServerConnection());
+                jvmChangeMonitor.addEventField(JVM_ID_FIELD, jvmId);
+                jvmChangeMonitor.addEventField(JVM_MAIN_CLASS_FIELD, mainClass);
+                if (jvmChangeMonitor.getPartitionTarget() == null) {
+                    jvmChangeMonitor.setPartitionTarget(jvmId);
+                }
+                localJvm.changeMonitors.add(jvmChangeMonitor);
+                jvmChangeMonitor.initialize();
+            }
+        } catch (IOException | RuntimeException startEx) {
+            log.warn("Failed to start the change monitors for local JVM {} ({}) - it will not be polled", jvmId, mainClass, startEx);
+            detach(localJvm);
+            return null;
+        }
+
+        return localJvm;
+    }
+
+    void detach(LocalJvm localJvm) {
+        attachedJvms.remove(localJvm.id, localJvm);
+        for (SplunkJmxAttributeChangeMonitor changeMonitor : localJvm.changeMonitors) {
+            changeMonitor.destroy();
+        }
+        close(localJvm.connector, localJvm.id);
+    }
+
+    void close(JMXConnector connector, String jvmId) {
+        try {
+            connector.close();
+        } catch (IOException closeEx) {
+            log.debug("Failed to close the JMX connection to local JVM {}", jvmId, closeEx);
+        }
+    }
+
+    boolean matchesMainClass(String mainClass) {
+        if (compiledMainClassPatterns.isEmpty()) {
+            return true;
+        }
+        for (Pattern mainClassPattern : compiledMainClassPatterns) {
+            if (mainClassPattern.matcher(mainClass).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matchesSystemProperties(Properties systemProperties) {
+        for (Map.Entry<String, Pattern> systemPropertyPattern : compiledSystemPropertyPatterns.entrySet()) {
+            String value = systemProperties.getProperty(systemPropertyPattern.getKey());
+            if (value == null || !systemPropertyPattern.getValue().matcher(value).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The display name is the main class (or jar file) followed by the arguments
+     */
+    static String getMainClass(String displayName) {
+        if (displayName == null) {
+            return "";
+        }
+        String trimmedDisplayName = displayName.trim();
+        int separator = trimmedDisplayName.indexOf(' ');
+        return (separator > 0) ? trimmedDisplayName.substring(0, separator) : trimmedDisplayName;
+    }
+
+    /*
+     * The RuntimeMXBean name is pid@hostname on the supported JVMs
+     */
+    static String getCurrentJvmId() {
+        String runtimeName = ManagementFactory.getRuntimeMXBean().getName();
+        int separator = runtimeName.indexOf('@');
+        return (separator > 0) ? runtimeName.substring(0, separator) : runtimeName;
+    }
+
+    void registerMBean() {
+        String newCollectorObjectNameString = String.format("com.pronoia.splunk.httpec:type=%s,id=%s", this.getClass().getSimpleName(), getCollectorId());
+        try {
+            collectorObjectName = new ObjectName(newCollectorObjectNameString);
+        } catch (MalformedObjectNameException malformedNameEx) {
+            log.warn("Failed to create ObjectName for string {} - MBean will not be registered", newCollectorObjectNameString, malformedNameEx);
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, collectorObjectName);
+        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
+            log.warn("MBean already registered for local JVM collector {}", collectorObjectName, allreadyExistsEx);
+        } catch (MBeanRegistrationException registrationEx) {
+            log.warn("MBean registration failure for local JVM collector {}", newCollectorObjectNameString, registrationEx);
+        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
+            log.warn("Invalid MBean for local JVM collector {}", newCollectorObjectNameString, nonCompliantMBeanEx);
+        }
+    }
+
+    void unregisterMBean() {
+        if (collectorObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(collectorObjectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
+                log.warn("Failed to unregister local JVM collector MBean {}", collectorObjectName.getCanonicalName(), unregisterEx);
+            } finally {
+                collectorObjectName = null;
+            }
+        }
+    }
+
+    /**
+     * An attached JVM, the JMX connection to it and the change monitors polling it.
+     */
+    static class LocalJvm {
+        final String id;
+        final String mainClass;
+        final JMXConnector connector;
+        final List<SplunkJmxAttributeChangeMonitor> changeMonitors = new LinkedList<>();
+
+        LocalJvm(String id, String mainClass, JMXConnector connector) {
+            this.id = id;
+            this.mainClass = mainClass;
+            this.connector = connector;
+        }
+
+        boolean isConnected() {
+            try {
+                connector.getConnectionId();
+                return true;
+            } catch (IOException connectionEx) {
+                return false;
+            }
+        }
+    }
+}
@@ -23,6 +23,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.InstanceAlreadyExistsException;
@@ -30,17 +34,26 @@ import javax.management.InstanceNotFoundException;
 import javax.management.ListenerNotFoundException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.Notification;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.relation.MBeanServerNotificationFilter;
 
 import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
 import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionSummaryEventBuilder;
 import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxNotificationEventBuilder;
+import com.pronoia.splunk.jmx.internal.GarbageCollectionSummary;
+import com.pronoia.splunk.jmx.internal.GarbageCollectionWindow;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,8 +77,18 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
     ObjectName notificationListenerObjectName;
 
     Set<String> sourceMBeanNames;
+    Set<ObjectName> sourceObjectNames;
     Map<String, ObjectName> mbeanNameMap;
 
+    boolean monitorMBeanRegistrations = true;
+    NotificationListener registrationListener;
+
+    long gcSummaryWindow;
+    long gcOutlierPauseThreshold = -1;
+    EventBuilder<GarbageCollectionSummary> gcSummaryEventBuilder;
+    GarbageCollectionWindow gcWindow;
+    ScheduledExecutorService gcSummaryExecutor;
+
     EventCollectorClient splunkClient;
     EventBuilder<Notification> splunkEventBuilder;
 
@@ -112,6 +135,24 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
         this.notificationListenerId = notificationListenerId;
     }
 
+    @Override
+    public boolean isMonitorMBeanRegistrations() {
+        return monitorMBeanRegistrations;
+    }
+
+    /**
+     * Enable/disable monitoring MBean registrations.
+     *
+     * When enabled, the listener will be added to (and removed from) MBeans matching the configured ObjectNames and
+     * ObjectName patterns as they are registered (and unregistered) after the listener is started - e.g. an MBean that
+     * was missing at start, or that is unregistered and registered again.
+     *
+     * @param monitorMBeanRegistrations if true, listeners will be added to MBeans registered after the listener is started
+     */
+    public void setMonitorMBeanRegistrations(boolean monitorMBeanRegistrations) {
+        this.monitorMBeanRegistrations = monitorMBeanRegistrations;
+    }
+
     /**
      * Determine if there are any MBean Names configured for monitoring.
      *
@@ -171,6 +212,58 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
         }
     }
 
+    @Override
+    public long getGcSummaryWindow() {
+        return gcSummaryWindow;
+    }
+
+    /**
+     * Set the length of the GC aggregation window (in seconds).
+     *
+     * When set to a value greater than zero, GC notifications are aggregated into one summary event per collector for
+     * each window rather than being sent as individual events.
+     *
+     * @param gcSummaryWindow the length of the aggregation window in seconds; a value of zero or less disables aggregation
+     */
+    public void setGcSummaryWindow(long gcSummaryWindow) {
+        this.gcSummaryWindow = gcSummaryWindow;
+    }
+
+    @Override
+    public long getGcOutlierPauseThreshold() {
+        return gcOutlierPauseThreshold;
+    }
+
+    /**
+     * Set the GC pause threshold (in milliseconds) for outliers when GC notifications are aggregated.
+     *
+     * Collections with a duration greater than the threshold are also sent as individual events.
+     *
+     * @param gcOutlierPauseThreshold the pause threshold in milliseconds; a negative value disables outlier events
+     */
+    public void setGcOutlierPauseThreshold(long gcOutlierPauseThreshold) {
+        this.gcOutlierPauseThreshold = gcOutlierPauseThreshold;
+    }
+
+    public boolean hasGcSummaryEventBuilder() {
+        return gcSummaryEventBuilder != null;
+    }
+
+    public EventBuilder<GarbageCollectionSummary> getGcSummaryEventBuilder() {
+        return gcSummaryEventBuilder;
+    }
+
+    /**
+     * Set the {@link EventBuilder} to use for GC summary events.
+     *
+     * If an event builder is not configured, a default {@link JmxGarbageCollectionSummaryEventBuilder} will be created.
+     *
+     * @param gcSummaryEventBuilder The {@link EventBuilder} to use.
+     */
+    public void setGcSummaryEventBuilder(EventBuilder<GarbageCollectionSummary> gcSummaryEventBuilder) {
+        this.gcSummaryEventBuilder = gcSummaryEventBuilder;
+    }
+
     public EventCollectorClient getSplunkClient() {
         return splunkClient;
     }
@@ -222,12 +315,31 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
             splunkEventBuilder = new JmxNotificationEventBuilder();
         }
 
+        if (gcSummaryWindow > 0) {
+            startGcSummaries();
+        }
+
         MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
 
         try (SplunkMDCHelper helper = createMdcHelper()) {
             // Determine the actual source ObjectNames from the String values
             if (sourceMBeanNames != null && !sourceMBeanNames.isEmpty()) {
-                mbeanNameMap = new HashMap<>();
+                mbeanNameMap = new ConcurrentHashMap<>();
+                sourceObjectNames = new HashSet<>();
+                for (String objectNameString : sourceMBeanNames) {
+                    try {
+                        sourceObjectNames.add(new ObjectName(objectNameString));
+                    } catch (MalformedObjectNameException objectNameEx) {
+                        log.error("Invalid ObjectName or pattern encountered in validated ObjectName set - ignoring: {}", objectNameString);
+                    }
+                }
+
+                // Listen for registrations before querying so MBeans registered during the query are not missed
+                if (monitorMBeanRegistrations && !sourceObjectNames.isEmpty()) {
+                    addRegistrationListener(mbeanServer);
+                }
+
+                Map<String, ObjectName> foundMBeanNameMap = new HashMap<>();
                 for (String objectNameString : sourceMBeanNames) {
                     try {
                         ObjectName tmpObjectName = new ObjectName(objectNameString);
@@ -236,41 +348,46 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
                             if (foundObjectNames != null && !foundObjectNames.isEmpty()) {
                                 log.debug("Found {} MBeans using ObjectName pattern {}", foundObjectNames.size(), tmpObjectName.getCanonicalName());
                                 for (ObjectName foundObjectName : foundObjectNames) {
-                                    mbeanNameMap.put(foundObjectName.getCanonicalName(), foundObjectName);
+                                    foundMBeanNameMap.put(foundObjectName.getCanonicalName(), foundObjectName);
                                 }
                             } else {
                                 log.warn("No MBeans found using ObjectName pattern {}", tmpObjectName.getCanonicalName());
                             }
                         } else {
-                            mbeanNameMap.put(tmpObjectName.getCanonicalName(), tmpObjectName);
+                            foundMBeanNameMap.put(tmpObjectName.getCanonicalName(), tmpObjectName);
                         }
                     } catch (MalformedObjectNameException objectNameEx) {
                         log.error("Invalid ObjectName or pattern encountered in validated ObjectName set - ignoring: {}", objectNameString);
                     }
                 }
 
-                if (mbeanNameMap.isEmpty()) {
+                if (foundMBeanNameMap.isEmpty() && registrationListener == null) {
                     log.warn("No no listeners registered - no valid ObjectNames were specified or found from ObjectName patterns: {}", sourceMBeanNames);
                     mbeanNameMap = null;
                     return;
                 }
-            } else {
-                log.warn("No no listeners registered - no valid ObjectNames were specified");
-                return;
-            }
 
-            if (mbeanNameMap != null && !mbeanNameMap.isEmpty()) {
-                // Register a listener for each ObjectName
-                for (String canonicalName : mbeanNameMap.keySet()) {
-                    try {
-                        mbeanServer.addNotificationListener(mbeanNameMap.get(canonicalName), this, null, canonicalName);
-                        running = true;
-                        startTime = new Date();
-                    } catch (InstanceNotFoundException instanceNotFoundEx) {
-                        log.warn("Failed to add listener for MBean {}", canonicalName, instanceNotFoundEx);
-                        mbeanNameMap.remove(canonicalName);
+                // Register a listener for each ObjectName - skipping any that were already added by the registration listener
+                for (Map.Entry<String, ObjectName> foundEntry : foundMBeanNameMap.entrySet()) {
+                    String canonicalName = foundEntry.getKey();
+                    if (mbeanNameMap.putIfAbsent(canonicalName, foundEntry.getValue()) == null) {
+                        try {
+                            mbeanServer.addNotificationListener(foundEntry.getValue(), this, null, canonicalName);
+                            running = true;
+                            startTime = new Date();
+                        } catch (InstanceNotFoundException instanceNotFoundEx) {
+                            if (registrationListener != null) {
+                                log.warn("MBean {} is not registered - the listener will be added when it is registered", canonicalName);
+                            } else {
+                                log.warn("Failed to add listener for MBean {}", canonicalName, instanceNotFoundEx);
+                            }
+                            mbeanNameMap.remove(canonicalName);
+                        }
                     }
                 }
+            } else {
+                log.warn("No no listeners registered - no valid ObjectNames were specified");
+                return;
             }
 
             if (mbeanNameMap != null && !mbeanNameMap.isEmpty()) {
@@ -278,6 +395,14 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
             } else {
                 log.warn("No NotificationListener registered - no MBeans found using ObjectName(s): {}", sourceMBeanNames);
             }
+
+            if (registrationListener != null) {
+                log.info("Listening for registration of MBeans matching ObjectName(s): {}", sourceObjectNames);
+                running = true;
+                if (startTime == null) {
+                    startTime = new Date();
+                }
+            }
         }
     }
 
@@ -287,6 +412,8 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
     @Override
     public void stop() {
         try (SplunkMDCHelper helper = createMdcHelper()) {
+            removeRegistrationListener(ManagementFactory.getPlatformMBeanServer());
+            stopGcSummaries();
             if (mbeanNameMap != null && !mbeanNameMap.isEmpty()) {
                 for (String canonicalName : mbeanNameMap.keySet()) {
                     try {
@@ -320,6 +447,17 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
             log.debug("Received Notification: {} - {}", handback, notification.getType());
             lastNotificationTime = new Date();
             lastNotificationType = notification.getType();
+
+            GarbageCollectionWindow currentGcWindow = gcWindow;
+            if (currentGcWindow != null && JmxGarbageCollectionNotificationEventBuilder.isGarbageCollectionNotification(notification)) {
+                Object source = notification.getSource();
+                if (!currentGcWindow.record((source != null) ? source.toString() : null, (CompositeData) notification.getUserData())) {
+                    log.trace("Aggregated GC notification {}", notification.getSequenceNumber());
+                    return;
+                }
+                log.debug("GC notification {} exceeded outlier pause threshold {} - sending event", notification.getSequenceNumber(), gcOutlierPauseThreshold);
+            }
+
             String eventBody = splunkEventBuilder.source(lastNotificationType).eventBody(notification).build(splunkClient);
 
             try {
@@ -331,6 +469,123 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
         }
     }
 
+    void startGcSummaries() {
+        if (!hasGcSummaryEventBuilder()) {
+            gcSummaryEventBuilder = new JmxGarbageCollectionSummaryEventBuilder();
+        }
+
+        gcWindow = new GarbageCollectionWindow(gcOutlierPauseThreshold);
+        if (gcSummaryExecutor == null) {
+            gcSummaryExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.getClass().getSimpleName() + "-gc-summary"));
+            gcSummaryExecutor.scheduleAtFixedRate(this::sendGcSummaries, gcSummaryWindow, gcSummaryWindow, TimeUnit.SECONDS);
+        }
+        log.info("Aggregating GC notifications in {} second windows - outlier pause threshold {}", gcSummaryWindow, gcOutlierPauseThreshold);
+    }
+
+    void stopGcSummaries() {
+        if (gcSummaryExecutor != null) {
+            gcSummaryExecutor.shutdown();
+            gcSummaryExecutor = null;
+        }
+
+        if (gcWindow != null) {
+            // Deliver the partial window so no collections are lost
+            sendGcSummaries();
+            gcWindow = null;
+        }
+    }
+
+    synchronized void sendGcSummaries() {
+        GarbageCollectionWindow currentGcWindow = gcWindow;
+        if (currentGcWindow == null) {
+            return;
+        }
+
+        try (SplunkMDCHelper helper = createMdcHelper()) {
+            for (GarbageCollectionSummary summary : currentGcWindow.drain()) {
+                String eventBody = gcSummaryEventBuilder.eventBody(summary).build(splunkClient);
+                try {
+                    splunkClient.sendEvent(eventBody);
+                    log.debug("Sent GC summary event for {}", summary.getGcName());
+                } catch (EventDeliveryException deliveryEx) {
+                    log.error("Failed to send GC summary event: {}", deliveryEx.getEvent(), deliveryEx);
+                }
+            }
+        } catch (Throwable unexpectedEx) {
+            log.warn("Unexpected {} sending GC summary events", unexpectedEx.getClass().getSimpleName(), unexpectedEx);
+        }
+    }
+
+    /**
+     * Determine if an ObjectName matches one of the configured ObjectNames or ObjectName patterns.
+     *
+     * @param objectName the ObjectName to check
+     *
+     * @return true if the ObjectName is configured or matches a configured pattern; false otherwise
+     */
+    boolean matchesSourceObjectName(ObjectName objectName) {
+        if (sourceObjectNames != null) {
+            for (ObjectName sourceObjectName : sourceObjectNames) {
+                // apply is equivalent to equals for an ObjectName that is not a pattern
+                if (sourceObjectName.apply(objectName)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    void addRegistrationListener(MBeanServer mbeanServer) {
+        NotificationListener newRegistrationListener = new MBeanRegistrationListener();
+        MBeanServerNotificationFilter registrationFilter = new MBeanServerNotificationFilter();
+        registrationFilter.enableAllObjectNames();
+        try {
+            mbeanServer.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, newRegistrationListener, registrationFilter, null);
+            registrationListener = newRegistrationListener;
+        } catch (InstanceNotFoundException instanceNotFoundEx) {
+            log.warn("Failed to add MBean registration listener - MBeans registered after start will not be monitored", instanceNotFoundEx);
+        }
+    }
+
+    void removeRegistrationListener(MBeanServer mbeanServer) {
+        if (registrationListener != null) {
+            try {
+                mbeanServer.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, registrationListener);
+            } catch (InstanceNotFoundException | ListenerNotFoundException removeListenerEx) {
+                log.warn("Error removing MBean registration listener", removeListenerEx);
+            } finally {
+                registrationListener = null;
+            }
+        }
+    }
+
+    void handleMBeanRegistered(ObjectName objectName) {
+        Map<String, ObjectName> currentMBeanNameMap = mbeanNameMap;
+        if (currentMBeanNameMap == null || !matchesSourceObjectName(objectName)) {
+            return;
+        }
+
+        String canonicalName = objectName.getCanonicalName();
+        if (currentMBeanNameMap.putIfAbsent(canonicalName, objectName) == null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().addNotificationListener(objectName, this, null, canonicalName);
+                log.info("Added NotificationListener for registered MBean {}", canonicalName);
+            } catch (InstanceNotFoundException instanceNotFoundEx) {
+                log.debug("MBean {} was unregistered before the listener could be added", canonicalName);
+                currentMBeanNameMap.remove(canonicalName);
+            }
+        }
+    }
+
+    void handleMBeanUnregistered(ObjectName objectName) {
+        Map<String, ObjectName> currentMBeanNameMap = mbeanNameMap;
+        if (currentMBeanNameMap != null && currentMBeanNameMap.remove(objectName.getCanonicalName()) != null) {
+            // The MBeanServer removes the listeners for an unregistered MBean, so only the bookkeeping is required here
+            log.info("Removed NotificationListener for unregistered MBean {}", objectName.getCanonicalName());
+        }
+    }
+
     void validateAndAddSourceMBName(String objectNameString) {
         try (SplunkMDCHelper helper = createMdcHelper()) {
             ObjectName tmpObjectName = new ObjectName(objectNameString);
@@ -380,6 +635,22 @@ public class SplunkJmxNotificationListener implements NotificationListener, Splu
         }
     }
 
+    class MBeanRegistrationListener implements NotificationListener {
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (notification instanceof MBeanServerNotification) {
+                try (SplunkMDCHelper helper = createMdcHelper()) {
+                    ObjectName objectName = ((MBeanServerNotification) notification).getMBeanName();
+                    if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                        handleMBeanRegistered(objectName);
+                    } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                        handleMBeanUnregistered(objectName);
+                    }
+                }
+            }
+        }
+    }
+
     class JmxNotificationListenerMDCHelper extends SplunkMDCHelper {
         public static final String MDC_JMX_NOTIFICATAION_SOURCE_MEANS = "splunk.jmx.notification.source";
 
@@ -65,6 +65,11 @@ public interface SplunkJmxNotificationListenerMBean {
 
     Set<String> getSourceMBeans();
 
+    boolean isMonitorMBeanRegistrations();
+
+    long getGcSummaryWindow();
+    long getGcOutlierPauseThreshold();
+
     void start();
     void stop();
     void restart();
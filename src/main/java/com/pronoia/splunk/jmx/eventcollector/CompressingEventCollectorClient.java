@@ -0,0 +1,805 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+import com.pronoia.splunk.jmx.internal.GzipEncoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * An EventCollectorClient that delivers events to the HTTP Event Collector in gzip-compressed batches.
+ *
+ * <p>JMX events are very repetitive (the same field names, ObjectName properties and sourcetype in every event), so a
+ * batch of events typically compresses to a small fraction of its size.  Events are buffered until the batch reaches
+ * maxBatchSize events or maxBatchLength characters, or until the batch period expires.  The batch is then posted to the
+ * collector URL as a single multi-event body, gzip-encoded with Content-Encoding: gzip if it is at least
+ * minCompressionSize bytes.
+ *
+ * <p>The event metadata (host, index, source, sourcetype and fields) used by the event builders is taken from the wrapped
+ * splunk client, which must be configured for the same collector.  If the collector URL is not specified, events are
+ * passed to the wrapped client uncompressed.  An https collector URL is validated against the default JVM trust store.
+ *
+ * <p>Completed batches are delivered by the executor of the client, so a slow collector does not stall the polling
+ * threads sending the events.  A batch that cannot be delivered is discarded and logged.  When maxPendingBatches batches
+ * are waiting for delivery, further batches are discarded and the sender of the event that completed the batch receives
+ * an EventDeliveryException.
+ */
+public class CompressingEventCollectorClient implements EventCollectorClient, CompressingEventCollectorClientMBean {
+    static final int ERROR_RESPONSE_LIMIT = 1024;
+    static AtomicInteger clientCounter = new AtomicInteger(1);
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    String clientId;
+    EventCollectorClient splunkClient;
+    String collectorUrl;
+    String authorizationToken;
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    int minCompressionSize = 1024;
+    int maxBatchSize = 100;
+    int maxBatchLength = 1024 * 1024;
+    long batchPeriod = 1;
+    int deliveryTimeout = 30;
+    int maxPendingBatches = 10;
+
+    ObjectName clientObjectName;
+    ScheduledExecutorService executor;
+    Date startTime;
+    Date stopTime;
+
+    final StringBuilder batch = new StringBuilder();
+    int batchEventCount;
+    final AtomicInteger pendingBatches = new AtomicInteger();
+
+    final Object deliveryLock = new Object();
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    GzipEncoder gzipEncoder;
+
+    volatile long eventCount;
+    volatile long batchCount;
+    volatile long compressedBatchCount;
+    volatile long failedBatchCount;
+    // Incremented by the sending threads, outside the delivery lock
+    final AtomicLong discardedBatchCount = new AtomicLong();
+    volatile long uncompressedBytes;
+    volatile long deliveredBytes;
+    volatile long compressionCpuTime;
+    volatile long lastBatchEventCount;
+    volatile long lastBatchUncompressedBytes;
+    volatile long lastBatchDeliveredBytes;
+    volatile long lastBatchCompressionCpuTime;
+    volatile long lastBatchDeliveryTime;
+
+    @Override
+    public String getClientId() {
+        if (clientId == null || clientId.isEmpty()) {
+            clientId = String.format("splunk-compressing-client-%d", clientCounter.getAndIncrement());
+        }
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public EventCollectorClient getSplunkClient() {
+        return splunkClient;
+    }
+
+    /**
+     * Set the client providing the event metadata - and delivering the events if the collector URL is not specified.
+     *
+     * @param splunkClient the wrapped client
+     */
+    public void setSplunkClient(EventCollectorClient splunkClient) {
+        this.splunkClient = splunkClient;
+    }
+
+    @Override
+    public String getCollectorUrl() {
+        return collectorUrl;
+    }
+
+    /**
+     * Set the URL of the HTTP Event Collector endpoint - e.g. https://splunk:8088/services/collector/event.
+     *
+     * @param collectorUrl the collector URL; if not specified events are delivered uncompressed by the wrapped client
+     */
+    public void setCollectorUrl(String collectorUrl) {
+        this.collectorUrl = collectorUrl;
+    }
+
+    public String getAuthorizationToken() {
+        return authorizationToken;
+    }
+
+    public void setAuthorizationToken(String authorizationToken) {
+        this.authorizationToken = authorizationToken;
+    }
+
+    @Override
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the Deflater compression level.
+     *
+     * @param compressionLevel the compression level - 1 (fastest) to 9 (best), or -1 for the Deflater default
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < Deflater.BEST_SPEED || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            log.warn("Ignoring invalid compression level: {}", compressionLevel);
+            return;
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public int getMinCompressionSize() {
+        return minCompressionSize;
+    }
+
+    /**
+     * Set the minimum size of a batch for compression - smaller batches are delivered uncompressed.
+     *
+     * @param minCompressionSize the minimum size in bytes
+     */
+    public void setMinCompressionSize(int minCompressionSize) {
+        this.minCompressionSize = minCompressionSize;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Set the number of events that triggers the delivery of a batch.
+     *
+     * @param maxBatchSize the maximum number of events in a batch
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            log.warn("Ignoring invalid max batch size: {}", maxBatchSize);
+            return;
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public int getMaxBatchLength() {
+        return maxBatchLength;
+    }
+
+    /**
+     * Set the batch length that triggers the delivery of a batch.
+     *
+     * @param maxBatchLength the maximum length of a batch in characters
+     */
+    public void setMaxBatchLength(int maxBatchLength) {
+        if (maxBatchLength < 1) {
+            log.warn("Ignoring invalid max batch length: {}", maxBatchLength);
+            return;
+        }
+        this.maxBatchLength = maxBatchLength;
+    }
+
+    @Override
+    public long getBatchPeriod() {
+        return batchPeriod;
+    }
+
+    /**
+     * Set the period for delivering incomplete batches (in seconds).
+     *
+     * @param batchPeriod the batch period in seconds
+     */
+    public void setBatchPeriod(long batchPeriod) {
+        if (batchPeriod < 1) {
+            log.warn("Ignoring invalid batch period: {}", batchPeriod);
+            return;
+        }
+        this.batchPeriod = batchPeriod;
+    }
+
+    @Override
+    public int getMaxPendingBatches() {
+        return maxPendingBatches;
+    }
+
+    /**
+     * Set the number of completed batches that can wait for delivery - further batches are discarded.
+     *
+     * @param maxPendingBatches the maximum number of pending batches
+     */
+    public void setMaxPendingBatches(int maxPendingBatches) {
+        if (maxPendingBatches < 1) {
+            log.warn("Ignoring invalid max pending batches: {}", maxPendingBatches);
+            return;
+        }
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    public int getDeliveryTimeout() {
+        return deliveryTimeout;
+    }
+
+    /**
+     * Set the connect and read timeouts for posting a batch (in seconds).
+     *
+     * @param deliveryTimeout the timeout in seconds
+     */
+    public void setDeliveryTimeout(int deliveryTimeout) {
+        this.deliveryTimeout = deliveryTimeout;
+    }
+
+    @Override
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public Date getStopTime() {
+        return stopTime;
+    }
+
+    @Override
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    @Override
+    public long getCompressedBatchCount() {
+        return compressedBatchCount;
+    }
+
+    @Override
+    public long getFailedBatchCount() {
+        return failedBatchCount;
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    @Override
+    public long getDeliveredBytes() {
+        return deliveredBytes;
+    }
+
+    @Override
+    public double getCompressionRatio() {
+        return ratio(uncompressedBytes, deliveredBytes);
+    }
+
+    /**
+     * Get the CPU time used to compress the batches (in microseconds).
+     *
+     * @return the CPU time; -1 if the JVM does not support measuring the CPU time of a thread
+     */
+    @Override
+    public long getCompressionCpuTime() {
+        return isCpuTimeSupported() ? TimeUnit.NANOSECONDS.toMicros(compressionCpuTime) : -1;
+    }
+
+    @Override
+    public long getLastBatchEventCount() {
+        return lastBatchEventCount;
+    }
+
+    @Override
+    public long getLastBatchUncompressedBytes() {
+        return lastBatchUncompressedBytes;
+    }
+
+    @Override
+    public long getLastBatchDeliveredBytes() {
+        return lastBatchDeliveredBytes;
+    }
+
+    @Override
+    public double getLastBatchCompressionRatio() {
+        return ratio(lastBatchUncompressedBytes, lastBatchDeliveredBytes);
+    }
+
+    /**
+     * Get the CPU time used to compress the last batch (in microseconds).
+     *
+     * @return the CPU time; -1 if the batch was not compressed or the CPU time could not be measured
+     */
+    @Override
+    public long getLastBatchCompressionCpuTime() {
+        return (lastBatchCompressionCpuTime >= 0) ? TimeUnit.NANOSECONDS.toMicros(lastBatchCompressionCpuTime) : -1;
+    }
+
+    @Override
+    public long getDiscardedBatchCount() {
+        return discardedBatchCount.get();
+    }
+
+    @Override
+    public int getPendingBatchCount() {
+        return pendingBatches.get();
+    }
+
+    @Override
+    public long getLastBatchDeliveryTime() {
+        return lastBatchDeliveryTime;
+    }
+
+    @Override
+    public boolean hasEventHost() {
+        return splunkClient != null && splunkClient.hasEventHost();
+    }
+
+    @Override
+    public String getEventHost() {
+        return (splunkClient != null) ? splunkClient.getEventHost() : null;
+    }
+
+    @Override
+    public boolean hasEventIndex() {
+        return splunkClient != null && splunkClient.hasEventIndex();
+    }
+
+    @Override
+    public String getEventIndex() {
+        return (splunkClient != null) ? splunkClient.getEventIndex() : null;
+    }
+
+    @Override
+    public boolean hasEventSource() {
+        return splunkClient != null && splunkClient.hasEventSource();
+    }
+
+    @Override
+    public String getEventSource() {
+        return (splunkClient != null) ? splunkClient.getEventSource() : null;
+    }
+
+    @Override
+    public boolean hasEventSourcetype() {
+        return splunkClient != null && splunkClient.hasEventSourcetype();
+    }
+
+    @Override
+    public String getEventSourcetype() {
+        return (splunkClient != null) ? splunkClient.getEventSourcetype() : null;
+    }
+
+    @Override
+    public boolean hasConstantFields() {
+        return splunkClient != null && splunkClient.hasConstantFields();
+    }
+
+    @Override
+    public Map<String, String> getConstantFields() {
+        return (splunkClient != null) ? splunkClient.getConstantFields() : null;
+    }
+
+    @Override
+    public Map<String, String> getConstantFields(boolean copy) {
+        return (splunkClient != null) ? splunkClient.getConstantFields(copy) : null;
+    }
+
+    @Override
+    public boolean hasIncludedSystemProperties() {
+        return splunkClient != null && splunkClient.hasIncludedSystemProperties();
+    }
+
+    @Override
+    public Map<String, String> getIncludedSystemProperties() {
+        return (splunkClient != null) ? splunkClient.getIncludedSystemProperties() : null;
+    }
+
+    @Override
+    public Map<String, String> getIncludedSystemProperties(boolean copy) {
+        return (splunkClient != null) ? splunkClient.getIncludedSystemProperties(copy) : null;
+    }
+
+    @Override
+    public boolean hasIncludedEnvironmentVariables() {
+        return splunkClient != null && splunkClient.hasIncludedEnvironmentVariables();
+    }
+
+    @Override
+    public Map<String, String> getIncludedEnvironmentVariables() {
+        return (splunkClient != null) ? splunkClient.getIncludedEnvironmentVariables() : null;
+    }
+
+    @Override
+    public Map<String, String> getIncludedEnvironmentVariables(boolean copy) {
+        return (splunkClient != null) ? splunkClient.getIncludedEnvironmentVariables(copy) : null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null && !(executor.isShutdown() || executor.isTerminated());
+    }
+
+    public void initialize() {
+        registerMBean();
+        start();
+    }
+
+    public void destroy() {
+        stop();
+        unregisterMBean();
+    }
+
+    /**
+     * Start delivering incomplete batches periodically.
+     */
+    @Override
+    public synchronized void start() {
+        log.info("Starting compressing client {} for {}", getClientId(), collectorUrl);
+
+        if (splunkClient == null) {
+            throw new IllegalStateException("Splunk Client must be specified");
+        }
+        if (collectorUrl == null || collectorUrl.isEmpty()) {
+            log.warn("Collector URL is not specified for compressing client {} - events will be delivered uncompressed by {}", getClientId(), splunkClient.getClientId());
+            return;
+        }
+
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.getClass().getSimpleName()));
+            startTime = new Date();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush();
+                    } catch (EventDeliveryException deliveryEx) {
+                        log.warn("Failed to deliver batch for compressing client {}", getClientId(), deliveryEx);
+                    } catch (Throwable unexpectedEx) {
+                        log.warn("Unexpected {} delivering batch for compressing client {}", unexpectedEx.getClass().getSimpleName(), getClientId(), unexpectedEx);
+                    }
+                }
+            }, batchPeriod, batchPeriod, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the batch period, wait for the pending batches and deliver the current batch.
+     */
+    @Override
+    public synchronized void stop() {
+        if (executor != null && !executor.isShutdown() && !executor.isTerminated()) {
+            log.info("Stopping {} ....", this.getClass().getName());
+            executor.shutdown();
+            stopTime = new Date();
+            try {
+                if (!executor.awaitTermination(deliveryTimeout, TimeUnit.SECONDS)) {
+                    log.warn("Pending batches were not delivered within {} seconds for compressing client {}", deliveryTimeout, getClientId());
+                }
+            } catch (InterruptedException interruptedEx) {
+                log.warn("Stop was interrupted while delivering pending batches for compressing client {}", getClientId(), interruptedEx);
+                Thread.currentThread().interrupt();
+            }
+        }
+        executor = null;
+
+        try {
+            flush();
+        } catch (EventDeliveryException deliveryEx) {
+            log.warn("Failed to deliver final batch for compressing client {}", getClientId(), deliveryEx);
+        }
+
+        synchronized (deliveryLock) {
+            if (gzipEncoder != null) {
+                gzipEncoder.end();
+                gzipEncoder = null;
+            }
+        }
+    }
+
+    @Override
+    public void restart() {
+        stop();
+        start();
+    }
+
+    /**
+     * Add an event to the current batch, and hand the batch to the executor for delivery if it is complete.
+     *
+     * @param event the JSON event
+     *
+     * @throws EventDeliveryException if the completed batch was discarded because too many batches are pending
+     */
+    @Override
+    public void sendEvent(String event) throws EventDeliveryException {
+        if (collectorUrl == null || collectorUrl.isEmpty()) {
+            if (splunkClient == null) {
+                throw new EventDeliveryException(event, "Splunk Client must be specified");
+            }
+            splunkClient.sendEvent(event);
+            return;
+        }
+
+        String completedBatch = null;
+        int completedBatchEventCount = 0;
+        synchronized (batch) {
+            batch.append(event).append('\n');
+            ++batchEventCount;
+            if (batchEventCount >= maxBatchSize || batch.length() >= maxBatchLength) {
+                completedBatch = batch.toString();
+                completedBatchEventCount = batchEventCount;
+                batch.setLength(0);
+                batchEventCount = 0;
+            }
+        }
+
+        if (completedBatch != null) {
+            submit(completedBatch, completedBatchEventCount);
+        }
+    }
+
+    /**
+     * Deliver the current batch on the calling thread.
+     *
+     * @throws EventDeliveryException if the batch could not be delivered
+     */
+    @Override
+    public void flush() throws EventDeliveryException {
+        String currentBatch;
+        int currentBatchEventCount;
+        synchronized (batch) {
+            if (batchEventCount == 0) {
+                return;
+            }
+            currentBatch = batch.toString();
+            currentBatchEventCount = batchEventCount;
+            batch.setLength(0);
+            batchEventCount = 0;
+        }
+
+        deliver(currentBatch, currentBatchEventCount);
+    }
+
+    /*
+     * Hand a completed batch to the executor - it is delivered on the calling thread if the client is not started
+     */
+    void submit(final String body, final int bodyEventCount) throws EventDeliveryException {
+        ScheduledExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            deliver(body, bodyEventCount);
+            return;
+        }
+
+        if (pendingBatches.incrementAndGet() > maxPendingBatches) {
+            pendingBatches.decrementAndGet();
+            discardedBatchCount.incrementAndGet();
+            throw new EventDeliveryException(describeBatch(bodyEventCount, body.length()),
+                String.format("Discarded batch - %d batches are waiting for delivery to %s", maxPendingBatches, collectorUrl));
+        }
+
+        try {
+            currentExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        deliver(body, bodyEventCount);
+                    } catch (EventDeliveryException deliveryEx) {
+                        log.warn("Failed to deliver {} for compressing client {}", deliveryEx.getEvent(), getClientId(), deliveryEx);
+                    } catch (Throwable unexpectedEx) {
+                        log.warn("Unexpected {} delivering batch for compressing client {}", unexpectedEx.getClass().getSimpleName(), getClientId(), unexpectedEx);
+                    } finally {
+                        pendingBatches.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException rejectedEx) {
+            // The client is stopping
+            pendingBatches.decrementAndGet();
+            deliver(body, bodyEventCount);
+        }
+    }
+
+    void deliver(String body, int bodyEventCount) throws EventDeliveryException {
+        synchronized (deliveryLock) {
+            byte[] uncompressed = body.getBytes(StandardCharsets.UTF_8);
+
+            byte[] content = uncompressed;
+            int contentLength = uncompressed.length;
+            long cpuTime = -1;
+            boolean compressed = uncompressed.length >= minCompressionSize;
+            if (compressed) {
+                if (gzipEncoder == null) {
+                    gzipEncoder = new GzipEncoder(compressionLevel);
+                }
+                long startCpuTime = getCurrentThreadCpuTime();
+                contentLength = gzipEncoder.encode(uncompressed, 0, uncompressed.length);
+                if (startCpuTime >= 0) {
+                    cpuTime = getCurrentThreadCpuTime() - startCpuTime;
+                }
+                content = gzipEncoder.getBuffer();
+            }
+
+            long startMillis = System.currentTimeMillis();
+            try {
+                post(content, contentLength, compressed);
+            } catch (IOException ioEx) {
+                ++failedBatchCount;
+                // The batch body can be large - the exception only describes it
+                String errorMessage = String.format("Failed to deliver batch of %d events to %s", bodyEventCount, collectorUrl);
+                throw new EventDeliveryException(describeBatch(bodyEventCount, uncompressed.length), errorMessage, ioEx);
+            }
+
+            eventCount += bodyEventCount;
+            ++batchCount;
+            uncompressedBytes += uncompressed.length;
+            deliveredBytes += contentLength;
+            lastBatchEventCount = bodyEventCount;
+            lastBatchUncompressedBytes = uncompressed.length;
+            lastBatchDeliveredBytes = contentLength;
+            lastBatchDeliveryTime = System.currentTimeMillis() - startMillis;
+            lastBatchCompressionCpuTime = cpuTime;
+            if (compressed) {
+                ++compressedBatchCount;
+                if (cpuTime >= 0) {
+                    compressionCpuTime += cpuTime;
+                }
+                log.debug("Delivered batch of {} events - compressed {} bytes to {} bytes (ratio {}) using {} microseconds CPU",
+                    bodyEventCount, uncompressed.length, contentLength, String.format("%.1f", getLastBatchCompressionRatio()), getLastBatchCompressionCpuTime());
+            } else {
+                log.debug("Delivered batch of {} events - {} bytes uncompressed", bodyEventCount, contentLength);
+            }
+        }
+    }
+
+    static String describeBatch(int eventCount, int length) {
+        return String.format("batch of %d events (%d bytes)", eventCount, length);
+    }
+
+    void post(byte[] content, int contentLength, boolean compressed) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(collectorUrl).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(deliveryTimeout));
+            connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(deliveryTimeout));
+            connection.setFixedLengthStreamingMode(contentLength);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            if (compressed) {
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+            if (authorizationToken != null) {
+                connection.setRequestProperty("Authorization", "Splunk " + authorizationToken);
+            }
+
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(content, 0, contentLength);
+            }
+
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("HTTP %d response: %s", responseCode, readResponse(connection.getErrorStream())));
+            }
+            // Read the response so the connection can be reused
+            readResponse(connection.getInputStream());
+        } catch (IOException ioEx) {
+            connection.disconnect();
+            throw ioEx;
+        }
+    }
+
+    static String readResponse(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return "";
+        }
+
+        StringBuilder answer = new StringBuilder();
+        byte[] buffer = new byte[ERROR_RESPONSE_LIMIT];
+        try (InputStream responseStream = inputStream) {
+            for (int length = responseStream.read(buffer); length >= 0; length = responseStream.read(buffer)) {
+                if (answer.length() < ERROR_RESPONSE_LIMIT) {
+                    answer.append(new String(buffer, 0, length, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        return answer.toString();
+    }
+
+    boolean isCpuTimeSupported() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    }
+
+    /*
+     * The CPU time of the current thread in nanoseconds; -1 if it cannot be measured
+     */
+    long getCurrentThreadCpuTime() {
+        return isCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    static double ratio(long uncompressed, long delivered) {
+        return (delivered > 0) ? (double) uncompressed / delivered : 0;
+    }
+
+    void registerMBean() {
+        String newClientObjectNameString = String.format("com.pronoia.splunk.httpec:type=%s,id=%s", this.getClass().getSimpleName(), getClientId());
+        try {
+            clientObjectName = new ObjectName(newClientObjectNameString);
+        } catch (MalformedObjectNameException malformedNameEx) {
+            log.warn("Failed to create ObjectName for string {} - MBean will not be registered", newClientObjectNameString, malformedNameEx);
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, clientObjectName);
+        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
+            log.warn("MBean already registered for compressing client {}", clientObjectName, allreadyExistsEx);
+            clientObjectName = null;
+        } catch (MBeanRegistrationException registrationEx) {
+            log.warn("MBean registration failure for compressing client {}", newClientObjectNameString, registrationEx);
+            clientObjectName = null;
+        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
+            log.warn("Invalid MBean for compressing client {}", newClientObjectNameString, nonCompliantMBeanEx);
+            clientObjectName = null;
+        }
+    }
+
+    void unregisterMBean() {
+        if (clientObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(clientObjectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
+                log.warn("Failed to unregister compressing client MBean {}", clientObjectName.getCanonicalName(), unregisterEx);
+            } finally {
+                clientObjectName = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector;
+
+import java.util.Date;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+
+public interface CompressingEventCollectorClientMBean {
+    String getClientId();
+    String getCollectorUrl();
+
+    int getCompressionLevel();
+    int getMinCompressionSize();
+    int getMaxBatchSize();
+    int getMaxBatchLength();
+    long getBatchPeriod();
+    int getMaxPendingBatches();
+
+    Date getStartTime();
+    Date getStopTime();
+
+    long getEventCount();
+    long getBatchCount();
+    long getCompressedBatchCount();
+    long getFailedBatchCount();
+    long getDiscardedBatchCount();
+    int getPendingBatchCount();
+    long getUncompressedBytes();
+    long getDeliveredBytes();
+    double getCompressionRatio();
+    long getCompressionCpuTime();
+
+    long getLastBatchEventCount();
+    long getLastBatchUncompressedBytes();
+    long getLastBatchDeliveredBytes();
+    double getLastBatchCompressionRatio();
+    long getLastBatchCompressionCpuTime();
+    long getLastBatchDeliveryTime();
+
+    void flush() throws EventDeliveryException;
+
+    void start();
+    void stop();
+    void restart();
+
+    boolean isRunning();
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector.eventbuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.jmx.internal.AttributeAggregate;
+
+import static com.pronoia.splunk.eventcollector.EventCollectorInfo.EVENT_BODY_KEY;
+
+/**
+ * Splunk Event Builder for attribute aggregates calculated across the ObjectNames matching a pattern.
+ */
+public class JmxAttributeAggregateEventBuilder extends JmxEventBuilderSupport<AttributeAggregate> {
+    public static final String OBJECT_COUNT_KEY = "objectCount";
+
+    @Override
+    public EventBuilder<AttributeAggregate> duplicate() {
+        JmxAttributeAggregateEventBuilder answer = new JmxAttributeAggregateEventBuilder();
+
+        answer.copyConfiguration(this);
+
+        return answer;
+    }
+
+    @Override
+    public String getSourceFieldValue(EventCollectorClient client) {
+        if (hasEventBody() && getEventBody().getSource() != null) {
+            return getEventBody().getSource();
+        }
+
+        return super.getSourceFieldValue(client);
+    }
+
+    @Override
+    public String getTimestampFieldValue() {
+        if (hasEventBody()) {
+            return String.format("%.3f", getEventBody().getTimestamp() / 1000.0);
+        }
+
+        return super.getTimestampFieldValue();
+    }
+
+    @Override
+    protected void addEventBodyToMap(Map<String, Object> map) {
+        AttributeAggregate aggregate = getEventBody();
+        Map<String, Object> aggregateEvent = new HashMap<>();
+
+        aggregateEvent.putAll(aggregate.getGroupProperties());
+        aggregateEvent.put(OBJECT_COUNT_KEY, aggregate.getObjectCount());
+        aggregateEvent.putAll(aggregate.getValues());
+
+        map.put(EVENT_BODY_KEY, aggregateEvent);
+    }
+
+}
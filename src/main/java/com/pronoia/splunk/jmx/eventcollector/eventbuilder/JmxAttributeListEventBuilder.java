@@ -97,7 +97,7 @@ public class JmxAttributeListEventBuilder extends JmxEventBuilderSupport<Attribu
      */
     @Override
     protected void addEventBodyToMap(Map<String, Object> map) {
-        try (SplunkMDCHelper helper = createMdcHelper()) {
+        try (SplunkMDCHelper helper = createEventBodyMdcHelper()) {
             log.debug("{}.serializeBody() ...", this.getClass().getName());
 
             Map<String, Object> eventBodyObject = new HashMap<>();
@@ -63,6 +63,18 @@ public abstract class JmxEventBuilderSupport<E> extends JacksonEventBuilderSuppo
         this.includeEmptyObjectNameLists = includeEmptyObjectNameLists;
     }
 
+    /**
+     * Create the MDC helper for building an event body.
+     *
+     * The MDC is only populated when debug logging is enabled, since the body building code does not log at higher
+     * levels.  The nested add* methods do not set the MDC themselves - they rely on the caller that builds the event.
+     *
+     * @return a new {@link SplunkMDCHelper} if debug logging is enabled; null otherwise
+     */
+    protected SplunkMDCHelper createEventBodyMdcHelper() {
+        return log.isDebugEnabled() ? createMdcHelper() : null;
+    }
+
     /**
      * Add a JSON representation of a JMX OpenMBean SimpleType instance to an existing JSON Object.
      *
@@ -125,23 +137,21 @@ public abstract class JmxEventBuilderSupport<E> extends JacksonEventBuilderSuppo
         if (jsonObject == null) {
             throw new NullPointerException("The JSONObject argument cannot be null");
         }
-        try (SplunkMDCHelper helper = createMdcHelper()) {
-            for (String key : compositeData.getCompositeType().keySet()) {
-                Object value = compositeData.get(key);
-                if (value instanceof CompositeData) {
-                    log.trace("Processing CompositeData nested in CompositeData for {} : {}", key, value);
-                    jsonObject.put(key, createCompositeDataJSON((CompositeData) value));
-                } else if (value instanceof TabularData) {
-                    log.trace("Processing TabularData nested in CompositeData for {} : {}", key, value);
-                    jsonObject.put(key, createTabularDataJSON((TabularData) value));
-                } else if (value instanceof SimpleType) {
-                    log.trace("Processing SimpleType nested in CompositeData for {} : {}", key, value);
-                    addSimpleType(jsonObject, key, (SimpleType) value);
+        for (String key : compositeData.getCompositeType().keySet()) {
+            Object value = compositeData.get(key);
+            if (value instanceof CompositeData) {
+                log.trace("Processing CompositeData nested in CompositeData for {} : {}", key, value);
+                jsonObject.put(key, createCompositeDataJSON((CompositeData) value));
+            } else if (value instanceof TabularData) {
+                log.trace("Processing TabularData nested in CompositeData for {} : {}", key, value);
+                jsonObject.put(key, createTabularDataJSON((TabularData) value));
+            } else if (value instanceof SimpleType) {
+                log.trace("Processing SimpleType nested in CompositeData for {} : {}", key, value);
+                addSimpleType(jsonObject, key, (SimpleType) value);
 
-                } else {
-                    log.trace("Processing Nested {} for {} : {}", value.getClass().getName(), key, value);
-                    jsonObject.put(key, value);
-                }
+            } else {
+                log.trace("Processing Nested {} for {} : {}", value.getClass().getName(), key, value);
+                jsonObject.put(key, value);
             }
         }
     }
@@ -187,54 +197,52 @@ public abstract class JmxEventBuilderSupport<E> extends JacksonEventBuilderSuppo
         List<String> indexNames = tabularType.getIndexNames();
         int counter = 0;
 
-        try (SplunkMDCHelper helper = createMdcHelper()) {
-            for (CompositeData tabularDataRowValue : (Collection<CompositeData>) tabularData.values()) {
-                counter++;
-                // Build the JSON Object key
-                log.trace("Building JSON Key for {}", counter);
-                String jsonKey;
-                Object[] keyValues = tabularDataRowValue.getAll(indexNames.toArray(new String[indexNames.size()]));
-                if (keyValues != null && keyValues.length > 0) {
-                    switch (keyValues.length) {
-                        case 1:
-                            jsonKey = keyValues[0].toString();
-                            break;
-                        default:
-                            StringBuilder jsonKeyBuilder = new StringBuilder(keyValues[0].toString());
-                            for (int i = 1; i < keyValues.length; ++i) {
-                                jsonKeyBuilder.append('-').append(keyValues[i].toString());
-                            }
-                            jsonKey = jsonKeyBuilder.toString();
-                    }
-                } else {
-                    jsonKey = Integer.toString(counter);
+        for (CompositeData tabularDataRowValue : (Collection<CompositeData>) tabularData.values()) {
+            counter++;
+            // Build the JSON Object key
+            log.trace("Building JSON Key for {}", counter);
+            String jsonKey;
+            Object[] keyValues = tabularDataRowValue.getAll(indexNames.toArray(new String[indexNames.size()]));
+            if (keyValues != null && keyValues.length > 0) {
+                switch (keyValues.length) {
+                    case 1:
+                        jsonKey = keyValues[0].toString();
+                        break;
+                    default:
+                        StringBuilder jsonKeyBuilder = new StringBuilder(keyValues[0].toString());
+                        for (int i = 1; i < keyValues.length; ++i) {
+                            jsonKeyBuilder.append('-').append(keyValues[i].toString());
+                        }
+                        jsonKey = jsonKeyBuilder.toString();
                 }
+            } else {
+                jsonKey = Integer.toString(counter);
+            }
 
-                // Build the JSON Object Value
-                log.trace("Building JSON Value for {} ({})", counter, jsonKey);
-                Map<String, Object> compositeDataObject = new HashMap<>();
-                for (String key : tabularDataRowValue.getCompositeType().keySet()) {
-                    if (indexNames.contains(key)) {
-                        log.trace("Found index key - skipping: {}", key);
+            // Build the JSON Object Value
+            log.trace("Building JSON Value for {} ({})", counter, jsonKey);
+            Map<String, Object> compositeDataObject = new HashMap<>();
+            for (String key : tabularDataRowValue.getCompositeType().keySet()) {
+                if (indexNames.contains(key)) {
+                    log.trace("Found index key - skipping: {}", key);
+                } else {
+                    log.trace("Processing key: {}", key);
+                    Object columnValue = tabularDataRowValue.get(key);
+                    if (columnValue instanceof TabularData) {
+                        addTabularData(jsonObject, (TabularData) columnValue);
+                    } else if (columnValue instanceof CompositeData) {
+                        addCompositeData(compositeDataObject, (CompositeData) columnValue);
+                    } else if (columnValue instanceof SimpleType) {
+                        addSimpleType(compositeDataObject, key, (SimpleType) columnValue);
                     } else {
-                        log.trace("Processing key: {}", key);
-                        Object columnValue = tabularDataRowValue.get(key);
-                        if (columnValue instanceof TabularData) {
-                            addTabularData(jsonObject, (TabularData) columnValue);
-                        } else if (columnValue instanceof CompositeData) {
-                            addCompositeData(compositeDataObject, (CompositeData) columnValue);
-                        } else if (columnValue instanceof SimpleType) {
-                            addSimpleType(compositeDataObject, key, (SimpleType) columnValue);
-                        } else {
-                            compositeDataObject.put(key, columnValue);
-                        }
+                        compositeDataObject.put(key, columnValue);
                     }
                 }
-
-                // Add the value to the JSON tabular data
-                log.trace("Adding row {} : {}", jsonKey, compositeDataObject);
-                jsonObject.put(jsonKey, compositeDataObject);
             }
+
+            // Add the value to the JSON tabular data
+            log.trace("Adding row {} : {}", jsonKey, compositeDataObject);
+            jsonObject.put(jsonKey, compositeDataObject);
         }
     }
 
@@ -246,56 +254,62 @@ public abstract class JmxEventBuilderSupport<E> extends JacksonEventBuilderSuppo
      * @param includeAttributeWithValueOfZero flag to control inclusion of values that evaluate to '0'
      */
     public void addAttribute(Map<String, Object> jsonObject, Attribute attribute, boolean includeAttributeWithValueOfZero) {
-        try (SplunkMDCHelper helper = createMdcHelper()) {
-            log.debug("{}.serializeBody() ...", this.getClass().getName());
+        log.debug("{}.serializeBody() ...", this.getClass().getName());
 
-            String attributeName = attribute.getName();
-            Object attributeValue = attribute.getValue();
+        String attributeName = attribute.getName();
+        Object attributeValue = attribute.getValue();
 
-            log.trace("Collecting attribute {} = {}", attributeName, attributeValue);
+        log.trace("Collecting attribute {} = {}", attributeName, attributeValue);
 
-            if (attributeValue == null) {
-                if (includeNullAttributes) {
-                    jsonObject.put(attributeName, attributeValue);
-                } else {
-                    log.debug("Excluding attribute {} with null value", attributeName);
-                }
-            } else if (attributeValue instanceof ObjectName) {
-                ObjectName objectName = (ObjectName) attributeValue;
-                jsonObject.put(attributeName, objectName.getCanonicalName());
-            } else if (attributeValue instanceof ObjectName[]) {
-                ObjectName[] objectNames = (ObjectName[]) attributeValue;
-                if (objectNames.length > 0) {
-                    List<String> objectNameList = new LinkedList<>();
-                    for (ObjectName objectName : objectNames) {
-                        objectNameList.add(objectName.toString());
-                    }
-                    jsonObject.put(attributeName, objectNameList);
-                } else if (includeEmptyObjectNameLists) {
-                    jsonObject.put(attributeName, new LinkedList<>());
-                } else {
-                    log.debug("Excluding empty list attribute {}", attributeName);
-                }
-            } else if (attributeValue instanceof CompositeDataSupport) {
-                CompositeDataSupport compositeDataSupport = (CompositeDataSupport) attributeValue;
-                Map<String, Object> compositeDataObject = new HashMap<>();
-                for (String key : compositeDataSupport.getCompositeType().keySet()) {
-                    compositeDataObject.put(key, compositeDataSupport.get(key));
+        if (attributeValue == null) {
+            if (includeNullAttributes) {
+                jsonObject.put(attributeName, attributeValue);
+            } else {
+                log.debug("Excluding attribute {} with null value", attributeName);
+            }
+        } else if (attributeValue instanceof ObjectName) {
+            ObjectName objectName = (ObjectName) attributeValue;
+            jsonObject.put(attributeName, objectName.getCanonicalName());
+        } else if (attributeValue instanceof ObjectName[]) {
+            ObjectName[] objectNames = (ObjectName[]) attributeValue;
+            if (objectNames.length > 0) {
+                List<String> objectNameList = new LinkedList<>();
+                for (ObjectName objectName : objectNames) {
+                    objectNameList.add(objectName.toString());
                 }
-                jsonObject.put(attributeName, compositeDataObject);
+                jsonObject.put(attributeName, objectNameList);
+            } else if (includeEmptyObjectNameLists) {
+                jsonObject.put(attributeName, new LinkedList<>());
             } else {
-                String attributeValueAsString = attributeValue.toString();
-                if (attributeValueAsString.isEmpty()) {
-                    if (includeEmptyAttributes) {
-                        jsonObject.put(attributeName, attributeValue);
-                    } else {
-                        log.debug("Ignoring empty string value for attribute {}", attributeName);
-                    }
-                } else if (!includeAttributeWithValueOfZero && (attributeValueAsString.equals("0") || attributeValueAsString.equals("0.0"))) {
-                    log.debug("Ignoring zero value for attribute {} = {}", attributeName, attributeValueAsString);
-                } else {
+                log.debug("Excluding empty list attribute {}", attributeName);
+            }
+        } else if (attributeValue instanceof CompositeDataSupport) {
+            CompositeDataSupport compositeDataSupport = (CompositeDataSupport) attributeValue;
+            Map<String, Object> compositeDataObject = new HashMap<>();
+            for (String key : compositeDataSupport.getCompositeType().keySet()) {
+                compositeDataObject.put(key, compositeDataSupport.get(key));
+            }
+            jsonObject.put(attributeName, compositeDataObject);
+        } else if (attributeValue instanceof Map) {
+            // e.g. a MemoryUsage read directly from a platform MXBean - built like the CompositeData Map above, so
+            // the items are serialized in the same order
+            Map<Object, Object> mapObject = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) attributeValue).entrySet()) {
+                mapObject.put(entry.getKey(), entry.getValue());
+            }
+            jsonObject.put(attributeName, mapObject);
+        } else {
+            String attributeValueAsString = attributeValue.toString();
+            if (attributeValueAsString.isEmpty()) {
+                if (includeEmptyAttributes) {
                     jsonObject.put(attributeName, attributeValue);
+                } else {
+                    log.debug("Ignoring empty string value for attribute {}", attributeName);
                 }
+            } else if (!includeAttributeWithValueOfZero && (attributeValueAsString.equals("0") || attributeValueAsString.equals("0.0"))) {
+                log.debug("Ignoring zero value for attribute {} = {}", attributeName, attributeValueAsString);
+            } else {
+                jsonObject.put(attributeName, attributeValue);
             }
         }
     }
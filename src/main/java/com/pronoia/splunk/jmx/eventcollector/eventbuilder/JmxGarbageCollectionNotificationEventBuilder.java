@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector.eventbuilder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.Notification;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.eventbuilder.EventBuilderSupport;
+
+import static com.pronoia.splunk.eventcollector.EventCollectorInfo.EVENT_BODY_KEY;
+
+/**
+ * Splunk Event Builder for JVM Garbage Collection Notifications.
+ *
+ * <p>The userData of a GC notification (see com.sun.management.GarbageCollectionNotificationInfo) is decoded directly
+ * into a flat event body - the collector name, action, cause, duration and the used bytes of each memory pool before
+ * and after the collection - instead of walking the nested CompositeData/TabularData structure.  Notifications of
+ * any other type are handled by the generic {@link JmxNotificationEventBuilder} logic.
+ */
+public class JmxGarbageCollectionNotificationEventBuilder extends JmxNotificationEventBuilder {
+    public static final String GARBAGE_COLLECTION_NOTIFICATION_TYPE = "com.sun.management.gc.notification";
+
+    public static final String GC_NAME_KEY = "gcName";
+    public static final String GC_ACTION_KEY = "gcAction";
+    public static final String GC_CAUSE_KEY = "gcCause";
+    public static final String GC_ID_KEY = "gcId";
+    public static final String GC_START_TIME_KEY = "gcStartTime";
+    public static final String GC_END_TIME_KEY = "gcEndTime";
+    public static final String GC_DURATION_KEY = "gcDuration";
+    public static final String USED_BEFORE_GC_SUFFIX = ".usedBeforeGc";
+    public static final String USED_AFTER_GC_SUFFIX = ".usedAfterGc";
+
+    public static final String GC_INFO_ITEM = "gcInfo";
+    public static final String GC_INFO_DURATION_ITEM = "duration";
+    public static final String MEMORY_USAGE_BEFORE_GC_ITEM = "memoryUsageBeforeGc";
+    public static final String MEMORY_USAGE_AFTER_GC_ITEM = "memoryUsageAfterGc";
+    public static final String MEMORY_USAGE_USED_ITEM = "used";
+
+    // The set of memory pools is fixed for the life of the JVM, so the per-pool keys are only built once
+    static final ConcurrentMap<String, String> USED_BEFORE_GC_KEYS = new ConcurrentHashMap<>();
+    static final ConcurrentMap<String, String> USED_AFTER_GC_KEYS = new ConcurrentHashMap<>();
+
+    boolean includeMemoryPoolUsage = true;
+
+    public boolean isIncludeMemoryPoolUsage() {
+        return includeMemoryPoolUsage;
+    }
+
+    /**
+     * Include the used bytes of each memory pool before and after the collection.
+     *
+     * @param includeMemoryPoolUsage if true, the per-pool usage will be included in the event body
+     */
+    public void setIncludeMemoryPoolUsage(boolean includeMemoryPoolUsage) {
+        this.includeMemoryPoolUsage = includeMemoryPoolUsage;
+    }
+
+    /**
+     * Determine if a notification is a JVM garbage collection notification.
+     *
+     * @param notification the notification to check
+     *
+     * @return true if the notification is a GC notification with CompositeData userData; false otherwise
+     */
+    public static boolean isGarbageCollectionNotification(Notification notification) {
+        return notification != null
+            && GARBAGE_COLLECTION_NOTIFICATION_TYPE.equals(notification.getType())
+            && notification.getUserData() instanceof CompositeData;
+    }
+
+    @Override
+    public EventBuilder<Notification> duplicate() {
+        JmxGarbageCollectionNotificationEventBuilder answer = new JmxGarbageCollectionNotificationEventBuilder();
+
+        answer.copyConfiguration(this);
+
+        return answer;
+    }
+
+    @Override
+    protected void addEventBodyToMap(Map<String, Object> map) {
+        if (!includeUserData || !isGarbageCollectionNotification(getEventBody())) {
+            super.addEventBodyToMap(map);
+            return;
+        }
+
+        Map<String, Object> notificationEvent = new HashMap<>();
+
+        addGarbageCollectionInfo(notificationEvent, (CompositeData) getEventBody().getUserData());
+
+        map.put(EVENT_BODY_KEY, notificationEvent);
+    }
+
+    /**
+     * Add the flattened values of a GarbageCollectionNotificationInfo to the event Map.
+     *
+     * @param targetMap the Map to add the values to
+     * @param gcNotificationInfo the CompositeData form of the GarbageCollectionNotificationInfo
+     */
+    public void addGarbageCollectionInfo(Map<String, Object> targetMap, CompositeData gcNotificationInfo) {
+        targetMap.put(GC_NAME_KEY, gcNotificationInfo.get(GC_NAME_KEY));
+        targetMap.put(GC_ACTION_KEY, gcNotificationInfo.get(GC_ACTION_KEY));
+        targetMap.put(GC_CAUSE_KEY, gcNotificationInfo.get(GC_CAUSE_KEY));
+
+        CompositeData gcInfo = (CompositeData) gcNotificationInfo.get(GC_INFO_ITEM);
+        if (gcInfo == null) {
+            log.debug("GC notification does not contain {} - only the collector details will be included", GC_INFO_ITEM);
+            return;
+        }
+
+        targetMap.put(GC_ID_KEY, gcInfo.get("id"));
+        targetMap.put(GC_START_TIME_KEY, gcInfo.get("startTime"));
+        targetMap.put(GC_END_TIME_KEY, gcInfo.get("endTime"));
+        targetMap.put(GC_DURATION_KEY, gcInfo.get(GC_INFO_DURATION_ITEM));
+
+        if (includeMemoryPoolUsage) {
+            addMemoryPoolUsedBytes(targetMap, (TabularData) gcInfo.get(MEMORY_USAGE_BEFORE_GC_ITEM), USED_BEFORE_GC_KEYS, USED_BEFORE_GC_SUFFIX);
+            addMemoryPoolUsedBytes(targetMap, (TabularData) gcInfo.get(MEMORY_USAGE_AFTER_GC_ITEM), USED_AFTER_GC_KEYS, USED_AFTER_GC_SUFFIX);
+        }
+    }
+
+    void addMemoryPoolUsedBytes(Map<String, Object> targetMap, TabularData memoryUsageTable, ConcurrentMap<String, String> keyCache, String keySuffix) {
+        if (memoryUsageTable == null) {
+            return;
+        }
+
+        // Rows are Map<String, MemoryUsage> entries converted to CompositeData with "key" and "value" items
+        for (CompositeData row : (Collection<CompositeData>) memoryUsageTable.values()) {
+            String poolName = (String) row.get("key");
+            CompositeData memoryUsage = (CompositeData) row.get("value");
+            if (poolName != null && memoryUsage != null) {
+                String key = keyCache.get(poolName);
+                if (key == null) {
+                    key = poolName + keySuffix;
+                    keyCache.putIfAbsent(poolName, key);
+                }
+                targetMap.put(key, memoryUsage.get(MEMORY_USAGE_USED_ITEM));
+            }
+        }
+    }
+
+    @Override
+    protected void copyConfiguration(EventBuilderSupport<Notification> sourceEventBuilder) {
+        super.copyConfiguration(sourceEventBuilder);
+
+        if (sourceEventBuilder instanceof JmxGarbageCollectionNotificationEventBuilder) {
+            JmxGarbageCollectionNotificationEventBuilder sourceGcEventBuilder = (JmxGarbageCollectionNotificationEventBuilder) sourceEventBuilder;
+            this.includeMemoryPoolUsage = sourceGcEventBuilder.includeMemoryPoolUsage;
+        }
+    }
+
+    @Override
+    protected void appendConfiguration(StringBuilder builder) {
+        super.appendConfiguration(builder);
+
+        builder.append(" includeMemoryPoolUsage='").append(includeMemoryPoolUsage).append('\'');
+
+        return;
+    }
+
+}
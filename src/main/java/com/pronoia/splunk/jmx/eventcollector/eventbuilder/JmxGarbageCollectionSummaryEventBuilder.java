@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector.eventbuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.jmx.internal.GarbageCollectionSummary;
+
+import static com.pronoia.splunk.eventcollector.EventCollectorInfo.EVENT_BODY_KEY;
+
+/**
+ * Splunk Event Builder for windowed garbage collection statistics.
+ *
+ * <p>The allocatedBytes and allocationRate fields are measured for the whole JVM, so they are the same in the events of
+ * all the collectors for a window.
+ */
+public class JmxGarbageCollectionSummaryEventBuilder extends JmxEventBuilderSupport<GarbageCollectionSummary> {
+    public static final String WINDOW_START_TIME_KEY = "windowStartTime";
+    public static final String WINDOW_END_TIME_KEY = "windowEndTime";
+    public static final String COLLECTION_COUNT_KEY = "gcCount";
+    public static final String OUTLIER_COUNT_KEY = "gcOutlierCount";
+    public static final String TOTAL_PAUSE_KEY = "gcTotalPause";
+    public static final String MAX_PAUSE_KEY = "gcMaxPause";
+    public static final String P99_PAUSE_KEY = "gcP99Pause";
+    public static final String ALLOCATED_BYTES_KEY = "allocatedBytes";
+    public static final String ALLOCATION_RATE_KEY = "allocationRate";
+    public static final String PROMOTED_BYTES_KEY = "promotedBytes";
+    public static final String PROMOTION_RATE_KEY = "promotionRate";
+
+    @Override
+    public EventBuilder<GarbageCollectionSummary> duplicate() {
+        JmxGarbageCollectionSummaryEventBuilder answer = new JmxGarbageCollectionSummaryEventBuilder();
+
+        answer.copyConfiguration(this);
+
+        return answer;
+    }
+
+    @Override
+    public String getSourceFieldValue(EventCollectorClient client) {
+        if (hasEventBody() && getEventBody().getSource() != null) {
+            return getEventBody().getSource();
+        }
+
+        return super.getSourceFieldValue(client);
+    }
+
+    @Override
+    public String getTimestampFieldValue() {
+        if (hasEventBody()) {
+            return String.format("%.3f", getEventBody().getWindowEndTime() / 1000.0);
+        }
+
+        return super.getTimestampFieldValue();
+    }
+
+    @Override
+    protected void addEventBodyToMap(Map<String, Object> map) {
+        GarbageCollectionSummary summary = getEventBody();
+        Map<String, Object> summaryEvent = new HashMap<>();
+
+        summaryEvent.put(JmxGarbageCollectionNotificationEventBuilder.GC_NAME_KEY, summary.getGcName());
+        summaryEvent.put(WINDOW_START_TIME_KEY, summary.getWindowStartTime());
+        summaryEvent.put(WINDOW_END_TIME_KEY, summary.getWindowEndTime());
+        summaryEvent.put(COLLECTION_COUNT_KEY, summary.getCollectionCount());
+        summaryEvent.put(OUTLIER_COUNT_KEY, summary.getOutlierCount());
+        summaryEvent.put(TOTAL_PAUSE_KEY, summary.getTotalPause());
+        summaryEvent.put(MAX_PAUSE_KEY, summary.getMaxPause());
+        summaryEvent.put(P99_PAUSE_KEY, summary.getP99Pause());
+        summaryEvent.put(ALLOCATED_BYTES_KEY, summary.getAllocatedBytes());
+        summaryEvent.put(ALLOCATION_RATE_KEY, summary.getAllocationRate());
+        summaryEvent.put(PROMOTED_BYTES_KEY, summary.getPromotedBytes());
+        summaryEvent.put(PROMOTION_RATE_KEY, summary.getPromotionRate());
+
+        map.put(EVENT_BODY_KEY, summaryEvent);
+    }
+
+}
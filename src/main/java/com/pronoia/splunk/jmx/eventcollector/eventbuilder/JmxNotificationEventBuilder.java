@@ -25,6 +25,7 @@ import javax.management.openmbean.TabularData;
 
 import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
 import com.pronoia.splunk.eventcollector.eventbuilder.EventBuilderSupport;
 
 import static com.pronoia.splunk.eventcollector.EventCollectorInfo.EVENT_BODY_KEY;
@@ -132,9 +133,13 @@ public class JmxNotificationEventBuilder extends JmxEventBuilderSupport<Notifica
 
     @Override
     protected void addEventBodyToMap(Map<String, Object> map) {
-        Map<String, Object> notificationEvent = new HashMap<>();
+        if (!includeUserData) {
+            return;
+        }
+
+        try (SplunkMDCHelper helper = createEventBodyMdcHelper()) {
+            Map<String, Object> notificationEvent = new HashMap<>();
 
-        if (includeUserData) {
             Object userData = getEventBody().getUserData();
             if (userData != null) {
                 if (userData instanceof CompositeData) {
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Locale;
+
+/**
+ * A parsed aggregate definition - e.g. sum(QueueSize), max(AverageEnqueueTime) or p95(EnqueueCount).
+ *
+ * <p>Supported functions are sum, min, max, avg, count (objects with a numeric value), nonzero (objects with a
+ * non-zero value) and pNN (nearest-rank percentile, e.g. p50, p99 or p99.9).  Boolean values count as 1 or 0.
+ */
+public class AggregateSpec {
+    public enum Function {
+        SUM, MIN, MAX, AVG, COUNT, NONZERO, PERCENTILE
+    }
+
+    final Function function;
+    final double percentile;
+    final String attributeName;
+    final String key;
+
+    AggregateSpec(Function function, double percentile, String attributeName, String functionName) {
+        this.function = function;
+        this.percentile = percentile;
+        this.attributeName = attributeName;
+        this.key = attributeName + "." + functionName;
+    }
+
+    /**
+     * Parse an aggregate definition.
+     *
+     * @param definition the definition in the form function(attribute)
+     *
+     * @return the parsed definition
+     *
+     * @throws IllegalArgumentException if the definition is invalid
+     */
+    public static AggregateSpec parse(String definition) {
+        if (definition == null) {
+            throw new IllegalArgumentException("Aggregate definition cannot be null");
+        }
+
+        String trimmedDefinition = definition.trim();
+        int openIndex = trimmedDefinition.indexOf('(');
+        if (openIndex <= 0 || !trimmedDefinition.endsWith(")")) {
+            throw new IllegalArgumentException("Aggregate definition must be in the form function(attribute): " + definition);
+        }
+
+        String functionName = trimmedDefinition.substring(0, openIndex).trim().toLowerCase(Locale.ROOT);
+        String attributeName = trimmedDefinition.substring(openIndex + 1, trimmedDefinition.length() - 1).trim();
+        if (attributeName.isEmpty()) {
+            throw new IllegalArgumentException("Aggregate definition is missing the attribute name: " + definition);
+        }
+
+        if (functionName.startsWith("p") && functionName.length() > 1 && Character.isDigit(functionName.charAt(1))) {
+            double percentile;
+            try {
+                percentile = Double.parseDouble(functionName.substring(1));
+            } catch (NumberFormatException numberFormatEx) {
+                throw new IllegalArgumentException("Invalid percentile in aggregate definition: " + definition, numberFormatEx);
+            }
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be greater than 0 and at most 100: " + definition);
+            }
+            return new AggregateSpec(Function.PERCENTILE, percentile, attributeName, functionName);
+        }
+
+        Function function;
+        try {
+            function = Function.valueOf(functionName.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException unknownFunctionEx) {
+            throw new IllegalArgumentException("Unknown aggregate function in definition: " + definition, unknownFunctionEx);
+        }
+        if (function == Function.PERCENTILE) {
+            throw new IllegalArgumentException("Percentiles must be specified as pNN: " + definition);
+        }
+
+        return new AggregateSpec(function, 0, attributeName, functionName);
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * Get the name of the aggregate in the event - e.g. QueueSize.sum.
+     *
+     * @return the event key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Map;
+
+/**
+ * Immutable result of aggregating the attributes of a group of ObjectNames for one polling cycle.
+ */
+public class AttributeAggregate {
+    final String source;
+    final long timestamp;
+    final Map<String, String> groupProperties;
+    final long objectCount;
+    final Map<String, Object> values;
+
+    public AttributeAggregate(String source, long timestamp, Map<String, String> groupProperties, long objectCount, Map<String, Object> values) {
+        this.source = source;
+        this.timestamp = timestamp;
+        this.groupProperties = groupProperties;
+        this.objectCount = objectCount;
+        this.values = values;
+    }
+
+    /**
+     * Get the source of the aggregate - the ObjectName pattern.
+     *
+     * @return the source
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the ObjectName key properties identifying the group.
+     *
+     * @return the group key property values
+     */
+    public Map<String, String> getGroupProperties() {
+        return groupProperties;
+    }
+
+    public long getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Get the aggregate values, keyed by {@link AggregateSpec#getKey()}.
+     *
+     * @return the aggregate values
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{source='%s' groupProperties=%s objectCount=%d values=%s}",
+            this.getClass().getSimpleName(), source, groupProperties, objectCount, values);
+    }
+}
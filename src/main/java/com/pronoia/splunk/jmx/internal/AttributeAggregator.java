@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.management.ObjectName;
+
+/**
+ * Aggregates attribute values across the ObjectNames polled in one cycle, grouped by ObjectName key properties.
+ */
+public class AttributeAggregator {
+    final String source;
+    final List<AggregateSpec> aggregateSpecs;
+    final Set<String> groupProperties;
+    final Set<String> percentileAttributes = new TreeSet<>();
+
+    Map<Map<String, String>, Group> groups = new HashMap<>();
+
+    /**
+     * Create an aggregator.
+     *
+     * @param source the source for the aggregates (the ObjectName pattern)
+     * @param aggregateSpecs the aggregates to calculate
+     * @param groupProperties the ObjectName key properties used to group the ObjectNames - empty for a single group
+     */
+    public AttributeAggregator(String source, Collection<AggregateSpec> aggregateSpecs, Set<String> groupProperties) {
+        this.source = source;
+        this.aggregateSpecs = new LinkedList<>(aggregateSpecs);
+        this.groupProperties = new TreeSet<>(groupProperties);
+
+        for (AggregateSpec aggregateSpec : aggregateSpecs) {
+            if (aggregateSpec.getFunction() == AggregateSpec.Function.PERCENTILE) {
+                percentileAttributes.add(aggregateSpec.getAttributeName());
+            }
+        }
+    }
+
+    /**
+     * Add the attribute values of an ObjectName to the current cycle.
+     *
+     * @param objectName the ObjectName
+     * @param attributeMap the attribute values
+     */
+    public synchronized void record(ObjectName objectName, Map<String, Object> attributeMap) {
+        Map<String, String> groupKey = new TreeMap<>();
+        for (String groupProperty : groupProperties) {
+            String propertyValue = objectName.getKeyProperty(groupProperty);
+            groupKey.put(groupProperty, (propertyValue != null) ? propertyValue : "");
+        }
+
+        Group group = groups.get(groupKey);
+        if (group == null) {
+            group = new Group(groupKey);
+            groups.put(groupKey, group);
+        }
+
+        ++group.objectCount;
+        for (AggregateSpec aggregateSpec : aggregateSpecs) {
+            String attributeName = aggregateSpec.getAttributeName();
+            AttributeStatistics statistics = group.attributeStatisticsMap.get(attributeName);
+            if (statistics == null) {
+                statistics = new AttributeStatistics(percentileAttributes.contains(attributeName));
+                group.attributeStatisticsMap.put(attributeName, statistics);
+            } else if (statistics.lastObjectCount == group.objectCount) {
+                // Several aggregates of the same attribute
+                continue;
+            }
+            statistics.lastObjectCount = group.objectCount;
+
+            Object value = attributeMap.get(attributeName);
+            if (value instanceof Number) {
+                statistics.add(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                statistics.add(((Boolean) value) ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Complete the current cycle.
+     *
+     * @param timestamp the timestamp for the aggregates (milliseconds since the epoch)
+     *
+     * @return the aggregates for each group with at least one ObjectName
+     */
+    public synchronized List<AttributeAggregate> drain(long timestamp) {
+        List<AttributeAggregate> answer = new LinkedList<>();
+
+        for (Group group : groups.values()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (AggregateSpec aggregateSpec : aggregateSpecs) {
+                Object value = group.attributeStatisticsMap.get(aggregateSpec.getAttributeName()).calculate(aggregateSpec);
+                if (value != null) {
+                    values.put(aggregateSpec.getKey(), value);
+                }
+            }
+            answer.add(new AttributeAggregate(source, timestamp, group.groupProperties, group.objectCount, values));
+        }
+
+        groups = new HashMap<>();
+
+        return answer;
+    }
+
+    /*
+     * Integral values are reported as longs so counters are not rendered as floating point numbers
+     */
+    static Number toNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < (1L << 53)) {
+            return (long) value;
+        }
+
+        return value;
+    }
+
+    static class Group {
+        final Map<String, String> groupProperties;
+        final Map<String, AttributeStatistics> attributeStatisticsMap = new HashMap<>();
+        long objectCount;
+
+        Group(Map<String, String> groupProperties) {
+            this.groupProperties = groupProperties;
+        }
+    }
+
+    static class AttributeStatistics {
+        final boolean retainValues;
+
+        long lastObjectCount;
+        int count;
+        int nonZeroCount;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double[] values;
+
+        AttributeStatistics(boolean retainValues) {
+            this.retainValues = retainValues;
+            if (retainValues) {
+                values = new double[16];
+            }
+        }
+
+        void add(double value) {
+            if (retainValues) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[count] = value;
+            }
+            ++count;
+            if (value != 0) {
+                ++nonZeroCount;
+            }
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        Object calculate(AggregateSpec aggregateSpec) {
+            switch (aggregateSpec.getFunction()) {
+                case SUM:
+                    return toNumber(sum);
+                case COUNT:
+                    return (long) count;
+                case NONZERO:
+                    return (long) nonZeroCount;
+                default:
+                    break;
+            }
+
+            if (count == 0) {
+                return null;
+            }
+
+            switch (aggregateSpec.getFunction()) {
+                case MIN:
+                    return toNumber(min);
+                case MAX:
+                    return toNumber(max);
+                case AVG:
+                    return sum / count;
+                case PERCENTILE:
+                    return toNumber(percentile(aggregateSpec.getPercentile()));
+                default:
+                    return null;
+            }
+        }
+
+        /*
+         * Nearest-rank percentile
+         */
+        double percentile(double percentile) {
+            double[] sortedValues = Arrays.copyOf(values, count);
+            Arrays.sort(sortedValues);
+            int rank = (int) Math.ceil(percentile / 100.0 * count);
+            return sortedValues[Math.max(rank, 1) - 1];
+        }
+    }
+}
@@ -16,19 +16,33 @@
  */
 package com.pronoia.splunk.jmx.internal;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.Attribute;
@@ -36,20 +50,25 @@ import javax.management.AttributeList;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
+import javax.management.JMX;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
 import javax.management.MBeanRegistrationException;
-import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.NotCompliantMBeanException;
 import javax.management.ObjectName;
+import javax.management.QueryExp;
 import javax.management.ReflectionException;
 
 import com.pronoia.splunk.eventcollector.EventBuilder;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
 import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.jmx.BulkAttributeReader;
+import com.pronoia.splunk.jmx.BulkAttributeReaderMBean;
 import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeAggregateEventBuilder;
 import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeListEventBuilder;
 
 import org.slf4j.Logger;
@@ -58,16 +77,38 @@ import org.slf4j.MDC;
 
 
 public class AttributeChangeMonitorRunnable implements Runnable, AttributeChangeMonitorRunnableMBean {
+    public static final String TOP_RANK_FIELD = "topRank";
+    public static final String STALENESS_FIELD = "staleness";
+    static final long BULK_ATTRIBUTE_READER_CHECK_PERIOD = TimeUnit.MINUTES.toMillis(5);
+
     static AtomicInteger changeMonitorRunnableCounter = new AtomicInteger(1);
 
     final SplunkJmxAttributeChangeMonitor changeMonitor;
     final ObjectName queryObjectNamePattern;
+    final QueryExp queryFilter;
     final String[] cachedAttributeArray;
     final Set<String> observedAttributes;
     final Set<String> excludedAttributes;
     final Set<String> collectedAttributes;
     final int maxSuppressedDuplicates;
     final EventCollectorClient splunkClient;
+    final AttributeChangeStateStore stateStore;
+    final boolean sendObjectEvents;
+    final DerivedAttribute[] derivedAttributes;
+    final AttributePath[] attributePaths;
+    final Set<String> pathOnlyAttributes;
+    final AttributeAggregator aggregator;
+    final TopNSelector topSelector;
+    final long pollTimeBudgetNanos;
+    final ConcurrentMap<ObjectName, Long> collectionTimes;
+    final AttributeTierCache tierCache;
+    final Map<String, Long> configuredTierPeriods;
+    final long attributeCostBudgetNanos;
+    final PlatformAttributeReader platformAttributeReader;
+    final MBeanServerConnection mbeanServerConnection;
+    final Map<String, String> eventFields;
+    final Partitioner partitioner;
+    final String partitionTarget;
 
     Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -75,12 +116,32 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
     ObjectName changeMonitorRunnableObjectName;
 
     EventBuilder<AttributeList> splunkEventBuilder;
+    EventBuilder<AttributeAggregate> aggregateEventBuilder;
+
+    ThreadLocal<EventBuilder<AttributeList>> threadEventBuilder = new ThreadLocal<EventBuilder<AttributeList>>() {
+        @Override
+        protected EventBuilder<AttributeList> initialValue() {
+            return splunkEventBuilder.duplicate();
+        }
+    };
+
+    final ConcurrentMap<String, LastAttributeInfo> lastAttributes = new ConcurrentHashMap<>();
+    volatile Date lastPollTime;
+    volatile long lastPollObjectCount;
+    volatile long lastPollDuration;
+    volatile long lastPollSkippedCount;
+    volatile long maxStaleness;
+
+    volatile ObjectName pollCursor;
 
-    volatile ConcurrentMap<String, LastAttributeInfo> lastAttributes = new ConcurrentHashMap<>();
-    Date lastPollTime;
-    long lastPollObjectCount;
+    volatile long bulkAttributeReaderCheckTime;
+    volatile boolean bulkAttributeReaderRegistered;
 
-    boolean running;
+    volatile boolean attributeCostProfilePending;
+    volatile Map<String, Long> attributeCosts = Collections.emptyMap();
+
+    // Set for the duration of a polling cycle - a cycle that starts while another is in progress is skipped
+    final AtomicBoolean running = new AtomicBoolean();
 
     /**
      * Constructor for creating a runnable from the parent change monitor.
@@ -91,6 +152,7 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
     public AttributeChangeMonitorRunnable(SplunkJmxAttributeChangeMonitor attributeChangeMonitor, ObjectName queryObjectNamePattern) {
         this.changeMonitor = attributeChangeMonitor;
         this.queryObjectNamePattern = queryObjectNamePattern;
+        this.queryFilter = attributeChangeMonitor.getObservedObjectQuery();
         this.cachedAttributeArray = attributeChangeMonitor.getCachedAttributeArray();
         this.observedAttributes = attributeChangeMonitor.getObservedAttributes();
         this.excludedAttributes = attributeChangeMonitor.getExcludedAttributes();
@@ -98,6 +160,31 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
         this.maxSuppressedDuplicates = attributeChangeMonitor.getMaxSuppressedDuplicates();
 
         splunkClient = attributeChangeMonitor.getSplunkClient();
+        pollTimeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(attributeChangeMonitor.getPollTimeBudget());
+        collectionTimes = (pollTimeBudgetNanos > 0) ? new ConcurrentHashMap<ObjectName, Long>() : null;
+        configuredTierPeriods = attributeChangeMonitor.getAttributeTierPeriods();
+        attributeCostBudgetNanos = TimeUnit.MILLISECONDS.toNanos(attributeChangeMonitor.getAttributeCostBudget());
+        attributeCostProfilePending = attributeCostBudgetNanos > 0;
+        tierCache = (configuredTierPeriods.isEmpty() && attributeCostBudgetNanos <= 0) ? null
+            : new AttributeTierCache(configuredTierPeriods, TimeUnit.SECONDS.toMillis(attributeChangeMonitor.getGranularityPeriod()) / 2);
+        mbeanServerConnection = attributeChangeMonitor.getMBeanServerConnection();
+        eventFields = attributeChangeMonitor.getEventFields();
+        partitioner = attributeChangeMonitor.getPartitioner();
+        partitionTarget = attributeChangeMonitor.getPartitionTarget();
+        platformAttributeReader = attributeChangeMonitor.isPlatformFastPath() ? PlatformAttributeReader.getInstance() : null;
+        stateStore = attributeChangeMonitor.getStateStore();
+        sendObjectEvents = attributeChangeMonitor.isSendObjectEvents();
+        derivedAttributes = attributeChangeMonitor.getCompiledDerivedAttributes().toArray(new DerivedAttribute[0]);
+        attributePaths = attributeChangeMonitor.getAttributePaths().toArray(new AttributePath[0]);
+        pathOnlyAttributes = attributeChangeMonitor.getPathOnlyAttributes();
+        topSelector = attributeChangeMonitor.isTopNMode()
+            ? new TopNSelector(attributeChangeMonitor.getTopAttribute(), attributeChangeMonitor.getTopCount()) : null;
+        aggregator = attributeChangeMonitor.getAggregateSpecs().isEmpty() ? null
+            : new AttributeAggregator(queryObjectNamePattern.getCanonicalName(), attributeChangeMonitor.getAggregateSpecs(), attributeChangeMonitor.getAggregateGroupProperties());
+        if (aggregator != null || topSelector != null) {
+            aggregateEventBuilder = attributeChangeMonitor.hasAggregateEventBuilder()
+                ? attributeChangeMonitor.getAggregateEventBuilder().duplicate() : new JmxAttributeAggregateEventBuilder();
+        }
         if (attributeChangeMonitor.hasSplunkEventBuilder()) {
             splunkEventBuilder = attributeChangeMonitor.getSplunkEventBuilder().duplicate();
         } else {
@@ -135,6 +222,47 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
         return lastPollObjectCount;
     }
 
+    @Override
+    public long getLastPollDuration() {
+        return lastPollDuration;
+    }
+
+    @Override
+    public long getLastPollSkippedCount() {
+        return lastPollSkippedCount;
+    }
+
+    @Override
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    @Override
+    public Map<String, Long> getAttributeCosts() {
+        Map<String, Long> answer = new TreeMap<>();
+        for (Map.Entry<String, Long> attributeCost : attributeCosts.entrySet()) {
+            answer.put(attributeCost.getKey(), TimeUnit.NANOSECONDS.toMicros(attributeCost.getValue()));
+        }
+        return answer;
+    }
+
+    @Override
+    public Map<String, Long> getAttributeTierPeriods() {
+        return (tierCache != null) ? new TreeMap<>(tierCache.getTierPeriods()) : Collections.<String, Long>emptyMap();
+    }
+
+    @Override
+    public void profileAttributeCosts() {
+        if (attributeCostBudgetNanos > 0) {
+            attributeCostProfilePending = true;
+        }
+    }
+
+    @Override
+    public int getTrackedObjectCount() {
+        return lastAttributes.size();
+    }
+
     @Override
     public String getObjectNameQuery() {
         return queryObjectNamePattern.getCanonicalName();
@@ -162,7 +290,7 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
 
     @Override
     public boolean isRunning() {
-        return running;
+        return running.get();
     }
 
     public void initialize() {
@@ -174,140 +302,765 @@ public class AttributeChangeMonitorRunnable implements Runnable, AttributeChange
     }
 
     @Override
-    public synchronized void run() {
-        running = true;
+    public void run() {
+        if (!beginCycle()) {
+            return;
+        }
         try (SplunkMDCHelper helper = createMdcHelper()) {
-            log.debug("run() started for JMX ObjectName {}", queryObjectNamePattern);
+            long pollStartNanos = System.nanoTime();
+            MBeanServerConnection mbeanServer = mbeanServerConnection;
+            // Without a partitioner, the ObjectNames and their attributes are retrieved with a single bulk read
+            Map<ObjectName, AttributeList> bulkAttributes = readBulkPatternAttributes(mbeanServer);
+            Set<ObjectName> objectNameSet = startPoll(mbeanServer, (bulkAttributes != null) ? bulkAttributes.keySet() : null);
+            if (bulkAttributes == null) {
+                bulkAttributes = readBulkAttributes(mbeanServer, objectNameSet);
+            }
+            // A poll time budget visits the ObjectNames in round-robin order, so it is always collected on this thread
+            Executor collectionExecutor = (pollTimeBudgetNanos > 0 || objectNameSet.size() < 2) ? null : changeMonitor.getCollectionExecutor();
+            if (collectionExecutor != null) {
+                collectInParallel(collectionExecutor, mbeanServer, objectNameSet, bulkAttributes);
+            } else {
+                Iterable<ObjectName> pollOrder = (pollTimeBudgetNanos > 0) ? getRoundRobinOrder(objectNameSet) : objectNameSet;
+                int polledCount = 0;
+                for (ObjectName objectName : pollOrder) {
+                    if (pollTimeBudgetNanos > 0) {
+                        // Always poll at least one object so the cursor advances
+                        if (polledCount > 0 && System.nanoTime() - pollStartNanos >= pollTimeBudgetNanos) {
+                            break;
+                        }
+                        pollCursor = objectName;
+                    }
+                    ++polledCount;
+                    collectObject(mbeanServer, objectName, bulkAttributes);
+                }
+                if (pollTimeBudgetNanos > 0) {
+                    updateStaleness(objectNameSet, polledCount);
+                }
+            }
+            completePoll(pollStartNanos);
+        } finally {
+            endCycle();
+        }
+    }
+
+    /**
+     * Collect the attributes of an ObjectName in a polling cycle, logging any failure.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     * @param objectName the ObjectName of the MBean
+     * @param bulkAttributes the attributes retrieved by a bulk read, keyed by ObjectName; null if there was no bulk read
+     */
+    void collectObject(MBeanServerConnection mbeanServer, ObjectName objectName, Map<ObjectName, AttributeList> bulkAttributes) {
+        try {
+            AttributeList bulkAttributeList = (bulkAttributes != null) ? bulkAttributes.get(objectName) : null;
+            if (bulkAttributeList != null) {
+                collectAttributes(objectName, bulkAttributeList);
+            } else {
+                collectAttributes(mbeanServer, objectName);
+            }
+        } catch (EventDeliveryException eventDeliveryEx) {
+            log.error("Failed to deliver event {}[{}]: {}",
+                    queryObjectNamePattern.getCanonicalName(), objectName.getCanonicalName(), eventDeliveryEx.getEvent(), eventDeliveryEx);
+        } catch (InstanceNotFoundException | ReflectionException | IntrospectionException | IOException jmxEx) {
+            log.warn("Unexpected {} in run for JMX ObjectName {}[{}]",
+                    jmxEx.getClass().getSimpleName(), queryObjectNamePattern, objectName, jmxEx);
+        } catch (Throwable unexpectedEx) {
+            log.warn("Unexpected {} in run for JMX ObjectName {}[{}]",
+                    unexpectedEx.getClass().getSimpleName(), queryObjectNamePattern, objectName, unexpectedEx);
+        }
+    }
+
+    /**
+     * Collect the ObjectNames of a polling cycle on the idle threads of the change monitor executor as well as the
+     * polling thread.
+     *
+     * <p>The polling thread takes ObjectNames from the same queue as the executor threads, so the cycle completes even
+     * when every executor thread is busy - it only waits for the ObjectNames an executor thread already took.
+     *
+     * @param collectionExecutor the executor of the change monitor
+     * @param mbeanServer the MBeanServer to poll
+     * @param objectNameSet the ObjectNames polled in this cycle
+     * @param bulkAttributes the attributes retrieved by a bulk read, keyed by ObjectName; null if there was no bulk read
+     */
+    void collectInParallel(Executor collectionExecutor, final MBeanServerConnection mbeanServer, Set<ObjectName> objectNameSet,
+                           final Map<ObjectName, AttributeList> bulkAttributes) {
+        final Queue<ObjectName> pendingObjectNames = new ConcurrentLinkedQueue<>(objectNameSet);
+        final CountDownLatch collectedLatch = new CountDownLatch(objectNameSet.size());
+
+        Runnable collector = new Runnable() {
+            @Override
+            public void run() {
+                try (SplunkMDCHelper helper = createMdcHelper()) {
+                    collectPending(mbeanServer, pendingObjectNames, bulkAttributes, collectedLatch);
+                }
+            }
+        };
+
+        int helperCount = Math.min(changeMonitor.getExecutorPoolSize(), objectNameSet.size()) - 1;
+        for (int i = 0; i < helperCount; ++i) {
+            try {
+                collectionExecutor.execute(collector);
+            } catch (RejectedExecutionException rejectedEx) {
+                log.debug("Collecting the remaining objects for JMX ObjectName {} on the polling thread - the executor is stopped", queryObjectNamePattern);
+                break;
+            }
+        }
+
+        collectPending(mbeanServer, pendingObjectNames, bulkAttributes, collectedLatch);
+
+        try {
+            collectedLatch.await();
+        } catch (InterruptedException interruptedEx) {
+            log.warn("Interrupted waiting for the parallel collection of JMX ObjectName {}", queryObjectNamePattern);
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            lastPollTime = new Date();
-            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
-            Set<ObjectName> objectNameSet = mbeanServer.queryNames(queryObjectNamePattern, null);
-            lastPollObjectCount = (objectNameSet != null) ? objectNameSet.size() : 0;
+    void collectPending(MBeanServerConnection mbeanServer, Queue<ObjectName> pendingObjectNames,
+                        Map<ObjectName, AttributeList> bulkAttributes, CountDownLatch collectedLatch) {
+        for (ObjectName objectName = pendingObjectNames.poll(); objectName != null; objectName = pendingObjectNames.poll()) {
+            try {
+                collectObject(mbeanServer, objectName, bulkAttributes);
+            } finally {
+                collectedLatch.countDown();
+            }
+        }
+    }
+
+    /**
+     * Mark the start of a polling cycle.
+     *
+     * <p>The aggregates, top-N selection and cursor are per-cycle state, so the cycles of a runnable must not overlap -
+     * e.g. a bootstrap poll and a scheduled poll.
+     *
+     * @return true if the cycle can proceed; false if another cycle is in progress
+     */
+    boolean beginCycle() {
+        if (running.compareAndSet(false, true)) {
+            return true;
+        }
+
+        log.debug("Skipping poll of JMX ObjectName {} - the previous poll is still in progress", queryObjectNamePattern);
+        return false;
+    }
+
+    void endCycle() {
+        running.set(false);
+    }
+
+    /*
+     * Measure the attribute costs on a sample of the ObjectNames and poll the expensive attributes less often so the
+     * estimated cost of a poll fits the budget
+     */
+    void updateAttributeCosts(MBeanServerConnection mbeanServer, Set<ObjectName> objectNameSet) {
+        attributeCostProfilePending = false;
+
+        Map<ObjectName, String[]> sampledAttributes = new HashMap<>();
+        for (ObjectName objectName : objectNameSet) {
+            if (sampledAttributes.size() >= AttributeCostProfiler.DEFAULT_SAMPLE_SIZE) {
+                break;
+            }
+            try {
+                sampledAttributes.put(objectName, getRequestedAttributeNames(mbeanServer, objectName));
+            } catch (InstanceNotFoundException | ReflectionException | IntrospectionException | IOException jmxEx) {
+                log.debug("Unable to profile attribute costs for {}", objectName, jmxEx);
+            }
+        }
+
+        Map<String, Long> measuredCosts = AttributeCostProfiler.measure(mbeanServer, sampledAttributes);
+        Map<String, Long> costTierPeriods = AttributeCostProfiler.calculateTierPeriods(measuredCosts, objectNameSet.size(),
+            attributeCostBudgetNanos, TimeUnit.SECONDS.toMillis(changeMonitor.getGranularityPeriod()));
+
+        // A configured tier is only replaced by a longer period
+        Map<String, Long> tierPeriods = new TreeMap<>(configuredTierPeriods);
+        for (Map.Entry<String, Long> costTierPeriod : costTierPeriods.entrySet()) {
+            Long configuredPeriod = tierPeriods.get(costTierPeriod.getKey());
+            if (configuredPeriod == null || configuredPeriod < costTierPeriod.getValue()) {
+                tierPeriods.put(costTierPeriod.getKey(), costTierPeriod.getValue());
+            }
+        }
+
+        attributeCosts = measuredCosts;
+        tierCache.setTierPeriods(tierPeriods);
+        if (costTierPeriods.isEmpty()) {
+            log.info("Attribute costs for JMX ObjectName {} fit the {} ms budget: {}",
+                queryObjectNamePattern, TimeUnit.NANOSECONDS.toMillis(attributeCostBudgetNanos), getAttributeCosts());
+        } else {
+            log.info("Reduced polling of expensive attributes for JMX ObjectName {} to fit the {} ms budget: {}",
+                queryObjectNamePattern, TimeUnit.NANOSECONDS.toMillis(attributeCostBudgetNanos), costTierPeriods);
+        }
+    }
+
+    /*
+     * The ObjectNames in order, starting after the last ObjectName polled in the previous cycle
+     */
+    List<ObjectName> getRoundRobinOrder(Set<ObjectName> objectNameSet) {
+        TreeSet<ObjectName> sortedObjectNames = new TreeSet<>(objectNameSet);
+        List<ObjectName> answer = new ArrayList<>(sortedObjectNames.size());
+
+        ObjectName cursor = pollCursor;
+        if (cursor == null) {
+            answer.addAll(sortedObjectNames);
+        } else {
+            answer.addAll(sortedObjectNames.tailSet(cursor, false));
+            answer.addAll(sortedObjectNames.headSet(cursor, true));
+        }
+
+        return answer;
+    }
+
+    void updateStaleness(Set<ObjectName> objectNameSet, int polledCount) {
+        collectionTimes.keySet().retainAll(objectNameSet);
+
+        long now = System.currentTimeMillis();
+        long oldestCollectionTime = now;
+        for (Long collectionTime : collectionTimes.values()) {
+            oldestCollectionTime = Math.min(oldestCollectionTime, collectionTime);
+        }
+
+        maxStaleness = now - oldestCollectionTime;
+        lastPollSkippedCount = objectNameSet.size() - polledCount;
+        if (lastPollSkippedCount > 0) {
+            log.debug("Polled {} of {} objects for JMX ObjectName {} within the {} ms budget - maximum staleness is {} ms",
+                polledCount, objectNameSet.size(), queryObjectNamePattern, TimeUnit.NANOSECONDS.toMillis(pollTimeBudgetNanos), maxStaleness);
+        }
+    }
+
+    /**
+     * Start a polling cycle.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     *
+     * @return the ObjectNames to poll in this cycle
+     */
+    Set<ObjectName> startPoll(MBeanServerConnection mbeanServer) {
+        return startPoll(mbeanServer, null);
+    }
+
+    /**
+     * Start a polling cycle.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     * @param queriedObjectNames the ObjectNames matching the pattern and query filter if they were already retrieved
+     *                           (e.g. by a bulk read); null to query the MBeanServer
+     *
+     * @return the ObjectNames to poll in this cycle
+     */
+    Set<ObjectName> startPoll(MBeanServerConnection mbeanServer, Set<ObjectName> queriedObjectNames) {
+        log.debug("run() started for JMX ObjectName {}", queryObjectNamePattern);
+
+        lastPollTime = new Date();
+        Set<ObjectName> objectNameSet = queriedObjectNames;
+        if (objectNameSet == null) {
+            try {
+                objectNameSet = mbeanServer.queryNames(queryObjectNamePattern, queryFilter);
+            } catch (IOException ioEx) {
+                log.warn("Failed to query JMX ObjectName {} - skipping poll", queryObjectNamePattern, ioEx);
+            }
+        }
+        if (partitioner != null && objectNameSet != null) {
+            objectNameSet = getOwnedObjectNames(objectNameSet);
+        }
+        lastPollObjectCount = (objectNameSet != null) ? objectNameSet.size() : 0;
+        if (collectionTimes != null && objectNameSet != null) {
+            // Objects the budget has not reached yet are stale from the time they were first seen
+            long now = System.currentTimeMillis();
             for (ObjectName objectName : objectNameSet) {
-                try {
-                    collectAttributes(mbeanServer, objectName);
-                } catch (EventDeliveryException eventDeliveryEx) {
-                    log.error("Failed to deliver event {}[{}]: {}",
-                            queryObjectNamePattern.getCanonicalName(), objectName.getCanonicalName(), eventDeliveryEx.getEvent(), eventDeliveryEx);
-                } catch (InstanceNotFoundException | ReflectionException | IntrospectionException jmxEx) {
-                    log.warn("Unexpected {} in run for JMX ObjectName {}[{}]",
-                            jmxEx.getClass().getSimpleName(), queryObjectNamePattern, objectName, jmxEx);
-                } catch (Throwable unexpectedEx) {
-                    log.warn("Unexpected {} in run for JMX ObjectName {}[{}]",
-                            unexpectedEx.getClass().getSimpleName(), queryObjectNamePattern, objectName, unexpectedEx);
+                collectionTimes.putIfAbsent(objectName, now);
+            }
+        }
+        if (tierCache != null && objectNameSet != null) {
+            tierCache.retain(objectNameSet);
+        }
+        if (attributeCostProfilePending && objectNameSet != null && !objectNameSet.isEmpty()) {
+            updateAttributeCosts(mbeanServer, objectNameSet);
+        }
+
+        return (objectNameSet != null) ? objectNameSet : Collections.<ObjectName>emptySet();
+    }
+
+    /*
+     * The ObjectNames owned by this collector node - the change detection state of the others is discarded, since the
+     * node that owns them now sends their events
+     */
+    Set<ObjectName> getOwnedObjectNames(Set<ObjectName> objectNameSet) {
+        partitioner.refresh();
+
+        Set<ObjectName> answer = new HashSet<>();
+        for (ObjectName objectName : objectNameSet) {
+            if (partitioner.owns(partitionTarget, objectName)) {
+                answer.add(objectName);
+            } else {
+                lastAttributes.remove(objectName.getCanonicalName());
+            }
+        }
+        log.debug("Node {} owns {} of {} objects for JMX ObjectName {}", partitioner.getNodeId(), answer.size(), objectNameSet.size(), queryObjectNamePattern);
+
+        return answer;
+    }
+
+    /**
+     * Complete a polling cycle - send the events accumulated during the cycle.
+     *
+     * @param pollStartNanos the value of System.nanoTime() when the cycle started
+     */
+    void completePoll(long pollStartNanos) {
+        if (topSelector != null) {
+            sendTopEvents(lastPollTime.getTime());
+        }
+        if (aggregator != null) {
+            sendAggregates(lastPollTime.getTime());
+        }
+
+        lastPollDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pollStartNanos);
+        log.debug("run() completed for JMX ObjectName {} in {} ms", queryObjectNamePattern, lastPollDuration);
+    }
+
+    /*
+     * Called from run(), which sets the MDC once for the whole polling cycle.
+     *
+     * This method does not lock the runnable - the event builder is confined to the calling thread and the change
+     * detection state for each ObjectName is an immutable snapshot updated with compare-and-set, so different
+     * ObjectNames can be collected concurrently. run() does so when the executor pool of the change monitor has more
+     * than one thread - see collectInParallel.
+     */
+    void collectAttributes(MBeanServerConnection mbeanServer, ObjectName objectName)
+            throws IntrospectionException, InstanceNotFoundException, ReflectionException, IOException, EventDeliveryException {
+        String[] queriedAttributeNameArray = getQueriedAttributeNames(mbeanServer, objectName);
+
+        log.debug("Retrieving Attributes for '{}'", objectName);
+        AttributeList attributeList = (platformAttributeReader != null)
+            ? platformAttributeReader.getAttributes(mbeanServer, objectName, queriedAttributeNameArray)
+            : mbeanServer.getAttributes(objectName, queriedAttributeNameArray);
+
+        processAttributes(objectName, queriedAttributeNameArray, attributeList);
+    }
+
+    /*
+     * Called from run() for an ObjectName with attributes retrieved by the BulkAttributeReader - the reader only
+     * retrieved the requested attributes
+     */
+    void collectAttributes(ObjectName objectName, AttributeList bulkAttributeList) throws EventDeliveryException {
+        String[] queriedAttributeNameArray = (cachedAttributeArray != null) ? cachedAttributeArray : getAttributeNames(bulkAttributeList);
+
+        processAttributes(objectName, queriedAttributeNameArray, bulkAttributeList);
+    }
+
+    /**
+     * Retrieve the ObjectNames matching the pattern and query filter and their attributes with a single call to the
+     * {@link BulkAttributeReader} of a remote JVM.
+     *
+     * <p>Only used without a partitioner - a partitioned monitor reads the attributes of the ObjectNames it owns with
+     * {@link #readBulkAttributes}.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     *
+     * @return the retrieved attributes, keyed by ObjectName; null if the MBeans must be queried and polled individually
+     */
+    Map<ObjectName, AttributeList> readBulkPatternAttributes(MBeanServerConnection mbeanServer) {
+        if (partitioner != null) {
+            return null;
+        }
+
+        try {
+            BulkAttributeReaderMBean bulkAttributeReader = getBulkAttributeReader(mbeanServer);
+            if (bulkAttributeReader == null) {
+                return null;
+            }
+            return bulkAttributeReader.readAttributes(queryObjectNamePattern, cachedAttributeArray, queryFilter,
+                (cachedAttributeArray == null) ? getBulkExcludedAttributes() : null);
+        } catch (IOException | RuntimeException bulkReadEx) {
+            handleBulkReadFailure(bulkReadEx);
+            return null;
+        }
+    }
+
+    /**
+     * Retrieve the attributes of the ObjectNames owned by this collector node with the {@link BulkAttributeReader} of a
+     * remote JVM.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     * @param objectNameSet the ObjectNames polled in this cycle
+     *
+     * @return the retrieved attributes, keyed by ObjectName; null if the MBeans must be polled individually
+     */
+    Map<ObjectName, AttributeList> readBulkAttributes(MBeanServerConnection mbeanServer, Set<ObjectName> objectNameSet) {
+        if (partitioner == null || objectNameSet.isEmpty()) {
+            return null;
+        }
+
+        try {
+            BulkAttributeReaderMBean bulkAttributeReader = getBulkAttributeReader(mbeanServer);
+            if (bulkAttributeReader == null) {
+                return null;
+            }
+            return bulkAttributeReader.readObjectAttributes(new HashSet<>(objectNameSet), cachedAttributeArray,
+                (cachedAttributeArray == null) ? getBulkExcludedAttributes() : null);
+        } catch (IOException | RuntimeException bulkReadEx) {
+            handleBulkReadFailure(bulkReadEx);
+            return null;
+        }
+    }
+
+    /**
+     * Get the {@link BulkAttributeReader} of the polled JVM.
+     *
+     * <p>The bulk read is not used with attribute tiers or a poll time budget, since the attributes and ObjectNames
+     * polled are only known while polling.
+     *
+     * @param mbeanServer the MBeanServer to poll
+     *
+     * @return a proxy for the reader; null if the MBeans must be polled individually
+     */
+    BulkAttributeReaderMBean getBulkAttributeReader(MBeanServerConnection mbeanServer) throws IOException {
+        if (mbeanServer == ManagementFactory.getPlatformMBeanServer()) {
+            // A bulk read only saves round trips to a remote JVM
+            return null;
+        }
+        if (tierCache != null || pollTimeBudgetNanos > 0) {
+            return null;
+        }
+
+        ObjectName bulkAttributeReaderObjectName = BulkAttributeReader.getObjectName();
+        long now = System.currentTimeMillis();
+        if (now - bulkAttributeReaderCheckTime >= BULK_ATTRIBUTE_READER_CHECK_PERIOD) {
+            bulkAttributeReaderRegistered = mbeanServer.isRegistered(bulkAttributeReaderObjectName);
+            bulkAttributeReaderCheckTime = now;
+        }
+
+        return bulkAttributeReaderRegistered ? JMX.newMBeanProxy(mbeanServer, bulkAttributeReaderObjectName, BulkAttributeReaderMBean.class) : null;
+    }
+
+    void handleBulkReadFailure(Exception bulkReadEx) {
+        // Poll each MBean until the reader is checked again
+        bulkAttributeReaderRegistered = false;
+        log.warn("Failed to read the attributes for JMX ObjectName {} with the {} - polling each MBean",
+            queryObjectNamePattern, BulkAttributeReader.class.getSimpleName(), bulkReadEx);
+    }
+
+    /*
+     * The excluded attributes that are not collected - see filterAttributeNames
+     */
+    Set<String> getBulkExcludedAttributes() {
+        Set<String> answer = new HashSet<>();
+        if (excludedAttributes != null) {
+            answer.addAll(excludedAttributes);
+            if (collectedAttributes != null) {
+                answer.removeAll(collectedAttributes);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Determine the attributes to retrieve for an ObjectName.
+     *
+     * @param mbeanServer the MBeanServer containing the MBean
+     * @param objectName the ObjectName of the MBean
+     *
+     * @return the attribute names
+     */
+    String[] getQueriedAttributeNames(MBeanServerConnection mbeanServer, ObjectName objectName)
+            throws IntrospectionException, InstanceNotFoundException, ReflectionException, IOException {
+        return getDueAttributeNames(objectName, getRequestedAttributeNames(mbeanServer, objectName));
+    }
+
+    /*
+     * Remove the tiered attributes that are not due in this poll
+     */
+    String[] getDueAttributeNames(ObjectName objectName, String[] requestedAttributeNameArray) {
+        if (tierCache != null) {
+            return tierCache.getDueAttributes(objectName, requestedAttributeNameArray, System.currentTimeMillis());
+        }
+
+        return requestedAttributeNameArray;
+    }
+
+    /*
+     * The attributes of an ObjectName used by the monitor, whether they are due in this poll or not
+     */
+    String[] getRequestedAttributeNames(MBeanServerConnection mbeanServer, ObjectName objectName)
+            throws IntrospectionException, InstanceNotFoundException, ReflectionException, IOException {
+        String[] queriedAttributeNameArray;
+
+        if (cachedAttributeArray != null) {
+            log.debug("Using cachedAttributeArray for : {}", Arrays.toString(cachedAttributeArray));
+            queriedAttributeNameArray = cachedAttributeArray;
+        } else {
+            // Attributes were not specified - look at all of them
+            MBeanInfo mbeanInfo = mbeanServer.getMBeanInfo(objectName);
+            MBeanAttributeInfo[] attributeInfoArray = mbeanInfo.getAttributes();
+            String[] attributeNameArray = new String[attributeInfoArray.length];
+            for (int i = 0; i < attributeInfoArray.length; ++i) {
+                attributeNameArray[i] = attributeInfoArray[i].getName();
+            }
+
+            queriedAttributeNameArray = filterAttributeNames(attributeNameArray);
+
+            log.debug("Using queriedAttributeNameArray: {}", Arrays.toString(queriedAttributeNameArray));
+        }
+
+        return queriedAttributeNameArray;
+    }
+
+    /*
+     * Remove the excluded attributes from all the attributes of an MBean, unless they are collected
+     */
+    String[] filterAttributeNames(String[] attributeNameArray) {
+        List<String> queriedAttributeNameList = new LinkedList<>();
+
+        for (String attributeName : attributeNameArray) {
+            if (excludedAttributes != null && excludedAttributes.contains(attributeName)) {
+                if (collectedAttributes != null && collectedAttributes.contains(attributeName)) {
+                    // Keep the collected value if specified
+                    queriedAttributeNameList.add(attributeName);
                 }
+            } else {
+                queriedAttributeNameList.add(attributeName);
             }
+        }
 
-            log.debug("run() completed for JMX ObjectName {}", queryObjectNamePattern);
-        } finally {
-            running = false;
+        String[] queriedAttributeNameArray = new String[queriedAttributeNameList.size()];
+        return queriedAttributeNameList.toArray(queriedAttributeNameArray);
+    }
+
+    static String[] getAttributeNames(AttributeList attributeList) {
+        String[] answer = new String[attributeList.size()];
+        int i = 0;
+        for (Attribute attribute : attributeList.asList()) {
+            answer[i++] = attribute.getName();
         }
+        return answer;
     }
 
-    synchronized void collectAttributes(MBeanServer mbeanServer, ObjectName objectName)
-            throws IntrospectionException, InstanceNotFoundException, ReflectionException, EventDeliveryException {
-        splunkEventBuilder.clearFields();
+    /**
+     * Detect changes in the retrieved attributes of an ObjectName and send the event.
+     *
+     * @param objectName the ObjectName of the MBean
+     * @param queriedAttributeNameArray the attribute names that were retrieved
+     * @param attributeList the retrieved attributes - the list is modified
+     */
+    void processAttributes(ObjectName objectName, String[] queriedAttributeNameArray, AttributeList attributeList) throws EventDeliveryException {
+        EventBuilder<AttributeList> eventBuilder = threadEventBuilder.get();
+        eventBuilder.clearFields();
         Hashtable<String, String> objectNameProperties = objectName.getKeyPropertyList();
         for (String propertyName : objectNameProperties.keySet()) {
-            splunkEventBuilder.setField(propertyName, objectNameProperties.get(propertyName));
+            eventBuilder.setField(propertyName, objectNameProperties.get(propertyName));
         }
+        addEventFields(eventBuilder);
         String objectNameString = objectName.getCanonicalName();
-        String[] queriedAttributeNameArray;
-        try (SplunkMDCHelper helper = createMdcHelper()) {
 
-            if (cachedAttributeArray != null) {
-                log.debug("Using cachedAttributeArray for : {}", Arrays.toString(cachedAttributeArray));
-                queriedAttributeNameArray = cachedAttributeArray;
-            } else {
-                // Attributes were not specified - look at all of them
-                MBeanInfo mbeanInfo = mbeanServer.getMBeanInfo(objectName);
-                MBeanAttributeInfo[] attributeInfoArray = mbeanInfo.getAttributes();
-                List<String> queriedAttributeNameList = new LinkedList<>();
-
-                for (MBeanAttributeInfo attributeInfo : attributeInfoArray) {
-                    String attributeName = attributeInfo.getName();
-                    if (excludedAttributes != null && excludedAttributes.contains(attributeName)) {
-                        if (collectedAttributes != null && collectedAttributes.contains(attributeName)) {
-                            // Keep the collected value if specified
-                            queriedAttributeNameList.add(attributeName);
-                        }
-                    } else {
-                        queriedAttributeNameList.add(attributeName);
-                    }
-                }
+        if (collectionTimes != null) {
+            long collectionTime = System.currentTimeMillis();
+            Long previousCollectionTime = collectionTimes.put(objectName, collectionTime);
+            if (previousCollectionTime != null) {
+                eventBuilder.setField(STALENESS_FIELD, Long.toString(collectionTime - previousCollectionTime));
+            }
+        }
 
-                queriedAttributeNameArray = new String[queriedAttributeNameList.size()];
-                queriedAttributeNameArray = queriedAttributeNameList.toArray(queriedAttributeNameArray);
+        eventBuilder.timestamp();
+        if (tierCache != null && attributeList != null) {
+            // Add the last known values of the tiers that were not retrieved
+            tierCache.merge(objectName, attributeList, System.currentTimeMillis());
+        }
+        if (attributeList == null) {
+            log.warn("MBeanServer.getAttributes( {}, {} ) returned null", objectName, queriedAttributeNameArray);
+        } else if (attributeList.isEmpty()) {
+            final String warningMessage = "MBeanServer.getAttributes( {}, {} ) returned an empty AttributeList";
+            log.warn(warningMessage, objectName, queriedAttributeNameArray);
+        } else {
+            log.debug("Building attribute Map of {} attributes for {}", attributeList.size(), objectName);
+            Map<String, Object> attributeMap = buildAttributeMap(attributeList);
+            addDerivedAttributes(attributeList, attributeMap);
+            selectAttributePaths(attributeList, attributeMap);
 
-                log.debug("Using queriedAttributeNameArray: {}", Arrays.toString(queriedAttributeNameArray));
+            if (aggregator != null) {
+                aggregator.record(objectName, attributeMap);
+            }
+            if (!sendObjectEvents) {
+                return;
+            }
+            if (topSelector != null) {
+                // Top-N mode - the events are sent at the end of the polling cycle
+                topSelector.offer(objectName, attributeList, attributeMap);
+                return;
             }
 
-            log.debug("Retrieving Attributes for '{}'", objectNameString);
-            AttributeList attributeList = mbeanServer.getAttributes(objectName, queriedAttributeNameArray);
-            splunkEventBuilder.timestamp();
-            if (attributeList == null) {
-                log.warn("MBeanServer.getAttributes( {}, {} ) returned null", objectName, queriedAttributeNameArray);
-            } else if (attributeList.isEmpty()) {
-                final String warningMessage = "MBeanServer.getAttributes( {}, {} ) returned an empty AttributeList";
-                log.warn(warningMessage, objectName, queriedAttributeNameArray);
+            log.debug("Determining monitored attribute set");
+            Set<String> monitoredAttributeNames;
+            if (observedAttributes != null && !observedAttributes.isEmpty()) {
+                monitoredAttributeNames = observedAttributes;
             } else {
-                log.debug("Building attribute Map of {} attributes for {}", attributeList.size(), objectName);
-                Map<String, Object> attributeMap = buildAttributeMap(attributeList);
-
-                log.debug("Determining monitored attribute set");
-                Set<String> monitoredAttributeNames;
-                if (observedAttributes != null && !observedAttributes.isEmpty()) {
-                    monitoredAttributeNames = observedAttributes;
-                } else {
-                    monitoredAttributeNames = attributeMap.keySet();
-                    if (excludedAttributes != null && !excludedAttributes.isEmpty()) {
-                        log.trace("Excluding attributes: {}", excludedAttributes);
-                        monitoredAttributeNames.removeAll(excludedAttributes);
-                    }
+                monitoredAttributeNames = attributeMap.keySet();
+                if (excludedAttributes != null && !excludedAttributes.isEmpty()) {
+                    log.trace("Excluding attributes: {}", excludedAttributes);
+                    monitoredAttributeNames.removeAll(excludedAttributes);
                 }
+            }
+
+            log.debug("Monitored attribute set: {}", monitoredAttributeNames);
 
-                log.debug("Monitored attribute set: {}", monitoredAttributeNames);
-
-                LastAttributeInfo lastAttributeInfo;
-                if (lastAttributes.containsKey(objectNameString)) {
-                    lastAttributeInfo = lastAttributes.get(objectNameString);
-                    synchronized (lastAttributeInfo) {
-                        log.debug("Last attribute info found for {} [{}]- Checking for attribute change",
-                                objectNameString, lastAttributeInfo.getSuppressionCount());
-                        for (String attributeName : monitoredAttributeNames) {
-                            if (lastAttributeInfo.hasValueChanged(attributeName, attributeMap.get(attributeName))) {
-                                log.debug("Found change in attribute {} for {} - sending event", objectNameString, attributeName);
-                                lastAttributeInfo.setAttributeMap(attributeMap);
-                                splunkEventBuilder.source(objectNameString).eventBody(attributeList);
-                                splunkClient.sendEvent(splunkEventBuilder.build(splunkClient));
-                                lastAttributes.put(objectNameString, lastAttributeInfo);
-                                return;
+            while (true) {
+                LastAttributeInfo lastAttributeInfo = lastAttributes.get(objectNameString);
+                if (lastAttributeInfo == null) {
+                    long fingerprint = (stateStore != null) ? AttributeChangeStateStore.fingerprint(monitoredAttributeNames, attributeMap) : 0;
+                    if (lastAttributes.putIfAbsent(objectNameString, new LastAttributeInfo(objectNameString).withAttributeMap(attributeMap)) == null) {
+                        if (stateStore != null && stateStore.matches(objectNameString, fingerprint)) {
+                            log.debug("First invocation for {} - monitored attribute values are unchanged since the persisted state", objectNameString);
+                        } else {
+                            log.debug("First invocation for {} - creating last attribute info and posting payload for first object", objectNameString);
+                            sendEvent(eventBuilder, objectNameString, attributeList);
+                            if (stateStore != null) {
+                                stateStore.put(objectNameString, fingerprint);
                             }
                         }
+                        return;
+                    }
+                } else {
+                    log.debug("Last attribute info found for {} [{}]- Checking for attribute change",
+                            objectNameString, lastAttributeInfo.getSuppressionCount());
+                    LastAttributeInfo nextAttributeInfo = null;
+                    for (String attributeName : monitoredAttributeNames) {
+                        if (lastAttributeInfo.hasValueChanged(attributeName, attributeMap.get(attributeName))) {
+                            log.debug("Found change in attribute {} for {} - sending event", objectNameString, attributeName);
+                            nextAttributeInfo = lastAttributeInfo.withAttributeMap(attributeMap);
+                            break;
+                        }
+                    }
 
+                    boolean sendEvent = true;
+                    if (nextAttributeInfo == null) {
                         if (maxSuppressedDuplicates > 0 && lastAttributeInfo.getSuppressionCount() <= maxSuppressedDuplicates) {
-                            lastAttributeInfo.incrementSuppressionCount();
-                            log.debug("Duplicate monitored attribute values encountered for {} - suppressed {} of {} time(s)",
-                                    objectNameString, lastAttributeInfo.getSuppressionCount(), maxSuppressedDuplicates);
+                            nextAttributeInfo = lastAttributeInfo.withIncrementedSuppressionCount();
+                            sendEvent = false;
                         } else {
                             log.debug("Max suppressed duplicates [{} - {}] exceeded for {}  - sending event",
                                     lastAttributeInfo.getSuppressionCount(), maxSuppressedDuplicates, objectNameString);
-                            lastAttributeInfo.resetSuppressionCount();
-                            splunkEventBuilder.source(objectNameString).eventBody(attributeList);
-                            splunkClient.sendEvent(splunkEventBuilder.build(splunkClient));
-                            lastAttributes.put(objectNameString, lastAttributeInfo);
-                            return;
+                            nextAttributeInfo = lastAttributeInfo.withResetSuppressionCount();
                         }
                     }
-                } else {
-                    log.debug("First invocation for {} - creating last attribute info and posting payload for first object", objectNameString);
-                    lastAttributeInfo = new LastAttributeInfo(objectNameString);
-                    lastAttributeInfo.setAttributeMap(attributeMap);
-                    lastAttributes.put(objectNameString, lastAttributeInfo);
-                    splunkEventBuilder.source(objectNameString).eventBody(attributeList);
-                    splunkClient.sendEvent(splunkEventBuilder.build(splunkClient));
+
+                    // Only the thread that publishes the new snapshot reports the result - a concurrent poll of the same ObjectName retries against its snapshot
+                    if (lastAttributes.replace(objectNameString, lastAttributeInfo, nextAttributeInfo)) {
+                        if (sendEvent) {
+                            sendEvent(eventBuilder, objectNameString, attributeList);
+                            if (stateStore != null) {
+                                stateStore.put(objectNameString, AttributeChangeStateStore.fingerprint(monitoredAttributeNames, attributeMap));
+                            }
+                        } else {
+                            log.debug("Duplicate monitored attribute values encountered for {} - suppressed {} of {} time(s)",
+                                    objectNameString, nextAttributeInfo.getSuppressionCount(), maxSuppressedDuplicates);
+                        }
+                        return;
+                    }
+                }
+                log.debug("Concurrent update detected for {} - retrying change detection", objectNameString);
+            }
+        }
+    }
+
+    void sendTopEvents(long timestamp) {
+        TopNSelector.Selection selection = topSelector.drain(queryObjectNamePattern.getCanonicalName(), timestamp);
+
+        EventBuilder<AttributeList> eventBuilder = threadEventBuilder.get();
+        int rank = 0;
+        for (TopNSelector.Candidate candidate : selection.getTop()) {
+            ObjectName objectName = candidate.getObjectName();
+            eventBuilder.clearFields();
+            Hashtable<String, String> objectNameProperties = objectName.getKeyPropertyList();
+            for (String propertyName : objectNameProperties.keySet()) {
+                eventBuilder.setField(propertyName, objectNameProperties.get(propertyName));
+            }
+            addEventFields(eventBuilder);
+            eventBuilder.setField(TOP_RANK_FIELD, Integer.toString(++rank));
+            eventBuilder.timestamp();
+            try {
+                sendEvent(eventBuilder, objectName.getCanonicalName(), candidate.getAttributeList());
+            } catch (EventDeliveryException eventDeliveryEx) {
+                log.error("Failed to deliver event {}[{}]: {}",
+                        queryObjectNamePattern.getCanonicalName(), objectName.getCanonicalName(), eventDeliveryEx.getEvent(), eventDeliveryEx);
+            }
+        }
+
+        if (selection.hasOthers()) {
+            sendAggregate(selection.getOthers());
+        }
+    }
+
+    /*
+     * Add the fields configured on the change monitor - e.g. the identity of the JVM the MBeans are polled from
+     */
+    void addEventFields(EventBuilder<?> eventBuilder) {
+        for (Map.Entry<String, String> eventField : eventFields.entrySet()) {
+            eventBuilder.setField(eventField.getKey(), eventField.getValue());
+        }
+    }
+
+    void sendAggregates(long timestamp) {
+        for (AttributeAggregate aggregate : aggregator.drain(timestamp)) {
+            sendAggregate(aggregate);
+        }
+    }
+
+    void sendAggregate(AttributeAggregate aggregate) {
+        aggregateEventBuilder.clearFields();
+        for (Map.Entry<String, String> groupProperty : aggregate.getGroupProperties().entrySet()) {
+            aggregateEventBuilder.setField(groupProperty.getKey(), groupProperty.getValue());
+        }
+        addEventFields(aggregateEventBuilder);
+        aggregateEventBuilder.eventBody(aggregate);
+        try {
+            splunkClient.sendEvent(aggregateEventBuilder.build(splunkClient));
+        } catch (EventDeliveryException eventDeliveryEx) {
+            log.error("Failed to deliver aggregate event {}[{}]: {}",
+                    queryObjectNamePattern.getCanonicalName(), aggregate.getGroupProperties(), eventDeliveryEx.getEvent(), eventDeliveryEx);
+        }
+    }
+
+    void sendEvent(EventBuilder<AttributeList> eventBuilder, String objectNameString, AttributeList attributeList) throws EventDeliveryException {
+        eventBuilder.source(objectNameString).eventBody(attributeList);
+        splunkClient.sendEvent(eventBuilder.build(splunkClient));
+    }
+
+    void addDerivedAttributes(AttributeList attributeList, Map<String, Object> attributeMap) {
+        for (DerivedAttribute derivedAttribute : derivedAttributes) {
+            double value = derivedAttribute.evaluate(attributeMap);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                log.trace("Derived attribute {} could not be calculated", derivedAttribute.getName());
+            } else {
+                Number derivedValue = AttributeAggregator.toNumber(value);
+                attributeList.add(new Attribute(derivedAttribute.getName(), derivedValue));
+                attributeMap.put(derivedAttribute.getName(), derivedValue);
+            }
+        }
+    }
+
+    /*
+     * Replace CompositeData attributes that were only retrieved for attribute paths with the selected items, so only the
+     * items are compared and serialized.
+     */
+    void selectAttributePaths(AttributeList attributeList, Map<String, Object> attributeMap) {
+        if (attributePaths.length == 0) {
+            return;
+        }
+
+        for (AttributePath attributePath : attributePaths) {
+            Object value = attributePath.select(attributeMap.get(attributePath.getAttributeName()));
+            if (value == null) {
+                log.trace("Attribute path {} not found", attributePath);
+            } else {
+                attributeList.add(new Attribute(attributePath.getName(), value));
+                attributeMap.put(attributePath.getName(), value);
+            }
+        }
+
+        if (!pathOnlyAttributes.isEmpty()) {
+            for (Iterator<Object> iterator = attributeList.iterator(); iterator.hasNext();) {
+                if (pathOnlyAttributes.contains(((Attribute) iterator.next()).getName())) {
+                    iterator.remove();
                 }
             }
+            attributeMap.keySet().removeAll(pathOnlyAttributes);
         }
     }
 
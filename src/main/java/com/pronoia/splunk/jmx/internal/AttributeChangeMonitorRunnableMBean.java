@@ -18,6 +18,7 @@ package com.pronoia.splunk.jmx.internal;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -38,12 +39,20 @@ public interface AttributeChangeMonitorRunnableMBean {
 
     Date getLastPollTime();
     long getLastPollObjectCount();
+    long getLastPollDuration();
+    long getLastPollSkippedCount();
+    long getMaxStaleness();
+    int getTrackedObjectCount();
 
     String getObjectNameQuery();
     Set<String> getObservedAttributes();
     Set<String> getCollectedAttributes();
     Set<String> getExcludedAttributes();
 
+    Map<String, Long> getAttributeCosts();
+    Map<String, Long> getAttributeTierPeriods();
+    void profileAttributeCosts();
+
     boolean isRunning();
 
 }
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memory-mapped change detection state for one change monitor.
+ *
+ * <p>The file holds a fingerprint of the monitored attribute values last delivered for each ObjectName, so a restarted
+ * monitor only sends events for ObjectNames that changed while it was not running.  Slots are appended in the order
+ * the ObjectNames are first seen and located with an in-memory index built when the file is opened.
+ *
+ * <p>Layout: a 16 byte header (magic, version, capacity, reserved) followed by capacity slots of 16 bytes each - a
+ * 64-bit hash of the canonical ObjectName (0 marks an unused slot) and the 64-bit attribute fingerprint.
+ *
+ * <p>Access to the mapped buffer is synchronized, since a full store is reset while other ObjectNames are updated, and
+ * the store is closed without waiting for polls in progress - a closed store ignores further updates.
+ */
+public class AttributeChangeStateStore implements Closeable {
+    public static final String STATE_FILE_SUFFIX = ".state";
+
+    static final int MAGIC = 0x534a4d58;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 16;
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    final File stateFile;
+    final int capacity;
+    final Map<Long, Integer> slotIndex = new HashMap<>();
+
+    RandomAccessFile randomAccessFile;
+    MappedByteBuffer buffer;
+    int usedSlots;
+    boolean closed;
+
+    AttributeChangeStateStore(File stateFile, int capacity) {
+        this.stateFile = stateFile;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Open (or create) the state file for a change monitor.
+     *
+     * @param stateDirectory the directory containing the state files
+     * @param changeMonitorId the id of the change monitor
+     * @param capacity the maximum number of ObjectNames tracked in the file
+     *
+     * @return the opened store
+     *
+     * @throws IOException raised if the state file cannot be mapped
+     */
+    public static AttributeChangeStateStore open(File stateDirectory, String changeMonitorId, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("State capacity must be greater than zero: " + capacity);
+        }
+        if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+            throw new IOException("Failed to create state directory " + stateDirectory);
+        }
+
+        AttributeChangeStateStore answer = new AttributeChangeStateStore(new File(stateDirectory, changeMonitorId + STATE_FILE_SUFFIX), capacity);
+        answer.load();
+
+        return answer;
+    }
+
+    public File getStateFile() {
+        return stateFile;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return slotIndex.size();
+    }
+
+    /**
+     * Determine if the persisted fingerprint for an ObjectName matches.
+     *
+     * @param objectName the canonical ObjectName
+     * @param fingerprint the fingerprint of the current attribute values
+     *
+     * @return true if the same fingerprint was persisted for the ObjectName; false otherwise (or if the store is closed)
+     */
+    public synchronized boolean matches(String objectName, long fingerprint) {
+        if (closed) {
+            return false;
+        }
+        Integer slot = slotIndex.get(keyHash(objectName));
+
+        return slot != null && buffer.getLong(slotOffset(slot) + 8) == fingerprint;
+    }
+
+    /**
+     * Persist the fingerprint of the attribute values delivered for an ObjectName - ignored if the store is closed.
+     *
+     * @param objectName the canonical ObjectName
+     * @param fingerprint the fingerprint of the delivered attribute values
+     */
+    public synchronized void put(String objectName, long fingerprint) {
+        if (closed) {
+            return;
+        }
+        long keyHash = keyHash(objectName);
+        Integer slot = slotIndex.get(keyHash);
+        if (slot == null) {
+            slot = claimSlot(keyHash, fingerprint);
+        }
+        buffer.putLong(slotOffset(slot) + 8, fingerprint);
+    }
+
+    /**
+     * Flush the state to the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (randomAccessFile != null) {
+            buffer.force();
+            randomAccessFile.close();
+            randomAccessFile = null;
+        }
+    }
+
+    /**
+     * Calculate a fingerprint of monitored attribute values that is stable across JVM restarts.
+     *
+     * <p>The fingerprint does not depend on the iteration order of the attribute names.  Values with identity based
+     * hash codes produce a different fingerprint after a restart, which causes one extra event.
+     *
+     * @param attributeNames the names of the monitored attributes
+     * @param attributeMap the attribute values
+     *
+     * @return the fingerprint
+     *
+     * @see AttributeValueComparators#fingerprint(Object)
+     */
+    public static long fingerprint(Set<String> attributeNames, Map<String, Object> attributeMap) {
+        long answer = 0;
+        for (String attributeName : attributeNames) {
+            answer += AttributeValueComparators.mix(AttributeValueComparators.hashString(attributeName) * 31L
+                + AttributeValueComparators.fingerprint(attributeMap.get(attributeName)));
+        }
+
+        return answer;
+    }
+
+    /*
+     * Called while holding the lock
+     */
+    int claimSlot(long keyHash, long fingerprint) {
+        Integer slot = slotIndex.get(keyHash);
+        if (slot != null) {
+            return slot;
+        }
+
+        if (usedSlots >= capacity) {
+            log.warn("State file {} is full ({} ObjectNames) - resetting change detection state", stateFile, capacity);
+            initialize();
+        }
+
+        slot = usedSlots++;
+        int offset = slotOffset(slot);
+        buffer.putLong(offset + 8, fingerprint);
+        buffer.putLong(offset, keyHash);
+        slotIndex.put(keyHash, slot);
+
+        return slot;
+    }
+
+    synchronized void load() throws IOException {
+        long fileSize = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+        randomAccessFile = new RandomAccessFile(stateFile, "rw");
+        boolean existing = randomAccessFile.length() >= HEADER_SIZE;
+        randomAccessFile.setLength(fileSize);
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+        if (existing && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == capacity) {
+            for (int slot = 0; slot < capacity; ++slot) {
+                long keyHash = buffer.getLong(slotOffset(slot));
+                if (keyHash == 0) {
+                    break;
+                }
+                slotIndex.put(keyHash, slot);
+                usedSlots = slot + 1;
+            }
+            log.info("Loaded change detection state for {} ObjectName(s) from {}", usedSlots, stateFile);
+        } else {
+            if (existing) {
+                log.warn("Ignoring incompatible state file {} - change detection state will be rebuilt", stateFile);
+            }
+            initialize();
+        }
+    }
+
+    void initialize() {
+        for (int offset = HEADER_SIZE; offset < buffer.capacity(); offset += 8) {
+            buffer.putLong(offset, 0);
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, 0);
+
+        slotIndex.clear();
+        usedSlots = 0;
+    }
+
+    static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /*
+     * 64-bit FNV-1a hash of the canonical ObjectName - zero is reserved for unused slots
+     */
+    static long keyHash(String objectName) {
+        long answer = AttributeValueComparators.hashString(objectName);
+
+        return (answer != 0) ? answer : 1;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+/**
+ * Measures the cost of retrieving individual attributes and reduces the polling frequency of expensive attributes.
+ *
+ * <p>MBeanServer.getAttributes retrieves the attributes as a batch, so the profiler calls getAttribute for each attribute
+ * of a sample of the ObjectNames and records the mean latency.  When the estimated cost of a poll exceeds the budget,
+ * the most expensive attributes are polled every 2, 4, 8 ... polls until the estimate fits the budget.
+ */
+public class AttributeCostProfiler {
+    public static final int DEFAULT_SAMPLE_SIZE = 5;
+    public static final int MAX_POLL_MULTIPLIER = 64;
+
+    AttributeCostProfiler() {
+    }
+
+    /**
+     * Measure the mean latency of getAttribute for each attribute.
+     *
+     * @param mbeanServer the MBeanServer containing the MBeans - a remote connection is profiled as well
+     * @param sampledAttributes the attribute names to measure, keyed by the sampled ObjectNames
+     *
+     * @return the mean latency in nanoseconds, keyed by attribute name
+     */
+    public static Map<String, Long> measure(MBeanServerConnection mbeanServer, Map<ObjectName, String[]> sampledAttributes) {
+        Map<String, long[]> totals = new HashMap<>();
+        for (Map.Entry<ObjectName, String[]> sample : sampledAttributes.entrySet()) {
+            for (String attributeName : sample.getValue()) {
+                long startNanos = System.nanoTime();
+                try {
+                    mbeanServer.getAttribute(sample.getKey(), attributeName);
+                } catch (Exception getAttributeEx) {
+                    // Attributes that cannot be retrieved are not profiled - getAttributes omits them as well
+                    continue;
+                }
+                long elapsedNanos = System.nanoTime() - startNanos;
+
+                long[] total = totals.get(attributeName);
+                if (total == null) {
+                    total = new long[2];
+                    totals.put(attributeName, total);
+                }
+                total[0] += elapsedNanos;
+                ++total[1];
+            }
+        }
+
+        Map<String, Long> answer = new TreeMap<>();
+        for (Map.Entry<String, long[]> total : totals.entrySet()) {
+            answer.put(total.getKey(), total.getValue()[0] / total.getValue()[1]);
+        }
+
+        return answer;
+    }
+
+    /**
+     * Determine the polling periods that fit the estimated cost of a poll within a budget.
+     *
+     * @param attributeCosts the mean latency of each attribute in nanoseconds
+     * @param objectCount the number of ObjectNames polled
+     * @param budgetNanos the budget for the attribute retrieval of a poll in nanoseconds
+     * @param granularityMillis the polling period in milliseconds
+     *
+     * @return the polling periods in milliseconds of the attributes that should be polled less often
+     */
+    public static Map<String, Long> calculateTierPeriods(Map<String, Long> attributeCosts, int objectCount, long budgetNanos, long granularityMillis) {
+        final Map<String, Integer> multipliers = new HashMap<>();
+        final Map<String, Long> costs = attributeCosts;
+
+        PriorityQueue<String> candidates = new PriorityQueue<>(Math.max(1, attributeCosts.size()), new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                // Highest cost per poll first
+                return Double.compare(costPerPoll(costs, multipliers, second), costPerPoll(costs, multipliers, first));
+            }
+        });
+
+        double totalCost = 0;
+        for (String attributeName : attributeCosts.keySet()) {
+            multipliers.put(attributeName, 1);
+            totalCost += attributeCosts.get(attributeName);
+            candidates.add(attributeName);
+        }
+        totalCost *= objectCount;
+
+        while (totalCost > budgetNanos && !candidates.isEmpty()) {
+            String attributeName = candidates.poll();
+            double currentCost = costPerPoll(costs, multipliers, attributeName);
+            multipliers.put(attributeName, multipliers.get(attributeName) * 2);
+            totalCost -= (currentCost - costPerPoll(costs, multipliers, attributeName)) * objectCount;
+            if (multipliers.get(attributeName) < MAX_POLL_MULTIPLIER) {
+                candidates.add(attributeName);
+            }
+        }
+
+        Map<String, Long> answer = new TreeMap<>();
+        for (Map.Entry<String, Integer> multiplier : multipliers.entrySet()) {
+            if (multiplier.getValue() > 1) {
+                answer.put(multiplier.getKey(), multiplier.getValue() * granularityMillis);
+            }
+        }
+
+        return answer;
+    }
+
+    static double costPerPoll(Map<String, Long> attributeCosts, Map<String, Integer> multipliers, String attributeName) {
+        return (double) attributeCosts.get(attributeName) / multipliers.get(attributeName);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A dotted path selecting an item of a CompositeData attribute - e.g. <code>HeapMemoryUsage.used</code> or
+ * <code>LastGcInfo.duration</code>.
+ *
+ * <p>The first element of the path is the name of the MBean attribute, and each following element is the key of an item
+ * in a (nested) CompositeData value, or of a Map value read directly from a platform MXBean.
+ */
+public class AttributePath {
+    final String name;
+    final String attributeName;
+    final String[] itemPath;
+
+    AttributePath(String name, String attributeName, String[] itemPath) {
+        this.name = name;
+        this.attributeName = attributeName;
+        this.itemPath = itemPath;
+    }
+
+    /**
+     * Determine if an attribute name is a path into a CompositeData attribute.
+     *
+     * @param name the attribute name
+     *
+     * @return true if the name contains a path separator; false otherwise
+     */
+    public static boolean isPath(String name) {
+        return name != null && name.indexOf('.') >= 0;
+    }
+
+    /**
+     * Parse a dotted path.
+     *
+     * @param name the path
+     *
+     * @return the parsed path
+     *
+     * @throws IllegalArgumentException if the path contains an empty element
+     */
+    public static AttributePath parse(String name) {
+        String[] path = name.split("\\.", -1);
+        for (String element : path) {
+            if (element.trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid attribute path '" + name + "'");
+            }
+        }
+
+        return new AttributePath(name, path[0], Arrays.copyOfRange(path, 1, path.length));
+    }
+
+    /**
+     * Get the full path, which is used as the name of the selected value.
+     *
+     * @return the path
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the name of the MBean attribute containing the selected value.
+     *
+     * @return the attribute name
+     */
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * Select the item from the value of the MBean attribute.
+     *
+     * @param attributeValue the value of the MBean attribute
+     *
+     * @return the selected item; null if the path does not exist in the value
+     */
+    public Object select(Object attributeValue) {
+        Object answer = attributeValue;
+        for (String item : itemPath) {
+            if (answer instanceof CompositeData && ((CompositeData) answer).containsKey(item)) {
+                answer = ((CompositeData) answer).get(item);
+            } else if (answer instanceof Map && ((Map<?, ?>) answer).containsKey(item)) {
+                answer = ((Map<?, ?>) answer).get(item);
+            } else {
+                return null;
+            }
+        }
+
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+
+/**
+ * The last known values of attributes that are polled less often than the granularity period.
+ *
+ * <p>A tiered attribute is only retrieved when its tier period has elapsed since it was last retrieved for the
+ * ObjectName - the cached value is added to the AttributeList of the other polls, so every event contains all the
+ * attributes.
+ */
+public class AttributeTierCache {
+    volatile Map<String, Long> tierPeriods;
+    final long toleranceMillis;
+    final ConcurrentMap<ObjectName, ConcurrentMap<String, CachedAttribute>> cachedAttributes = new ConcurrentHashMap<>();
+
+    /**
+     * Create the cache.
+     *
+     * @param tierPeriods the tier period in milliseconds, keyed by attribute name
+     * @param toleranceMillis an attribute is due this long before its tier period elapses, so a tier is not delayed by
+     *                        one extra poll when the polls are slightly early
+     */
+    public AttributeTierCache(Map<String, Long> tierPeriods, long toleranceMillis) {
+        setTierPeriods(tierPeriods);
+        this.toleranceMillis = toleranceMillis;
+    }
+
+    public Map<String, Long> getTierPeriods() {
+        return tierPeriods;
+    }
+
+    /**
+     * Replace the tier periods - e.g. after the attribute costs are measured.
+     *
+     * @param tierPeriods the tier period in milliseconds, keyed by attribute name
+     */
+    public void setTierPeriods(Map<String, Long> tierPeriods) {
+        this.tierPeriods = Collections.unmodifiableMap(new TreeMap<>(tierPeriods));
+    }
+
+    public int size() {
+        return cachedAttributes.size();
+    }
+
+    /**
+     * Remove the attributes that are not due from the attributes to retrieve.
+     *
+     * @param objectName the ObjectName being polled
+     * @param attributeNames the attributes to retrieve
+     * @param currentTimeMillis the current time
+     *
+     * @return the attributes that are not tiered or are due
+     */
+    public String[] getDueAttributes(ObjectName objectName, String[] attributeNames, long currentTimeMillis) {
+        Map<String, Long> tierPeriods = this.tierPeriods;
+        Map<String, CachedAttribute> objectAttributes = cachedAttributes.get(objectName);
+        if (objectAttributes == null) {
+            return attributeNames;
+        }
+
+        List<String> answer = new ArrayList<>(attributeNames.length);
+        for (String attributeName : attributeNames) {
+            Long tierPeriod = tierPeriods.get(attributeName);
+            CachedAttribute cachedAttribute = objectAttributes.get(attributeName);
+            if (tierPeriod == null || cachedAttribute == null || currentTimeMillis - cachedAttribute.retrievalTime >= tierPeriod - toleranceMillis) {
+                answer.add(attributeName);
+            }
+        }
+
+        return (answer.size() == attributeNames.length) ? attributeNames : answer.toArray(new String[answer.size()]);
+    }
+
+    /**
+     * Cache the retrieved tiered attributes, and add the cached values of the tiered attributes that were not retrieved.
+     *
+     * @param objectName the ObjectName being polled
+     * @param attributeList the retrieved attributes
+     * @param currentTimeMillis the current time
+     */
+    public void merge(ObjectName objectName, AttributeList attributeList, long currentTimeMillis) {
+        Map<String, Long> tierPeriods = this.tierPeriods;
+        ConcurrentMap<String, CachedAttribute> objectAttributes = cachedAttributes.get(objectName);
+        if (objectAttributes == null) {
+            objectAttributes = new ConcurrentHashMap<>();
+            ConcurrentMap<String, CachedAttribute> existing = cachedAttributes.putIfAbsent(objectName, objectAttributes);
+            if (existing != null) {
+                objectAttributes = existing;
+            }
+        }
+
+        Set<String> retrievedAttributeNames = new HashSet<>();
+        for (Object attributeObject : attributeList) {
+            Attribute attribute = (Attribute) attributeObject;
+            if (tierPeriods.containsKey(attribute.getName())) {
+                objectAttributes.put(attribute.getName(), new CachedAttribute(attribute, currentTimeMillis));
+                retrievedAttributeNames.add(attribute.getName());
+            }
+        }
+
+        for (Map.Entry<String, CachedAttribute> cachedAttribute : objectAttributes.entrySet()) {
+            if (!retrievedAttributeNames.contains(cachedAttribute.getKey()) && tierPeriods.containsKey(cachedAttribute.getKey())) {
+                attributeList.add(cachedAttribute.getValue().attribute);
+            }
+        }
+    }
+
+    /**
+     * Discard the cached values of ObjectNames that are no longer polled.
+     *
+     * @param objectNames the ObjectNames to keep
+     */
+    public void retain(Set<ObjectName> objectNames) {
+        cachedAttributes.keySet().retainAll(objectNames);
+    }
+
+    static class CachedAttribute {
+        final Attribute attribute;
+        final long retrievalTime;
+
+        CachedAttribute(Attribute attribute, long retrievalTime) {
+            this.attribute = attribute;
+            this.retrievalTime = retrievalTime;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+/**
+ * Change detection strategy for the values of a monitored attribute.
+ *
+ * @see AttributeValueComparators
+ */
+public interface AttributeValueComparator {
+    /**
+     * Create the representation of a value that is retained until the next poll.
+     *
+     * @param value the current attribute value (never null)
+     *
+     * @return the value to retain
+     */
+    Object retain(Object value);
+
+    /**
+     * Determine if the value of an attribute has changed.
+     *
+     * @param retainedValue the value returned by {@link #retain(Object)} for the previous value (never null)
+     * @param newValue the current attribute value (never null)
+     *
+     * @return true if the value has changed; false otherwise
+     */
+    boolean hasChanged(Object retainedValue, Object newValue);
+}
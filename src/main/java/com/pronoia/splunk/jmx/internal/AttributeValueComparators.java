@@ -0,0 +1,323 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Registry of the {@link AttributeValueComparator} used for each attribute value type.
+ *
+ * <p>By default arrays are compared by content, and large CompositeData, TabularData and Map values (more than
+ * {@value #FINGERPRINT_THRESHOLD} items, counting nested items and rows) are reduced to a 64-bit fingerprint so the
+ * previous value does not have to be retained.  Smaller values (e.g. a MemoryUsage) and all other values are compared
+ * with equals.
+ */
+public final class AttributeValueComparators {
+    /**
+     * Compares values with {@link Object#equals(Object)}.
+     */
+    public static final AttributeValueComparator EQUALS = new AttributeValueComparator() {
+        @Override
+        public Object retain(Object value) {
+            return value;
+        }
+
+        @Override
+        public boolean hasChanged(Object retainedValue, Object newValue) {
+            return !newValue.equals(retainedValue);
+        }
+    };
+
+    /**
+     * Compares arrays (including nested and primitive arrays) by content.
+     */
+    public static final AttributeValueComparator ARRAY_CONTENT = new AttributeValueComparator() {
+        @Override
+        public Object retain(Object value) {
+            return value;
+        }
+
+        @Override
+        public boolean hasChanged(Object retainedValue, Object newValue) {
+            return !Objects.deepEquals(retainedValue, newValue);
+        }
+    };
+
+    /**
+     * Retains and compares a 64-bit fingerprint of the value.
+     */
+    public static final AttributeValueComparator FINGERPRINT = new AttributeValueComparator() {
+        @Override
+        public Object retain(Object value) {
+            return new Fingerprint(fingerprint(value));
+        }
+
+        @Override
+        public boolean hasChanged(Object retainedValue, Object newValue) {
+            return !(retainedValue instanceof Fingerprint) || ((Fingerprint) retainedValue).value != fingerprint(newValue);
+        }
+    };
+
+    /**
+     * Retains and compares a 64-bit fingerprint of values with more than {@value #FINGERPRINT_THRESHOLD} items - smaller
+     * values are retained and compared with equals, which is cheaper than hashing them.
+     */
+    public static final AttributeValueComparator LARGE_VALUE_FINGERPRINT = new AttributeValueComparator() {
+        @Override
+        public Object retain(Object value) {
+            return isLarge(value) ? FINGERPRINT.retain(value) : value;
+        }
+
+        @Override
+        public boolean hasChanged(Object retainedValue, Object newValue) {
+            if (retainedValue instanceof Fingerprint) {
+                return FINGERPRINT.hasChanged(retainedValue, newValue);
+            }
+            return !newValue.equals(retainedValue);
+        }
+    };
+
+    /**
+     * The number of items (including nested items and rows) above which a value is reduced to a fingerprint.
+     */
+    public static final int FINGERPRINT_THRESHOLD = 16;
+
+    static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    static final ConcurrentMap<Class<?>, AttributeValueComparator> REGISTERED_COMPARATORS = new ConcurrentHashMap<>();
+    static final ConcurrentMap<Class<?>, AttributeValueComparator> RESOLVED_COMPARATORS = new ConcurrentHashMap<>();
+
+    private AttributeValueComparators() {
+    }
+
+    /**
+     * Register the comparator for a value type.
+     *
+     * <p>The comparator is used for values of the type and its subtypes, unless a more specific type is registered.
+     *
+     * @param valueType the type of the attribute values
+     * @param comparator the comparator for the values
+     */
+    public static void register(Class<?> valueType, AttributeValueComparator comparator) {
+        REGISTERED_COMPARATORS.put(valueType, comparator);
+        RESOLVED_COMPARATORS.clear();
+    }
+
+    /**
+     * Get the comparator for an attribute value.
+     *
+     * @param value the attribute value
+     *
+     * @return the comparator for the type of the value
+     */
+    public static AttributeValueComparator forValue(Object value) {
+        if (value == null) {
+            return EQUALS;
+        }
+
+        Class<?> valueType = value.getClass();
+        AttributeValueComparator answer = RESOLVED_COMPARATORS.get(valueType);
+        if (answer == null) {
+            answer = resolve(valueType);
+            RESOLVED_COMPARATORS.put(valueType, answer);
+        }
+
+        return answer;
+    }
+
+    /**
+     * Calculate a 64-bit fingerprint of an attribute value.
+     *
+     * <p>The fingerprint only depends on the content of the value, so it is stable across JVM restarts for Open
+     * Types, arrays and any other type with a content based hashCode.
+     *
+     * @param value the attribute value
+     *
+     * @return the fingerprint
+     */
+    public static long fingerprint(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return hashString((String) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return Double.doubleToLongBits(((Number) value).doubleValue());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof CompositeData) {
+            CompositeData compositeData = (CompositeData) value;
+            long answer = hashString(compositeData.getCompositeType().getTypeName());
+            // CompositeType.keySet() is sorted, so the fingerprint does not depend on the item order
+            for (String key : compositeData.getCompositeType().keySet()) {
+                answer = (answer ^ hashString(key)) * FNV_PRIME;
+                answer = (answer ^ fingerprint(compositeData.get(key))) * FNV_PRIME;
+            }
+            return answer;
+        } else if (value instanceof TabularData) {
+            TabularData tabularData = (TabularData) value;
+            long answer = hashString(tabularData.getTabularType().getTypeName());
+            // Rows are unordered - sum the mixed row fingerprints
+            for (Object row : tabularData.values()) {
+                answer += mix(fingerprint(row));
+            }
+            return answer;
+        } else if (value instanceof Map) {
+            long answer = FNV_OFFSET_BASIS;
+            // Entries are unordered - sum the mixed entry fingerprints
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                answer += mix((fingerprint(entry.getKey()) ^ fingerprint(entry.getValue())) * FNV_PRIME);
+            }
+            return answer;
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            long answer = FNV_OFFSET_BASIS ^ length;
+            for (int i = 0; i < length; ++i) {
+                answer = (answer ^ fingerprint(Array.get(value, i))) * FNV_PRIME;
+            }
+            return answer;
+        }
+
+        return value.hashCode();
+    }
+
+    /**
+     * Determine if a CompositeData, TabularData or Map value has more than {@value #FINGERPRINT_THRESHOLD} items.
+     *
+     * @param value the attribute value
+     *
+     * @return true if the value should be reduced to a fingerprint
+     */
+    public static boolean isLarge(Object value) {
+        return countItems(value, FINGERPRINT_THRESHOLD + 1) > FINGERPRINT_THRESHOLD;
+    }
+
+    /*
+     * Count the items, nested items and rows of a value - the count stops once it reaches the limit
+     */
+    static int countItems(Object value, int limit) {
+        int answer = 0;
+        if (value instanceof CompositeData) {
+            CompositeData compositeData = (CompositeData) value;
+            for (String key : compositeData.getCompositeType().keySet()) {
+                if (++answer >= limit) {
+                    return answer;
+                }
+                answer += countItems(compositeData.get(key), limit - answer);
+                if (answer >= limit) {
+                    return answer;
+                }
+            }
+        } else if (value instanceof TabularData || value instanceof Map) {
+            Iterable<?> rows = (value instanceof TabularData) ? ((TabularData) value).values() : ((Map<?, ?>) value).values();
+            for (Object row : rows) {
+                if (++answer >= limit) {
+                    return answer;
+                }
+                answer += countItems(row, limit - answer);
+                if (answer >= limit) {
+                    return answer;
+                }
+            }
+        }
+
+        return answer;
+    }
+
+    /*
+     * 64-bit FNV-1a hash of a String
+     */
+    static long hashString(String value) {
+        long answer = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); ++i) {
+            answer ^= value.charAt(i);
+            answer *= FNV_PRIME;
+        }
+
+        return answer;
+    }
+
+    /*
+     * Finalization step of MurmurHash3 - used where fingerprints are combined by addition so they do not cancel out
+     */
+    static long mix(long value) {
+        long answer = value;
+        answer ^= answer >>> 33;
+        answer *= 0xff51afd7ed558ccdL;
+        answer ^= answer >>> 33;
+        answer *= 0xc4ceb9fe1a85ec53L;
+        answer ^= answer >>> 33;
+
+        return answer;
+    }
+
+    static AttributeValueComparator resolve(Class<?> valueType) {
+        for (Class<?> type = valueType; type != null; type = type.getSuperclass()) {
+            AttributeValueComparator registered = REGISTERED_COMPARATORS.get(type);
+            if (registered != null) {
+                return registered;
+            }
+        }
+        for (Class<?> registeredType : REGISTERED_COMPARATORS.keySet()) {
+            if (registeredType.isAssignableFrom(valueType)) {
+                return REGISTERED_COMPARATORS.get(registeredType);
+            }
+        }
+
+        if (valueType.isArray()) {
+            return ARRAY_CONTENT;
+        } else if (CompositeData.class.isAssignableFrom(valueType) || TabularData.class.isAssignableFrom(valueType)
+            || Map.class.isAssignableFrom(valueType)) {
+            return LARGE_VALUE_FINGERPRINT;
+        }
+
+        return EQUALS;
+    }
+
+    /**
+     * The value retained by the {@link #FINGERPRINT} comparator.
+     */
+    static final class Fingerprint {
+        final long value;
+
+        Fingerprint(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Fingerprint && ((Fingerprint) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("fingerprint:%016x", value);
+        }
+    }
+}
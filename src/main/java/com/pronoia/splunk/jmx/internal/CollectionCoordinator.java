@@ -0,0 +1,406 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.eventcollector.SplunkMDCHelper;
+import com.pronoia.splunk.eventcollector.util.NamedThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM-wide attribute collection for change monitors with shared collection enabled.
+ *
+ * <p>Runnables with the same granularity period are polled together on a tick aligned to the wall clock.  The
+ * attributes requested by all the runnables for an ObjectName are retrieved with a single getAttributes call, and each
+ * runnable receives the subset it requested for change detection and event building.
+ */
+public class CollectionCoordinator implements CollectionCoordinatorMBean {
+    static final CollectionCoordinator INSTANCE = new CollectionCoordinator();
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    final Map<Long, CollectionTick> ticks = new TreeMap<>();
+    final AtomicLong attributeRequestCount = new AtomicLong();
+    final AtomicLong mergedRequestCount = new AtomicLong();
+
+    ScheduledExecutorService executor;
+    ObjectName coordinatorObjectName;
+
+    volatile long lastCollectionObjectCount;
+    volatile long lastCollectionRequestCount;
+
+    CollectionCoordinator() {
+    }
+
+    public static CollectionCoordinator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add a runnable to the collection tick for its granularity period.
+     *
+     * @param runnable the runnable
+     * @param granularityPeriod the polling period in seconds
+     */
+    public synchronized void register(AttributeChangeMonitorRunnable runnable, long granularityPeriod) {
+        CollectionTick tick = ticks.get(granularityPeriod);
+        if (tick == null) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(this.getClass().getSimpleName()));
+                registerMBean();
+            }
+
+            tick = new CollectionTick(granularityPeriod);
+            long periodMillis = TimeUnit.SECONDS.toMillis(granularityPeriod);
+            long initialDelay = PollScheduling.alignedDelay(System.currentTimeMillis(), periodMillis, 0);
+            tick.future = executor.scheduleAtFixedRate(tick, initialDelay, periodMillis, TimeUnit.MILLISECONDS);
+            ticks.put(granularityPeriod, tick);
+            log.info("Scheduled shared collection every {} second(s)", granularityPeriod);
+        }
+
+        tick.runnables.add(runnable);
+    }
+
+    /**
+     * Remove a runnable from shared collection.
+     *
+     * @param runnable the runnable
+     *
+     * @return true if the runnable was registered; false otherwise
+     */
+    public synchronized boolean unregister(AttributeChangeMonitorRunnable runnable) {
+        for (CollectionTick tick : ticks.values()) {
+            if (tick.runnables.remove(runnable)) {
+                if (tick.runnables.isEmpty()) {
+                    tick.future.cancel(false);
+                    ticks.remove(tick.granularityPeriod);
+                }
+                if (ticks.isEmpty()) {
+                    executor.shutdown();
+                    executor = null;
+                    unregisterMBean();
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Schedule a single poll of a registered runnable on the collection thread, so it cannot overlap the ticks.
+     *
+     * @param runnable the runnable
+     * @param delayMillis the delay before the poll in milliseconds
+     */
+    public synchronized void scheduleBootstrap(final AttributeChangeMonitorRunnable runnable, long delayMillis) {
+        if (executor == null) {
+            return;
+        }
+
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (isRegistered(runnable)) {
+                        collect(Collections.singletonList(runnable));
+                    }
+                } catch (Throwable unexpectedEx) {
+                    log.warn("Unexpected {} in bootstrap poll for JMX ObjectName {}", unexpectedEx.getClass().getSimpleName(), runnable.getObjectNameQuery(), unexpectedEx);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized boolean isRegistered(AttributeChangeMonitorRunnable runnable) {
+        for (CollectionTick tick : ticks.values()) {
+            if (tick.runnables.contains(runnable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized int getRunnableCount() {
+        int answer = 0;
+        for (CollectionTick tick : ticks.values()) {
+            answer += tick.runnables.size();
+        }
+        return answer;
+    }
+
+    @Override
+    public synchronized Set<Long> getGranularityPeriods() {
+        return new TreeSet<>(ticks.keySet());
+    }
+
+    @Override
+    public long getLastCollectionObjectCount() {
+        return lastCollectionObjectCount;
+    }
+
+    @Override
+    public long getLastCollectionRequestCount() {
+        return lastCollectionRequestCount;
+    }
+
+    @Override
+    public long getAttributeRequestCount() {
+        return attributeRequestCount.get();
+    }
+
+    /**
+     * Get the number of getAttributes calls avoided by merging the requests of several runnables.
+     *
+     * @return the number of avoided calls
+     */
+    @Override
+    public long getMergedRequestCount() {
+        return mergedRequestCount.get();
+    }
+
+    /**
+     * Run the collection tick for a granularity period.
+     *
+     * @param granularityPeriod the polling period in seconds
+     */
+    void collect(long granularityPeriod) {
+        CollectionTick tick;
+        synchronized (this) {
+            tick = ticks.get(granularityPeriod);
+        }
+        if (tick != null) {
+            collect(tick.runnables);
+        }
+    }
+
+    void collect(List<AttributeChangeMonitorRunnable> registeredRunnables) {
+        long pollStartNanos = System.nanoTime();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        Map<ObjectName, CollectionPlan> plans = new LinkedHashMap<>();
+        long requestCount = 0;
+
+        List<AttributeChangeMonitorRunnable> runnables = new ArrayList<>(registeredRunnables.size());
+        for (AttributeChangeMonitorRunnable runnable : registeredRunnables) {
+            if (runnable.beginCycle()) {
+                runnables.add(runnable);
+            }
+        }
+
+        try {
+            for (AttributeChangeMonitorRunnable runnable : runnables) {
+                try (SplunkMDCHelper helper = runnable.createMdcHelper()) {
+                    for (ObjectName objectName : runnable.startPoll(mbeanServer)) {
+                        try {
+                            CollectionPlan plan = plans.get(objectName);
+                            if (plan == null) {
+                                plan = new CollectionPlan(objectName);
+                                plans.put(objectName, plan);
+                            }
+                            plan.add(runnable, runnable.getQueriedAttributeNames(mbeanServer, objectName));
+                        } catch (InstanceNotFoundException | ReflectionException | IntrospectionException | IOException jmxEx) {
+                            log.warn("Unexpected {} in collect for JMX ObjectName {}[{}]",
+                                jmxEx.getClass().getSimpleName(), runnable.getObjectNameQuery(), objectName, jmxEx);
+                        }
+                    }
+                }
+            }
+
+            for (CollectionPlan plan : plans.values()) {
+                AttributeList attributeList;
+                try {
+                    attributeList = plan.platformFastPath
+                        ? PlatformAttributeReader.getInstance().getAttributes(mbeanServer, plan.objectName, plan.getAttributeNames())
+                        : mbeanServer.getAttributes(plan.objectName, plan.getAttributeNames());
+                } catch (InstanceNotFoundException | ReflectionException | IOException jmxEx) {
+                    log.warn("Unexpected {} in collect for JMX ObjectName {}", jmxEx.getClass().getSimpleName(), plan.objectName, jmxEx);
+                    continue;
+                }
+                ++requestCount;
+                mergedRequestCount.addAndGet(plan.runnables.size() - 1);
+
+                for (int i = 0; i < plan.runnables.size(); ++i) {
+                    AttributeChangeMonitorRunnable runnable = plan.runnables.get(i);
+                    try (SplunkMDCHelper helper = runnable.createMdcHelper()) {
+                        runnable.processAttributes(plan.objectName, plan.attributeNames.get(i), plan.select(attributeList, i));
+                    } catch (EventDeliveryException eventDeliveryEx) {
+                        log.error("Failed to deliver event {}[{}]: {}",
+                            runnable.getObjectNameQuery(), plan.objectName.getCanonicalName(), eventDeliveryEx.getEvent(), eventDeliveryEx);
+                    } catch (Throwable unexpectedEx) {
+                        log.warn("Unexpected {} in collect for JMX ObjectName {}[{}]",
+                            unexpectedEx.getClass().getSimpleName(), runnable.getObjectNameQuery(), plan.objectName, unexpectedEx);
+                    }
+                }
+            }
+
+            for (AttributeChangeMonitorRunnable runnable : runnables) {
+                try (SplunkMDCHelper helper = runnable.createMdcHelper()) {
+                    runnable.completePoll(pollStartNanos);
+                }
+            }
+        } finally {
+            for (AttributeChangeMonitorRunnable runnable : runnables) {
+                runnable.endCycle();
+            }
+        }
+
+        attributeRequestCount.addAndGet(requestCount);
+        lastCollectionObjectCount = plans.size();
+        lastCollectionRequestCount = requestCount;
+    }
+
+    void registerMBean() {
+        String newCoordinatorObjectNameString = String.format("com.pronoia.splunk.httpec:type=%s", this.getClass().getSimpleName());
+        try {
+            coordinatorObjectName = new ObjectName(newCoordinatorObjectNameString);
+        } catch (MalformedObjectNameException malformedNameEx) {
+            log.warn("Failed to create ObjectName for string {} - MBean will not be registered", newCoordinatorObjectNameString, malformedNameEx);
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, coordinatorObjectName);
+        } catch (InstanceAlreadyExistsException allreadyExistsEx) {
+            log.warn("MBean already registered for collection coordinator {}", coordinatorObjectName, allreadyExistsEx);
+        } catch (MBeanRegistrationException registrationEx) {
+            log.warn("MBean registration failure for collection coordinator {}", newCoordinatorObjectNameString, registrationEx);
+        } catch (NotCompliantMBeanException nonCompliantMBeanEx) {
+            log.warn("Invalid MBean for collection coordinator {}", newCoordinatorObjectNameString, nonCompliantMBeanEx);
+        }
+    }
+
+    void unregisterMBean() {
+        if (coordinatorObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(coordinatorObjectName);
+            } catch (InstanceNotFoundException | MBeanRegistrationException unregisterEx) {
+                log.warn("Failed to unregister collection coordinator MBean {}", coordinatorObjectName.getCanonicalName(), unregisterEx);
+            } finally {
+                coordinatorObjectName = null;
+            }
+        }
+    }
+
+    class CollectionTick implements Runnable {
+        final long granularityPeriod;
+        final List<AttributeChangeMonitorRunnable> runnables = new CopyOnWriteArrayList<>();
+        ScheduledFuture<?> future;
+
+        CollectionTick(long granularityPeriod) {
+            this.granularityPeriod = granularityPeriod;
+        }
+
+        @Override
+        public void run() {
+            try {
+                collect(runnables);
+            } catch (Throwable unexpectedEx) {
+                // An exception would cancel the tick
+                log.warn("Unexpected {} in shared collection every {} second(s)", unexpectedEx.getClass().getSimpleName(), granularityPeriod, unexpectedEx);
+            }
+        }
+    }
+
+    /*
+     * The runnables polling an ObjectName in a tick and the union of the attributes they requested
+     */
+    static class CollectionPlan {
+        final ObjectName objectName;
+        final List<AttributeChangeMonitorRunnable> runnables = new ArrayList<>();
+        final List<String[]> attributeNames = new ArrayList<>();
+        final List<Set<String>> attributeNameSets = new ArrayList<>();
+        final Set<String> mergedAttributeNames = new LinkedHashSet<>();
+        boolean platformFastPath = true;
+
+        CollectionPlan(ObjectName objectName) {
+            this.objectName = objectName;
+        }
+
+        void add(AttributeChangeMonitorRunnable runnable, String[] requestedAttributeNames) {
+            Set<String> requestedAttributeNameSet = new HashSet<>();
+            for (String attributeName : requestedAttributeNames) {
+                requestedAttributeNameSet.add(attributeName);
+            }
+
+            runnables.add(runnable);
+            attributeNames.add(requestedAttributeNames);
+            // The merged values are shared, so the fast path is only used if every runnable accepts it
+            platformFastPath &= runnable.platformAttributeReader != null;
+            attributeNameSets.add(requestedAttributeNameSet);
+            mergedAttributeNames.addAll(requestedAttributeNameSet);
+        }
+
+        String[] getAttributeNames() {
+            return mergedAttributeNames.toArray(new String[mergedAttributeNames.size()]);
+        }
+
+        /*
+         * Each runnable modifies its AttributeList, so the retrieved list is only handed over to the last runnable if
+         * it requested every attribute
+         */
+        AttributeList select(AttributeList attributeList, int index) {
+            Set<String> requestedAttributeNameSet = attributeNameSets.get(index);
+            if (index == runnables.size() - 1 && requestedAttributeNameSet.size() == mergedAttributeNames.size()) {
+                return attributeList;
+            }
+
+            AttributeList answer = new AttributeList(requestedAttributeNameSet.size());
+            for (Object attributeObject : attributeList) {
+                Attribute attribute = (Attribute) attributeObject;
+                if (requestedAttributeNameSet.contains(attribute.getName())) {
+                    answer.add(attribute);
+                }
+            }
+
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Assigns keys to member nodes with consistent hashing.
+ *
+ * <p>Each member is placed on the ring at a number of virtual node positions, and a key is owned by the member at the
+ * first position at or after the hash of the key.  When a member joins it only takes keys from the other members, and
+ * when a member leaves only its keys move - about 1/n of the keys in both cases.
+ */
+public class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    final Set<String> members;
+    final TreeMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Set<String> members) {
+        this(members, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(Set<String> members, int virtualNodes) {
+        this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; ++i) {
+                // Collisions are resolved in favor of the lower member id, so every node builds the same ring
+                Long position = hash(member + "#" + i);
+                String existingMember = ring.get(position);
+                if (existingMember == null || member.compareTo(existingMember) < 0) {
+                    ring.put(position, member);
+                }
+            }
+        }
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Get the member that owns a key.
+     *
+     * @param key the key
+     *
+     * @return the owning member; null if there are no members
+     */
+    public String getOwner(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return (entry != null) ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    static long hash(String value) {
+        return AttributeValueComparators.mix(AttributeValueComparators.hashString(value));
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An attribute calculated from the values of other attributes when an ObjectName is polled.
+ *
+ * <p>The expression supports numeric literals, attribute references, the operators + - * / and parentheses - e.g.
+ * <code>EnqueueCount - DequeueCount</code> or <code>HeapMemoryUsage.used / HeapMemoryUsage.max</code>.  A dotted
+ * reference is a path into a CompositeData attribute.  Boolean values evaluate to 1 or 0.
+ *
+ * <p>The expression is parsed once into a tree of evaluators, and evaluation does not allocate.  If a referenced value
+ * is missing or not numeric, or a division by zero occurs, the result is NaN and the derived attribute is omitted.
+ */
+public class DerivedAttribute {
+    final String name;
+    final String expression;
+    final Node root;
+    final Set<String> referencedAttributes;
+
+    DerivedAttribute(String name, String expression, Node root, Set<String> referencedAttributes) {
+        this.name = name;
+        this.expression = expression;
+        this.root = root;
+        this.referencedAttributes = Collections.unmodifiableSet(referencedAttributes);
+    }
+
+    /**
+     * Compile a derived attribute definition.
+     *
+     * @param name the name of the derived attribute
+     * @param expression the expression
+     *
+     * @return the compiled derived attribute
+     *
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static DerivedAttribute compile(String name, String expression) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Derived attribute name must be specified");
+        }
+        if (expression == null) {
+            throw new IllegalArgumentException("Expression must be specified for derived attribute " + name);
+        }
+
+        Parser parser = new Parser(expression);
+        Node root = parser.parseExpression();
+        if (parser.position < expression.length()) {
+            throw parser.error("Unexpected character '" + expression.charAt(parser.position) + "'");
+        }
+
+        return new DerivedAttribute(name, expression, root, parser.referencedAttributes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the names of the MBean attributes used by the expression (the first element of dotted paths).
+     *
+     * @return the referenced attribute names
+     */
+    public Set<String> getReferencedAttributes() {
+        return referencedAttributes;
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @param attributeMap the attribute values of the ObjectName
+     *
+     * @return the value of the derived attribute; NaN if it cannot be calculated
+     */
+    public double evaluate(Map<String, Object> attributeMap) {
+        return root.evaluate(attributeMap);
+    }
+
+    @Override
+    public String toString() {
+        return name + " = " + expression;
+    }
+
+    abstract static class Node {
+        abstract double evaluate(Map<String, Object> attributeMap);
+    }
+
+    static class Constant extends Node {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(Map<String, Object> attributeMap) {
+            return value;
+        }
+    }
+
+    static class Reference extends Node {
+        final AttributePath path;
+
+        Reference(AttributePath path) {
+            this.path = path;
+        }
+
+        @Override
+        double evaluate(Map<String, Object> attributeMap) {
+            Object value = path.select(attributeMap.get(path.getAttributeName()));
+
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                return ((Boolean) value) ? 1 : 0;
+            }
+
+            return Double.NaN;
+        }
+    }
+
+    static class Negate extends Node {
+        final Node operand;
+
+        Negate(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate(Map<String, Object> attributeMap) {
+            return -operand.evaluate(attributeMap);
+        }
+    }
+
+    static class Binary extends Node {
+        final char operator;
+        final Node left;
+        final Node right;
+
+        Binary(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(Map<String, Object> attributeMap) {
+            double leftValue = left.evaluate(attributeMap);
+            double rightValue = right.evaluate(attributeMap);
+            switch (operator) {
+                case '+':
+                    return leftValue + rightValue;
+                case '-':
+                    return leftValue - rightValue;
+                case '*':
+                    return leftValue * rightValue;
+                default:
+                    return (rightValue != 0) ? leftValue / rightValue : Double.NaN;
+            }
+        }
+    }
+
+    /*
+     * Recursive descent parser:
+     *   expression := term (('+' | '-') term)*
+     *   term       := factor (('*' | '/') factor)*
+     *   factor     := '-' factor | '(' expression ')' | number | reference
+     */
+    static class Parser {
+        final String expression;
+        final Set<String> referencedAttributes = new TreeSet<>();
+        int position;
+
+        Parser(String expression) {
+            this.expression = expression;
+        }
+
+        Node parseExpression() {
+            Node answer = parseTerm();
+            for (char operator = peek(); operator == '+' || operator == '-'; operator = peek()) {
+                ++position;
+                answer = new Binary(operator, answer, parseTerm());
+            }
+            return answer;
+        }
+
+        Node parseTerm() {
+            Node answer = parseFactor();
+            for (char operator = peek(); operator == '*' || operator == '/'; operator = peek()) {
+                ++position;
+                answer = new Binary(operator, answer, parseFactor());
+            }
+            return answer;
+        }
+
+        Node parseFactor() {
+            char next = peek();
+            if (next == '-') {
+                ++position;
+                return new Negate(parseFactor());
+            } else if (next == '(') {
+                ++position;
+                Node answer = parseExpression();
+                if (peek() != ')') {
+                    throw error("Missing ')'");
+                }
+                ++position;
+                return answer;
+            } else if (Character.isDigit(next) || next == '.') {
+                return parseNumber();
+            } else if (Character.isJavaIdentifierStart(next)) {
+                return parseReference();
+            }
+
+            throw error(next == 0 ? "Unexpected end of expression" : "Unexpected character '" + next + "'");
+        }
+
+        Node parseNumber() {
+            int start = position;
+            while (position < expression.length() && (Character.isDigit(expression.charAt(position)) || expression.charAt(position) == '.')) {
+                ++position;
+            }
+            try {
+                return new Constant(Double.parseDouble(expression.substring(start, position)));
+            } catch (NumberFormatException numberFormatEx) {
+                throw error("Invalid number '" + expression.substring(start, position) + "'");
+            }
+        }
+
+        Node parseReference() {
+            int start = position;
+            while (position < expression.length()
+                && (Character.isJavaIdentifierPart(expression.charAt(position)) || expression.charAt(position) == '.')) {
+                ++position;
+            }
+
+            AttributePath path;
+            try {
+                path = AttributePath.parse(expression.substring(start, position));
+            } catch (IllegalArgumentException invalidPathEx) {
+                throw error(invalidPathEx.getMessage());
+            }
+            referencedAttributes.add(path.getAttributeName());
+
+            return new Reference(path);
+        }
+
+        /*
+         * The next non-whitespace character; 0 at the end of the expression
+         */
+        char peek() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                ++position;
+            }
+            return (position < expression.length()) ? expression.charAt(position) : 0;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(String.format("%s at position %d in expression '%s'", message, position, expression));
+        }
+    }
+}
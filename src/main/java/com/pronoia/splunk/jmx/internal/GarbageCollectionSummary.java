@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+/**
+ * Immutable summary of the collections performed by one garbage collector during one aggregation window.
+ *
+ * <p>Durations are in milliseconds, sizes in bytes and rates in bytes per second.  The allocation is measured for the
+ * whole JVM, so the summaries of all the collectors for a window report the same allocation.
+ */
+public class GarbageCollectionSummary {
+    final String gcName;
+    final String source;
+    final long windowStartTime;
+    final long windowEndTime;
+    final long collectionCount;
+    final long outlierCount;
+    final long totalPause;
+    final long maxPause;
+    final long p99Pause;
+    final long allocatedBytes;
+    final long promotedBytes;
+
+    public GarbageCollectionSummary(String gcName, String source, long windowStartTime, long windowEndTime,
+                                    long collectionCount, long outlierCount, long totalPause, long maxPause, long p99Pause,
+                                    long allocatedBytes, long promotedBytes) {
+        this.gcName = gcName;
+        this.source = source;
+        this.windowStartTime = windowStartTime;
+        this.windowEndTime = windowEndTime;
+        this.collectionCount = collectionCount;
+        this.outlierCount = outlierCount;
+        this.totalPause = totalPause;
+        this.maxPause = maxPause;
+        this.p99Pause = p99Pause;
+        this.allocatedBytes = allocatedBytes;
+        this.promotedBytes = promotedBytes;
+    }
+
+    public String getGcName() {
+        return gcName;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getWindowStartTime() {
+        return windowStartTime;
+    }
+
+    public long getWindowEndTime() {
+        return windowEndTime;
+    }
+
+    public long getCollectionCount() {
+        return collectionCount;
+    }
+
+    public long getOutlierCount() {
+        return outlierCount;
+    }
+
+    public long getTotalPause() {
+        return totalPause;
+    }
+
+    public long getMaxPause() {
+        return maxPause;
+    }
+
+    public long getP99Pause() {
+        return p99Pause;
+    }
+
+    /**
+     * Get the bytes allocated by the JVM during the window - the same for every collector.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getPromotedBytes() {
+        return promotedBytes;
+    }
+
+    public long getAllocationRate() {
+        return rate(allocatedBytes);
+    }
+
+    public long getPromotionRate() {
+        return rate(promotedBytes);
+    }
+
+    long rate(long bytes) {
+        long windowMillis = windowEndTime - windowStartTime;
+        return (windowMillis > 0) ? bytes * 1000 / windowMillis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{gcName='%s' collectionCount=%d totalPause=%d maxPause=%d p99Pause=%d allocatedBytes=%d promotedBytes=%d}",
+            this.getClass().getSimpleName(), gcName, collectionCount, totalPause, maxPause, p99Pause, allocatedBytes, promotedBytes);
+    }
+}
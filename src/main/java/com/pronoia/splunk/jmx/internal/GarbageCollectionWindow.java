@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.GC_INFO_DURATION_ITEM;
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.GC_INFO_ITEM;
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.GC_NAME_KEY;
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.MEMORY_USAGE_AFTER_GC_ITEM;
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.MEMORY_USAGE_BEFORE_GC_ITEM;
+import static com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxGarbageCollectionNotificationEventBuilder.MEMORY_USAGE_USED_ITEM;
+
+/**
+ * Accumulates per-collector statistics from GC notifications over an aggregation window.
+ *
+ * <p>The allocation estimate is the growth of the eden pool between the end of one collection and the start of the
+ * next, whichever collectors performed them - allocation is a property of the JVM, so it is accumulated once for the
+ * window and reported in the summary of every collector.  The promotion estimate is the growth of the old generation
+ * during a collection, attributed to the collector that performed it.  Both are only available for collectors with
+ * generational memory pools.
+ */
+public class GarbageCollectionWindow {
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    final long outlierPauseThreshold;
+
+    Map<String, CollectorStatistics> collectorStatisticsMap = new TreeMap<>();
+    long windowStartTime;
+    long lastEdenUsedAfterGc = -1;
+    long allocatedBytes;
+
+    /**
+     * Create a new aggregation window.
+     *
+     * @param outlierPauseThreshold collections with a longer duration (in milliseconds) are outliers; a negative value disables outlier detection
+     */
+    public GarbageCollectionWindow(long outlierPauseThreshold) {
+        this.outlierPauseThreshold = outlierPauseThreshold;
+        this.windowStartTime = System.currentTimeMillis();
+    }
+
+    public long getOutlierPauseThreshold() {
+        return outlierPauseThreshold;
+    }
+
+    /**
+     * Add a GC notification to the current window.
+     *
+     * @param source the source of the notification (usually the ObjectName of the GarbageCollector MBean)
+     * @param gcNotificationInfo the CompositeData form of the GarbageCollectionNotificationInfo
+     *
+     * @return true if the collection is an outlier and should also be delivered as an individual event; false otherwise
+     */
+    public synchronized boolean record(String source, CompositeData gcNotificationInfo) {
+        String gcName = (String) gcNotificationInfo.get(GC_NAME_KEY);
+        CompositeData gcInfo = (CompositeData) gcNotificationInfo.get(GC_INFO_ITEM);
+        if (gcName == null || gcInfo == null) {
+            log.debug("Ignoring incomplete GC notification from {}", source);
+            return false;
+        }
+
+        CollectorStatistics statistics = collectorStatisticsMap.get(gcName);
+        if (statistics == null) {
+            statistics = new CollectorStatistics(gcName, source);
+            collectorStatisticsMap.put(gcName, statistics);
+        }
+
+        long duration = toLong(gcInfo.get(GC_INFO_DURATION_ITEM));
+        boolean outlier = outlierPauseThreshold >= 0 && duration > outlierPauseThreshold;
+        statistics.addPause(duration, outlier);
+
+        TabularData beforeGc = (TabularData) gcInfo.get(MEMORY_USAGE_BEFORE_GC_ITEM);
+        TabularData afterGc = (TabularData) gcInfo.get(MEMORY_USAGE_AFTER_GC_ITEM);
+
+        long edenUsedBeforeGc = getPoolUsed(beforeGc, PoolKind.EDEN);
+        long edenUsedAfterGc = getPoolUsed(afterGc, PoolKind.EDEN);
+        if (edenUsedBeforeGc >= 0) {
+            long allocated = (lastEdenUsedAfterGc >= 0) ? edenUsedBeforeGc - lastEdenUsedAfterGc : edenUsedBeforeGc;
+            if (allocated > 0) {
+                allocatedBytes += allocated;
+            }
+        }
+        if (edenUsedAfterGc >= 0) {
+            lastEdenUsedAfterGc = edenUsedAfterGc;
+        }
+
+        long oldUsedBeforeGc = getPoolUsed(beforeGc, PoolKind.OLD);
+        long oldUsedAfterGc = getPoolUsed(afterGc, PoolKind.OLD);
+        if (oldUsedBeforeGc >= 0 && oldUsedAfterGc > oldUsedBeforeGc) {
+            statistics.promotedBytes += oldUsedAfterGc - oldUsedBeforeGc;
+        }
+
+        return outlier;
+    }
+
+    /**
+     * Close the current window and start a new one.
+     *
+     * @return the summaries for the collectors that were active during the window
+     */
+    public synchronized List<GarbageCollectionSummary> drain() {
+        long windowEndTime = System.currentTimeMillis();
+        List<GarbageCollectionSummary> answer = new LinkedList<>();
+
+        for (CollectorStatistics statistics : collectorStatisticsMap.values()) {
+            if (statistics.collectionCount > 0) {
+                answer.add(statistics.summarize(windowStartTime, windowEndTime, allocatedBytes));
+                statistics.reset();
+            }
+        }
+
+        windowStartTime = windowEndTime;
+        allocatedBytes = 0;
+
+        return answer;
+    }
+
+    static long getPoolUsed(TabularData memoryUsageTable, PoolKind poolKind) {
+        if (memoryUsageTable == null) {
+            return -1;
+        }
+
+        long answer = -1;
+        for (CompositeData row : (Collection<CompositeData>) memoryUsageTable.values()) {
+            String poolName = (String) row.get("key");
+            CompositeData memoryUsage = (CompositeData) row.get("value");
+            if (poolName != null && memoryUsage != null && poolKind.matches(poolName)) {
+                answer = Math.max(answer, 0) + toLong(memoryUsage.get(MEMORY_USAGE_USED_ITEM));
+            }
+        }
+
+        return answer;
+    }
+
+    static long toLong(Object value) {
+        return (value instanceof Number) ? ((Number) value).longValue() : 0;
+    }
+
+    enum PoolKind {
+        EDEN("Eden"),
+        OLD("Old Gen", "Tenured Gen");
+
+        final String[] nameFragments;
+
+        PoolKind(String... nameFragments) {
+            this.nameFragments = nameFragments;
+        }
+
+        boolean matches(String poolName) {
+            for (String nameFragment : nameFragments) {
+                if (poolName.contains(nameFragment)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class CollectorStatistics {
+        final String gcName;
+        final String source;
+
+        long collectionCount;
+        long outlierCount;
+        long totalPause;
+        long maxPause;
+        long promotedBytes;
+        long[] pauses = new long[16];
+
+        CollectorStatistics(String gcName, String source) {
+            this.gcName = gcName;
+            this.source = source;
+        }
+
+        void addPause(long duration, boolean outlier) {
+            if (collectionCount == pauses.length) {
+                pauses = Arrays.copyOf(pauses, pauses.length * 2);
+            }
+            pauses[(int) collectionCount++] = duration;
+            totalPause += duration;
+            maxPause = Math.max(maxPause, duration);
+            if (outlier) {
+                ++outlierCount;
+            }
+        }
+
+        GarbageCollectionSummary summarize(long windowStartTime, long windowEndTime, long windowAllocatedBytes) {
+            return new GarbageCollectionSummary(gcName, source, windowStartTime, windowEndTime,
+                collectionCount, outlierCount, totalPause, maxPause, percentile(99),
+                windowAllocatedBytes, promotedBytes);
+        }
+
+        /*
+         * Nearest-rank percentile of the pauses in the window
+         */
+        long percentile(int percentile) {
+            int count = (int) collectionCount;
+            long[] sortedPauses = Arrays.copyOf(pauses, count);
+            Arrays.sort(sortedPauses);
+            int rank = (int) Math.ceil(percentile / 100.0 * count);
+            return sortedPauses[Math.max(rank, 1) - 1];
+        }
+
+        void reset() {
+            collectionCount = 0;
+            outlierCount = 0;
+            totalPause = 0;
+            maxPause = 0;
+            promotedBytes = 0;
+        }
+    }
+}
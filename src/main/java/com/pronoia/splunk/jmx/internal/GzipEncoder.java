@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes byte arrays in gzip format, reusing the same Deflater, checksum and output buffer for every call.
+ *
+ * <p>GZIPOutputStream allocates a new Deflater (and its native memory) for each stream, which is significant when
+ * every batch of events is compressed.  This encoder writes the gzip header and trailer around a raw deflate stream
+ * instead.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class GzipEncoder {
+    static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    static final int GZIP_TRAILER_LENGTH = 8;
+    static final int INITIAL_BUFFER_SIZE = 8192;
+
+    final Deflater deflater;
+    final CRC32 crc = new CRC32();
+    byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    int length;
+
+    /**
+     * Create an encoder.
+     *
+     * @param compressionLevel the Deflater compression level (-1 for the default, or 0 to 9)
+     *
+     * @throws IllegalArgumentException if the compression level is invalid
+     */
+    public GzipEncoder(int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        deflater = new Deflater(compressionLevel, true);
+    }
+
+    /**
+     * Compress data.
+     *
+     * @param input the data
+     * @param offset the offset of the data in the array
+     * @param inputLength the number of bytes to compress
+     *
+     * @return the length of the gzip data in {@link #getBuffer()}
+     */
+    public int encode(byte[] input, int offset, int inputLength) {
+        deflater.reset();
+        crc.reset();
+        crc.update(input, offset, inputLength);
+
+        System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+        length = GZIP_HEADER.length;
+
+        deflater.setInput(input, offset, inputLength);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+
+        if (buffer.length - length < GZIP_TRAILER_LENGTH) {
+            buffer = Arrays.copyOf(buffer, length + GZIP_TRAILER_LENGTH);
+        }
+        writeInt((int) crc.getValue());
+        writeInt(inputLength);
+
+        return length;
+    }
+
+    /**
+     * Get the buffer containing the data from the last call to {@link #encode}.  The buffer is reused by the next call.
+     *
+     * @return the buffer
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Release the native resources of the Deflater.
+     */
+    public void end() {
+        deflater.end();
+    }
+
+    /*
+     * gzip integers are little-endian
+     */
+    void writeInt(int value) {
+        buffer[length++] = (byte) value;
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 24);
+    }
+}
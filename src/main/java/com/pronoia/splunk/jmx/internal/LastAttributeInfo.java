@@ -16,51 +16,99 @@
  */
 package com.pronoia.splunk.jmx.internal;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Immutable snapshot of the last attribute values delivered for an ObjectName.
+ *
+ * <p>Updates create a new snapshot, which the runnable publishes with a compare-and-set on its state map, so
+ * different ObjectNames can be compared concurrently without a shared lock.
+ *
+ * <p>Values are retained and compared with the {@link AttributeValueComparator} registered for their type, so large
+ * CompositeData, TabularData and Map values are only retained as fingerprints.
+ */
 public class LastAttributeInfo {
+    // Static - a snapshot is created for every poll of every ObjectName
+    static final Logger log = LoggerFactory.getLogger(LastAttributeInfo.class);
+
     final String objectName;
-    Logger log = LoggerFactory.getLogger(this.getClass());
-    AtomicInteger suppressionCount = new AtomicInteger(0);
-    Map<String, Object> attributeMap = new HashMap<>();
+    final int suppressionCount;
+    final Map<String, Object> attributeMap;
 
     public LastAttributeInfo(String objectName) {
-        this.objectName = objectName;
+        this(objectName, Collections.<String, Object>emptyMap(), 0);
         log.debug("Creating {} for {}", this.getClass().getSimpleName(), objectName);
     }
 
+    LastAttributeInfo(String objectName, Map<String, Object> attributeMap, int suppressionCount) {
+        this.objectName = objectName;
+        this.attributeMap = attributeMap;
+        this.suppressionCount = suppressionCount;
+    }
+
     public String getObjectName() {
         return objectName;
     }
 
     public int getSuppressionCount() {
-        return suppressionCount.get();
+        return suppressionCount;
     }
 
-    public void incrementSuppressionCount() {
-        this.suppressionCount.incrementAndGet();
+    public Map<String, Object> getAttributeMap() {
+        return attributeMap;
     }
 
-    public int incrementAndGetSuppressionCount() {
-        return this.suppressionCount.incrementAndGet();
+    /**
+     * Create a snapshot with new attribute values and a reset suppression count.
+     *
+     * @param newAttributeMap the new attribute values - the map must not be modified after this call
+     *
+     * @return the new snapshot
+     */
+    public LastAttributeInfo withAttributeMap(Map<String, Object> newAttributeMap) {
+        return new LastAttributeInfo(objectName, retain(newAttributeMap), 0);
     }
 
-    public void resetSuppressionCount() {
-        this.suppressionCount.set(0);
+    /**
+     * Create a snapshot with the same attribute values and an incremented suppression count.
+     *
+     * @return the new snapshot
+     */
+    public LastAttributeInfo withIncrementedSuppressionCount() {
+        return new LastAttributeInfo(objectName, attributeMap, suppressionCount + 1);
     }
 
-    public Map<String, Object> getAttributeMap() {
-        return attributeMap;
+    /**
+     * Create a snapshot with the same attribute values and a reset suppression count.
+     *
+     * @return the new snapshot
+     */
+    public LastAttributeInfo withResetSuppressionCount() {
+        return new LastAttributeInfo(objectName, attributeMap, 0);
     }
 
-    public void setAttributeMap(Map<String, Object> attributeMap) {
-        this.attributeMap = attributeMap;
-        this.resetSuppressionCount();
+    /*
+     * Replace values with their retained representation - the map is only copied if a value is replaced
+     */
+    static Map<String, Object> retain(Map<String, Object> attributeMap) {
+        Map<String, Object> answer = attributeMap;
+        for (Map.Entry<String, Object> entry : attributeMap.entrySet()) {
+            Object value = entry.getValue();
+            Object retainedValue = AttributeValueComparators.forValue(value).retain(value);
+            if (retainedValue != value) {
+                if (answer == attributeMap) {
+                    answer = new HashMap<>(attributeMap);
+                }
+                answer.put(entry.getKey(), retainedValue);
+            }
+        }
+
+        return answer;
     }
 
     /**
@@ -84,7 +132,7 @@ public class LastAttributeInfo {
             } else {
                 log.debug("Value not present for monitored attribute {} - ignoring attribute in change monitor", attributeName);
             }
-        } else if (!newValue.equals(oldValue)) {
+        } else if (oldValue == null || AttributeValueComparators.forValue(newValue).hasChanged(oldValue, newValue)) {
             log.trace("Attribute value change detected for attribute {}: old value = {}, new value = {}", attributeName, oldValue, newValue);
             returnValue = true;
         } else {
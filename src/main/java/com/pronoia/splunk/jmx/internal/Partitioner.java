@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.jmx.partition.PartitionMembershipProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the (target, ObjectName) keys owned by a collector node.
+ *
+ * <p>The members are refreshed from the {@link PartitionMembershipProvider} at the start of each poll, and the hash ring
+ * is only rebuilt when they change.
+ */
+public class Partitioner {
+    final PartitionMembershipProvider membershipProvider;
+    final String nodeId;
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    volatile ConsistentHashRing ring = new ConsistentHashRing(Collections.<String>emptySet());
+
+    public Partitioner(PartitionMembershipProvider membershipProvider, String nodeId) {
+        this.membershipProvider = membershipProvider;
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<String> getMembers() {
+        return ring.getMembers();
+    }
+
+    /**
+     * Refresh the members - the previous members are kept if the provider fails.
+     */
+    public void refresh() {
+        Set<String> members;
+        try {
+            members = membershipProvider.getMembers();
+        } catch (RuntimeException membershipEx) {
+            log.warn("Failed to refresh the partition members - keeping {}", ring.getMembers(), membershipEx);
+            return;
+        }
+
+        if (!ring.getMembers().equals(members)) {
+            synchronized (this) {
+                if (!ring.getMembers().equals(members)) {
+                    if (!members.contains(nodeId)) {
+                        log.warn("Node {} is not a partition member - no objects will be polled: {}", nodeId, members);
+                    }
+                    log.info("Partition members changed from {} to {}", ring.getMembers(), members);
+                    ring = new ConsistentHashRing(members);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determine if this node owns an ObjectName.
+     *
+     * @param target the name of the monitored target
+     * @param objectName the ObjectName
+     *
+     * @return true if this node should poll the ObjectName
+     */
+    public boolean owns(String target, ObjectName objectName) {
+        return nodeId.equals(ring.getOwner(getKey(target, objectName)));
+    }
+
+    static String getKey(String target, ObjectName objectName) {
+        return target + "|" + objectName.getCanonicalName();
+    }
+}
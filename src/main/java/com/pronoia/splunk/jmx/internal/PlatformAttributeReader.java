@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.PlatformManagedObject;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the attributes of the platform MXBeans (java.lang:type=Memory, java.lang:type=GarbageCollector,name=*,
+ * java.nio:type=BufferPool,name=*, ...) directly from the {@link ManagementFactory} MXBean interfaces.
+ *
+ * <p>Retrieving these attributes through the MBeanServer converts values like {@link MemoryUsage} to CompositeData,
+ * which the monitor then walks back into Maps.  Here the getter is invoked directly and a MemoryUsage is converted to
+ * a Map with the same items as its CompositeData form; other values have the same type as the MBeanServer would
+ * return.  Attributes with other types (e.g. LastGcInfo or SystemProperties), and all the attributes of MBeans that are
+ * not platform MXBeans, are retrieved from the MBeanServer.
+ */
+public class PlatformAttributeReader {
+    static final long PLATFORM_OBJECTS_REFRESH_PERIOD = TimeUnit.MINUTES.toMillis(5);
+    static final PlatformAttributeReader INSTANCE = new PlatformAttributeReader();
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    volatile Map<ObjectName, PlatformObject> platformObjects;
+    volatile long platformObjectsTime;
+
+    PlatformAttributeReader() {
+    }
+
+    public static PlatformAttributeReader getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Determine if an ObjectName is the name of a platform MXBean.
+     *
+     * @param objectName the ObjectName
+     *
+     * @return true if the attributes of the MBean can be read directly; false otherwise
+     */
+    public boolean isPlatformObjectName(ObjectName objectName) {
+        return getPlatformObjects().containsKey(objectName);
+    }
+
+    /**
+     * Retrieve attributes of an MBean - equivalent to {@link MBeanServer#getAttributes(ObjectName, String[])}.
+     *
+     * <p>Only the platform MBeanServer of this JVM is bypassed - a connection to another JVM is always used.
+     *
+     * @param mbeanServer the MBeanServer containing the MBean
+     * @param objectName the ObjectName of the MBean
+     * @param attributeNames the names of the attributes
+     *
+     * @return the attributes that could be retrieved
+     */
+    public AttributeList getAttributes(MBeanServerConnection mbeanServer, ObjectName objectName, String[] attributeNames)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        PlatformObject platformObject = (mbeanServer == ManagementFactory.getPlatformMBeanServer()) ? getPlatformObjects().get(objectName) : null;
+        if (platformObject == null) {
+            return mbeanServer.getAttributes(objectName, attributeNames);
+        }
+
+        AttributeList answer = new AttributeList(attributeNames.length);
+        List<String> serverAttributeNames = null;
+        for (String attributeName : attributeNames) {
+            Method getter = platformObject.getters.get(attributeName);
+            if (getter == null) {
+                if (serverAttributeNames == null) {
+                    serverAttributeNames = new ArrayList<>();
+                }
+                serverAttributeNames.add(attributeName);
+                continue;
+            }
+
+            try {
+                answer.add(new Attribute(attributeName, convert(getter.invoke(platformObject.mxbean))));
+            } catch (InvocationTargetException | IllegalAccessException | RuntimeException getterEx) {
+                // Like MBeanServer.getAttributes, attributes that cannot be read are omitted
+                log.debug("Unable to read attribute {} of {}", attributeName, objectName, getterEx);
+            }
+        }
+
+        if (serverAttributeNames != null) {
+            answer.addAll(mbeanServer.getAttributes(objectName, serverAttributeNames.toArray(new String[serverAttributeNames.size()])));
+        }
+
+        return answer;
+    }
+
+    /*
+     * The platform MXBeans are found again periodically, since some (e.g. memory pools) can be added or removed
+     */
+    Map<ObjectName, PlatformObject> getPlatformObjects() {
+        Map<ObjectName, PlatformObject> answer = platformObjects;
+        long now = System.currentTimeMillis();
+        if (answer == null || now - platformObjectsTime >= PLATFORM_OBJECTS_REFRESH_PERIOD) {
+            answer = Collections.unmodifiableMap(findPlatformObjects());
+            platformObjects = answer;
+            platformObjectsTime = now;
+        }
+        return answer;
+    }
+
+    Map<ObjectName, PlatformObject> findPlatformObjects() {
+        Map<ObjectName, PlatformObject> answer = new HashMap<>();
+        for (Class<? extends PlatformManagedObject> managementInterface : ManagementFactory.getPlatformManagementInterfaces()) {
+            try {
+                for (PlatformManagedObject mxbean : ManagementFactory.getPlatformMXBeans(managementInterface)) {
+                    ObjectName objectName = mxbean.getObjectName();
+                    if (objectName != null && !answer.containsKey(objectName)) {
+                        answer.put(objectName, new PlatformObject(mxbean));
+                    }
+                }
+            } catch (RuntimeException platformEx) {
+                log.debug("Unable to read attributes of {} directly", managementInterface.getName(), platformEx);
+            }
+        }
+
+        log.debug("Found {} platform MXBeans: {}", answer.size(), answer.keySet());
+        return answer;
+    }
+
+    /*
+     * The value of a getter in the form returned by the MBeanServer - only called for the types accepted by
+     * isSupportedType, so MemoryUsage is the only value that is not a simple type or an array.
+     */
+    static Object convert(Object value) {
+        if (value instanceof MemoryUsage) {
+            MemoryUsage memoryUsage = (MemoryUsage) value;
+            // The items of the MemoryUsage CompositeData, in the same (sorted) order
+            Map<String, Object> answer = new LinkedHashMap<>();
+            answer.put("committed", memoryUsage.getCommitted());
+            answer.put("init", memoryUsage.getInit());
+            answer.put("max", memoryUsage.getMax());
+            answer.put("used", memoryUsage.getUsed());
+            return answer;
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+
+        return value;
+    }
+
+    static boolean isSupportedType(Class<?> type) {
+        return type.isPrimitive() && type != void.class
+            || Number.class.isAssignableFrom(type) || type == Boolean.class || type == String.class
+            || type == ObjectName.class || type == MemoryUsage.class || type.isEnum()
+            || type.isArray() && (type.getComponentType().isPrimitive() || type.getComponentType() == String.class);
+    }
+
+    /**
+     * A platform MXBean and the getters of the attributes that can be read directly.
+     */
+    static class PlatformObject {
+        final Object mxbean;
+        final Map<String, Method> getters = new HashMap<>();
+
+        PlatformObject(Object mxbean) {
+            this.mxbean = mxbean;
+            addGetters(mxbean.getClass());
+        }
+
+        /*
+         * Only the methods of public interfaces are used, since the implementation classes are not accessible
+         */
+        void addGetters(Class<?> type) {
+            for (Class<?> implementedInterface : type.getInterfaces()) {
+                if (Modifier.isPublic(implementedInterface.getModifiers())) {
+                    for (Method method : implementedInterface.getMethods()) {
+                        String attributeName = getAttributeName(method);
+                        if (attributeName != null && !getters.containsKey(attributeName)) {
+                            getters.put(attributeName, method);
+                        }
+                    }
+                }
+                addGetters(implementedInterface);
+            }
+            if (type.getSuperclass() != null) {
+                addGetters(type.getSuperclass());
+            }
+        }
+
+        static String getAttributeName(Method method) {
+            if (method.getParameterTypes().length > 0 || !isSupportedType(method.getReturnType())) {
+                return null;
+            }
+
+            String methodName = method.getName();
+            if (methodName.startsWith("get") && methodName.length() > 3) {
+                return methodName.substring(3);
+            } else if (methodName.startsWith("is") && methodName.length() > 2 && method.getReturnType() == boolean.class) {
+                return methodName.substring(2);
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+/**
+ * Calculations for scheduling the polling of change monitor runnables.
+ *
+ * <p>Offsets are derived from a hash of a key (e.g. the change monitor id and the ObjectName pattern), so a runnable
+ * is always scheduled at the same point in its window while different runnables are spread across the window.
+ */
+public final class PollScheduling {
+    PollScheduling() {
+    }
+
+    /**
+     * Calculate the deterministic offset of a key within a window.
+     *
+     * @param key the key identifying the runnable
+     * @param windowMillis the length of the window in milliseconds
+     *
+     * @return the offset in milliseconds - zero if the window is empty
+     */
+    public static long offset(String key, long windowMillis) {
+        if (windowMillis <= 0) {
+            return 0;
+        }
+
+        return (AttributeValueComparators.mix(AttributeValueComparators.hashString(key)) & Long.MAX_VALUE) % windowMillis;
+    }
+
+    /**
+     * Calculate the delay until the next wall-clock aligned tick.
+     *
+     * <p>Ticks occur when the time since the epoch is a multiple of the period plus the offset, so runnables with the same
+     * period and offset poll at the same time on every host.
+     *
+     * @param currentTimeMillis the current time in milliseconds since the epoch
+     * @param periodMillis the polling period in milliseconds
+     * @param offsetMillis the offset of the ticks from the period boundaries in milliseconds
+     *
+     * @return the delay in milliseconds
+     */
+    public static long alignedDelay(long currentTimeMillis, long periodMillis, long offsetMillis) {
+        long answer = (offsetMillis - currentTimeMillis) % periodMillis;
+
+        return (answer < 0) ? answer + periodMillis : answer;
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.management.AttributeValueExp;
+import javax.management.Query;
+import javax.management.QueryExp;
+import javax.management.ValueExp;
+
+/**
+ * Compiles a declarative filter into a {@link QueryExp} that is evaluated by the MBeanServer.
+ *
+ * <p>Examples: <code>QueueSize &gt; 0 or ConsumerCount &gt; 0</code>,
+ * <code>not (Name like 'ActiveMQ.Advisory.*')</code> or <code>EnqueueCount - DequeueCount &gt;= 100</code>.
+ *
+ * <p>Grammar (keywords are case-insensitive):
+ * <pre>
+ *     filter     := and-filter ('or' and-filter)*
+ *     and-filter := unary ('and' unary)*
+ *     unary      := 'not' unary | '(' filter ')' | comparison
+ *     comparison := value ('=' | '!=' | '&lt;' | '&lt;=' | '&gt;' | '&gt;=') value | value 'like' 'pattern'
+ *     value      := term (('+' | '-') term)*
+ *     term       := operand (('*' | '/') operand)*
+ *     operand    := attribute | number | 'string' | true | false | '(' value ')'
+ * </pre>
+ *
+ * <p>An MBean is excluded if the filter cannot be evaluated for it, e.g. because an attribute does not exist.
+ *
+ * <p>The MBeanServer chooses integer or floating point arithmetic from the left operand alone, so <code>0 &gt;= 0.5</code>
+ * would be evaluated as <code>0 &gt;= 0</code>.  When the right operand contains a decimal number the left operand is
+ * converted to floating point by the compiled expression.
+ */
+public final class QueryFilterParser {
+    final String filter;
+    final Set<ValueExp> floatingPointValues = Collections.newSetFromMap(new IdentityHashMap<ValueExp, Boolean>());
+    int position;
+
+    QueryFilterParser(String filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Compile a filter.
+     *
+     * @param filter the filter
+     *
+     * @return the QueryExp for the filter
+     *
+     * @throws IllegalArgumentException if the filter is invalid
+     */
+    public static QueryExp parse(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            throw new IllegalArgumentException("Filter must be specified");
+        }
+
+        QueryFilterParser parser = new QueryFilterParser(filter);
+        QueryExp answer = parser.parseFilter();
+        if (parser.peek() != 0) {
+            throw parser.error("Unexpected input");
+        }
+
+        return answer;
+    }
+
+    QueryExp parseFilter() {
+        QueryExp answer = parseAndFilter();
+        while (acceptKeyword("or")) {
+            answer = Query.or(answer, parseAndFilter());
+        }
+        return answer;
+    }
+
+    QueryExp parseAndFilter() {
+        QueryExp answer = parseUnary();
+        while (acceptKeyword("and")) {
+            answer = Query.and(answer, parseUnary());
+        }
+        return answer;
+    }
+
+    QueryExp parseUnary() {
+        if (acceptKeyword("not")) {
+            return Query.not(parseUnary());
+        }
+
+        // A parenthesis can start a nested filter or a parenthesized value - try the filter first
+        if (peek() == '(') {
+            int start = position;
+            ++position;
+            try {
+                QueryExp answer = parseFilter();
+                if (peek() == ')') {
+                    ++position;
+                    return answer;
+                }
+            } catch (IllegalArgumentException notAFilterEx) {
+                // Parse it as a value
+            }
+            position = start;
+        }
+
+        return parseComparison();
+    }
+
+    QueryExp parseComparison() {
+        ValueExp left = parseValue();
+
+        if (acceptKeyword("like")) {
+            if (peek() != '\'') {
+                throw error("'like' requires a quoted pattern");
+            }
+            return Query.match(attributeOf(left), Query.value(parseString()));
+        }
+
+        String operator = parseOperator();
+        ValueExp right = parseValue();
+        left = promote(left, right);
+        switch (operator) {
+            case "=":
+                return Query.eq(left, right);
+            case "!=":
+                return Query.not(Query.eq(left, right));
+            case "<":
+                return Query.lt(left, right);
+            case "<=":
+                return Query.leq(left, right);
+            case ">":
+                return Query.gt(left, right);
+            default:
+                return Query.geq(left, right);
+        }
+    }
+
+    ValueExp parseValue() {
+        ValueExp answer = parseTerm();
+        for (char operator = peek(); operator == '+' || operator == '-'; operator = peek()) {
+            ++position;
+            answer = arithmetic(operator, answer, parseTerm());
+        }
+        return answer;
+    }
+
+    ValueExp parseTerm() {
+        ValueExp answer = parseOperand();
+        for (char operator = peek(); operator == '*' || operator == '/'; operator = peek()) {
+            ++position;
+            answer = arithmetic(operator, answer, parseOperand());
+        }
+        return answer;
+    }
+
+    ValueExp arithmetic(char operator, ValueExp left, ValueExp right) {
+        left = promote(left, right);
+
+        ValueExp answer;
+        switch (operator) {
+            case '+':
+                answer = Query.plus(left, right);
+                break;
+            case '-':
+                answer = Query.minus(left, right);
+                break;
+            case '*':
+                answer = Query.times(left, right);
+                break;
+            default:
+                answer = Query.div(left, right);
+        }
+        if (floatingPointValues.contains(left)) {
+            floatingPointValues.add(answer);
+        }
+
+        return answer;
+    }
+
+    /*
+     * Convert the left operand to floating point if the right operand is floating point
+     */
+    ValueExp promote(ValueExp left, ValueExp right) {
+        if (floatingPointValues.contains(right) && !floatingPointValues.contains(left)) {
+            ValueExp answer = Query.plus(Query.value(0.0), left);
+            floatingPointValues.add(answer);
+            return answer;
+        }
+        return left;
+    }
+
+    ValueExp parseOperand() {
+        char next = peek();
+        if (next == '(') {
+            ++position;
+            ValueExp answer = parseValue();
+            if (peek() != ')') {
+                throw error("Missing ')'");
+            }
+            ++position;
+            return answer;
+        } else if (next == '\'') {
+            return Query.value(parseString());
+        } else if (Character.isDigit(next) || next == '-') {
+            return parseNumber();
+        } else if (Character.isJavaIdentifierStart(next)) {
+            String identifier = parseIdentifier();
+            if ("true".equalsIgnoreCase(identifier) || "false".equalsIgnoreCase(identifier)) {
+                return Query.value(Boolean.parseBoolean(identifier.toLowerCase(Locale.ROOT)));
+            }
+            return Query.attr(identifier);
+        }
+
+        throw error(next == 0 ? "Unexpected end of filter" : "Unexpected character '" + next + "'");
+    }
+
+    ValueExp parseNumber() {
+        int start = position;
+        if (filter.charAt(position) == '-') {
+            ++position;
+        }
+        while (position < filter.length() && (Character.isDigit(filter.charAt(position)) || filter.charAt(position) == '.')) {
+            ++position;
+        }
+
+        String number = filter.substring(start, position);
+        try {
+            if (number.indexOf('.') >= 0) {
+                ValueExp answer = Query.value(Double.parseDouble(number));
+                floatingPointValues.add(answer);
+                return answer;
+            }
+            return Query.value(Long.parseLong(number));
+        } catch (NumberFormatException numberFormatEx) {
+            throw error("Invalid number '" + number + "'");
+        }
+    }
+
+    String parseString() {
+        ++position;
+        StringBuilder answer = new StringBuilder();
+        while (position < filter.length()) {
+            char next = filter.charAt(position++);
+            if (next == '\'') {
+                // Two quotes are an escaped quote
+                if (position < filter.length() && filter.charAt(position) == '\'') {
+                    ++position;
+                } else {
+                    return answer.toString();
+                }
+            }
+            answer.append(next);
+        }
+
+        throw error("Unterminated string");
+    }
+
+    String parseIdentifier() {
+        int start = position;
+        while (position < filter.length() && Character.isJavaIdentifierPart(filter.charAt(position))) {
+            ++position;
+        }
+        return filter.substring(start, position);
+    }
+
+    String parseOperator() {
+        char next = peek();
+        String answer;
+        if (filter.startsWith("!=", position) || filter.startsWith("<=", position) || filter.startsWith(">=", position)) {
+            answer = filter.substring(position, position + 2);
+        } else if (next == '=' || next == '<' || next == '>') {
+            answer = String.valueOf(next);
+        } else {
+            throw error("Expected a comparison operator");
+        }
+        position += answer.length();
+        return answer;
+    }
+
+    boolean acceptKeyword(String keyword) {
+        peek();
+        int end = position + keyword.length();
+        if (filter.regionMatches(true, position, keyword, 0, keyword.length())
+            && (end == filter.length() || !Character.isJavaIdentifierPart(filter.charAt(end)))) {
+            position = end;
+            return true;
+        }
+        return false;
+    }
+
+    AttributeValueExp attributeOf(ValueExp value) {
+        if (!(value instanceof AttributeValueExp)) {
+            throw error("The left side of 'like' must be an attribute");
+        }
+        return (AttributeValueExp) value;
+    }
+
+    /*
+     * The next non-whitespace character; 0 at the end of the filter
+     */
+    char peek() {
+        while (position < filter.length() && Character.isWhitespace(filter.charAt(position))) {
+            ++position;
+        }
+        return (position < filter.length()) ? filter.charAt(position) : 0;
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(String.format("%s at position %d in filter '%s'", message, position, filter));
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+
+/**
+ * Selects the ObjectNames with the largest value of a ranking attribute in one polling cycle.
+ *
+ * <p>Only the current top N AttributeLists are retained (in a bounded min-heap); the other ObjectNames are reduced to a
+ * count, sum and maximum of the ranking attribute for the "others" summary.
+ */
+public class TopNSelector {
+    public static final String TOP_N_GROUP_PROPERTY = "topN";
+    public static final String OTHERS_GROUP = "others";
+
+    static final Comparator<Candidate> RANK_ORDER = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate first, Candidate second) {
+            return Double.compare(first.rankValue, second.rankValue);
+        }
+    };
+
+    final String rankAttribute;
+    final int topCount;
+
+    PriorityQueue<Candidate> heap;
+    long othersCount;
+    long othersRankedCount;
+    double othersSum;
+    double othersMax;
+
+    /**
+     * Create a selector.
+     *
+     * @param rankAttribute the name of the numeric attribute used to rank the ObjectNames
+     * @param topCount the number of ObjectNames to select
+     */
+    public TopNSelector(String rankAttribute, int topCount) {
+        if (topCount <= 0) {
+            throw new IllegalArgumentException("Top count must be greater than zero: " + topCount);
+        }
+        this.rankAttribute = rankAttribute;
+        this.topCount = topCount;
+        reset();
+    }
+
+    public String getRankAttribute() {
+        return rankAttribute;
+    }
+
+    public int getTopCount() {
+        return topCount;
+    }
+
+    /**
+     * Offer the attributes of an ObjectName for the current cycle.
+     *
+     * @param objectName the ObjectName
+     * @param attributeList the attributes for the event
+     * @param attributeMap the attribute values
+     */
+    public synchronized void offer(ObjectName objectName, AttributeList attributeList, Map<String, Object> attributeMap) {
+        Object value = attributeMap.get(rankAttribute);
+        if (!(value instanceof Number)) {
+            ++othersCount;
+            return;
+        }
+
+        Candidate candidate = new Candidate(objectName, attributeList, ((Number) value).doubleValue());
+        if (heap.size() < topCount) {
+            heap.add(candidate);
+        } else if (candidate.rankValue > heap.peek().rankValue) {
+            addToOthers(heap.poll());
+            heap.add(candidate);
+        } else {
+            addToOthers(candidate);
+        }
+    }
+
+    /**
+     * Complete the current cycle.
+     *
+     * @param source the source for the "others" summary (the ObjectName pattern)
+     * @param timestamp the timestamp for the "others" summary
+     *
+     * @return the selection for the cycle
+     */
+    public synchronized Selection drain(String source, long timestamp) {
+        List<Candidate> top = new ArrayList<>(heap);
+        Collections.sort(top, Collections.reverseOrder(RANK_ORDER));
+
+        AttributeAggregate others = null;
+        if (othersCount > 0) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put(rankAttribute + ".sum", AttributeAggregator.toNumber(othersSum));
+            if (othersRankedCount > 0) {
+                values.put(rankAttribute + ".max", AttributeAggregator.toNumber(othersMax));
+            }
+            others = new AttributeAggregate(source, timestamp, Collections.singletonMap(TOP_N_GROUP_PROPERTY, OTHERS_GROUP), othersCount, values);
+        }
+
+        reset();
+
+        return new Selection(top, others);
+    }
+
+    void addToOthers(Candidate candidate) {
+        ++othersCount;
+        ++othersRankedCount;
+        othersSum += candidate.rankValue;
+        othersMax = Math.max(othersMax, candidate.rankValue);
+    }
+
+    void reset() {
+        heap = new PriorityQueue<>(topCount, RANK_ORDER);
+        othersCount = 0;
+        othersRankedCount = 0;
+        othersSum = 0;
+        othersMax = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * An ObjectName competing for a place in the top N.
+     */
+    public static class Candidate {
+        final ObjectName objectName;
+        final AttributeList attributeList;
+        final double rankValue;
+
+        Candidate(ObjectName objectName, AttributeList attributeList, double rankValue) {
+            this.objectName = objectName;
+            this.attributeList = attributeList;
+            this.rankValue = rankValue;
+        }
+
+        public ObjectName getObjectName() {
+            return objectName;
+        }
+
+        public AttributeList getAttributeList() {
+            return attributeList;
+        }
+
+        public double getRankValue() {
+            return rankValue;
+        }
+    }
+
+    /**
+     * The result of one polling cycle.
+     */
+    public static class Selection {
+        final List<Candidate> top;
+        final AttributeAggregate others;
+
+        Selection(List<Candidate> top, AttributeAggregate others) {
+            this.top = top;
+            this.others = others;
+        }
+
+        /**
+         * Get the selected ObjectNames, ordered by descending rank value.
+         *
+         * @return the top N ObjectNames
+         */
+        public List<Candidate> getTop() {
+            return top;
+        }
+
+        public boolean hasOthers() {
+            return others != null;
+        }
+
+        /**
+         * Get the summary of the ObjectNames that were not selected.
+         *
+         * @return the summary; null if all the ObjectNames were selected
+         */
+        public AttributeAggregate getOthers() {
+            return others;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.partition;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Membership through lease files in a directory shared by the collector nodes (e.g. on a network file system).
+ *
+ * <p>Each local node keeps a file named after its id in the lease directory, and renews it by updating the modification
+ * time whenever the members are requested.  A node is a member while its file has been renewed within the lease
+ * duration, so a node that stops without leaving drops out when its lease expires.  The lease duration must be longer
+ * than the granularity period of the partitioned change monitors, and the clocks of the nodes should be synchronized.
+ */
+public class FileLeasePartitionMembershipProvider implements PartitionMembershipProvider {
+    public static final String LEASE_FILE_SUFFIX = ".lease";
+
+    static final String ENCODING = "UTF-8";
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    File leaseDirectory;
+    long leaseDuration = 60;
+
+    final Map<String, Long> localRenewalTimes = new HashMap<>();
+    final Map<String, Integer> joinCounts = new HashMap<>();
+
+    public File getLeaseDirectory() {
+        return leaseDirectory;
+    }
+
+    public void setLeaseDirectory(File leaseDirectory) {
+        this.leaseDirectory = leaseDirectory;
+    }
+
+    public void setLeaseDirectory(String leaseDirectory) {
+        this.leaseDirectory = (leaseDirectory != null) ? new File(leaseDirectory) : null;
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    /**
+     * Set the time a lease is valid without renewal (in seconds).
+     *
+     * @param leaseDuration the lease duration in seconds
+     */
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    /**
+     * Add a local node to the members.
+     *
+     * Every change monitor of the node joins, so the lease is only deleted when all of them have left.
+     *
+     * @param nodeId the id of the node
+     */
+    @Override
+    public synchronized void join(String nodeId) {
+        if (leaseDirectory == null) {
+            throw new IllegalStateException("Lease directory must be specified");
+        }
+
+        Integer joinCount = joinCounts.get(nodeId);
+        joinCounts.put(nodeId, (joinCount != null) ? joinCount + 1 : 1);
+
+        if (!leaseDirectory.isDirectory() && !leaseDirectory.mkdirs()) {
+            log.warn("Failed to create lease directory {}", leaseDirectory);
+        }
+
+        renew(nodeId, System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void leave(String nodeId) {
+        Integer joinCount = joinCounts.get(nodeId);
+        if (joinCount == null) {
+            return;
+        } else if (joinCount > 1) {
+            joinCounts.put(nodeId, joinCount - 1);
+            return;
+        }
+
+        joinCounts.remove(nodeId);
+        if (localRenewalTimes.remove(nodeId) != null) {
+            File leaseFile = getLeaseFile(nodeId);
+            if (leaseFile.exists() && !leaseFile.delete()) {
+                log.warn("Failed to delete lease file {} - the lease will expire", leaseFile);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        if (leaseDirectory == null) {
+            return Collections.emptySet();
+        }
+
+        long now = System.currentTimeMillis();
+        long leaseDurationMillis = TimeUnit.SECONDS.toMillis(leaseDuration);
+        renewLocalLeases(now, leaseDurationMillis);
+
+        Set<String> answer = new TreeSet<>();
+        File[] leaseFiles = leaseDirectory.listFiles();
+        if (leaseFiles != null) {
+            for (File leaseFile : leaseFiles) {
+                String fileName = leaseFile.getName();
+                if (fileName.endsWith(LEASE_FILE_SUFFIX) && now - leaseFile.lastModified() < leaseDurationMillis) {
+                    answer.add(decode(fileName.substring(0, fileName.length() - LEASE_FILE_SUFFIX.length())));
+                }
+            }
+        }
+
+        return answer;
+    }
+
+    /*
+     * Renew the leases of the local nodes well before they expire, without touching the files on every request.  The
+     * renewal holds the same lock as join and leave, so a node that has just left is not renewed.
+     */
+    synchronized void renewLocalLeases(long now, long leaseDurationMillis) {
+        for (String nodeId : joinCounts.keySet()) {
+            Long localRenewalTime = localRenewalTimes.get(nodeId);
+            if (localRenewalTime == null || now - localRenewalTime >= leaseDurationMillis / 3) {
+                renew(nodeId, now);
+            }
+        }
+    }
+
+    /*
+     * Called while holding the lock
+     */
+    void renew(String nodeId, long now) {
+        File leaseFile = getLeaseFile(nodeId);
+        try {
+            if (!leaseFile.createNewFile() && !leaseFile.setLastModified(now)) {
+                log.warn("Failed to renew lease file {}", leaseFile);
+            }
+        } catch (IOException renewEx) {
+            log.warn("Failed to create lease file {}", leaseFile, renewEx);
+        }
+        localRenewalTimes.put(nodeId, now);
+    }
+
+    File getLeaseFile(String nodeId) {
+        try {
+            return new File(leaseDirectory, URLEncoder.encode(nodeId, ENCODING) + LEASE_FILE_SUFFIX);
+        } catch (UnsupportedEncodingException encodingEx) {
+            throw new IllegalStateException(ENCODING + " is not supported", encodingEx);
+        }
+    }
+
+    static String decode(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, ENCODING);
+        } catch (UnsupportedEncodingException encodingEx) {
+            throw new IllegalStateException(ENCODING + " is not supported", encodingEx);
+        }
+    }
+}
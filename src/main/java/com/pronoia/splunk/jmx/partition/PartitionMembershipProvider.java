@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.partition;
+
+import java.util.Set;
+
+/**
+ * Supplies the collector nodes that share the monitored targets when partitioning is enabled.
+ *
+ * <p>Each node owns the (target, ObjectName) keys assigned to it by a consistent hash of the members, so every node
+ * must see the same members for the keys to be divided without gaps or overlaps.  Implementations must be thread-safe -
+ * the members are requested at the start of every poll.
+ */
+public interface PartitionMembershipProvider {
+    /**
+     * Add a local node to the members.
+     *
+     * @param nodeId the id of the node
+     */
+    void join(String nodeId);
+
+    /**
+     * Remove a local node from the members.
+     *
+     * @param nodeId the id of the node
+     */
+    void leave(String nodeId);
+
+    /**
+     * Get the current members.
+     *
+     * @return the ids of the member nodes
+     */
+    Set<String> getMembers();
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.partition;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A fixed list of member nodes - e.g. configured identically in the blueprint of every collector.
+ *
+ * <p>Joining and leaving do not change the members, which can only be changed by setting the members again.
+ */
+public class StaticPartitionMembershipProvider implements PartitionMembershipProvider {
+    volatile Set<String> members = Collections.emptySet();
+
+    public StaticPartitionMembershipProvider() {
+    }
+
+    public StaticPartitionMembershipProvider(String... members) {
+        setMembers(members);
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(Set<String> members) {
+        this.members = (members != null) ? Collections.unmodifiableSet(new TreeSet<>(members)) : Collections.<String>emptySet();
+    }
+
+    public void setMembers(String... members) {
+        Set<String> memberSet = new TreeSet<>();
+        if (members != null) {
+            Collections.addAll(memberSet, members);
+        }
+        setMembers(memberSet);
+    }
+
+    @Override
+    public void join(String nodeId) {
+    }
+
+    @Override
+    public void leave(String nodeId) {
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.Query;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.pronoia.splunk.jmx.internal.AttributeChangeMonitorRunnable;
+import com.pronoia.splunk.jmx.partition.StaticPartitionMembershipProvider;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkAttributeReaderTest {
+    static final String BROKER_NAME = "bulk-attribute-reader-test";
+    static final int DESTINATION_COUNT = 5;
+
+    List<SyntheticDestination> destinations;
+    BulkAttributeReader instance;
+    JMXConnectorServer connectorServer;
+    JMXConnector connector;
+    final AtomicInteger queryNamesCount = new AtomicInteger();
+
+    /**
+     * Register the destinations and connect to the platform MBeanServer through a remote connector.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, DESTINATION_COUNT, 0);
+        instance = new BulkAttributeReader();
+
+        connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(new JMXServiceURL("service:jmx:rmi://"), null, ManagementFactory.getPlatformMBeanServer());
+        connectorServer.start();
+        connector = JMXConnectorFactory.connect(connectorServer.getAddress());
+    }
+
+    /**
+     * Close the connector and unregister the MBeans.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.destroy();
+        connector.close();
+        connectorServer.stop();
+        SyntheticDestination.unregister(BROKER_NAME);
+    }
+
+    @Test
+    public void testReadAttributes() throws Exception {
+        Map<ObjectName, AttributeList> attributes = instance.readAttributes(SyntheticDestination.pattern(BROKER_NAME), new String[] {"QueueSize", "Missing"}, null);
+
+        assertEquals(DESTINATION_COUNT, attributes.size());
+        for (AttributeList attributeList : attributes.values()) {
+            assertEquals("Attributes that cannot be retrieved should be omitted", 1, attributeList.size());
+        }
+        assertEquals(1, instance.getRequestCount());
+        assertEquals(DESTINATION_COUNT, instance.getLastRequestObjectCount());
+    }
+
+    @Test
+    public void testReadAllAttributesWithQuery() throws Exception {
+        destinations.get(0).advance();
+
+        Map<ObjectName, AttributeList> attributes = instance.readAttributes(SyntheticDestination.pattern(BROKER_NAME), null,
+            Query.gt(Query.attr("QueueSize"), Query.value(0)));
+
+        assertEquals(1, attributes.size());
+        assertTrue("All readable attributes should be retrieved", attributes.values().iterator().next().size() > 1);
+    }
+
+    @Test
+    public void testReadObjectAttributes() throws Exception {
+        Set<ObjectName> objectNames = new HashSet<>();
+        objectNames.add(SyntheticDestination.objectName(BROKER_NAME, destinations.get(0).getName()));
+        objectNames.add(SyntheticDestination.objectName(BROKER_NAME, destinations.get(1).getName()));
+
+        Map<ObjectName, AttributeList> attributes = instance.readObjectAttributes(objectNames, null, Collections.singleton("QueueSize"));
+
+        assertEquals(objectNames, attributes.keySet());
+        for (AttributeList attributeList : attributes.values()) {
+            assertTrue("All readable attributes should be retrieved", attributeList.size() > 1);
+            for (Attribute attribute : attributeList.asList()) {
+                assertNotEquals("Excluded attributes should not be retrieved", "QueueSize", attribute.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testChangeMonitorUsesBulkReader() throws Exception {
+        instance.initialize();
+
+        EventCollectorClientStub clientStub = runChangeMonitor();
+
+        assertEquals(DESTINATION_COUNT, clientStub.eventCount.get());
+        assertTrue("The derived attribute should be in the event: " + clientStub.lastEvent, clientStub.lastEvent.contains("Backlog"));
+        assertEquals("The attributes should be retrieved with one request", 1, instance.getRequestCount());
+        assertEquals("The ObjectNames should be retrieved by the bulk read", 0, queryNamesCount.get());
+    }
+
+    @Test
+    public void testBulkReadWithFilter() throws Exception {
+        instance.initialize();
+        destinations.get(0).advance();
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = createChangeMonitor(clientStub);
+        changeMonitor.setObservedObjectFilter("QueueSize > 0");
+
+        changeMonitor.start();
+        changeMonitor.stop();
+        new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        assertEquals("Only the MBean matching the filter should be polled", 1, clientStub.eventCount.get());
+        assertEquals(1, instance.getLastRequestObjectCount());
+        assertEquals(0, queryNamesCount.get());
+    }
+
+    @Test
+    public void testChangeMonitorWithoutBulkReader() throws Exception {
+        EventCollectorClientStub clientStub = runChangeMonitor();
+
+        assertEquals(DESTINATION_COUNT, clientStub.eventCount.get());
+        assertEquals(0, instance.getRequestCount());
+    }
+
+    @Test
+    public void testBulkReadOfOwnedObjects() throws Exception {
+        instance.initialize();
+
+        SplunkJmxAttributeChangeMonitor changeMonitor = createChangeMonitor(new EventCollectorClientStub());
+        changeMonitor.setPartitionMembershipProvider(new StaticPartitionMembershipProvider("node-1", "node-2"));
+        changeMonitor.setPartitionNodeId("node-1");
+
+        changeMonitor.start();
+        AttributeChangeMonitorRunnable runnable = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.stop();
+        runnable.run();
+
+        assertEquals(1, instance.getRequestCount());
+        assertEquals("Only the owned objects should be read", runnable.getLastPollObjectCount(), instance.getLastRequestObjectCount());
+    }
+
+    @Test
+    public void testAttributeTiersPollEachMBean() throws Exception {
+        instance.initialize();
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = createChangeMonitor(clientStub);
+        changeMonitor.setGranularityPeriod(10);
+        changeMonitor.addAttributeTier("QueueSize", 3600);
+
+        changeMonitor.start();
+        changeMonitor.stop();
+        new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        assertEquals(DESTINATION_COUNT, clientStub.eventCount.get());
+        assertEquals("Tiered attributes should not be read in bulk", 0, instance.getRequestCount());
+    }
+
+    EventCollectorClientStub runChangeMonitor() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = createChangeMonitor(clientStub);
+
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        return clientStub;
+    }
+
+    /*
+     * Count the queryNames round trips to the remote MBeanServer
+     */
+    MBeanServerConnection countQueryNames(final MBeanServerConnection mbeanServerConnection) {
+        return (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {MBeanServerConnection.class},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if ("queryNames".equals(method.getName())) {
+                        queryNamesCount.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(mbeanServerConnection, args);
+                    } catch (InvocationTargetException invocationEx) {
+                        throw invocationEx.getCause();
+                    }
+                }
+            });
+    }
+
+    SplunkJmxAttributeChangeMonitor createChangeMonitor(EventCollectorClientStub clientStub) throws Exception {
+        SplunkJmxAttributeChangeMonitor changeMonitor = SyntheticDestination.changeMonitor(BROKER_NAME, clientStub);
+        changeMonitor.setMBeanServerConnection(countQueryNames(connector.getMBeanServerConnection()));
+        changeMonitor.setObservedAttributes("QueueSize", "Backlog");
+        changeMonitor.addDerivedAttribute("Backlog", "EnqueueCount - DequeueCount");
+
+        return changeMonitor;
+    }
+}
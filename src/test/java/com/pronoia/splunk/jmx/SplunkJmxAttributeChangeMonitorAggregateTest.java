@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.util.List;
+
+import com.pronoia.splunk.jmx.internal.AttributeChangeMonitorRunnable;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the aggregate events of the attribute change monitor.
+ */
+public class SplunkJmxAttributeChangeMonitorAggregateTest {
+    static final String BROKER_NAME = "aggregate-test";
+
+    List<SyntheticDestination> destinations;
+    EventCollectorClientStub clientStub;
+    SplunkJmxAttributeChangeMonitor instance;
+
+    /**
+     * Register the synthetic destinations and configure the monitor.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, 10, 0);
+
+        clientStub = new EventCollectorClientStub();
+        instance = SyntheticDestination.changeMonitor(BROKER_NAME, clientStub);
+        instance.setObservedAttributes("EnqueueCount", "DequeueCount");
+        instance.setAggregates("sum(QueueSize)", "nonzero(ConsumerCount)", "invalid");
+        instance.setAggregateGroupProperties("brokerName");
+    }
+
+    /**
+     * Stop the monitor and remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.stop();
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testAggregatesOnly() throws Exception {
+        instance.setSendObjectEvents(false);
+
+        instance.start();
+        AttributeChangeMonitorRunnable runnable = new AttributeChangeMonitorRunnable(instance, SyntheticDestination.pattern(BROKER_NAME));
+        runnable.run();
+        runnable.run();
+
+        assertEquals("One aggregate event should be sent per cycle", 2, clientStub.eventCount.get());
+    }
+
+    @Test
+    public void testAggregatesAndObjectEvents() throws Exception {
+        instance.setAggregateGroupProperties("destinationName");
+
+        instance.start();
+        new AttributeChangeMonitorRunnable(instance, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        assertEquals("Ten object events and ten aggregate events should be sent", 20, clientStub.eventCount.get());
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.util.List;
+
+import com.pronoia.splunk.jmx.internal.AttributeChangeMonitorRunnable;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the observed object filter of the attribute change monitor.
+ */
+public class SplunkJmxAttributeChangeMonitorFilterTest {
+    static final String BROKER_NAME = "query-filter-test";
+    static final int OBJECT_NAME_COUNT = 10;
+    static final int ACTIVE_COUNT = 3;
+
+    List<SyntheticDestination> destinations;
+    EventCollectorClientStub clientStub;
+    SplunkJmxAttributeChangeMonitor instance;
+
+    /**
+     * Register the synthetic destinations and configure the monitor - the first ACTIVE_COUNT destinations have messages.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+        for (int i = 0; i < ACTIVE_COUNT; ++i) {
+            destinations.get(i).advance();
+        }
+
+        clientStub = new EventCollectorClientStub();
+        instance = SyntheticDestination.changeMonitor(BROKER_NAME, clientStub);
+        instance.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+    }
+
+    /**
+     * Stop the monitor and remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.stop();
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        instance.setObservedObjectFilter("QueueSize > 0");
+
+        instance.start();
+        new AttributeChangeMonitorRunnable(instance, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        assertEquals(ACTIVE_COUNT, clientStub.eventCount.get());
+    }
+
+    @Test
+    public void testInvalidFilter() throws Exception {
+        instance.setObservedObjectFilter("QueueSize >");
+
+        instance.start();
+        assertNull(instance.getObservedObjectQuery());
+        new AttributeChangeMonitorRunnable(instance, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        assertEquals("An invalid filter should be ignored", OBJECT_NAME_COUNT, clientStub.eventCount.get());
+    }
+}
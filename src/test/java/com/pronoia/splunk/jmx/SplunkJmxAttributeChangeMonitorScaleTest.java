@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Random;
+
+import com.pronoia.splunk.jmx.internal.AttributeChangeMonitorRunnable;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scale harness for the attribute change monitor.
+ *
+ * <p>The defaults keep the regular build fast - production-sized runs are configured with system properties, e.g.
+ * <pre>
+ *     mvn test -Dtest=SplunkJmxAttributeChangeMonitorScaleTest -Dscale.mbeanCount=100000 -Dscale.changeRate=0.05 -Dscale.getterLatencyMicros=2
+ * </pre>
+ */
+public class SplunkJmxAttributeChangeMonitorScaleTest {
+    static final String BROKER_NAME = "scale-test";
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    int mbeanCount = Integer.getInteger("scale.mbeanCount", 500);
+    double changeRate = Double.parseDouble(System.getProperty("scale.changeRate", "0.1"));
+    long getterLatencyNanos = Long.getLong("scale.getterLatencyMicros", 0L) * 1000;
+    int cycles = Integer.getInteger("scale.cycles", 3);
+
+    List<SyntheticDestination> destinations;
+    EventCollectorClientStub clientStub;
+    SplunkJmxAttributeChangeMonitor instance;
+
+    /**
+     * Register the synthetic destinations and configure the monitor.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, mbeanCount, getterLatencyNanos);
+
+        clientStub = new EventCollectorClientStub();
+        clientStub.retainEvents = false;
+
+        instance = new SplunkJmxAttributeChangeMonitor();
+        instance.setSplunkClient(clientStub);
+        instance.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        instance.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount", "ConsumerCount", "ProducerCount", "MemoryPercentUsage");
+        instance.setCollectedAttributes("Name", "MaxEnqueueTime", "AverageEnqueueTime", "MemoryLimit");
+        instance.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        // The harness drives the polling cycles itself
+        instance.setGranularityPeriod(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stop the monitor and remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.stop();
+        SyntheticDestination.unregister(BROKER_NAME);
+    }
+
+    @Test
+    public void testPollingCycles() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Random random = new Random(mbeanCount);
+
+        long heapBeforeFirstCycle = usedHeapAfterGc();
+
+        instance.start();
+        AttributeChangeMonitorRunnable runnable = instance.runnableMap.values().iterator().next();
+
+        for (int cycle = 0; cycle <= cycles; ++cycle) {
+            int changedCount = (cycle == 0) ? mbeanCount : SyntheticDestination.advance(destinations, changeRate, random);
+            clientStub.reset();
+
+            long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+            long wallStart = System.nanoTime();
+            runnable.run();
+            long wallNanos = System.nanoTime() - wallStart;
+            long cpuNanos = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+
+            long eventCount = clientStub.eventCount.get();
+            log.info("Cycle {}: {} MBeans, {} changed, {} events ({} bytes) in {} ms - {} events/sec, {} ms CPU, {} us CPU per MBean",
+                cycle, runnable.getLastPollObjectCount(), changedCount, eventCount, clientStub.eventBytes.get(),
+                wallNanos / 1000000, (wallNanos > 0) ? eventCount * 1000000000L / wallNanos : 0,
+                cpuNanos / 1000000, cpuNanos / 1000 / mbeanCount);
+
+            assertEquals(mbeanCount, runnable.getLastPollObjectCount());
+            assertEquals("One event should be sent for each changed MBean", changedCount, eventCount);
+
+            if (cycle == 0) {
+                long retainedHeap = usedHeapAfterGc() - heapBeforeFirstCycle;
+                log.info("Change detection state for {} MBeans retains approximately {} bytes ({} bytes per MBean)",
+                    runnable.getTrackedObjectCount(), retainedHeap, retainedHeap / mbeanCount);
+            }
+        }
+
+        assertTrue(runnable.getTrackedObjectCount() == mbeanCount);
+    }
+
+    static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.LocalJvmStub;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SplunkJmxLocalJvmCollectorTest {
+    static final String TEST_PROPERTY = "splunk.jmx.test.collector";
+    static final long TIMEOUT_MILLIS = 30000;
+
+    EventCollectorClientStub clientStub;
+    SplunkJmxLocalJvmCollector instance;
+    SplunkJmxAttributeChangeMonitor changeMonitor;
+    String testId;
+    Process matchingJvm;
+    Process otherJvm;
+
+    /**
+     * Start the child JVMs and configure the collector.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        testId = Long.toString(System.nanoTime());
+        matchingJvm = LocalJvmStub.start(TEST_PROPERTY + "=" + testId);
+        otherJvm = LocalJvmStub.start(TEST_PROPERTY + "=other");
+
+        clientStub = new EventCollectorClientStub();
+
+        changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setChangeMonitorId("local-jvm-collector-test");
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(new ObjectName("java.lang:type=Runtime"));
+        changeMonitor.setObservedAttributes("Name", "VmName");
+        changeMonitor.setGranularityPeriod(1);
+
+        instance = new SplunkJmxLocalJvmCollector();
+        configure(instance);
+    }
+
+    void configure(SplunkJmxLocalJvmCollector collector) {
+        collector.setMainClassPatterns(".*" + LocalJvmStub.class.getSimpleName());
+        collector.addSystemPropertyPattern(TEST_PROPERTY, testId);
+        collector.setDiscoveryPeriod(1);
+        collector.addChangeMonitor(changeMonitor);
+    }
+
+    /**
+     * Stop the collector and the child JVMs.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.stop();
+        for (Process childJvm : new Process[] {matchingJvm, otherJvm}) {
+            childJvm.getOutputStream().close();
+            if (!childJvm.waitFor(10, TimeUnit.SECONDS)) {
+                childJvm.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testCollectFromChildJvm() throws Exception {
+        instance.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (clientStub.eventCount.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("Only the JVM with the matching system property should be attached", 1, instance.getAttachedJvms().size());
+        String jvmId = instance.getAttachedJvms().keySet().iterator().next();
+        assertTrue("An event should be received from the child JVM", clientStub.eventCount.get() > 0);
+        assertTrue("The event should identify the JVM: " + clientStub.lastEvent,
+            clientStub.lastEvent.contains(SplunkJmxLocalJvmCollector.JVM_ID_FIELD + "=" + jvmId));
+        assertTrue("The event should contain the name of the child JVM: " + clientStub.lastEvent,
+            clientStub.lastEvent.contains(jvmId + "@"));
+    }
+
+    @Test
+    public void testDetachExitedJvm() throws Exception {
+        instance.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (instance.getAttachedJvms().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, instance.getAttachedJvms().size());
+
+        matchingJvm.getOutputStream().close();
+        matchingJvm.waitFor(10, TimeUnit.SECONDS);
+        instance.discover();
+
+        assertTrue("The exited JVM should be detached", instance.getAttachedJvms().isEmpty());
+    }
+
+    @Test
+    public void testStopWhileAttaching() throws Exception {
+        final CountDownLatch attaching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        instance = new SplunkJmxLocalJvmCollector() {
+            @Override
+            JMXConnector connect(VirtualMachineDescriptor descriptor, String mainClass) throws AttachNotSupportedException, IOException {
+                attaching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException interruptedEx) {
+                    // Ignore the interrupt from stop, like a JVM that does not respond
+                }
+                return super.connect(descriptor, mainClass);
+            }
+        };
+        configure(instance);
+        instance.start();
+
+        assertTrue("An attach should be started", attaching.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        long startMillis = System.currentTimeMillis();
+        instance.stop();
+        assertTrue("Stop should not wait for the attach", System.currentTimeMillis() - startMillis < 5000);
+
+        release.countDown();
+        Thread.sleep(2000);
+        assertTrue("A JVM attached after stop should be detached", instance.getAttachedJvms().isEmpty());
+    }
+
+    @Test
+    public void testAttachTimeout() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        instance = new SplunkJmxLocalJvmCollector() {
+            @Override
+            JMXConnector connect(VirtualMachineDescriptor descriptor, String mainClass) throws AttachNotSupportedException, IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException interruptedEx) {
+                    throw new InterruptedIOException("Attach cancelled");
+                }
+                return super.connect(descriptor, mainClass);
+            }
+        };
+        configure(instance);
+        instance.setAttachTimeout(1);
+        instance.start();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (ignoredJvmCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("The JVMs that cannot be attached within the timeout should be ignored", 2, ignoredJvmCount());
+        assertTrue(instance.getAttachedJvms().isEmpty());
+        release.countDown();
+    }
+
+    int ignoredJvmCount() {
+        synchronized (instance) {
+            return instance.ignoredJvms.size();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.openmbean.CompositeData;
+
+import com.pronoia.splunk.jmx.internal.GarbageCollectionSummary;
+import com.pronoia.splunk.jmx.internal.GarbageCollectionWindow;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.GarbageCollectionNotificationStub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplunkJmxNotificationListenerGcSummaryTest {
+    SplunkJmxNotificationListener instance;
+    EventCollectorClientStub clientStub;
+
+    /**
+     * Setup the instance for the test.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        clientStub = new EventCollectorClientStub();
+
+        instance = new SplunkJmxNotificationListener();
+        instance.setSplunkClient(clientStub);
+        instance.setGcSummaryWindow(3600);
+        instance.setGcOutlierPauseThreshold(100);
+        instance.addSourceMBeans("java.lang:type=GarbageCollector,name=*");
+    }
+
+    @Test
+    public void testSummaryAndOutliers() throws Exception {
+        instance.start();
+        try {
+            instance.handleNotification(youngCollection(1, 10, 1000, 5000, 5100), null);
+            instance.handleNotification(youngCollection(2, 20, 1300, 5100, 5150), null);
+            assertTrue("Collections below the outlier threshold should be aggregated", clientStub.events.isEmpty());
+
+            instance.handleNotification(youngCollection(3, 250, 1200, 5150, 5400), null);
+            assertEquals("Outliers should be sent as individual events", 1, clientStub.events.size());
+        } finally {
+            instance.stop();
+        }
+
+        assertEquals("The partial window should be sent when the listener is stopped", 2, clientStub.events.size());
+    }
+
+    @Test
+    public void testWindowStatistics() throws Exception {
+        GarbageCollectionWindow window = new GarbageCollectionWindow(100);
+
+        assertFalse(window.record("young", (CompositeData) youngCollection(1, 10, 1000, 5000, 5100).getUserData()));
+        assertFalse(window.record("young", (CompositeData) youngCollection(2, 20, 1300, 5100, 5150).getUserData()));
+        assertTrue(window.record("young", (CompositeData) youngCollection(3, 250, 1200, 5150, 5400).getUserData()));
+
+        List<GarbageCollectionSummary> summaries = window.drain();
+        assertEquals(1, summaries.size());
+
+        GarbageCollectionSummary summary = summaries.get(0);
+        assertEquals("PS Scavenge", summary.getGcName());
+        assertEquals(3, summary.getCollectionCount());
+        assertEquals(1, summary.getOutlierCount());
+        assertEquals(280, summary.getTotalPause());
+        assertEquals(250, summary.getMaxPause());
+        assertEquals(250, summary.getP99Pause());
+        // Eden is emptied by each collection, so the allocations are the eden usage before each collection
+        assertEquals(3500, summary.getAllocatedBytes());
+        assertEquals(400, summary.getPromotedBytes());
+
+        assertTrue("Drained window should be empty", window.drain().isEmpty());
+    }
+
+    @Test
+    public void testAllocationAcrossCollectors() throws Exception {
+        GarbageCollectionWindow window = new GarbageCollectionWindow(-1);
+
+        window.record("young", (CompositeData) youngCollection(1, 10, 1000, 5000, 5100).getUserData());
+        // 600 bytes are allocated between the young collection and the old collection
+        window.record("old", (CompositeData) oldCollection(2, 100, 600, 5100, 3000).getUserData());
+        window.record("young", (CompositeData) youngCollection(3, 10, 800, 3000, 3100).getUserData());
+
+        List<GarbageCollectionSummary> summaries = window.drain();
+        assertEquals(2, summaries.size());
+        for (GarbageCollectionSummary summary : summaries) {
+            assertEquals("The JVM allocation should be reported for every collector: " + summary, 2400, summary.getAllocatedBytes());
+        }
+    }
+
+    static Notification oldCollection(long gcId, long duration, long edenBeforeGc, long oldBeforeGc, long oldAfterGc) throws Exception {
+        Map<String, Long> usedBeforeGc = new LinkedHashMap<>();
+        usedBeforeGc.put("PS Eden Space", edenBeforeGc);
+        usedBeforeGc.put("PS Old Gen", oldBeforeGc);
+        Map<String, Long> usedAfterGc = new LinkedHashMap<>();
+        usedAfterGc.put("PS Eden Space", 0L);
+        usedAfterGc.put("PS Old Gen", oldAfterGc);
+
+        return GarbageCollectionNotificationStub.createGcNotification("PS MarkSweep",
+            GarbageCollectionNotificationStub.createGcNotificationInfo("PS MarkSweep", "end of major GC", gcId, duration, usedBeforeGc, usedAfterGc));
+    }
+
+    static Notification youngCollection(long gcId, long duration, long edenBeforeGc, long oldBeforeGc, long oldAfterGc) throws Exception {
+        Map<String, Long> usedBeforeGc = new LinkedHashMap<>();
+        usedBeforeGc.put("PS Eden Space", edenBeforeGc);
+        usedBeforeGc.put("PS Old Gen", oldBeforeGc);
+        Map<String, Long> usedAfterGc = new LinkedHashMap<>();
+        usedAfterGc.put("PS Eden Space", 0L);
+        usedAfterGc.put("PS Old Gen", oldAfterGc);
+
+        return GarbageCollectionNotificationStub.createGcNotification("PS Scavenge",
+            GarbageCollectionNotificationStub.createGcNotificationInfo("PS Scavenge", "end of minor GC", gcId, duration, usedBeforeGc, usedAfterGc));
+    }
+}
@@ -16,11 +16,24 @@
  */
 package com.pronoia.splunk.jmx;
 
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+
 import com.pronoia.splunk.stub.EventCollectorClientStub;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class SplunkJmxNotificationListenerTest {
     SplunkJmxNotificationListener instance;
 
@@ -48,4 +61,130 @@ public class SplunkJmxNotificationListenerTest {
         instance.stop();
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMBeanRegisteredAfterStart() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName emitterObjectName = new ObjectName("com.pronoia.splunk.test:type=NotificationEmitter,name=late");
+
+        instance = new SplunkJmxNotificationListener();
+        instance.setSplunkClient(clientStub);
+        instance.addSourceMBeans("com.pronoia.splunk.test:type=NotificationEmitter,name=*");
+
+        instance.start();
+        try {
+            assertTrue("Listener should be running while waiting for MBean registrations", instance.isRunning());
+            assertTrue(instance.getSourceMBeans().isEmpty());
+
+            NotificationEmitter emitter = new NotificationEmitter();
+            mbeanServer.registerMBean(emitter, emitterObjectName);
+            assertTrue(instance.getSourceMBeans().contains(emitterObjectName.getCanonicalName()));
+
+            emitter.emit(emitterObjectName);
+            assertNotNull(clientStub.lastEvent);
+
+            mbeanServer.unregisterMBean(emitterObjectName);
+            assertFalse(instance.getSourceMBeans().contains(emitterObjectName.getCanonicalName()));
+        } finally {
+            instance.stop();
+            if (mbeanServer.isRegistered(emitterObjectName)) {
+                mbeanServer.unregisterMBean(emitterObjectName);
+            }
+        }
+    }
+
+    @Test
+    public void testExactNameRegisteredAgain() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName emitterObjectName = new ObjectName("com.pronoia.splunk.test:type=NotificationEmitter,name=recreated");
+        mbeanServer.registerMBean(new NotificationEmitter(), emitterObjectName);
+
+        instance = new SplunkJmxNotificationListener();
+        instance.setSplunkClient(clientStub);
+        instance.addSourceMBeans(emitterObjectName.getCanonicalName());
+
+        instance.start();
+        try {
+            assertTrue(instance.getSourceMBeans().contains(emitterObjectName.getCanonicalName()));
+
+            mbeanServer.unregisterMBean(emitterObjectName);
+            assertFalse(instance.getSourceMBeans().contains(emitterObjectName.getCanonicalName()));
+
+            NotificationEmitter emitter = new NotificationEmitter();
+            mbeanServer.registerMBean(emitter, emitterObjectName);
+            assertTrue("The listener should be added to the re-registered MBean", instance.getSourceMBeans().contains(emitterObjectName.getCanonicalName()));
+
+            emitter.emit(emitterObjectName);
+            assertEquals("Notifications of the re-registered MBean should be received", 1, clientStub.eventCount.get());
+        } finally {
+            instance.stop();
+            if (mbeanServer.isRegistered(emitterObjectName)) {
+                mbeanServer.unregisterMBean(emitterObjectName);
+            }
+        }
+    }
+
+    @Test
+    public void testExactNameRegisteredAfterStart() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName emitterObjectName = new ObjectName("com.pronoia.splunk.test:type=NotificationEmitter,name=missing");
+
+        instance = new SplunkJmxNotificationListener();
+        instance.setSplunkClient(clientStub);
+        instance.addSourceMBeans(emitterObjectName.getCanonicalName());
+
+        instance.start();
+        try {
+            assertTrue(instance.getSourceMBeans().isEmpty());
+
+            NotificationEmitter emitter = new NotificationEmitter();
+            mbeanServer.registerMBean(emitter, emitterObjectName);
+
+            emitter.emit(emitterObjectName);
+            assertEquals("Notifications of an MBean missing at start should be received", 1, clientStub.eventCount.get());
+        } finally {
+            instance.stop();
+            if (mbeanServer.isRegistered(emitterObjectName)) {
+                mbeanServer.unregisterMBean(emitterObjectName);
+            }
+        }
+    }
+
+    @Test
+    public void testMBeanRegisteredAfterStartWithMonitoringDisabled() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName emitterObjectName = new ObjectName("com.pronoia.splunk.test:type=NotificationEmitter,name=ignored");
+
+        instance = new SplunkJmxNotificationListener();
+        instance.setSplunkClient(clientStub);
+        instance.setMonitorMBeanRegistrations(false);
+        instance.addSourceMBeans("com.pronoia.splunk.test:type=NotificationEmitter,name=*");
+
+        instance.start();
+        try {
+            NotificationEmitter emitter = new NotificationEmitter();
+            mbeanServer.registerMBean(emitter, emitterObjectName);
+
+            emitter.emit(emitterObjectName);
+            assertNull(clientStub.lastEvent);
+        } finally {
+            instance.stop();
+            mbeanServer.unregisterMBean(emitterObjectName);
+        }
+    }
+
+    public interface NotificationEmitterMBean {
+    }
+
+    public static class NotificationEmitter extends NotificationBroadcasterSupport implements NotificationEmitterMBean {
+        long sequenceNumber;
+
+        void emit(ObjectName source) {
+            sendNotification(new Notification("com.pronoia.splunk.test", source, ++sequenceNumber, "Test Notification"));
+        }
+    }
+
+}
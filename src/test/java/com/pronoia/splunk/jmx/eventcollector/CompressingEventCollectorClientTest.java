@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.HttpEventCollectorStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressingEventCollectorClientTest {
+    EventCollectorClientStub clientStub;
+    HttpEventCollectorStub collectorStub;
+    CompressingEventCollectorClient instance;
+
+    /**
+     * Start the HTTP Event Collector stub and configure the client.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        clientStub = new EventCollectorClientStub();
+        collectorStub = new HttpEventCollectorStub();
+        collectorStub.start();
+
+        instance = new CompressingEventCollectorClient();
+        instance.setSplunkClient(clientStub);
+        instance.setCollectorUrl(collectorStub.getUrl());
+        instance.setAuthorizationToken("test-token");
+        instance.setMaxBatchSize(10);
+        instance.setBatchPeriod(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stop the client and the HTTP Event Collector stub.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.stop();
+        collectorStub.stop();
+    }
+
+    @Test
+    public void testCompressedBatch() throws Exception {
+        instance.setMinCompressionSize(0);
+        instance.start();
+
+        for (int i = 0; i < 10; ++i) {
+            instance.sendEvent(createEvent(i));
+        }
+        waitForBatches(1);
+
+        assertEquals("A complete batch should be delivered in one request", 1, collectorStub.requests.size());
+        HttpEventCollectorStub.Request request = collectorStub.requests.get(0);
+        assertEquals("gzip", request.contentEncoding);
+        assertEquals("Splunk test-token", request.authorization);
+        for (int i = 0; i < 10; ++i) {
+            assertTrue("The batch should contain every event", request.body.contains(createEvent(i)));
+        }
+
+        assertEquals(10, instance.getEventCount());
+        assertEquals(1, instance.getCompressedBatchCount());
+        assertEquals(request.contentLength, instance.getDeliveredBytes());
+        assertEquals(request.body.length(), instance.getUncompressedBytes());
+        assertTrue("Repetitive events should compress several times over: " + instance.getCompressionRatio(), instance.getCompressionRatio() > 3);
+        assertEquals(0, clientStub.eventCount.get());
+    }
+
+    @Test
+    public void testSmallBatchNotCompressed() throws Exception {
+        instance.setMinCompressionSize(1024 * 1024);
+        instance.start();
+
+        for (int i = 0; i < 10; ++i) {
+            instance.sendEvent(createEvent(i));
+        }
+        waitForBatches(1);
+
+        assertEquals(1, collectorStub.requests.size());
+        assertNull("Batches below the threshold should not be compressed", collectorStub.requests.get(0).contentEncoding);
+        assertEquals(0, instance.getCompressedBatchCount());
+        assertEquals(1.0, instance.getCompressionRatio(), 0.0);
+    }
+
+    @Test
+    public void testFlushIncompleteBatch() throws Exception {
+        instance.start();
+
+        instance.sendEvent(createEvent(1));
+        instance.sendEvent(createEvent(2));
+        assertEquals("An incomplete batch should not be delivered", 0, collectorStub.requests.size());
+
+        instance.stop();
+        assertEquals("Stop should deliver the incomplete batch", 1, collectorStub.requests.size());
+        assertEquals(2, instance.getLastBatchEventCount());
+    }
+
+    @Test
+    public void testBatchPeriod() throws Exception {
+        instance.setBatchPeriod(1);
+        instance.start();
+
+        instance.sendEvent(createEvent(1));
+        for (int i = 0; i < 50 && collectorStub.requests.isEmpty(); ++i) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("The batch period should deliver the incomplete batch", 1, collectorStub.requests.size());
+    }
+
+    @Test
+    public void testDeliveryFailure() throws Exception {
+        collectorStub.responseCode = 403;
+        instance.start();
+
+        for (int i = 0; i < 10; ++i) {
+            instance.sendEvent(createEvent(i));
+        }
+        for (int i = 0; i < 50 && instance.getFailedBatchCount() == 0; ++i) {
+            Thread.sleep(100);
+        }
+
+        assertEquals("A failed batch should be logged, not raised to the sender", 1, instance.getFailedBatchCount());
+        assertEquals(0, instance.getEventCount());
+    }
+
+    @Test
+    public void testFlushFailureDescribesBatch() throws Exception {
+        collectorStub.responseCode = 403;
+        instance.start();
+
+        instance.sendEvent(createEvent(1));
+        instance.sendEvent(createEvent(2));
+        try {
+            instance.flush();
+            fail("EventDeliveryException should have been raised");
+        } catch (EventDeliveryException expectedEx) {
+            assertTrue(expectedEx.getCause().getMessage(), expectedEx.getCause().getMessage().contains("403"));
+            String expected = CompressingEventCollectorClient.describeBatch(2, (createEvent(1) + createEvent(2)).length() + 2);
+            assertEquals("The exception should describe the batch rather than carry it", expected, expectedEx.getEvent());
+        }
+
+        assertEquals(1, instance.getFailedBatchCount());
+    }
+
+    @Test
+    public void testSlowCollectorDoesNotBlockSender() throws Exception {
+        collectorStub.responseDelay = 1000;
+        instance.setMaxPendingBatches(1);
+        instance.start();
+
+        long startMillis = System.currentTimeMillis();
+        for (int i = 0; i < 10; ++i) {
+            instance.sendEvent(createEvent(i));
+        }
+        assertTrue("The sender should not wait for the collector", System.currentTimeMillis() - startMillis < 1000);
+
+        for (int i = 0; i < 9; ++i) {
+            instance.sendEvent(createEvent(i));
+        }
+        try {
+            instance.sendEvent(createEvent(9));
+            fail("EventDeliveryException should have been raised");
+        } catch (EventDeliveryException expectedEx) {
+            assertEquals(CompressingEventCollectorClient.describeBatch(10, 10 * (createEvent(0).length() + 1)), expectedEx.getEvent());
+        }
+        assertEquals(1, instance.getDiscardedBatchCount());
+
+        waitForBatches(1);
+        assertEquals(1, collectorStub.requests.size());
+        assertEquals(10, instance.getEventCount());
+    }
+
+    @Test
+    public void testConcurrentDiscards() throws Exception {
+        final int threadCount = 8;
+        final int batchesPerThread = 50;
+        collectorStub.responseDelay = 2000;
+        instance.setMaxBatchSize(1);
+        instance.setMaxPendingBatches(1);
+        instance.start();
+
+        final AtomicLong raisedCount = new AtomicLong();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; ++i) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        for (int j = 0; j < batchesPerThread; ++j) {
+                            try {
+                                instance.sendEvent(createEvent(j));
+                            } catch (EventDeliveryException expectedEx) {
+                                raisedCount.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException interruptedEx) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("Batches should be discarded while the collector is slow", raisedCount.get() > 0);
+        assertEquals("Every discarded batch should be counted", raisedCount.get(), instance.getDiscardedBatchCount());
+    }
+
+    @Test
+    public void testCompressionCpuTime() throws Exception {
+        instance.setMinCompressionSize(0);
+        instance.start();
+
+        instance.sendEvent(createEvent(1));
+        instance.flush();
+
+        if (instance.isCpuTimeSupported()) {
+            assertTrue(instance.getLastBatchCompressionCpuTime() >= 0);
+            assertTrue(instance.getCompressionCpuTime() >= 0);
+        } else {
+            assertEquals("CPU time should not be reported when it cannot be measured", -1, instance.getLastBatchCompressionCpuTime());
+            assertEquals(-1, instance.getCompressionCpuTime());
+        }
+
+        instance.setMinCompressionSize(1024 * 1024);
+        instance.sendEvent(createEvent(2));
+        instance.flush();
+        assertEquals("An uncompressed batch should not report compression CPU time", -1, instance.getLastBatchCompressionCpuTime());
+    }
+
+    @Test
+    public void testWithoutCollectorUrl() throws Exception {
+        instance.setCollectorUrl(null);
+        instance.start();
+
+        instance.sendEvent(createEvent(1));
+
+        assertEquals("Events should be delivered by the wrapped client", 1, clientStub.eventCount.get());
+        assertEquals(0, collectorStub.requests.size());
+    }
+
+    void waitForBatches(long batchCount) throws InterruptedException {
+        for (int i = 0; i < 50 && instance.getBatchCount() < batchCount; ++i) {
+            Thread.sleep(100);
+        }
+    }
+
+    static String createEvent(int value) {
+        return String.format("{\"host\":\"localhost\",\"sourcetype\":\"jmx\",\"event\":{\"QueueSize\":%d},"
+            + "\"fields\":{\"brokerName\":\"localhost\",\"destinationType\":\"Queue\",\"destinationName\":\"queue.%d\"}}", value, value);
+    }
+}
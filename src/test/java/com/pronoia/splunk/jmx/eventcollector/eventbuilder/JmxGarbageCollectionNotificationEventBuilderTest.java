@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.eventcollector.eventbuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.Notification;
+
+import com.pronoia.splunk.stub.GarbageCollectionNotificationStub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JmxGarbageCollectionNotificationEventBuilderTest {
+    JmxGarbageCollectionNotificationEventBuilder instance;
+    Notification gcNotification;
+
+    /**
+     * Setup a GC notification for the tests.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        instance = new JmxGarbageCollectionNotificationEventBuilder();
+
+        Map<String, Long> usedBeforeGc = new LinkedHashMap<>();
+        usedBeforeGc.put("PS Eden Space", 1000L);
+        usedBeforeGc.put("PS Old Gen", 5000L);
+        Map<String, Long> usedAfterGc = new LinkedHashMap<>();
+        usedAfterGc.put("PS Eden Space", 0L);
+        usedAfterGc.put("PS Old Gen", 5200L);
+
+        gcNotification = GarbageCollectionNotificationStub.createGcNotification("PS Scavenge",
+            GarbageCollectionNotificationStub.createGcNotificationInfo("PS Scavenge", "end of minor GC", 7L, 12L, usedBeforeGc, usedAfterGc));
+    }
+
+    @Test
+    public void testIsGarbageCollectionNotification() throws Exception {
+        assertTrue(JmxGarbageCollectionNotificationEventBuilder.isGarbageCollectionNotification(gcNotification));
+        assertFalse(JmxGarbageCollectionNotificationEventBuilder.isGarbageCollectionNotification(
+            new Notification("jmx.attribute.change", "source", 1L)));
+    }
+
+    @Test
+    public void testAddEventBodyToMap() throws Exception {
+        Map<String, Object> eventObject = new LinkedHashMap<>();
+
+        instance.eventBody(gcNotification);
+        instance.addEventBodyToMap(eventObject);
+
+        Map<String, Object> eventBody = (Map<String, Object>) eventObject.get("event");
+        assertEquals("PS Scavenge", eventBody.get("gcName"));
+        assertEquals("end of minor GC", eventBody.get("gcAction"));
+        assertEquals("Allocation Failure", eventBody.get("gcCause"));
+        assertEquals(7L, eventBody.get("gcId"));
+        assertEquals(12L, eventBody.get("gcDuration"));
+        assertEquals(1000L, eventBody.get("PS Eden Space.usedBeforeGc"));
+        assertEquals(0L, eventBody.get("PS Eden Space.usedAfterGc"));
+        assertEquals(5000L, eventBody.get("PS Old Gen.usedBeforeGc"));
+        assertEquals(5200L, eventBody.get("PS Old Gen.usedAfterGc"));
+    }
+
+    @Test
+    public void testAddEventBodyToMapWithoutMemoryPoolUsage() throws Exception {
+        Map<String, Object> eventObject = new LinkedHashMap<>();
+
+        instance.setIncludeMemoryPoolUsage(false);
+        instance.eventBody(gcNotification);
+        instance.addEventBodyToMap(eventObject);
+
+        Map<String, Object> eventBody = (Map<String, Object>) eventObject.get("event");
+        assertEquals(12L, eventBody.get("gcDuration"));
+        assertFalse(eventBody.containsKey("PS Eden Space.usedBeforeGc"));
+    }
+
+    @Test
+    public void testDuplicate() throws Exception {
+        instance.setIncludeMemoryPoolUsage(false);
+
+        JmxGarbageCollectionNotificationEventBuilder duplicate = (JmxGarbageCollectionNotificationEventBuilder) instance.duplicate();
+
+        assertFalse(duplicate.isIncludeMemoryPoolUsage());
+    }
+}
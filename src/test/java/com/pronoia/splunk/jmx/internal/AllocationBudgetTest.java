@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.eventcollector.EventBuilder;
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.jmx.eventcollector.eventbuilder.JmxAttributeListEventBuilder;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Allocation budgets for the collection hot path.
+ *
+ * <p>Allocations are measured with com.sun.management.ThreadMXBean.getThreadAllocatedBytes on the test thread and
+ * averaged over many iterations.  The JSON serialization performed by the splunk.httpec library is not part of this
+ * project, so the change path uses an event builder that builds the event Map but does not serialize it.
+ *
+ * <p>The budgets are roughly twice the measured allocation when they were introduced (about 3.5KB, 4.4KB and 1.2KB),
+ * which leaves room for JVM and MBeanServer differences while still catching a regression that adds per-attribute
+ * allocations.  If a change legitimately needs more memory, raise the budget in the same commit and explain why.
+ */
+public class AllocationBudgetTest {
+    /**
+     * Budget for polling one unchanged ObjectName - getAttributes, the attribute Map and the change comparison.
+     */
+    static final long NO_CHANGE_BYTES_PER_OBJECT_NAME_BUDGET = 8192;
+
+    /**
+     * Budget for polling one changed ObjectName - the no-change path plus building the event Map.
+     */
+    static final long CHANGE_BYTES_PER_OBJECT_NAME_BUDGET = 10240;
+
+    /**
+     * Budget for building the event body Map for one ActiveMQ destination AttributeList.
+     */
+    static final long BYTES_PER_EVENT_BODY_BUDGET = 3072;
+
+    static final String BROKER_NAME = "allocation-budget";
+    static final int OBJECT_NAME_COUNT = 50;
+    static final int WARMUP_ITERATIONS = 200;
+    static final int MEASURED_ITERATIONS = 200;
+
+    Logger log = LoggerFactory.getLogger(this.getClass());
+
+    com.sun.management.ThreadMXBean threadMXBean;
+    List<SyntheticDestination> destinations;
+    SplunkJmxAttributeChangeMonitor changeMonitor;
+    AttributeChangeMonitorRunnable instance;
+
+    /**
+     * Register the synthetic destinations and create the runnable.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        ThreadMXBean platformThreadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Thread allocation measurement is not available",
+            platformThreadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) platformThreadMXBean).isThreadAllocatedMemorySupported());
+        threadMXBean = (com.sun.management.ThreadMXBean) platformThreadMXBean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(new EventCollectorClientStub());
+        changeMonitor.setSplunkEventBuilder(new NonSerializingEventBuilder());
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount", "ConsumerCount", "ProducerCount", "MemoryPercentUsage");
+        changeMonitor.setCollectedAttributes("Name", "MaxEnqueueTime", "AverageEnqueueTime", "MemoryLimit");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        // start() resolves the attribute configuration used by the runnable
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testNoChangePath() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName[] objectNames = queryObjectNames(mbeanServer);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            collectAll(mbeanServer, objectNames, false);
+        }
+
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            collectAll(mbeanServer, objectNames, false);
+        }
+        long bytesPerObjectName = (allocatedBytes() - startBytes) / ((long) MEASURED_ITERATIONS * objectNames.length);
+
+        log.info("No change path allocated {} bytes per ObjectName - budget is {}", bytesPerObjectName, NO_CHANGE_BYTES_PER_OBJECT_NAME_BUDGET);
+        assertTrue(String.format("No change path allocated %d bytes per ObjectName - budget is %d", bytesPerObjectName, NO_CHANGE_BYTES_PER_OBJECT_NAME_BUDGET),
+            bytesPerObjectName <= NO_CHANGE_BYTES_PER_OBJECT_NAME_BUDGET);
+    }
+
+    @Test
+    public void testChangePath() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName[] objectNames = queryObjectNames(mbeanServer);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            collectAll(mbeanServer, objectNames, true);
+        }
+
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; ++i) {
+            collectAll(mbeanServer, objectNames, true);
+        }
+        long bytesPerObjectName = (allocatedBytes() - startBytes) / ((long) MEASURED_ITERATIONS * objectNames.length);
+
+        log.info("Change path allocated {} bytes per ObjectName - budget is {}", bytesPerObjectName, CHANGE_BYTES_PER_OBJECT_NAME_BUDGET);
+        assertTrue(String.format("Change path allocated %d bytes per ObjectName - budget is %d", bytesPerObjectName, CHANGE_BYTES_PER_OBJECT_NAME_BUDGET),
+            bytesPerObjectName <= CHANGE_BYTES_PER_OBJECT_NAME_BUDGET);
+    }
+
+    @Test
+    public void testEventBody() throws Exception {
+        NonSerializingEventBuilder eventBuilder = new NonSerializingEventBuilder();
+        AttributeList attributeList = ManagementFactory.getPlatformMBeanServer().getAttributes(
+            SyntheticDestination.objectName(BROKER_NAME, "queue.0"), changeMonitor.getCachedAttributeArray());
+
+        for (int i = 0; i < WARMUP_ITERATIONS * 10; ++i) {
+            eventBuilder.eventBody(attributeList).build(null);
+        }
+
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS * 10; ++i) {
+            eventBuilder.eventBody(attributeList).build(null);
+        }
+        long bytesPerEvent = (allocatedBytes() - startBytes) / (MEASURED_ITERATIONS * 10);
+
+        log.info("Event body allocated {} bytes per event - budget is {}", bytesPerEvent, BYTES_PER_EVENT_BODY_BUDGET);
+        assertTrue(String.format("Event body allocated %d bytes per event - budget is %d", bytesPerEvent, BYTES_PER_EVENT_BODY_BUDGET),
+            bytesPerEvent <= BYTES_PER_EVENT_BODY_BUDGET);
+    }
+
+    ObjectName[] queryObjectNames(MBeanServer mbeanServer) throws Exception {
+        return mbeanServer.queryNames(SyntheticDestination.pattern(BROKER_NAME), null).toArray(new ObjectName[0]);
+    }
+
+    void collectAll(MBeanServer mbeanServer, ObjectName[] objectNames, boolean change) throws Exception {
+        if (change) {
+            for (SyntheticDestination destination : destinations) {
+                destination.advance();
+            }
+        }
+        for (ObjectName objectName : objectNames) {
+            instance.collectAttributes(mbeanServer, objectName);
+        }
+    }
+
+    long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Builds the event Map like the real builder, but skips the JSON serialization done by the splunk.httpec library.
+     */
+    static class NonSerializingEventBuilder extends JmxAttributeListEventBuilder {
+        @Override
+        public String build(EventCollectorClient client) {
+            Map<String, Object> eventMap = new HashMap<>();
+            addEventBodyToMap(eventMap);
+            return "";
+        }
+
+        @Override
+        public EventBuilder<AttributeList> duplicate() {
+            NonSerializingEventBuilder answer = new NonSerializingEventBuilder();
+            answer.copyConfiguration(this);
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class AttributeAggregatorTest {
+    @Test
+    public void testParse() throws Exception {
+        AggregateSpec instance = AggregateSpec.parse(" SUM( QueueSize ) ");
+        assertEquals(AggregateSpec.Function.SUM, instance.getFunction());
+        assertEquals("QueueSize", instance.getAttributeName());
+        assertEquals("QueueSize.sum", instance.getKey());
+
+        instance = AggregateSpec.parse("p99.9(EnqueueCount)");
+        assertEquals(AggregateSpec.Function.PERCENTILE, instance.getFunction());
+        assertEquals(99.9, instance.getPercentile(), 0.0);
+        assertEquals("EnqueueCount.p99.9", instance.getKey());
+
+        for (String invalidDefinition : Arrays.asList("QueueSize", "median(QueueSize)", "sum()", "p0(QueueSize)", "p101(QueueSize)", "percentile(QueueSize)")) {
+            try {
+                AggregateSpec.parse(invalidDefinition);
+                fail("IllegalArgumentException should have been raised for " + invalidDefinition);
+            } catch (IllegalArgumentException expectedEx) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        AttributeAggregator instance = new AttributeAggregator("source", Arrays.asList(
+            AggregateSpec.parse("sum(QueueSize)"), AggregateSpec.parse("min(QueueSize)"), AggregateSpec.parse("max(QueueSize)"),
+            AggregateSpec.parse("avg(QueueSize)"), AggregateSpec.parse("p50(QueueSize)"), AggregateSpec.parse("nonzero(QueueSize)"),
+            AggregateSpec.parse("count(ConsumerCount)"), AggregateSpec.parse("max(Missing)")),
+            Collections.singleton("brokerName"));
+
+        for (int i = 0; i < 10; ++i) {
+            Map<String, Object> attributeMap = new HashMap<>();
+            attributeMap.put("QueueSize", (long) i);
+            if (i % 2 == 0) {
+                attributeMap.put("ConsumerCount", 1);
+            }
+            instance.record(new ObjectName("domain:brokerName=broker,destinationName=queue." + i), attributeMap);
+        }
+
+        List<AttributeAggregate> aggregates = instance.drain(1000L);
+
+        assertEquals(1, aggregates.size());
+        AttributeAggregate aggregate = aggregates.get(0);
+        assertEquals("source", aggregate.getSource());
+        assertEquals(1000L, aggregate.getTimestamp());
+        assertEquals(Collections.singletonMap("brokerName", "broker"), aggregate.getGroupProperties());
+        assertEquals(10L, aggregate.getObjectCount());
+
+        Map<String, Object> values = aggregate.getValues();
+        assertEquals(45L, values.get("QueueSize.sum"));
+        assertEquals(0L, values.get("QueueSize.min"));
+        assertEquals(9L, values.get("QueueSize.max"));
+        assertEquals(4.5, values.get("QueueSize.avg"));
+        assertEquals(4L, values.get("QueueSize.p50"));
+        assertEquals(9L, values.get("QueueSize.nonzero"));
+        assertEquals(5L, values.get("ConsumerCount.count"));
+        assertFalse(values.containsKey("Missing.max"));
+
+        assertEquals("The cycle should be reset after drain", 0, instance.drain(2000L).size());
+    }
+
+    @Test
+    public void testGroupProperties() throws Exception {
+        AttributeAggregator instance = new AttributeAggregator("source", Collections.singletonList(AggregateSpec.parse("sum(QueueSize)")),
+            Collections.singleton("destinationType"));
+
+        instance.record(new ObjectName("domain:destinationType=Queue,destinationName=a"), Collections.<String, Object>singletonMap("QueueSize", 1L));
+        instance.record(new ObjectName("domain:destinationType=Queue,destinationName=b"), Collections.<String, Object>singletonMap("QueueSize", 2L));
+        instance.record(new ObjectName("domain:destinationType=Topic,destinationName=c"), Collections.<String, Object>singletonMap("QueueSize", 4L));
+        instance.record(new ObjectName("domain:destinationName=d"), Collections.<String, Object>singletonMap("QueueSize", 8L));
+
+        Map<String, Object> sums = new HashMap<>();
+        for (AttributeAggregate aggregate : instance.drain(1000L)) {
+            sums.put(aggregate.getGroupProperties().get("destinationType"), aggregate.getValues().get("QueueSize.sum"));
+        }
+
+        assertEquals(3L, sums.get("Queue"));
+        assertEquals(4L, sums.get("Topic"));
+        assertEquals(8L, sums.get(""));
+    }
+}
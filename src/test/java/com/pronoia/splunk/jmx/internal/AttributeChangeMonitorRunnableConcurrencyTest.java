@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.eventcollector.EventDeliveryException;
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Multi-threaded stress tests for the lock-free change detection in AttributeChangeMonitorRunnable.
+ */
+public class AttributeChangeMonitorRunnableConcurrencyTest {
+    static final String BROKER_NAME = "concurrency-test";
+    static final int OBJECT_NAME_COUNT = 20;
+    static final int THREAD_COUNT = 8;
+    static final int ITERATIONS = 100;
+
+    List<SyntheticDestination> destinations;
+    EventCollectorClientStub clientStub;
+    SplunkJmxAttributeChangeMonitor changeMonitor;
+    ObjectName[] objectNames;
+
+    /**
+     * Register the synthetic destinations and configure the change monitor.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+        objectNames = ManagementFactory.getPlatformMBeanServer().queryNames(SyntheticDestination.pattern(BROKER_NAME), null).toArray(new ObjectName[0]);
+
+        clientStub = new EventCollectorClientStub();
+        clientStub.retainEvents = false;
+
+        changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+        changeMonitor.setCollectedAttributes("Name");
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        changeMonitor.stop();
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    /**
+     * Every poll of an ObjectName must be accounted for exactly once - a lost snapshot update would change the number
+     * of events delivered.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testSuppressionCountingUnderContention() throws Exception {
+        final int maxSuppressedDuplicates = 3;
+        AttributeChangeMonitorRunnable instance = createRunnable(maxSuppressedDuplicates);
+
+        collectConcurrently(instance);
+
+        // The first poll sends an event, then each cycle is maxSuppressedDuplicates + 1 suppressed polls followed by a sent event
+        int pollsPerObjectName = THREAD_COUNT * ITERATIONS;
+        long expectedEventsPerObjectName = 1 + (pollsPerObjectName - 1) / (maxSuppressedDuplicates + 2);
+        assertEquals(OBJECT_NAME_COUNT * expectedEventsPerObjectName, clientStub.eventCount.get());
+        assertEquals(OBJECT_NAME_COUNT, instance.getTrackedObjectCount());
+    }
+
+    @Test
+    public void testFirstPollSentOnceUnderContention() throws Exception {
+        AttributeChangeMonitorRunnable instance = createRunnable(Integer.MAX_VALUE);
+
+        collectConcurrently(instance);
+
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+    }
+
+    /**
+     * Two ObjectNames can only meet at the barrier if they are delivered at the same time.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testDifferentObjectNamesCollectedInParallel() throws Exception {
+        final CyclicBarrier deliveryBarrier = new CyclicBarrier(2);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        changeMonitor.setSplunkClient(new EventCollectorClientStub() {
+            @Override
+            public void sendEvent(String event) throws EventDeliveryException {
+                try {
+                    deliveryBarrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception barrierEx) {
+                    failure.compareAndSet(null, barrierEx);
+                }
+                super.sendEvent(event);
+            }
+        });
+        final AttributeChangeMonitorRunnable instance = createRunnable(Integer.MAX_VALUE);
+        final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; ++i) {
+            final ObjectName objectName = objectNames[i];
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        instance.collectAttributes(mbeanServer, objectName);
+                    } catch (Throwable collectEx) {
+                        failure.compareAndSet(null, collectEx);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull("Collection of different ObjectNames was serialized", failure.get());
+    }
+
+    /**
+     * A polling cycle spreads the ObjectNames of the pattern over the threads of the change monitor executor.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testCycleCollectedInParallel() throws Exception {
+        Set<String> deliveryThreads = collectCycle(4);
+
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertTrue("The cycle was not collected in parallel: " + deliveryThreads, deliveryThreads.size() > 1);
+    }
+
+    @Test
+    public void testCycleCollectedOnPollingThreadWithSinglePoolThread() throws Exception {
+        Set<String> deliveryThreads = collectCycle(1);
+
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), deliveryThreads);
+    }
+
+    /*
+     * Run one polling cycle on the test thread with the change monitor started, returning the names of the threads that
+     * delivered the events
+     */
+    Set<String> collectCycle(int executorPoolSize) throws Exception {
+        final Set<String> deliveryThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        clientStub = new EventCollectorClientStub() {
+            @Override
+            public void sendEvent(String event) throws EventDeliveryException {
+                deliveryThreads.add(Thread.currentThread().getName());
+                try {
+                    // Slow delivery, so the cycle outlasts the start of the executor threads
+                    Thread.sleep(20);
+                } catch (InterruptedException interruptedEx) {
+                    Thread.currentThread().interrupt();
+                }
+                super.sendEvent(event);
+            }
+        };
+        clientStub.retainEvents = false;
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setExecutorPoolSize(executorPoolSize);
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.start();
+
+        new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+
+        return deliveryThreads;
+    }
+
+    AttributeChangeMonitorRunnable createRunnable(int maxSuppressedDuplicates) throws Exception {
+        changeMonitor.setMaxSuppressedDuplicates(maxSuppressedDuplicates);
+
+        // start() resolves the attribute configuration used by the runnable
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        return new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+    }
+
+    void collectConcurrently(final AttributeChangeMonitorRunnable instance) throws Exception {
+        final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        final CyclicBarrier startBarrier = new CyclicBarrier(THREAD_COUNT);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread[] threads = new Thread[THREAD_COUNT];
+        for (int i = 0; i < THREAD_COUNT; ++i) {
+            // Each thread starts at a different ObjectName so the threads overlap on some ObjectNames and not on others
+            final int offset = i * OBJECT_NAME_COUNT / THREAD_COUNT;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startBarrier.await();
+                        for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+                            for (int j = 0; j < objectNames.length; ++j) {
+                                instance.collectAttributes(mbeanServer, objectNames[(offset + j) % objectNames.length]);
+                            }
+                        }
+                    } catch (Throwable collectEx) {
+                        failure.compareAndSet(null, collectEx);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull("Unexpected exception during concurrent collection", failure.get());
+    }
+}
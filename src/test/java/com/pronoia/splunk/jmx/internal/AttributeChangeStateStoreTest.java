@@ -0,0 +1,226 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeChangeStateStoreTest {
+    static final String BROKER_NAME = "state-store-test";
+    static final String CHANGE_MONITOR_ID = "state-store-test-monitor";
+    static final int OBJECT_NAME_COUNT = 10;
+
+    File stateDirectory;
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Create the state directory.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        stateDirectory = Files.createTempDirectory("splunk-jmx-state").toFile();
+    }
+
+    /**
+     * Remove the state directory and the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+        File[] stateFiles = stateDirectory.listFiles();
+        if (stateFiles != null) {
+            for (File stateFile : stateFiles) {
+                stateFile.delete();
+            }
+        }
+        stateDirectory.delete();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+        AttributeChangeStateStore instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 16);
+        instance.put("domain:name=first", 1L);
+        instance.put("domain:name=second", 2L);
+        instance.put("domain:name=first", 3L);
+        instance.close();
+
+        instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 16);
+        try {
+            assertEquals(2, instance.size());
+            assertTrue(instance.matches("domain:name=first", 3L));
+            assertTrue(instance.matches("domain:name=second", 2L));
+            assertFalse(instance.matches("domain:name=first", 1L));
+            assertFalse(instance.matches("domain:name=third", 3L));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testReopenWithDifferentCapacity() throws Exception {
+        AttributeChangeStateStore instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 16);
+        instance.put("domain:name=first", 1L);
+        instance.close();
+
+        instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 32);
+        try {
+            assertEquals(0, instance.size());
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testResetWhenFull() throws Exception {
+        AttributeChangeStateStore instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 2);
+        try {
+            instance.put("domain:name=first", 1L);
+            instance.put("domain:name=second", 2L);
+            instance.put("domain:name=third", 3L);
+
+            assertEquals(1, instance.size());
+            assertTrue(instance.matches("domain:name=third", 3L));
+            assertFalse(instance.matches("domain:name=first", 1L));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testPutAfterClose() throws Exception {
+        AttributeChangeStateStore instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 16);
+        instance.put("domain:name=first", 1L);
+        instance.close();
+
+        // A poll still in progress when the monitor stops
+        instance.put("domain:name=second", 2L);
+        assertFalse(instance.matches("domain:name=first", 1L));
+
+        instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 16);
+        try {
+            assertTrue(instance.matches("domain:name=first", 1L));
+            assertFalse("Updates after close should be ignored", instance.matches("domain:name=second", 2L));
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentPutsWhileResetting() throws Exception {
+        final AttributeChangeStateStore instance = AttributeChangeStateStore.open(stateDirectory, CHANGE_MONITOR_ID, 8);
+        try {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; ++t) {
+                final int threadNumber = t;
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 10000; ++i) {
+                            instance.put("domain:thread=" + threadNumber + ",name=" + (i % 5), i);
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // Every indexed slot should still belong to its ObjectName
+            for (Map.Entry<Long, Integer> slot : instance.slotIndex.entrySet()) {
+                assertEquals(slot.getKey().longValue(), instance.buffer.getLong(AttributeChangeStateStore.slotOffset(slot.getValue())));
+            }
+        } finally {
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        Map<String, Object> attributeMap = new HashMap<>();
+        attributeMap.put("QueueSize", 5L);
+        attributeMap.put("Name", "queue");
+        attributeMap.put("Counts", new long[] {1, 2, 3});
+        TreeSet<String> attributeNames = new TreeSet<>(attributeMap.keySet());
+
+        long fingerprint = AttributeChangeStateStore.fingerprint(attributeNames, attributeMap);
+
+        attributeMap.put("Counts", new long[] {1, 2, 3});
+        assertEquals("Array contents should determine the fingerprint", fingerprint, AttributeChangeStateStore.fingerprint(attributeNames.descendingSet(), attributeMap));
+
+        attributeMap.put("QueueSize", 6L);
+        assertFalse(fingerprint == AttributeChangeStateStore.fingerprint(attributeNames, attributeMap));
+    }
+
+    /**
+     * A restarted change monitor should only send events for ObjectNames that changed while it was stopped.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testChangeMonitorRestart() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setChangeMonitorId(CHANGE_MONITOR_ID);
+        changeMonitor.setStateDirectory(stateDirectory.getPath());
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+        changeMonitor.stop();
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+
+        destinations.get(0).advance();
+
+        clientStub.reset();
+        changeMonitor.start();
+        try {
+            new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)).run();
+        } finally {
+            changeMonitor.stop();
+        }
+        assertEquals("Only the changed ObjectName should be sent after a restart", 1, clientStub.eventCount.get());
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeCostProfilerTest {
+    static final String BROKER_NAME = "attribute-cost-test";
+    static final int OBJECT_NAME_COUNT = 10;
+    static final long GRANULARITY_MILLIS = 15000;
+
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testCalculateTierPeriods() throws Exception {
+        Map<String, Long> attributeCosts = new TreeMap<>();
+        attributeCosts.put("CurrentStatus", TimeUnit.MICROSECONDS.toNanos(10));
+        attributeCosts.put("Subscriptions", TimeUnit.MILLISECONDS.toNanos(1));
+
+        // 10 objects * 1.01 ms = 10.1 ms - Subscriptions every 4 polls gives 10 * (0.01 + 0.25) = 2.6 ms
+        Map<String, Long> tierPeriods = AttributeCostProfiler.calculateTierPeriods(attributeCosts, OBJECT_NAME_COUNT, TimeUnit.MILLISECONDS.toNanos(3), GRANULARITY_MILLIS);
+
+        assertEquals(1, tierPeriods.size());
+        assertEquals(Long.valueOf(4 * GRANULARITY_MILLIS), tierPeriods.get("Subscriptions"));
+
+        assertTrue("Costs within the budget should not be reduced",
+            AttributeCostProfiler.calculateTierPeriods(attributeCosts, OBJECT_NAME_COUNT, TimeUnit.MILLISECONDS.toNanos(20), GRANULARITY_MILLIS).isEmpty());
+    }
+
+    @Test
+    public void testUnreachableBudget() throws Exception {
+        Map<String, Long> attributeCosts = new TreeMap<>();
+        attributeCosts.put("AllThreadIds", TimeUnit.SECONDS.toNanos(1));
+        attributeCosts.put("ThreadCount", TimeUnit.SECONDS.toNanos(1));
+
+        Map<String, Long> tierPeriods = AttributeCostProfiler.calculateTierPeriods(attributeCosts, 1, 1, GRANULARITY_MILLIS);
+
+        assertEquals(Long.valueOf(AttributeCostProfiler.MAX_POLL_MULTIPLIER * GRANULARITY_MILLIS), tierPeriods.get("AllThreadIds"));
+        assertEquals(Long.valueOf(AttributeCostProfiler.MAX_POLL_MULTIPLIER * GRANULARITY_MILLIS), tierPeriods.get("ThreadCount"));
+    }
+
+    /**
+     * The first poll should measure the attribute costs and reduce the polling of the attributes to fit the budget.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testChangeMonitorProfiling() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, TimeUnit.MILLISECONDS.toNanos(1));
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+        changeMonitor.setAttributeCostBudget(10);
+
+        // start() resolves the attribute configuration used by the runnable
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+        assertTrue(instance.getAttributeCosts().isEmpty());
+
+        instance.run();
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+
+        Map<String, Long> attributeCosts = instance.getAttributeCosts();
+        assertEquals("[DequeueCount, EnqueueCount, QueueSize]", attributeCosts.keySet().toString());
+        for (Long attributeCost : attributeCosts.values()) {
+            assertTrue("Attribute cost should include the getter latency: " + attributeCost, attributeCost >= 1000);
+        }
+
+        // 10 objects * 3 attributes * 1 ms = 30 ms
+        assertFalse(instance.getAttributeTierPeriods().isEmpty());
+
+        clientStub.reset();
+        instance.run();
+        assertEquals("Every event should include the reduced attributes: " + clientStub.lastEvent, OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertTrue(clientStub.lastEvent, clientStub.lastEvent.contains("QueueSize") && clientStub.lastEvent.contains("EnqueueCount") && clientStub.lastEvent.contains("DequeueCount"));
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.MemoryPoolStub;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AttributePathTest {
+    static final String OBJECT_NAME = "com.pronoia.splunk.stub:type=MemoryPool,name=attribute-path-test";
+
+    ObjectName objectName;
+    MemoryPoolStub memoryPool;
+
+    /**
+     * Register the memory pool MXBean.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        objectName = new ObjectName(OBJECT_NAME);
+        memoryPool = new MemoryPoolStub("attribute-path-test");
+        memoryPool.setUsage(100, 1000);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(memoryPool, objectName);
+    }
+
+    /**
+     * Remove the memory pool MXBean.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        AttributePath instance = AttributePath.parse("LastGcInfo.memoryUsageAfterGc.used");
+
+        assertEquals("LastGcInfo.memoryUsageAfterGc.used", instance.getName());
+        assertEquals("LastGcInfo", instance.getAttributeName());
+        assertTrue(AttributePath.isPath("HeapMemoryUsage.used"));
+        assertFalse(AttributePath.isPath("HeapMemoryUsage"));
+
+        for (String invalidPath : Arrays.asList("HeapMemoryUsage.", ".used", "HeapMemoryUsage..used")) {
+            try {
+                AttributePath.parse(invalidPath);
+                fail("Path should have been rejected: " + invalidPath);
+            } catch (IllegalArgumentException expectedEx) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        CompositeType usageType = new CompositeType("usage", "usage", new String[] {"used", "max"}, new String[] {"used", "max"},
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG});
+        CompositeType outerType = new CompositeType("outer", "outer", new String[] {"usage", "duration"}, new String[] {"usage", "duration"},
+            new OpenType<?>[] {usageType, SimpleType.LONG});
+        CompositeData usage = new CompositeDataSupport(usageType, new String[] {"used", "max"}, new Object[] {5L, 10L});
+        CompositeData outer = new CompositeDataSupport(outerType, new String[] {"usage", "duration"}, new Object[] {usage, 42L});
+
+        assertEquals(42L, AttributePath.parse("LastGcInfo.duration").select(outer));
+        assertEquals(5L, AttributePath.parse("LastGcInfo.usage.used").select(outer));
+        assertNull(AttributePath.parse("LastGcInfo.missing").select(outer));
+        assertNull(AttributePath.parse("LastGcInfo.duration.value").select(outer));
+        assertNull(AttributePath.parse("LastGcInfo.duration").select(null));
+    }
+
+    /**
+     * Only the selected item should be compared and included in the event.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testObservedAttributePath() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(objectName);
+        changeMonitor.setObservedAttributes("Usage.used");
+        changeMonitor.setCollectedAttributes("PeakUsage.committed");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        try {
+            assertEquals("[PeakUsage, Usage]", Arrays.toString(changeMonitor.getCachedAttributeArray()));
+
+            AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, objectName);
+            instance.run();
+            assertEquals(1, clientStub.eventCount.get());
+            assertTrue(clientStub.lastEvent, clientStub.lastEvent.contains("Usage.used=100"));
+            assertTrue(clientStub.lastEvent, clientStub.lastEvent.contains("PeakUsage.committed=1000"));
+            assertFalse("The CompositeData attribute should not be serialized: " + clientStub.lastEvent, clientStub.lastEvent.contains("Usage="));
+
+            memoryPool.setUsage(100, 2000);
+            instance.run();
+            assertEquals("A change to an item that is not observed should not send an event", 1, clientStub.eventCount.get());
+
+            memoryPool.setUsage(200, 2000);
+            instance.run();
+            assertEquals(2, clientStub.eventCount.get());
+            assertTrue(clientStub.lastEvent, clientStub.lastEvent.contains("Usage.used=200"));
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+
+    /**
+     * An attribute observed as a whole and through a path should be kept in the event.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testAttributeAndAttributePath() throws Exception {
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(new EventCollectorClientStub());
+        changeMonitor.setObservedObjects(objectName);
+        changeMonitor.setObservedAttributes("Usage", "Usage.used", "PeakUsage.used");
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        try {
+            assertEquals("[PeakUsage]", changeMonitor.getPathOnlyAttributes().toString());
+            assertEquals(2, changeMonitor.getAttributePaths().size());
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeTierCacheTest {
+    static final String BROKER_NAME = "attribute-tier-test";
+    static final int OBJECT_NAME_COUNT = 3;
+
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testDueAttributes() throws Exception {
+        Map<String, Long> tierPeriods = new HashMap<>();
+        tierPeriods.put("StoreLimit", 60000L);
+        AttributeTierCache instance = new AttributeTierCache(tierPeriods, 5000);
+        ObjectName objectName = new ObjectName("test:type=Broker");
+        String[] attributeNames = {"CurrentStatus", "StoreLimit"};
+
+        assertEquals("[CurrentStatus, StoreLimit]", Arrays.toString(instance.getDueAttributes(objectName, attributeNames, 0)));
+
+        AttributeList attributeList = new AttributeList(Arrays.asList(new Attribute("CurrentStatus", "Good"), new Attribute("StoreLimit", 1024L)));
+        instance.merge(objectName, attributeList, 0);
+
+        assertEquals("[CurrentStatus]", Arrays.toString(instance.getDueAttributes(objectName, attributeNames, 15000)));
+        assertEquals("[CurrentStatus]", Arrays.toString(instance.getDueAttributes(objectName, attributeNames, 54999)));
+        assertEquals("A slightly early poll should retrieve a due tier",
+            "[CurrentStatus, StoreLimit]", Arrays.toString(instance.getDueAttributes(objectName, attributeNames, 55000)));
+
+        attributeList = new AttributeList(Collections.singletonList(new Attribute("CurrentStatus", "Warning")));
+        instance.merge(objectName, attributeList, 15000);
+        assertEquals("The last known value should be added", 2, attributeList.size());
+        assertEquals(new Attribute("StoreLimit", 1024L), attributeList.get(1));
+
+        instance.retain(Collections.<ObjectName>emptySet());
+        assertEquals(0, instance.size());
+    }
+
+    /**
+     * A tiered attribute should not be retrieved in every poll, but every event should contain its last known value.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testChangeMonitorTiers() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount");
+        changeMonitor.setCollectedAttributes("Name");
+        changeMonitor.addAttributeTier("Name", 3600);
+        changeMonitor.addAttributeTier("EnqueueCount", 5);
+
+        // start() resolves the attribute configuration used by the runnable
+        changeMonitor.start();
+        changeMonitor.stop();
+        assertEquals("A tier that is not longer than the granularity period should be ignored", "[Name]", changeMonitor.getAttributeTierPeriods().keySet().toString());
+
+        AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+        ObjectName objectName = ManagementFactory.getPlatformMBeanServer().queryNames(SyntheticDestination.pattern(BROKER_NAME), null).iterator().next();
+
+        instance.run();
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertTrue(clientStub.lastEvent, clientStub.lastEvent.contains("Name="));
+
+        assertEquals("[EnqueueCount, QueueSize]",
+            Arrays.toString(instance.getQueriedAttributeNames(ManagementFactory.getPlatformMBeanServer(), objectName)));
+
+        clientStub.reset();
+        instance.run();
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertTrue("The last known value of the tier should be included: " + clientStub.lastEvent, clientStub.lastEvent.contains("Name="));
+    }
+}
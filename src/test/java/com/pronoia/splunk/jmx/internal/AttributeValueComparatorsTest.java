@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+import com.pronoia.splunk.stub.GarbageCollectionNotificationStub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeValueComparatorsTest {
+    Map<String, Long> usedBeforeGc;
+    Map<String, Long> usedAfterGc;
+
+    /**
+     * Setup the memory pool usage for the CompositeData values.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        usedBeforeGc = new LinkedHashMap<>();
+        usedBeforeGc.put("PS Eden Space", 1000L);
+        usedBeforeGc.put("PS Old Gen", 5000L);
+        usedAfterGc = new LinkedHashMap<>();
+        usedAfterGc.put("PS Eden Space", 0L);
+        usedAfterGc.put("PS Old Gen", 5200L);
+    }
+
+    @Test
+    public void testForValue() throws Exception {
+        assertSame(AttributeValueComparators.EQUALS, AttributeValueComparators.forValue(5L));
+        assertSame(AttributeValueComparators.EQUALS, AttributeValueComparators.forValue("value"));
+        assertSame(AttributeValueComparators.ARRAY_CONTENT, AttributeValueComparators.forValue(new long[] {1}));
+        assertSame(AttributeValueComparators.ARRAY_CONTENT, AttributeValueComparators.forValue(new ObjectName[0]));
+        assertSame(AttributeValueComparators.LARGE_VALUE_FINGERPRINT, AttributeValueComparators.forValue(createGcInfo(1L)));
+        assertSame(AttributeValueComparators.LARGE_VALUE_FINGERPRINT, AttributeValueComparators.forValue(createMemoryUsage(1L)));
+    }
+
+    @Test
+    public void testIsLarge() throws Exception {
+        assertTrue("A GcInfo has more items than the threshold", AttributeValueComparators.isLarge(createGcInfo(1L)));
+        assertFalse("A MemoryUsage has fewer items than the threshold", AttributeValueComparators.isLarge(createMemoryUsage(1L)));
+
+        Map<String, Long> map = new HashMap<>();
+        for (long i = 0; i < AttributeValueComparators.FINGERPRINT_THRESHOLD; ++i) {
+            map.put("key" + i, i);
+        }
+        assertFalse(AttributeValueComparators.isLarge(map));
+        map.put("key", -1L);
+        assertTrue(AttributeValueComparators.isLarge(map));
+    }
+
+    @Test
+    public void testLargeValueFingerprint() throws Exception {
+        AttributeValueComparator instance = AttributeValueComparators.LARGE_VALUE_FINGERPRINT;
+
+        Object retainedGcInfo = instance.retain(createGcInfo(1L));
+        assertTrue("A large value should be reduced to a fingerprint", retainedGcInfo instanceof AttributeValueComparators.Fingerprint);
+        assertFalse(instance.hasChanged(retainedGcInfo, createGcInfo(1L)));
+        assertTrue(instance.hasChanged(retainedGcInfo, createGcInfo(2L)));
+
+        CompositeData memoryUsage = createMemoryUsage(1L);
+        Object retainedMemoryUsage = instance.retain(memoryUsage);
+        assertSame("A small value should be retained", memoryUsage, retainedMemoryUsage);
+        assertFalse(instance.hasChanged(retainedMemoryUsage, createMemoryUsage(1L)));
+        assertTrue(instance.hasChanged(retainedMemoryUsage, createMemoryUsage(2L)));
+    }
+
+    @Test
+    public void testArrayContent() throws Exception {
+        AttributeValueComparator instance = AttributeValueComparators.ARRAY_CONTENT;
+
+        assertFalse(instance.hasChanged(new long[] {1, 2}, new long[] {1, 2}));
+        assertTrue(instance.hasChanged(new long[] {1, 2}, new long[] {1, 3}));
+        assertFalse(instance.hasChanged(new String[] {"a", "b"}, new String[] {"a", "b"}));
+        assertFalse(instance.hasChanged(
+            new ObjectName[] {new ObjectName("domain:type=Queue,name=a")}, new ObjectName[] {new ObjectName("domain:name=a,type=Queue")}));
+        assertTrue(instance.hasChanged(
+            new ObjectName[] {new ObjectName("domain:type=Queue,name=a")}, new ObjectName[] {new ObjectName("domain:type=Queue,name=b")}));
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        AttributeValueComparator instance = AttributeValueComparators.FINGERPRINT;
+
+        Object retainedValue = instance.retain(createGcInfo(1L));
+
+        assertFalse(instance.hasChanged(retainedValue, createGcInfo(1L)));
+        assertTrue(instance.hasChanged(retainedValue, createGcInfo(2L)));
+
+        usedAfterGc.put("PS Old Gen", 5300L);
+        assertTrue("A change in a nested TabularData value should change the fingerprint", instance.hasChanged(retainedValue, createGcInfo(1L)));
+    }
+
+    @Test
+    public void testFingerprintIgnoresTabularRowOrder() throws Exception {
+        long fingerprint = AttributeValueComparators.fingerprint(createGcInfo(1L));
+
+        Map<String, Long> reorderedUsedAfterGc = new LinkedHashMap<>();
+        reorderedUsedAfterGc.put("PS Old Gen", 5200L);
+        reorderedUsedAfterGc.put("PS Eden Space", 0L);
+        usedAfterGc = reorderedUsedAfterGc;
+
+        assertEquals(fingerprint, AttributeValueComparators.fingerprint(createGcInfo(1L)));
+        assertNotEquals(fingerprint, AttributeValueComparators.fingerprint(createGcInfo(2L)));
+    }
+
+    @Test
+    public void testLastAttributeInfo() throws Exception {
+        Map<String, Object> attributeMap = new HashMap<>();
+        attributeMap.put("Queues", new ObjectName[] {new ObjectName("domain:type=Queue,name=a")});
+        attributeMap.put("LastGcInfo", createGcInfo(1L));
+
+        LastAttributeInfo instance = new LastAttributeInfo("domain:type=Broker").withAttributeMap(attributeMap);
+
+        assertTrue("Only the fingerprint of CompositeData should be retained",
+            instance.getAttributeMap().get("LastGcInfo") instanceof AttributeValueComparators.Fingerprint);
+        assertFalse(instance.hasValueChanged("Queues", new ObjectName[] {new ObjectName("domain:type=Queue,name=a")}));
+        assertFalse(instance.hasValueChanged("LastGcInfo", createGcInfo(1L)));
+        assertTrue(instance.hasValueChanged("LastGcInfo", createGcInfo(2L)));
+    }
+
+    static CompositeData createMemoryUsage(long used) throws Exception {
+        String[] itemNames = {"committed", "init", "max", "used"};
+        CompositeType memoryUsageType = new CompositeType("java.lang.management.MemoryUsage", "MemoryUsage", itemNames, itemNames,
+            new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+        return new CompositeDataSupport(memoryUsageType, itemNames, new Object[] {1000L, 0L, 2000L, used});
+    }
+
+    CompositeData createGcInfo(long gcId) throws Exception {
+        return GarbageCollectionNotificationStub.createGcNotificationInfo("PS Scavenge", "end of minor GC", gcId, 12L, usedBeforeGc, usedAfterGc);
+    }
+}
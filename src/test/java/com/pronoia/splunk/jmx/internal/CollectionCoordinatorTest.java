@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollectionCoordinatorTest {
+    static final String BROKER_NAME = "collection-coordinator-test";
+    static final int OBJECT_NAME_COUNT = 10;
+    static final long GRANULARITY_PERIOD = Integer.MAX_VALUE;
+
+    List<SyntheticDestination> destinations;
+    CollectionCoordinator coordinator = CollectionCoordinator.getInstance();
+
+    EventCollectorClientStub healthClient;
+    EventCollectorClientStub statisticsClient;
+    SplunkJmxAttributeChangeMonitor healthMonitor;
+    SplunkJmxAttributeChangeMonitor statisticsMonitor;
+
+    /**
+     * Register the synthetic destinations and configure two monitors observing different attributes of the same objects.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        healthClient = new EventCollectorClientStub();
+        healthMonitor = createChangeMonitor(healthClient);
+        healthMonitor.setObservedAttributes("ConsumerCount");
+        healthMonitor.setCollectedAttributes("Name");
+
+        statisticsClient = new EventCollectorClientStub();
+        statisticsMonitor = createChangeMonitor(statisticsClient);
+        statisticsMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+    }
+
+    /**
+     * Stop the monitors and remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        healthMonitor.stop();
+        statisticsMonitor.stop();
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testMergedCollection() throws Exception {
+        healthMonitor.start();
+        statisticsMonitor.start();
+        assertEquals(2, coordinator.getRunnableCount());
+
+        long mergedRequestCount = coordinator.getMergedRequestCount();
+        coordinator.collect(GRANULARITY_PERIOD);
+
+        assertEquals("One getAttributes call per ObjectName", OBJECT_NAME_COUNT, coordinator.getLastCollectionRequestCount());
+        assertEquals(OBJECT_NAME_COUNT, coordinator.getLastCollectionObjectCount());
+        assertEquals(OBJECT_NAME_COUNT, coordinator.getMergedRequestCount() - mergedRequestCount);
+
+        assertEquals(OBJECT_NAME_COUNT, healthClient.eventCount.get());
+        assertEquals(OBJECT_NAME_COUNT, statisticsClient.eventCount.get());
+        assertTrue(healthClient.lastEvent, healthClient.lastEvent.contains("ConsumerCount"));
+        assertFalse("Each monitor should only receive the attributes it requested: " + healthClient.lastEvent, healthClient.lastEvent.contains("QueueSize"));
+        assertTrue(statisticsClient.lastEvent, statisticsClient.lastEvent.contains("QueueSize"));
+        assertFalse("Each monitor should only receive the attributes it requested: " + statisticsClient.lastEvent, statisticsClient.lastEvent.contains("ConsumerCount"));
+
+        destinations.get(0).advance();
+        coordinator.collect(GRANULARITY_PERIOD);
+
+        assertEquals("Change detection should be independent for each monitor", OBJECT_NAME_COUNT, healthClient.eventCount.get());
+        assertEquals(OBJECT_NAME_COUNT + 1, statisticsClient.eventCount.get());
+    }
+
+    @Test
+    public void testOverlappingPatterns() throws Exception {
+        ObjectName singleDestination = ManagementFactory.getPlatformMBeanServer().queryNames(SyntheticDestination.pattern(BROKER_NAME), null).iterator().next();
+        healthMonitor.setObservedObjects(singleDestination);
+
+        healthMonitor.start();
+        statisticsMonitor.start();
+        coordinator.collect(GRANULARITY_PERIOD);
+
+        assertEquals(OBJECT_NAME_COUNT, coordinator.getLastCollectionRequestCount());
+        assertEquals(1, healthClient.eventCount.get());
+        assertEquals(OBJECT_NAME_COUNT, statisticsClient.eventCount.get());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        healthMonitor.start();
+        statisticsMonitor.start();
+        assertTrue(coordinator.getGranularityPeriods().contains(GRANULARITY_PERIOD));
+
+        healthMonitor.stop();
+        assertEquals(1, coordinator.getRunnableCount());
+
+        statisticsMonitor.stop();
+        assertEquals(0, coordinator.getRunnableCount());
+        assertTrue(coordinator.getGranularityPeriods().isEmpty());
+    }
+
+    SplunkJmxAttributeChangeMonitor createChangeMonitor(EventCollectorClientStub clientStub) throws Exception {
+        SplunkJmxAttributeChangeMonitor changeMonitor = SyntheticDestination.changeMonitor(BROKER_NAME, clientStub);
+        changeMonitor.setSharedCollection(true);
+        changeMonitor.setGranularityPeriod(GRANULARITY_PERIOD);
+
+        return changeMonitor;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+    static final int KEY_COUNT = 10000;
+
+    @Test
+    public void testBalance() throws Exception {
+        ConsistentHashRing instance = ring("node-1", "node-2", "node-3");
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            String owner = instance.getOwner(key(i));
+            counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+        }
+
+        assertEquals(3, counts.size());
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            assertTrue("Unbalanced share for " + count.getKey() + ": " + counts, count.getValue() > KEY_COUNT / 5 && count.getValue() < KEY_COUNT / 2);
+        }
+    }
+
+    @Test
+    public void testJoinMovesKeysToNewMember() throws Exception {
+        ConsistentHashRing before = ring("node-1", "node-2", "node-3");
+        ConsistentHashRing after = ring("node-1", "node-2", "node-3", "node-4");
+
+        int moved = 0;
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            String previousOwner = before.getOwner(key(i));
+            String owner = after.getOwner(key(i));
+            if (!owner.equals(previousOwner)) {
+                assertEquals("Keys should only move to the new member", "node-4", owner);
+                ++moved;
+            }
+        }
+
+        assertTrue("About a quarter of the keys should move: " + moved, moved > KEY_COUNT / 8 && moved < KEY_COUNT * 3 / 8);
+    }
+
+    @Test
+    public void testLeaveOnlyMovesKeysOfMember() throws Exception {
+        ConsistentHashRing before = ring("node-1", "node-2", "node-3");
+        ConsistentHashRing after = ring("node-1", "node-3");
+
+        for (int i = 0; i < KEY_COUNT; ++i) {
+            String previousOwner = before.getOwner(key(i));
+            if (!"node-2".equals(previousOwner)) {
+                assertEquals("Keys of the remaining members should not move", previousOwner, after.getOwner(key(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testDeterministic() throws Exception {
+        ConsistentHashRing first = ring("node-1", "node-2", "node-3");
+        ConsistentHashRing second = ring("node-3", "node-1", "node-2");
+
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(first.getOwner(key(i)), second.getOwner(key(i)));
+        }
+    }
+
+    @Test
+    public void testNoMembers() throws Exception {
+        assertNull(ring().getOwner(key(0)));
+    }
+
+    static ConsistentHashRing ring(String... members) {
+        return new ConsistentHashRing(new TreeSet<>(Arrays.asList(members)));
+    }
+
+    static String key(int i) {
+        return "localhost|org.apache.activemq:brokerName=broker,destinationName=queue-" + i + ",destinationType=Queue,type=Broker";
+    }
+}
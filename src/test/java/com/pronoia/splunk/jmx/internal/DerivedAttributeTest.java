@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.GarbageCollectionNotificationStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DerivedAttributeTest {
+    static final String BROKER_NAME = "derived-attribute-test";
+
+    Map<String, Object> attributeMap;
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Setup the attribute values for the expressions.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        Map<String, Long> usedBeforeGc = new LinkedHashMap<>();
+        usedBeforeGc.put("PS Eden Space", 1000L);
+
+        attributeMap = new HashMap<>();
+        attributeMap.put("EnqueueCount", 10L);
+        attributeMap.put("DequeueCount", 4);
+        attributeMap.put("MemoryLimit", 200.0);
+        attributeMap.put("Paused", true);
+        attributeMap.put("Name", "queue");
+        attributeMap.put("LastGcInfo", GarbageCollectionNotificationStub.createGcNotificationInfo("PS Scavenge", "end of minor GC", 7L, 12L, usedBeforeGc, usedBeforeGc));
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testEvaluate() throws Exception {
+        assertEquals(6.0, evaluate("EnqueueCount - DequeueCount"), 0.0);
+        assertEquals(2.0, evaluate("EnqueueCount - DequeueCount * 2"), 0.0);
+        assertEquals(12.0, evaluate("(EnqueueCount - DequeueCount) * 2"), 0.0);
+        assertEquals(0.05, evaluate("EnqueueCount / MemoryLimit"), 1e-12);
+        assertEquals(-9.0, evaluate("-EnqueueCount + Paused"), 0.0);
+        assertEquals(1.5, evaluate(" 3/2 "), 0.0);
+        assertEquals(12.0, evaluate("LastGcInfo.gcInfo.duration"), 0.0);
+    }
+
+    @Test
+    public void testEvaluateMissingValues() throws Exception {
+        assertTrue(Double.isNaN(evaluate("Missing + 1")));
+        assertTrue(Double.isNaN(evaluate("Name + 1")));
+        assertTrue(Double.isNaN(evaluate("LastGcInfo.missing")));
+        assertTrue(Double.isNaN(evaluate("EnqueueCount.value")));
+        assertTrue(Double.isNaN(evaluate("EnqueueCount / 0")));
+    }
+
+    @Test
+    public void testReferencedAttributes() throws Exception {
+        DerivedAttribute instance = DerivedAttribute.compile("Ratio", "HeapMemoryUsage.used / HeapMemoryUsage.max + QueueSize");
+
+        assertEquals(new TreeSet<>(Arrays.asList("HeapMemoryUsage", "QueueSize")), instance.getReferencedAttributes());
+    }
+
+    @Test
+    public void testInvalidExpressions() throws Exception {
+        for (String invalidExpression : Arrays.asList("", "EnqueueCount -", "(EnqueueCount", "EnqueueCount DequeueCount", "Heap..used", "1.2.3", "EnqueueCount % 2")) {
+            try {
+                DerivedAttribute.compile("Invalid", invalidExpression);
+                fail("IllegalArgumentException should have been raised for '" + invalidExpression + "'");
+            } catch (IllegalArgumentException expectedEx) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testChangeMonitorDerivedAttribute() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, 5, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("Backlog");
+        changeMonitor.addDerivedAttribute("Backlog", "EnqueueCount - DequeueCount");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        try {
+            AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+            instance.run();
+            assertEquals(5, clientStub.eventCount.get());
+            assertTrue("The derived attribute should be in the event: " + clientStub.lastEvent, clientStub.lastEvent.contains("Backlog"));
+
+            destinations.get(0).advance();
+            instance.run();
+            assertEquals("Only the destination with a changed backlog should be sent", 6, clientStub.eventCount.get());
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+
+    double evaluate(String expression) {
+        return DerivedAttribute.compile("Derived", expression).evaluate(attributeMap);
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GzipEncoderTest {
+    GzipEncoder instance;
+
+    /**
+     * Create the encoder.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        instance = new GzipEncoder(6);
+    }
+
+    /**
+     * Release the encoder.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        instance.end();
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        StringBuilder events = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            events.append("{\"event\":{\"QueueSize\":").append(i).append("},\"fields\":{\"destinationType\":\"Queue\",\"brokerName\":\"localhost\"}}\n");
+        }
+        byte[] input = events.toString().getBytes(StandardCharsets.UTF_8);
+
+        int length = instance.encode(input, 0, input.length);
+
+        assertTrue("Repetitive events should compress well: " + length, length * 10 < input.length);
+        assertArrayEquals(input, decode(instance.getBuffer(), length));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        byte[] first = "{\"event\":\"first\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "{\"event\":\"second\"} {\"event\":\"second\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(first, decode(instance.getBuffer(), instance.encode(first, 0, first.length)));
+        assertArrayEquals(second, decode(instance.getBuffer(), instance.encode(second, 0, second.length)));
+        assertArrayEquals(new byte[0], decode(instance.getBuffer(), instance.encode(second, 0, 0)));
+        assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), decode(instance.getBuffer(), instance.encode(second, 10, 6)));
+    }
+
+    @Test
+    public void testIncompressibleInput() throws Exception {
+        byte[] input = new byte[100000];
+        new Random(42).nextBytes(input);
+
+        int length = instance.encode(input, 0, input.length);
+
+        assertTrue("The buffer should grow for incompressible data: " + length, length > input.length);
+        assertEquals(length, instance.getLength());
+        assertArrayEquals(input, decode(instance.getBuffer(), length));
+    }
+
+    @Test
+    public void testInvalidCompressionLevel() throws Exception {
+        try {
+            new GzipEncoder(10);
+            fail("IllegalArgumentException should have been raised");
+        } catch (IllegalArgumentException expectedEx) {
+            // expected
+        }
+    }
+
+    static byte[] decode(byte[] buffer, int length) throws Exception {
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(buffer, 0, length))) {
+            byte[] readBuffer = new byte[4096];
+            for (int readLength = inputStream.read(readBuffer); readLength >= 0; readLength = inputStream.read(readBuffer)) {
+                answer.write(readBuffer, 0, readLength);
+            }
+        }
+        return answer.toByteArray();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.jmx.partition.StaticPartitionMembershipProvider;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionerTest {
+    static final String BROKER_NAME = "partitioner-test";
+    static final int DESTINATION_COUNT = 60;
+    static final String[] NODES = {"node-1", "node-2", "node-3"};
+
+    StaticPartitionMembershipProvider membershipProvider;
+    List<EventCollectorClientStub> clientStubs;
+    List<AttributeChangeMonitorRunnable> runnables;
+
+    /**
+     * Register the destinations and create a change monitor for each collector node.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        SyntheticDestination.register(BROKER_NAME, DESTINATION_COUNT, 0);
+        membershipProvider = new StaticPartitionMembershipProvider(NODES);
+
+        clientStubs = new ArrayList<>();
+        runnables = new ArrayList<>();
+        for (String node : NODES) {
+            EventCollectorClientStub clientStub = new EventCollectorClientStub();
+            SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+            changeMonitor.setSplunkClient(clientStub);
+            changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+            changeMonitor.setObservedAttributes("QueueSize");
+            changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+            changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+            changeMonitor.setPartitionMembershipProvider(membershipProvider);
+            changeMonitor.setPartitionNodeId(node);
+            changeMonitor.setPartitionTarget("localhost");
+
+            // The runnable takes the partitioner created by start
+            changeMonitor.start();
+            clientStubs.add(clientStub);
+            runnables.add(new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME)));
+            changeMonitor.stop();
+        }
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        SyntheticDestination.unregister(BROKER_NAME);
+    }
+
+    @Test
+    public void testEachObjectPolledByOneNode() throws Exception {
+        long total = 0;
+        for (int i = 0; i < NODES.length; ++i) {
+            runnables.get(i).run();
+            long eventCount = clientStubs.get(i).eventCount.get();
+            assertTrue(NODES[i] + " should own some of the objects", eventCount > 0);
+            assertEquals(eventCount, runnables.get(i).getLastPollObjectCount());
+            total += eventCount;
+        }
+
+        assertEquals("Every object should be polled by exactly one node", DESTINATION_COUNT, total);
+    }
+
+    @Test
+    public void testRebalanceWhenNodeLeaves() throws Exception {
+        for (AttributeChangeMonitorRunnable runnable : runnables) {
+            runnable.run();
+        }
+        long departedNodeCount = clientStubs.get(1).eventCount.get();
+
+        membershipProvider.setMembers(NODES[0], NODES[2]);
+        long movedCount = 0;
+        for (int i : new int[] {0, 2}) {
+            long previousCount = clientStubs.get(i).eventCount.get();
+            runnables.get(i).run();
+            movedCount += clientStubs.get(i).eventCount.get() - previousCount;
+        }
+        assertEquals("Only the objects of the departed node should move", departedNodeCount, movedCount);
+        assertEquals(DESTINATION_COUNT, runnables.get(0).getLastPollObjectCount() + runnables.get(2).getLastPollObjectCount());
+
+        runnables.get(1).run();
+        assertEquals("A node that is not a member should not poll", 0, runnables.get(1).getLastPollObjectCount());
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlatformAttributeReaderTest {
+    MBeanServer mbeanServer;
+    PlatformAttributeReader instance;
+
+    /**
+     * Create the reader.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        instance = new PlatformAttributeReader();
+    }
+
+    @Test
+    public void testIsPlatformObjectName() throws Exception {
+        assertTrue(instance.isPlatformObjectName(new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME)));
+        assertTrue(instance.isPlatformObjectName(new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME)));
+        assertTrue(instance.isPlatformObjectName(new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME)));
+        assertTrue(instance.isPlatformObjectName(ManagementFactory.getGarbageCollectorMXBeans().get(0).getObjectName()));
+        assertTrue(instance.isPlatformObjectName(ManagementFactory.getMemoryPoolMXBeans().get(0).getObjectName()));
+        assertFalse(instance.isPlatformObjectName(new ObjectName("java.lang:type=Missing")));
+        assertFalse(instance.isPlatformObjectName(new ObjectName("JMImplementation:type=MBeanServerDelegate")));
+    }
+
+    @Test
+    public void testMemoryUsage() throws Exception {
+        ObjectName objectName = new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+        Map<String, Object> attributes = read(objectName, "HeapMemoryUsage", "Verbose", "ObjectName");
+
+        CompositeData expected = (CompositeData) mbeanServer.getAttribute(objectName, "HeapMemoryUsage");
+        Map<?, ?> heapMemoryUsage = (Map<?, ?>) attributes.get("HeapMemoryUsage");
+        assertEquals(expected.getCompositeType().keySet(), heapMemoryUsage.keySet());
+        assertEquals(expected.get("max"), heapMemoryUsage.get("max"));
+        assertEquals(mbeanServer.getAttribute(objectName, "Verbose"), attributes.get("Verbose"));
+        assertEquals(objectName, attributes.get("ObjectName"));
+
+        assertEquals(heapMemoryUsage.get("max"), AttributePath.parse("HeapMemoryUsage.max").select(heapMemoryUsage));
+    }
+
+    @Test
+    public void testSameValuesAsMBeanServer() throws Exception {
+        ObjectName garbageCollector = ManagementFactory.getGarbageCollectorMXBeans().get(0).getObjectName();
+        assertSameValues(garbageCollector, "Name", "Valid", "MemoryPoolNames");
+
+        ObjectName memoryPool = ManagementFactory.getMemoryPoolMXBeans().get(0).getObjectName();
+        assertSameValues(memoryPool, "Name", "Type", "MemoryManagerNames");
+
+        assertSameValues(new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME), "AvailableProcessors", "Arch", "Name");
+        assertSameValues(new ObjectName(ManagementFactory.RUNTIME_MXBEAN_NAME), "Name", "StartTime", "VmVendor");
+    }
+
+    @Test
+    public void testUnsupportedAttributes() throws Exception {
+        ObjectName objectName = new ObjectName(ManagementFactory.RUNTIME_MXBEAN_NAME);
+        Map<String, Object> attributes = read(objectName, "SystemProperties", "Uptime", "Missing");
+
+        assertTrue("Unsupported types should be retrieved from the MBeanServer", attributes.get("SystemProperties") instanceof TabularData);
+        assertTrue(attributes.get("Uptime") instanceof Long);
+        assertFalse(attributes.containsKey("Missing"));
+    }
+
+    @Test
+    public void testOtherMBeanServer() throws Exception {
+        ObjectName objectName = new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+        MBeanServer otherServer = MBeanServerFactory.newMBeanServer();
+        otherServer.registerMBean(ManagementFactory.getMemoryMXBean(), objectName);
+
+        AttributeList attributeList = instance.getAttributes(otherServer, objectName, new String[] {"HeapMemoryUsage"});
+        assertTrue(((Attribute) attributeList.get(0)).getValue() instanceof CompositeData);
+    }
+
+    @Test
+    public void testChangeMonitorAttributePath() throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME));
+        changeMonitor.setObservedAttributes("HeapMemoryUsage.max", "NonHeapMemoryUsage");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+        changeMonitor.setPlatformFastPath(true);
+
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        new AttributeChangeMonitorRunnable(changeMonitor, new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME)).run();
+        assertEquals(1, clientStub.eventCount.get());
+        assertTrue("The selected item should be in the event: " + clientStub.lastEvent, clientStub.lastEvent.contains("HeapMemoryUsage.max"));
+        assertTrue("The MemoryUsage should be in the event: " + clientStub.lastEvent, clientStub.lastEvent.contains("committed="));
+    }
+
+    @Test
+    public void testFastPathDisabledByDefault() throws Exception {
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        assertFalse(changeMonitor.isPlatformFastPath());
+    }
+
+    /**
+     * The values of the MBeanServer and the MXBean getters are read at different times, so the event for the values
+     * read from the MBeanServer is compared with the event for the same values in the form returned by the reader.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testSameMemoryEventWithFastPath() throws Exception {
+        ObjectName objectName = new ObjectName(ManagementFactory.MEMORY_MXBEAN_NAME);
+        String[] attributeNames = {"HeapMemoryUsage", "NonHeapMemoryUsage", "ObjectPendingFinalizationCount", "Verbose", "ObjectName"};
+
+        AttributeList serverAttributeList = mbeanServer.getAttributes(objectName, attributeNames);
+        AttributeList fastPathAttributeList = new AttributeList();
+        for (Attribute attribute : serverAttributeList.asList()) {
+            Object value = attribute.getValue();
+            if (value instanceof CompositeData) {
+                value = PlatformAttributeReader.convert(MemoryUsage.from((CompositeData) value));
+            }
+            fastPathAttributeList.add(new Attribute(attribute.getName(), value));
+        }
+
+        // The reader returns the values in the same form
+        AttributeList readerAttributeList = instance.getAttributes(mbeanServer, objectName, attributeNames);
+        assertEquals(fastPathAttributeList.size(), readerAttributeList.size());
+        for (int i = 0; i < readerAttributeList.size(); ++i) {
+            assertEquals(((Attribute) fastPathAttributeList.get(i)).getValue().getClass(), ((Attribute) readerAttributeList.get(i)).getValue().getClass());
+        }
+
+        String serverEvent = collectEvent(false, objectName, attributeNames, serverAttributeList);
+        String fastPathEvent = collectEvent(true, objectName, attributeNames, fastPathAttributeList);
+        assertEquals(serverEvent, fastPathEvent);
+    }
+
+    String collectEvent(boolean platformFastPath, ObjectName objectName, String[] attributeNames, AttributeList attributeList) throws Exception {
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(objectName);
+        changeMonitor.setObservedAttributes(attributeNames);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+        changeMonitor.setPlatformFastPath(platformFastPath);
+
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        new AttributeChangeMonitorRunnable(changeMonitor, objectName).collectAttributes(objectName, attributeList);
+        assertEquals(1, clientStub.eventCount.get());
+
+        // Only the timestamp differs
+        return clientStub.lastEvent.replaceFirst("time=[0-9.]+", "time=0");
+    }
+
+    void assertSameValues(ObjectName objectName, String... attributeNames) throws Exception {
+        Map<String, Object> attributes = read(objectName, attributeNames);
+        for (String attributeName : attributeNames) {
+            assertEquals(objectName + " " + attributeName,
+                AttributeValueComparators.fingerprint(mbeanServer.getAttribute(objectName, attributeName)),
+                AttributeValueComparators.fingerprint(attributes.get(attributeName)));
+        }
+    }
+
+    Map<String, Object> read(ObjectName objectName, String... attributeNames) throws Exception {
+        Map<String, Object> answer = new HashMap<>();
+        for (Object attribute : instance.getAttributes(mbeanServer, objectName, attributeNames)) {
+            answer.put(((Attribute) attribute).getName(), ((Attribute) attribute).getValue());
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PollSchedulingTest {
+    static final String BROKER_NAME = "poll-scheduling-test";
+    static final int OBJECT_NAME_COUNT = 5;
+
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testOffset() throws Exception {
+        final long windowMillis = 10000;
+
+        Set<Long> offsets = new HashSet<>();
+        for (int i = 0; i < 100; ++i) {
+            long offset = PollScheduling.offset("monitor|queue-" + i, windowMillis);
+            assertTrue("Offset outside of the window: " + offset, offset >= 0 && offset < windowMillis);
+            assertEquals("Offsets should be deterministic", offset, PollScheduling.offset("monitor|queue-" + i, windowMillis));
+            offsets.add(offset);
+        }
+        assertTrue("Offsets should be spread across the window: " + offsets.size(), offsets.size() > 90);
+
+        assertEquals(0, PollScheduling.offset("monitor|queue-0", 0));
+    }
+
+    @Test
+    public void testAlignedDelay() throws Exception {
+        final long periodMillis = 15000;
+
+        assertEquals(5000, PollScheduling.alignedDelay(1500010000L, periodMillis, 0));
+        assertEquals(0, PollScheduling.alignedDelay(1500015000L, periodMillis, 0));
+        assertEquals(7000, PollScheduling.alignedDelay(1500010000L, periodMillis, 2000));
+        assertEquals(1000, PollScheduling.alignedDelay(1500016000L, periodMillis, 2000));
+        assertEquals("Offsets longer than the period should wrap", 1000, PollScheduling.alignedDelay(1500016000L, periodMillis, 17000));
+    }
+
+    /**
+     * The bootstrap poll should deliver the first events without waiting for the granularity period.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test(timeout = 10000)
+    public void testBootstrapPoll() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+        changeMonitor.setAlignedScheduling(true);
+        changeMonitor.setSchedulingJitter(60);
+        changeMonitor.setBootstrapPoll(true);
+        changeMonitor.setBootstrapWindow(1);
+
+        changeMonitor.start();
+        try {
+            while (clientStub.eventCount.get() < OBJECT_NAME_COUNT) {
+                Thread.sleep(50);
+            }
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+
+    /**
+     * With shared collection the bootstrap poll is run by the collection coordinator.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test(timeout = 10000)
+    public void testSharedCollectionBootstrapPoll() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize");
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+        changeMonitor.setSharedCollection(true);
+        changeMonitor.setBootstrapPoll(true);
+        changeMonitor.setBootstrapWindow(1);
+
+        changeMonitor.start();
+        try {
+            while (clientStub.eventCount.get() < OBJECT_NAME_COUNT) {
+                Thread.sleep(50);
+            }
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+
+    @Test
+    public void testOverlappingCycleSkipped() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize");
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+        assertTrue(instance.beginCycle());
+        instance.run();
+        CollectionCoordinator.getInstance().collect(Collections.singletonList(instance));
+        assertEquals("A cycle should be skipped while another is in progress", 0, clientStub.eventCount.get());
+        assertTrue(instance.isRunning());
+
+        instance.endCycle();
+        instance.run();
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertFalse(instance.isRunning());
+    }
+}
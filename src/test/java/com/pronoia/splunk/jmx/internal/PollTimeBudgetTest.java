@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PollTimeBudgetTest {
+    static final String BROKER_NAME = "poll-time-budget-test";
+    static final int OBJECT_NAME_COUNT = 20;
+    static final long GETTER_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    static final long POLL_TIME_BUDGET = 30;
+
+    List<SyntheticDestination> destinations;
+    EventCollectorClientStub clientStub;
+    SplunkJmxAttributeChangeMonitor changeMonitor;
+
+    /**
+     * Register synthetic destinations that cannot all be polled within the budget.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, GETTER_LATENCY_NANOS);
+
+        clientStub = new EventCollectorClientStub();
+        changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("QueueSize", "EnqueueCount", "DequeueCount");
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+        changeMonitor.setPollTimeBudget(POLL_TIME_BUDGET);
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    /**
+     * Every object should be polled in turn, without any poll polling all of them.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Test
+    public void testRoundRobin() throws Exception {
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+
+        AttributeChangeMonitorRunnable instance = createRunnable();
+
+        int pollCount = 0;
+        while (clientStub.eventCount.get() < OBJECT_NAME_COUNT && pollCount < OBJECT_NAME_COUNT) {
+            long previousEventCount = clientStub.eventCount.get();
+            instance.run();
+            ++pollCount;
+
+            assertTrue("Each poll should advance to objects that have not been polled", clientStub.eventCount.get() > previousEventCount);
+            assertTrue("The budget should limit the objects polled in each poll", instance.getLastPollSkippedCount() > 0);
+        }
+
+        assertEquals(OBJECT_NAME_COUNT, clientStub.eventCount.get());
+        assertEquals(OBJECT_NAME_COUNT, instance.collectionTimes.size());
+    }
+
+    @Test
+    public void testStaleness() throws Exception {
+        AttributeChangeMonitorRunnable instance = createRunnable();
+
+        instance.run();
+        assertTrue(instance.getLastPollSkippedCount() > 0);
+        assertEquals("Objects that were not polled should be tracked from the time they were first seen", OBJECT_NAME_COUNT, instance.collectionTimes.size());
+        instance.run();
+        assertTrue("Objects that were never polled should be stale: " + instance.getMaxStaleness(), instance.getMaxStaleness() >= POLL_TIME_BUDGET);
+
+        // Each poll polls at least one object, so every object has been polled after this
+        for (int i = 0; i < OBJECT_NAME_COUNT; ++i) {
+            instance.run();
+        }
+        clientStub.reset();
+        instance.run();
+
+        String staleness = getStaleness(clientStub.lastEvent);
+        assertNotNull(clientStub.lastEvent, staleness);
+        assertTrue("An object is polled again after at least one exhausted budget: " + staleness, Long.parseLong(staleness) >= POLL_TIME_BUDGET);
+        assertTrue(instance.getMaxStaleness() > 0);
+    }
+
+    @Test
+    public void testSharedCollectionDisabled() throws Exception {
+        changeMonitor.setSharedCollection(true);
+        int runnableCount = CollectionCoordinator.getInstance().getRunnableCount();
+
+        changeMonitor.start();
+        try {
+            assertEquals("The coordinator does not apply the budget", runnableCount, CollectionCoordinator.getInstance().getRunnableCount());
+            assertTrue("The change monitor should poll with its own executor", changeMonitor.isRunning());
+        } finally {
+            changeMonitor.stop();
+        }
+    }
+
+    AttributeChangeMonitorRunnable createRunnable() throws Exception {
+        // start() resolves the attribute configuration used by the runnable
+        changeMonitor.start();
+        changeMonitor.stop();
+
+        return new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+    }
+
+    static String getStaleness(String event) {
+        String prefix = AttributeChangeMonitorRunnable.STALENESS_FIELD + "=";
+        int start = event.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        start += prefix.length();
+
+        int end = start;
+        while (end < event.length() && Character.isDigit(event.charAt(end))) {
+            ++end;
+        }
+        return event.substring(start, end);
+    }
+}
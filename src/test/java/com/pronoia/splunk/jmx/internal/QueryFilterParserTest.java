@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class QueryFilterParserTest {
+    static final String BROKER_NAME = "query-filter-test";
+    static final int OBJECT_NAME_COUNT = 10;
+    static final int ACTIVE_COUNT = 3;
+
+    List<SyntheticDestination> destinations;
+    MBeanServer mbeanServer;
+
+    /**
+     * Register the synthetic destinations - the first ACTIVE_COUNT destinations have messages.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        destinations = SyntheticDestination.register(BROKER_NAME, OBJECT_NAME_COUNT, 0);
+        for (int i = 0; i < ACTIVE_COUNT; ++i) {
+            destinations.get(i).advance();
+        }
+    }
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testComparison() throws Exception {
+        assertEquals(ACTIVE_COUNT, query("QueueSize > 0"));
+        assertEquals(ACTIVE_COUNT, query("QueueSize >= 1"));
+        assertEquals(OBJECT_NAME_COUNT - ACTIVE_COUNT, query("QueueSize = 0"));
+        assertEquals(OBJECT_NAME_COUNT - ACTIVE_COUNT, query("QueueSize != 1"));
+        assertEquals(OBJECT_NAME_COUNT - ACTIVE_COUNT, query("0 >= QueueSize"));
+        assertEquals(0, query("QueueSize < 0"));
+    }
+
+    @Test
+    public void testLogicalOperators() throws Exception {
+        assertEquals(ACTIVE_COUNT, query("QueueSize > 0 and ConsumerCount > 0"));
+        assertEquals(OBJECT_NAME_COUNT, query("QueueSize > 0 OR ConsumerCount > 0"));
+        assertEquals(OBJECT_NAME_COUNT - ACTIVE_COUNT, query("not QueueSize > 0"));
+        assertEquals(ACTIVE_COUNT, query("(QueueSize > 0 or ConsumerCount = 0) and not (DLQ = true)"));
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        assertEquals(ACTIVE_COUNT, query("EnqueueCount - DequeueCount > 0"));
+        assertEquals(ACTIVE_COUNT, query("(EnqueueCount - DequeueCount) * 2 = 2"));
+        assertEquals(ACTIVE_COUNT, query("EnqueueCount = 2 * DequeueCount + 1 - 1 and EnqueueCount / 2 >= 0.5"));
+    }
+
+    @Test
+    public void testDecimalComparison() throws Exception {
+        assertEquals(OBJECT_NAME_COUNT - ACTIVE_COUNT, query("QueueSize < 0.5"));
+        assertEquals(ACTIVE_COUNT, query("QueueSize >= 0.5"));
+        assertEquals(ACTIVE_COUNT, query("QueueSize * 1.5 = 1.5"));
+        assertEquals(0, query("0 >= 0.5"));
+    }
+
+    @Test
+    public void testLike() throws Exception {
+        String firstName = destinations.get(0).getName();
+
+        assertEquals(1, query("Name like '" + firstName + "'"));
+        assertEquals(OBJECT_NAME_COUNT, query("Name like '*'"));
+        assertEquals(OBJECT_NAME_COUNT - 1, query("not (Name = '" + firstName + "')"));
+    }
+
+    @Test
+    public void testMissingAttribute() throws Exception {
+        assertEquals("Objects the filter cannot be evaluated for should be excluded", 0, query("Missing > 0"));
+    }
+
+    @Test
+    public void testInvalidFilters() throws Exception {
+        String[] invalidFilters = {
+            "", "QueueSize", "QueueSize >", "QueueSize > 0 and", "(QueueSize > 0", "QueueSize > 0)", "QueueSize >> 0", "'unterminated = 1", "1 like 'x'", "QueueSize > 0 xor 1 = 1"
+        };
+        for (String invalidFilter : invalidFilters) {
+            try {
+                QueryFilterParser.parse(invalidFilter);
+                fail("Filter should have been rejected: " + invalidFilter);
+            } catch (IllegalArgumentException expectedEx) {
+                // expected
+            }
+        }
+    }
+
+    int query(String filter) throws Exception {
+        QueryExp queryExp = QueryFilterParser.parse(filter);
+        Set<ObjectName> objectNames = mbeanServer.queryNames(SyntheticDestination.pattern(BROKER_NAME), queryExp);
+
+        return objectNames.size();
+    }
+}
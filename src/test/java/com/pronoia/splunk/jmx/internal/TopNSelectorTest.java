@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.AttributeList;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+import com.pronoia.splunk.stub.EventCollectorClientStub;
+import com.pronoia.splunk.stub.SyntheticDestination;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TopNSelectorTest {
+    static final String BROKER_NAME = "top-n-test";
+
+    List<SyntheticDestination> destinations;
+
+    /**
+     * Remove the synthetic destinations.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        if (destinations != null) {
+            SyntheticDestination.unregister(BROKER_NAME);
+        }
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        TopNSelector instance = new TopNSelector("QueueSize", 5);
+
+        // Offer in an order that forces evictions from the heap
+        for (int i = 0; i < 100; ++i) {
+            long queueSize = (i * 37) % 100;
+            instance.offer(new ObjectName("domain:name=queue." + queueSize), new AttributeList(), Collections.<String, Object>singletonMap("QueueSize", queueSize));
+        }
+        instance.offer(new ObjectName("domain:name=unranked"), new AttributeList(), Collections.<String, Object>emptyMap());
+
+        TopNSelector.Selection selection = instance.drain("source", 1000L);
+
+        List<TopNSelector.Candidate> top = selection.getTop();
+        assertEquals(5, top.size());
+        for (int i = 0; i < top.size(); ++i) {
+            assertEquals(99.0 - i, top.get(i).getRankValue(), 0.0);
+            assertEquals("queue." + (99 - i), top.get(i).getObjectName().getKeyProperty("name"));
+        }
+
+        assertTrue(selection.hasOthers());
+        AttributeAggregate others = selection.getOthers();
+        assertEquals(96L, others.getObjectCount());
+        assertEquals(Collections.singletonMap(TopNSelector.TOP_N_GROUP_PROPERTY, TopNSelector.OTHERS_GROUP), others.getGroupProperties());
+        Map<String, Object> values = others.getValues();
+        assertEquals(4465L, values.get("QueueSize.sum"));
+        assertEquals(94L, values.get("QueueSize.max"));
+
+        assertEquals("The cycle should be reset after drain", 0, instance.drain("source", 2000L).getTop().size());
+    }
+
+    @Test
+    public void testDrainWithoutOthers() throws Exception {
+        TopNSelector instance = new TopNSelector("QueueSize", 5);
+
+        instance.offer(new ObjectName("domain:name=queue"), new AttributeList(), Collections.<String, Object>singletonMap("QueueSize", 1L));
+
+        TopNSelector.Selection selection = instance.drain("source", 1000L);
+        assertEquals(1, selection.getTop().size());
+        assertFalse(selection.hasOthers());
+    }
+
+    @Test
+    public void testChangeMonitorTopNMode() throws Exception {
+        destinations = SyntheticDestination.register(BROKER_NAME, 20, 0);
+
+        EventCollectorClientStub clientStub = new EventCollectorClientStub();
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(clientStub);
+        changeMonitor.setObservedObjects(SyntheticDestination.pattern(BROKER_NAME));
+        changeMonitor.setObservedAttributes("EnqueueCount", "DequeueCount");
+        changeMonitor.setTopAttribute("QueueSize");
+        changeMonitor.setTopCount(3);
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        changeMonitor.start();
+        try {
+            AttributeChangeMonitorRunnable instance = new AttributeChangeMonitorRunnable(changeMonitor, SyntheticDestination.pattern(BROKER_NAME));
+            instance.run();
+            instance.run();
+        } finally {
+            changeMonitor.stop();
+        }
+
+        assertEquals("Each cycle should send the top three objects and one others event", 8, clientStub.eventCount.get());
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.jmx.partition;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileLeasePartitionMembershipProviderTest {
+    File leaseDirectory;
+    FileLeasePartitionMembershipProvider firstHost;
+    FileLeasePartitionMembershipProvider secondHost;
+
+    /**
+     * Create providers for two hosts sharing a lease directory.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @Before
+    public void setUp() throws Exception {
+        leaseDirectory = File.createTempFile("leases", "");
+        leaseDirectory.delete();
+
+        firstHost = new FileLeasePartitionMembershipProvider();
+        firstHost.setLeaseDirectory(leaseDirectory);
+        secondHost = new FileLeasePartitionMembershipProvider();
+        secondHost.setLeaseDirectory(leaseDirectory);
+    }
+
+    /**
+     * Remove the lease directory.
+     *
+     * @throws Exception raised in the event of a test error
+     */
+    @After
+    public void tearDown() throws Exception {
+        File[] leaseFiles = leaseDirectory.listFiles();
+        if (leaseFiles != null) {
+            for (File leaseFile : leaseFiles) {
+                leaseFile.delete();
+            }
+        }
+        leaseDirectory.delete();
+    }
+
+    @Test
+    public void testJoinAndLeave() throws Exception {
+        firstHost.join("node-1@host-a");
+        secondHost.join("node/2");
+
+        assertEquals(new TreeSet<>(Arrays.asList("node-1@host-a", "node/2")), firstHost.getMembers());
+        assertEquals(firstHost.getMembers(), secondHost.getMembers());
+
+        firstHost.leave("node-1@host-a");
+        assertEquals(new TreeSet<>(Arrays.asList("node/2")), secondHost.getMembers());
+    }
+
+    @Test
+    public void testLeaveAfterEveryJoin() throws Exception {
+        firstHost.join("node-1");
+        firstHost.join("node-1");
+
+        firstHost.leave("node-1");
+        assertTrue("The node should remain until every monitor has left", secondHost.getMembers().contains("node-1"));
+
+        firstHost.leave("node-1");
+        assertTrue(secondHost.getMembers().isEmpty());
+    }
+
+    @Test
+    public void testDepartedNodeNotRenewed() throws Exception {
+        firstHost.join("node-1");
+        firstHost.leave("node-1");
+
+        // A renewal time left behind by a renewal racing with leave
+        firstHost.localRenewalTimes.put("node-1", 0L);
+
+        assertTrue("A node that has left should not be renewed", firstHost.getMembers().isEmpty());
+        assertFalse(firstHost.getLeaseFile("node-1").exists());
+    }
+
+    @Test
+    public void testExpiredLease() throws Exception {
+        firstHost.setLeaseDuration(60);
+        secondHost.setLeaseDuration(60);
+        firstHost.join("node-1");
+        secondHost.join("node-2");
+
+        // Simulate a node that stopped without leaving
+        File leaseFile = secondHost.getLeaseFile("node-2");
+        assertTrue(leaseFile.setLastModified(System.currentTimeMillis() - 120000));
+
+        assertEquals(new TreeSet<>(Arrays.asList("node-1")), firstHost.getMembers());
+    }
+}
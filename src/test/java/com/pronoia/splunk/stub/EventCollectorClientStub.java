@@ -19,11 +19,29 @@ package com.pronoia.splunk.stub;
 import com.pronoia.splunk.eventcollector.EventCollectorClient;
 import com.pronoia.splunk.eventcollector.EventDeliveryException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class EventCollectorClientStub implements EventCollectorClient {
     public String lastEvent;
+    public List<String> events = Collections.synchronizedList(new ArrayList<>());
+    public boolean retainEvents = true;
+    public AtomicLong eventCount = new AtomicLong();
+    public AtomicLong eventBytes = new AtomicLong();
+
+    /**
+     * Reset the delivery counters and discard any retained events.
+     */
+    public void reset() {
+        lastEvent = null;
+        events.clear();
+        eventCount.set(0);
+        eventBytes.set(0);
+    }
 
     @Override
     public String getClientId() {
@@ -126,5 +144,10 @@ public class EventCollectorClientStub implements EventCollectorClient {
     @Override
     public void sendEvent(String event) throws EventDeliveryException {
         lastEvent = event;
+        eventCount.incrementAndGet();
+        eventBytes.addAndGet(event.length());
+        if (retainEvents) {
+            events.add(event);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.stub;
+
+import java.util.Map;
+
+import javax.management.Notification;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+/**
+ * Builds GC notifications with the same OpenType structure as the notifications emitted by the JVM.
+ */
+public class GarbageCollectionNotificationStub {
+    public static final String GC_NOTIFICATION_TYPE = "com.sun.management.gc.notification";
+
+    static final String[] MEMORY_USAGE_ITEMS = {"committed", "init", "max", "used"};
+    static final String[] ROW_ITEMS = {"key", "value"};
+    static final String[] GC_INFO_ITEMS = {"duration", "endTime", "id", "memoryUsageAfterGc", "memoryUsageBeforeGc", "startTime"};
+    static final String[] GC_NOTIFICATION_INFO_ITEMS = {"gcAction", "gcCause", "gcInfo", "gcName"};
+
+    static final CompositeType MEMORY_USAGE_TYPE;
+    static final CompositeType MEMORY_USAGE_ROW_TYPE;
+    static final TabularType MEMORY_USAGE_TABLE_TYPE;
+    static final CompositeType GC_INFO_TYPE;
+    static final CompositeType GC_NOTIFICATION_INFO_TYPE;
+
+    static {
+        try {
+            MEMORY_USAGE_TYPE = new CompositeType("java.lang.management.MemoryUsage", "MemoryUsage", MEMORY_USAGE_ITEMS, MEMORY_USAGE_ITEMS,
+                new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            MEMORY_USAGE_ROW_TYPE = new CompositeType("memoryUsageRow", "memoryUsageRow", ROW_ITEMS, ROW_ITEMS,
+                new OpenType<?>[] {SimpleType.STRING, MEMORY_USAGE_TYPE});
+            MEMORY_USAGE_TABLE_TYPE = new TabularType("memoryUsageTable", "memoryUsageTable", MEMORY_USAGE_ROW_TYPE, new String[] {"key"});
+            GC_INFO_TYPE = new CompositeType("sun.management.GcInfoCompositeType", "GcInfo", GC_INFO_ITEMS, GC_INFO_ITEMS,
+                new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, MEMORY_USAGE_TABLE_TYPE, MEMORY_USAGE_TABLE_TYPE, SimpleType.LONG});
+            GC_NOTIFICATION_INFO_TYPE = new CompositeType("sun.management.GcNotificationInfoCompositeType", "GcNotificationInfo",
+                GC_NOTIFICATION_INFO_ITEMS, GC_NOTIFICATION_INFO_ITEMS,
+                new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING, GC_INFO_TYPE, SimpleType.STRING});
+        } catch (OpenDataException openDataEx) {
+            throw new ExceptionInInitializerError(openDataEx);
+        }
+    }
+
+    /**
+     * Create the CompositeData form of a GarbageCollectionNotificationInfo.
+     *
+     * @param gcName the name of the collector
+     * @param gcAction the GC action
+     * @param gcId the id of the collection
+     * @param duration the duration of the collection in milliseconds
+     * @param usedBeforeGc the used bytes for each memory pool before the collection
+     * @param usedAfterGc the used bytes for each memory pool after the collection
+     *
+     * @return the GcNotificationInfo CompositeData
+     *
+     * @throws OpenDataException raised if the CompositeData cannot be created
+     */
+    public static CompositeData createGcNotificationInfo(String gcName, String gcAction, long gcId, long duration,
+                                                         Map<String, Long> usedBeforeGc, Map<String, Long> usedAfterGc) throws OpenDataException {
+        long startTime = gcId * 1000;
+        CompositeData gcInfo = new CompositeDataSupport(GC_INFO_TYPE, GC_INFO_ITEMS,
+            new Object[] {duration, startTime + duration, gcId, createMemoryUsageTable(usedAfterGc), createMemoryUsageTable(usedBeforeGc), startTime});
+
+        return new CompositeDataSupport(GC_NOTIFICATION_INFO_TYPE, GC_NOTIFICATION_INFO_ITEMS,
+            new Object[] {gcAction, "Allocation Failure", gcInfo, gcName});
+    }
+
+    /**
+     * Create a GC notification.
+     *
+     * @param gcName the name of the collector
+     * @param gcNotificationInfo the CompositeData form of the GarbageCollectionNotificationInfo
+     *
+     * @return the Notification
+     *
+     * @throws Exception raised if the Notification cannot be created
+     */
+    public static Notification createGcNotification(String gcName, CompositeData gcNotificationInfo) throws Exception {
+        Notification notification = new Notification(GC_NOTIFICATION_TYPE,
+            new ObjectName("java.lang:type=GarbageCollector,name=" + gcName), 1L, System.currentTimeMillis(), gcName);
+        notification.setUserData(gcNotificationInfo);
+        return notification;
+    }
+
+    static TabularDataSupport createMemoryUsageTable(Map<String, Long> usedBytes) throws OpenDataException {
+        TabularDataSupport answer = new TabularDataSupport(MEMORY_USAGE_TABLE_TYPE);
+        for (Map.Entry<String, Long> entry : usedBytes.entrySet()) {
+            CompositeData memoryUsage = new CompositeDataSupport(MEMORY_USAGE_TYPE, MEMORY_USAGE_ITEMS,
+                new Object[] {entry.getValue() * 2, 0L, entry.getValue() * 4, entry.getValue()});
+            answer.put(new CompositeDataSupport(MEMORY_USAGE_ROW_TYPE, ROW_ITEMS, new Object[] {entry.getKey(), memoryUsage}));
+        }
+        return answer;
+    }
+}
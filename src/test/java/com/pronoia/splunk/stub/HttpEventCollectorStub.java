@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * An HTTP server standing in for the Splunk HTTP Event Collector - it records the requests it receives.
+ */
+public class HttpEventCollectorStub {
+    public static final String EVENT_PATH = "/services/collector/event";
+
+    public List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+    public volatile int responseCode = 200;
+    public volatile long responseDelay;
+
+    HttpServer httpServer;
+
+    public void start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext(EVENT_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] content = readFully(exchange.getRequestBody());
+                String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                InputStream bodyStream = new ByteArrayInputStream(content);
+                if ("gzip".equals(contentEncoding)) {
+                    bodyStream = new GZIPInputStream(bodyStream);
+                }
+                requests.add(new Request(contentEncoding, exchange.getRequestHeaders().getFirst("Authorization"), content.length,
+                    new String(readFully(bodyStream), StandardCharsets.UTF_8)));
+
+                if (responseDelay > 0) {
+                    try {
+                        Thread.sleep(responseDelay);
+                    } catch (InterruptedException interruptedEx) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                byte[] response = (responseCode == 200 ? "{\"text\":\"Success\",\"code\":0}" : "{\"text\":\"Invalid token\",\"code\":4}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(responseCode, response.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(response);
+                }
+            }
+        });
+        httpServer.start();
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+
+    public String getUrl() {
+        return String.format("http://localhost:%d%s", httpServer.getAddress().getPort(), EVENT_PATH);
+    }
+
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream answer = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int length = inputStream.read(buffer); length >= 0; length = inputStream.read(buffer)) {
+            answer.write(buffer, 0, length);
+        }
+        return answer.toByteArray();
+    }
+
+    public static class Request {
+        public final String contentEncoding;
+        public final String authorization;
+        public final int contentLength;
+        public final String body;
+
+        Request(String contentEncoding, String authorization, int contentLength, String body) {
+            this.contentEncoding = contentEncoding;
+            this.authorization = authorization;
+            this.contentLength = contentLength;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.stub;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A child JVM for testing the local JVM collector - it runs until its standard input is closed.
+ */
+public final class LocalJvmStub {
+    private LocalJvmStub() {
+    }
+
+    public static final String READY = "ready";
+
+    public static void main(String[] args) throws IOException {
+        System.out.println(READY);
+        System.out.flush();
+        while (System.in.read() >= 0) {
+            // Wait for the parent to close the pipe
+        }
+    }
+
+    /**
+     * Start a child JVM running this class.
+     *
+     * @param systemProperties system property definitions for the child JVM (name=value)
+     *
+     * @return the child process, once its main method is running
+     *
+     * @throws IOException if the child JVM cannot be started
+     */
+    public static Process start(String... systemProperties) throws IOException {
+        String javaExecutable = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        ProcessBuilder processBuilder = new ProcessBuilder(javaExecutable);
+        for (String systemProperty : systemProperties) {
+            processBuilder.command().add("-D" + systemProperty);
+        }
+        processBuilder.command().add("-cp");
+        processBuilder.command().add(System.getProperty("java.class.path"));
+        processBuilder.command().add(LocalJvmStub.class.getName());
+        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+        Process answer = processBuilder.start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(answer.getInputStream(), StandardCharsets.UTF_8));
+        if (!READY.equals(reader.readLine())) {
+            answer.destroy();
+            throw new IOException("Child JVM did not start");
+        }
+
+        return answer;
+    }
+}
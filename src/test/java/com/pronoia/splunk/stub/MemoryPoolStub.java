@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.stub;
+
+import java.lang.management.MemoryUsage;
+
+/**
+ * A memory pool MXBean with settable usage for testing attribute paths into CompositeData attributes.
+ */
+public class MemoryPoolStub implements MemoryPoolStubMXBean {
+    final String name;
+
+    volatile MemoryUsage usage = new MemoryUsage(0, 0, 0, 0);
+    volatile MemoryUsage peakUsage = new MemoryUsage(0, 0, 0, 0);
+
+    public MemoryPoolStub(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public MemoryUsage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(long used, long committed) {
+        usage = new MemoryUsage(0, used, committed, -1);
+        if (used > peakUsage.getUsed()) {
+            peakUsage = usage;
+        }
+    }
+
+    @Override
+    public MemoryUsage getPeakUsage() {
+        return peakUsage;
+    }
+}
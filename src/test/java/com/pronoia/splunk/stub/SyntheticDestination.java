@@ -0,0 +1,280 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.pronoia.splunk.stub;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.pronoia.splunk.eventcollector.EventCollectorClient;
+import com.pronoia.splunk.jmx.SplunkJmxAttributeChangeMonitor;
+
+/**
+ * An ActiveMQ-shaped destination MBean for scale testing.
+ *
+ * <p>Every getter spins for the configured latency to simulate expensive attribute access, and {@link #advance()}
+ * simulates message traffic by changing the counters.
+ */
+public class SyntheticDestination implements SyntheticDestinationMBean {
+    public static final String DOMAIN = "com.pronoia.splunk.synthetic";
+
+    final String name;
+    final long getterLatencyNanos;
+
+    volatile long enqueueCount;
+    volatile long dequeueCount;
+    volatile long consumerCount = 1;
+    volatile long maxEnqueueTime;
+
+    public SyntheticDestination(String name, long getterLatencyNanos) {
+        this.name = name;
+        this.getterLatencyNanos = getterLatencyNanos;
+    }
+
+    /**
+     * Create the ObjectName for a synthetic destination.
+     *
+     * @param brokerName the broker name key property
+     * @param destinationName the destination name key property
+     *
+     * @return the ObjectName
+     *
+     * @throws Exception raised if the ObjectName is invalid
+     */
+    public static ObjectName objectName(String brokerName, String destinationName) throws Exception {
+        return new ObjectName(String.format("%s:type=Broker,brokerName=%s,destinationType=Queue,destinationName=%s", DOMAIN, brokerName, destinationName));
+    }
+
+    /**
+     * Create the ObjectName pattern matching all the synthetic destinations of a broker.
+     *
+     * @param brokerName the broker name key property
+     *
+     * @return the ObjectName pattern
+     *
+     * @throws Exception raised if the ObjectName is invalid
+     */
+    public static ObjectName pattern(String brokerName) throws Exception {
+        return new ObjectName(String.format("%s:type=Broker,brokerName=%s,destinationType=Queue,*", DOMAIN, brokerName));
+    }
+
+    /**
+     * Create a change monitor observing all the synthetic destinations of a broker.
+     *
+     * <p>Duplicate values are always suppressed, and the granularity period is long enough that the monitor never polls
+     * on its own - the test runs the polling cycles.
+     *
+     * @param brokerName the broker name key property
+     * @param splunkClient the client receiving the events
+     *
+     * @return the change monitor - it is not started
+     *
+     * @throws Exception raised if the ObjectName pattern is invalid
+     */
+    public static SplunkJmxAttributeChangeMonitor changeMonitor(String brokerName, EventCollectorClient splunkClient) throws Exception {
+        SplunkJmxAttributeChangeMonitor changeMonitor = new SplunkJmxAttributeChangeMonitor();
+        changeMonitor.setSplunkClient(splunkClient);
+        changeMonitor.setObservedObjects(pattern(brokerName));
+        changeMonitor.setMaxSuppressedDuplicates(Integer.MAX_VALUE);
+        changeMonitor.setGranularityPeriod(Integer.MAX_VALUE);
+
+        return changeMonitor;
+    }
+
+    /**
+     * Register synthetic destinations with the platform MBeanServer.
+     *
+     * @param brokerName the broker name key property
+     * @param count the number of destinations to register
+     * @param getterLatencyNanos the simulated latency of each attribute getter
+     *
+     * @return the registered destinations
+     *
+     * @throws Exception raised if a destination cannot be registered
+     */
+    public static List<SyntheticDestination> register(String brokerName, int count, long getterLatencyNanos) throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        List<SyntheticDestination> answer = new LinkedList<>();
+
+        for (int i = 0; i < count; ++i) {
+            String destinationName = "queue." + i;
+            SyntheticDestination destination = new SyntheticDestination(destinationName, getterLatencyNanos);
+            mbeanServer.registerMBean(destination, objectName(brokerName, destinationName));
+            answer.add(destination);
+        }
+
+        return answer;
+    }
+
+    /**
+     * Unregister all the synthetic destinations of a broker.
+     *
+     * @param brokerName the broker name key property
+     *
+     * @throws Exception raised if a destination cannot be unregistered
+     */
+    public static void unregister(String brokerName) throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : mbeanServer.queryNames(pattern(brokerName), null)) {
+            mbeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    /**
+     * Change a random subset of destinations.
+     *
+     * @param destinations the destinations
+     * @param changeRate the fraction of the destinations to change
+     * @param random the source of randomness
+     *
+     * @return the number of changed destinations
+     */
+    public static int advance(List<SyntheticDestination> destinations, double changeRate, Random random) {
+        int changed = 0;
+        for (SyntheticDestination destination : destinations) {
+            if (random.nextDouble() < changeRate) {
+                destination.advance();
+                ++changed;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Simulate message traffic.
+     */
+    public void advance() {
+        enqueueCount += 2;
+        dequeueCount += 1;
+        maxEnqueueTime = Math.max(maxEnqueueTime, enqueueCount % 100);
+    }
+
+    void simulateLatency() {
+        if (getterLatencyNanos > 0) {
+            long deadline = System.nanoTime() + getterLatencyNanos;
+            while (System.nanoTime() < deadline) {
+                // Busy-wait - sleeping is far too coarse for microsecond latencies
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        simulateLatency();
+        return name;
+    }
+
+    @Override
+    public long getQueueSize() {
+        simulateLatency();
+        return enqueueCount - dequeueCount;
+    }
+
+    @Override
+    public long getEnqueueCount() {
+        simulateLatency();
+        return enqueueCount;
+    }
+
+    @Override
+    public long getDequeueCount() {
+        simulateLatency();
+        return dequeueCount;
+    }
+
+    @Override
+    public long getDispatchCount() {
+        simulateLatency();
+        return dequeueCount;
+    }
+
+    @Override
+    public long getInFlightCount() {
+        simulateLatency();
+        return 0;
+    }
+
+    @Override
+    public long getExpiredCount() {
+        simulateLatency();
+        return 0;
+    }
+
+    @Override
+    public long getConsumerCount() {
+        simulateLatency();
+        return consumerCount;
+    }
+
+    @Override
+    public long getProducerCount() {
+        simulateLatency();
+        return 1;
+    }
+
+    @Override
+    public long getMemoryUsageByteCount() {
+        simulateLatency();
+        return (enqueueCount - dequeueCount) * 1024;
+    }
+
+    @Override
+    public long getMemoryLimit() {
+        simulateLatency();
+        return 67108864L;
+    }
+
+    @Override
+    public int getMemoryPercentUsage() {
+        simulateLatency();
+        return (int) ((enqueueCount - dequeueCount) * 1024 * 100 / 67108864L);
+    }
+
+    @Override
+    public double getAverageEnqueueTime() {
+        simulateLatency();
+        return maxEnqueueTime / 2.0;
+    }
+
+    @Override
+    public long getMaxEnqueueTime() {
+        simulateLatency();
+        return maxEnqueueTime;
+    }
+
+    @Override
+    public long getMinEnqueueTime() {
+        simulateLatency();
+        return 0;
+    }
+
+    @Override
+    public boolean isDLQ() {
+        simulateLatency();
+        return false;
+    }
+
+    @Override
+    public boolean isPaused() {
+        simulateLatency();
+        return false;
+    }
+}